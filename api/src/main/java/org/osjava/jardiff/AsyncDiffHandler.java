@@ -0,0 +1,483 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A DiffHandler decorator which hands every event over to another thread
+ * before passing it on to the wrapped handler.
+ * Events are queued in a bounded ring buffer, so a slow handler (e.g. one
+ * writing XML to a file) runs concurrently with the diff itself instead of
+ * adding to its latency, while a fast diff cannot run arbitrarily far ahead
+ * of its output.
+ * <p>
+ * Events reach the wrapped handler in exactly the order they were
+ * received. The first exception thrown by the wrapped handler stops
+ * delivery of any further event and is thrown back to the caller of
+ * {@link #endDiff()}, which also waits for all queued events to be handled.
+ * </p>
+ * If the diff fails before {@link #endDiff()}, {@link #abort()} must be
+ * called to stop the writer thread:
+ * <pre>
+ * AsyncDiffHandler handler = new AsyncDiffHandler(delegate);
+ * try {
+ *     jarDiff.diff(handler, criteria);
+ * } catch (DiffException e) {
+ *     handler.abort();
+ *     throw e;
+ * }
+ * </pre>
+ * An instance handles a single diff and must be fed from a single thread.
+ */
+public class AsyncDiffHandler implements DiffHandler
+{
+    /**
+     * The default number of events which may be queued.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int START_DIFF = 0;
+    private static final int START_OLD_CONTENTS = 1;
+    private static final int START_NEW_CONTENTS = 2;
+    private static final int CONTAINS = 3;
+    private static final int END_OLD_CONTENTS = 4;
+    private static final int END_NEW_CONTENTS = 5;
+    private static final int START_REMOVED = 6;
+    private static final int CLASS_REMOVED = 7;
+    private static final int END_REMOVED = 8;
+    private static final int START_ADDED = 9;
+    private static final int CLASS_ADDED = 10;
+    private static final int END_ADDED = 11;
+    private static final int START_CHANGED = 12;
+    private static final int START_CLASS_CHANGED = 13;
+    private static final int FIELD_REMOVED = 14;
+    private static final int METHOD_REMOVED = 15;
+    private static final int FIELD_ADDED = 16;
+    private static final int METHOD_ADDED = 17;
+    private static final int CLASS_CHANGED = 18;
+    private static final int CLASS_DEPRECATED = 19;
+    private static final int FIELD_CHANGED = 20;
+    private static final int FIELD_DEPRECATED = 21;
+    private static final int METHOD_CHANGED = 22;
+    private static final int METHOD_DEPRECATED = 23;
+    private static final int END_CLASS_CHANGED = 24;
+    private static final int END_CHANGED = 25;
+    private static final int END_DIFF = 26;
+    private static final int ABORT = 27;
+
+    /**
+     * How long to wait for space in the buffer before checking that the
+     * writer thread still runs, in milliseconds.
+     */
+    private static final long PUT_TIMEOUT = 100;
+
+    /**
+     * Events without arguments are shared rather than allocated per call.
+     */
+    private static final Event[] SIMPLE_EVENTS = new Event[ABORT + 1];
+
+    static {
+        for (int i = 0; i < SIMPLE_EVENTS.length; i++) {
+            SIMPLE_EVENTS[i] = new Event(i, null, null);
+        }
+    }
+
+    /**
+     * The handler events are forwarded to.
+     */
+    private final DiffHandler delegate;
+
+    /**
+     * The bounded buffer of events not yet handled by the writer thread.
+     */
+    private final BlockingQueue<Event> queue;
+
+    /**
+     * The thread draining the queue, started by startDiff.
+     */
+    private Thread writer;
+
+    /**
+     * The first failure of the wrapped handler, if any.
+     */
+    private volatile DiffException failure;
+
+    /**
+     * Create a new AsyncDiffHandler queuing up to
+     * {@link #DEFAULT_CAPACITY} events.
+     *
+     * @param delegate the handler events are forwarded to.
+     */
+    public AsyncDiffHandler(DiffHandler delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new AsyncDiffHandler.
+     *
+     * @param delegate the handler events are forwarded to.
+     * @param capacity the maximum number of queued events; once reached,
+     *                 the diff waits for the writer thread to catch up.
+     */
+    public AsyncDiffHandler(DiffHandler delegate, int capacity) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("null delegate");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<Event>(capacity);
+    }
+
+    public void startDiff(String a, String b) throws DiffException {
+        if (writer != null) {
+            throw new IllegalStateException("diff already started");
+        }
+        writer = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, "jardiff-async-writer");
+        writer.setDaemon(true);
+        writer.start();
+        put(new Event(START_DIFF, a, b));
+    }
+
+    public void startOldContents() throws DiffException {
+        put(SIMPLE_EVENTS[START_OLD_CONTENTS]);
+    }
+
+    public void startNewContents() throws DiffException {
+        put(SIMPLE_EVENTS[START_NEW_CONTENTS]);
+    }
+
+    public void contains(ClassInfo info) throws DiffException {
+        put(new Event(CONTAINS, info, null));
+    }
+
+    public void endOldContents() throws DiffException {
+        put(SIMPLE_EVENTS[END_OLD_CONTENTS]);
+    }
+
+    public void endNewContents() throws DiffException {
+        put(SIMPLE_EVENTS[END_NEW_CONTENTS]);
+    }
+
+    public void startRemoved() throws DiffException {
+        put(SIMPLE_EVENTS[START_REMOVED]);
+    }
+
+    public void classRemoved(ClassInfo classinfo) throws DiffException {
+        put(new Event(CLASS_REMOVED, classinfo, null));
+    }
+
+    public void endRemoved() throws DiffException {
+        put(SIMPLE_EVENTS[END_REMOVED]);
+    }
+
+    public void startAdded() throws DiffException {
+        put(SIMPLE_EVENTS[START_ADDED]);
+    }
+
+    public void classAdded(ClassInfo classinfo) throws DiffException {
+        put(new Event(CLASS_ADDED, classinfo, null));
+    }
+
+    public void endAdded() throws DiffException {
+        put(SIMPLE_EVENTS[END_ADDED]);
+    }
+
+    public void startChanged() throws DiffException {
+        put(SIMPLE_EVENTS[START_CHANGED]);
+    }
+
+    public void startClassChanged(String string) throws DiffException {
+        put(new Event(START_CLASS_CHANGED, string, null));
+    }
+
+    public void fieldRemoved(FieldInfo fieldinfo) throws DiffException {
+        put(new Event(FIELD_REMOVED, fieldinfo, null));
+    }
+
+    public void methodRemoved(MethodInfo methodinfo) throws DiffException {
+        put(new Event(METHOD_REMOVED, methodinfo, null));
+    }
+
+    public void fieldAdded(FieldInfo fieldinfo) throws DiffException {
+        put(new Event(FIELD_ADDED, fieldinfo, null));
+    }
+
+    public void methodAdded(MethodInfo methodinfo) throws DiffException {
+        put(new Event(METHOD_ADDED, methodinfo, null));
+    }
+
+    public void classChanged(ClassInfo oldClassinfo, ClassInfo newClassinfo)
+        throws DiffException
+    {
+        put(new Event(CLASS_CHANGED, oldClassinfo, newClassinfo));
+    }
+
+    public void classDeprecated(ClassInfo oldClassinfo, ClassInfo newClassinfo)
+        throws DiffException
+    {
+        put(new Event(CLASS_DEPRECATED, oldClassinfo, newClassinfo));
+    }
+
+    public void fieldChanged(FieldInfo oldFieldinfo, FieldInfo newFieldinfo)
+        throws DiffException
+    {
+        put(new Event(FIELD_CHANGED, oldFieldinfo, newFieldinfo));
+    }
+
+    public void fieldDeprecated(FieldInfo oldFieldinfo, FieldInfo newFieldinfo)
+        throws DiffException
+    {
+        put(new Event(FIELD_DEPRECATED, oldFieldinfo, newFieldinfo));
+    }
+
+    public void methodChanged(MethodInfo oldMethodInfo, MethodInfo newMethodInfo)
+        throws DiffException
+    {
+        put(new Event(METHOD_CHANGED, oldMethodInfo, newMethodInfo));
+    }
+
+    public void methodDeprecated(MethodInfo oldMethodInfo, MethodInfo newMethodInfo)
+        throws DiffException
+    {
+        put(new Event(METHOD_DEPRECATED, oldMethodInfo, newMethodInfo));
+    }
+
+    public void endClassChanged() throws DiffException {
+        put(SIMPLE_EVENTS[END_CLASS_CHANGED]);
+    }
+
+    public void endChanged() throws DiffException {
+        put(SIMPLE_EVENTS[END_CHANGED]);
+    }
+
+    /**
+     * End the diff.
+     * This waits until the wrapped handler has handled all queued events,
+     * including its own endDiff.
+     *
+     * @throws DiffException the first exception thrown by the wrapped
+     *                       handler, or when interrupted while waiting.
+     */
+    public void endDiff() throws DiffException {
+        put(SIMPLE_EVENTS[END_DIFF]);
+        try {
+            writer.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new DiffException(ie);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stop the writer thread without ending the diff, e.g. when the diff
+     * failed. Events still queued are dropped, and the wrapped handler gets
+     * no further event once the one it is handling, if any, returns.
+     * Does nothing if the diff was not started or has already ended.
+     */
+    public void abort() {
+        if (writer == null) {
+            return;
+        }
+        // Only the diff thread puts, so the cleared buffer has room
+        queue.clear();
+        queue.offer(SIMPLE_EVENTS[ABORT]);
+    }
+
+    /**
+     * Queue an event, waiting for space in the buffer if needed.
+     *
+     * @param event the event to queue.
+     * @throws DiffException when interrupted while waiting, or when the
+     *                       writer thread stopped before the end of the
+     *                       diff.
+     */
+    private void put(Event event) throws DiffException {
+        if (writer == null) {
+            throw new IllegalStateException("diff not started");
+        }
+        try {
+            while (!queue.offer(event, PUT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) {
+                    throw failure != null ? failure
+                        : new DiffException(new IllegalStateException("writer thread stopped"));
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new DiffException(ie);
+        }
+    }
+
+    /**
+     * Body of the writer thread: hands queued events to the wrapped handler
+     * until the end of the diff.
+     * After a failure the remaining events are still taken from the queue,
+     * so that the diff thread never blocks on a full buffer, but they are
+     * not handled anymore.
+     */
+    private void drain() {
+        while (true) {
+            final Event event;
+            try {
+                event = queue.take();
+            } catch (InterruptedException ie) {
+                failure = new DiffException(ie);
+                return;
+            }
+            if (event.type == ABORT) {
+                return;
+            }
+            if (failure == null) {
+                try {
+                    dispatch(event);
+                } catch (DiffException de) {
+                    failure = de;
+                } catch (Exception e) {
+                    failure = new DiffException(e);
+                } catch (Throwable t) {
+                    failure = new DiffException(new ExecutionException(t));
+                }
+            }
+            if (event.type == END_DIFF) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pass an event on to the wrapped handler.
+     *
+     * @param event the event.
+     * @throws DiffException when the wrapped handler fails.
+     */
+    private void dispatch(Event event) throws DiffException {
+        switch (event.type) {
+        case START_DIFF:
+            delegate.startDiff((String) event.first, (String) event.second);
+            break;
+        case START_OLD_CONTENTS:
+            delegate.startOldContents();
+            break;
+        case START_NEW_CONTENTS:
+            delegate.startNewContents();
+            break;
+        case CONTAINS:
+            delegate.contains((ClassInfo) event.first);
+            break;
+        case END_OLD_CONTENTS:
+            delegate.endOldContents();
+            break;
+        case END_NEW_CONTENTS:
+            delegate.endNewContents();
+            break;
+        case START_REMOVED:
+            delegate.startRemoved();
+            break;
+        case CLASS_REMOVED:
+            delegate.classRemoved((ClassInfo) event.first);
+            break;
+        case END_REMOVED:
+            delegate.endRemoved();
+            break;
+        case START_ADDED:
+            delegate.startAdded();
+            break;
+        case CLASS_ADDED:
+            delegate.classAdded((ClassInfo) event.first);
+            break;
+        case END_ADDED:
+            delegate.endAdded();
+            break;
+        case START_CHANGED:
+            delegate.startChanged();
+            break;
+        case START_CLASS_CHANGED:
+            delegate.startClassChanged((String) event.first);
+            break;
+        case FIELD_REMOVED:
+            delegate.fieldRemoved((FieldInfo) event.first);
+            break;
+        case METHOD_REMOVED:
+            delegate.methodRemoved((MethodInfo) event.first);
+            break;
+        case FIELD_ADDED:
+            delegate.fieldAdded((FieldInfo) event.first);
+            break;
+        case METHOD_ADDED:
+            delegate.methodAdded((MethodInfo) event.first);
+            break;
+        case CLASS_CHANGED:
+            delegate.classChanged((ClassInfo) event.first, (ClassInfo) event.second);
+            break;
+        case CLASS_DEPRECATED:
+            delegate.classDeprecated((ClassInfo) event.first, (ClassInfo) event.second);
+            break;
+        case FIELD_CHANGED:
+            delegate.fieldChanged((FieldInfo) event.first, (FieldInfo) event.second);
+            break;
+        case FIELD_DEPRECATED:
+            delegate.fieldDeprecated((FieldInfo) event.first, (FieldInfo) event.second);
+            break;
+        case METHOD_CHANGED:
+            delegate.methodChanged((MethodInfo) event.first, (MethodInfo) event.second);
+            break;
+        case METHOD_DEPRECATED:
+            delegate.methodDeprecated((MethodInfo) event.first, (MethodInfo) event.second);
+            break;
+        case END_CLASS_CHANGED:
+            delegate.endClassChanged();
+            break;
+        case END_CHANGED:
+            delegate.endChanged();
+            break;
+        case END_DIFF:
+            delegate.endDiff();
+            break;
+        default:
+            throw new IllegalStateException("Unknown event <" + event.type + ">");
+        }
+    }
+
+    /**
+     * A queued DiffHandler call.
+     */
+    private static final class Event
+    {
+        private final int type;
+        private final Object first;
+        private final Object second;
+
+        private Event(int type, Object first, Object second) {
+            this.type = type;
+            this.first = first;
+            this.second = second;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+/**
+ * An alternative to {@link DiffHandler} receiving differences in batches:
+ * whole lists of classes at once, and everything that changed in a class
+ * as a single {@link ClassChanges}.
+ * Handlers of this kind need no state to know which class a member
+ * belongs to and are called a handful of times per class instead of once
+ * per member.
+ * <p>
+ * Callbacks happen in this order: startDiff, contents, classesRemoved,
+ * classesAdded, classChanges for each changed class in class name order,
+ * and endDiff.
+ * </p>
+ * Arrays given to a handler belong to the caller and must not be modified.
+ *
+ * @see JarDiff#batchDiff(BatchDiffHandler, DiffCriteria)
+ * @see DiffHandlerAdapter
+ */
+public interface BatchDiffHandler
+{
+    /**
+     * Start a diff between two versions, where string a is the old version
+     * and string b is the new version.
+     *
+     * @param a the name of the old version
+     * @param b the name of the new version
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startDiff(String a, String b) throws DiffException;
+
+    /**
+     * Receive the classes of both versions.
+     *
+     * @param oldContents the classes of the old version
+     * @param newContents the classes of the new version
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void contents(ClassInfo[] oldContents, ClassInfo[] newContents)
+        throws DiffException;
+
+    /**
+     * Receive the classes which only exist in the old version.
+     *
+     * @param classes the removed classes
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classesRemoved(ClassInfo[] classes) throws DiffException;
+
+    /**
+     * Receive the classes which only exist in the new version.
+     *
+     * @param classes the added classes
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classesAdded(ClassInfo[] classes) throws DiffException;
+
+    /**
+     * Receive all changes to a class existing in both versions.
+     *
+     * @param changes the changes to the class
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classChanges(ClassChanges changes) throws DiffException;
+
+    /**
+     * End the diff.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endDiff() throws DiffException;
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+/**
+ * All differences found in a class which exists in both versions.
+ * Members are listed in the order of their keys (field name, or method
+ * name followed by its descriptor). Changed and deprecated members are
+ * given as two parallel arrays: the info from the old version and the info
+ * from the new version.
+ * <p>
+ * Instances are immutable: arrays returned by the accessors are shared and
+ * must not be modified.
+ * </p>
+ */
+public final class ClassChanges
+{
+    /**
+     * The internal name of the class.
+     */
+    private final String name;
+
+    private final ClassInfo oldInfo;
+
+    private final ClassInfo newInfo;
+
+    /**
+     * Whether the class itself changed in an incompatible way.
+     */
+    private final boolean classChanged;
+
+    /**
+     * Whether the only change to the class itself is its deprecation.
+     */
+    private final boolean classDeprecated;
+
+    private final FieldInfo[] removedFields;
+
+    private final MethodInfo[] removedMethods;
+
+    private final FieldInfo[] addedFields;
+
+    private final MethodInfo[] addedMethods;
+
+    private final FieldInfo[] changedFieldsFrom;
+
+    private final FieldInfo[] changedFieldsTo;
+
+    private final MethodInfo[] changedMethodsFrom;
+
+    private final MethodInfo[] changedMethodsTo;
+
+    private final FieldInfo[] deprecatedFieldsFrom;
+
+    private final FieldInfo[] deprecatedFieldsTo;
+
+    private final MethodInfo[] deprecatedMethodsFrom;
+
+    private final MethodInfo[] deprecatedMethodsTo;
+
+    public ClassChanges(ClassInfo oldInfo, ClassInfo newInfo,
+                        boolean classChanged, boolean classDeprecated,
+                        FieldInfo[] removedFields, MethodInfo[] removedMethods,
+                        FieldInfo[] addedFields, MethodInfo[] addedMethods,
+                        FieldInfo[] changedFieldsFrom, FieldInfo[] changedFieldsTo,
+                        MethodInfo[] changedMethodsFrom, MethodInfo[] changedMethodsTo,
+                        FieldInfo[] deprecatedFieldsFrom, FieldInfo[] deprecatedFieldsTo,
+                        MethodInfo[] deprecatedMethodsFrom, MethodInfo[] deprecatedMethodsTo) {
+        if (classChanged && classDeprecated) {
+            throw new IllegalArgumentException("a class is either changed or deprecated");
+        }
+        if (changedFieldsFrom.length != changedFieldsTo.length
+                || changedMethodsFrom.length != changedMethodsTo.length
+                || deprecatedFieldsFrom.length != deprecatedFieldsTo.length
+                || deprecatedMethodsFrom.length != deprecatedMethodsTo.length) {
+            throw new IllegalArgumentException("unbalanced from/to members");
+        }
+        this.name = oldInfo.getName();
+        this.oldInfo = oldInfo;
+        this.newInfo = newInfo;
+        this.classChanged = classChanged;
+        this.classDeprecated = classDeprecated;
+        this.removedFields = removedFields;
+        this.removedMethods = removedMethods;
+        this.addedFields = addedFields;
+        this.addedMethods = addedMethods;
+        this.changedFieldsFrom = changedFieldsFrom;
+        this.changedFieldsTo = changedFieldsTo;
+        this.changedMethodsFrom = changedMethodsFrom;
+        this.changedMethodsTo = changedMethodsTo;
+        this.deprecatedFieldsFrom = deprecatedFieldsFrom;
+        this.deprecatedFieldsTo = deprecatedFieldsTo;
+        this.deprecatedMethodsFrom = deprecatedMethodsFrom;
+        this.deprecatedMethodsTo = deprecatedMethodsTo;
+    }
+
+    /**
+     * @return the internal name of the class
+     */
+    public final String getName() {
+        return name;
+    }
+
+    public final ClassInfo getOldInfo() {
+        return oldInfo;
+    }
+
+    public final ClassInfo getNewInfo() {
+        return newInfo;
+    }
+
+    public final boolean isClassChanged() {
+        return classChanged;
+    }
+
+    public final boolean isClassDeprecated() {
+        return classDeprecated;
+    }
+
+    public final FieldInfo[] getRemovedFields() {
+        return removedFields;
+    }
+
+    public final MethodInfo[] getRemovedMethods() {
+        return removedMethods;
+    }
+
+    public final FieldInfo[] getAddedFields() {
+        return addedFields;
+    }
+
+    public final MethodInfo[] getAddedMethods() {
+        return addedMethods;
+    }
+
+    public final FieldInfo[] getChangedFieldsFrom() {
+        return changedFieldsFrom;
+    }
+
+    public final FieldInfo[] getChangedFieldsTo() {
+        return changedFieldsTo;
+    }
+
+    public final MethodInfo[] getChangedMethodsFrom() {
+        return changedMethodsFrom;
+    }
+
+    public final MethodInfo[] getChangedMethodsTo() {
+        return changedMethodsTo;
+    }
+
+    public final FieldInfo[] getDeprecatedFieldsFrom() {
+        return deprecatedFieldsFrom;
+    }
+
+    public final FieldInfo[] getDeprecatedFieldsTo() {
+        return deprecatedFieldsTo;
+    }
+
+    public final MethodInfo[] getDeprecatedMethodsFrom() {
+        return deprecatedMethodsFrom;
+    }
+
+    public final MethodInfo[] getDeprecatedMethodsTo() {
+        return deprecatedMethodsTo;
+    }
+}
@@ -0,0 +1,795 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A map of classes, keyed by internal class name, which packs its classes
+ * and their members into direct byte buffers rather than into objects on
+ * the heap, to relieve the garbage collector when diffing huge jars.
+ * <p>
+ * Strings are pooled: each distinct string is written once and referred to
+ * by its index. A class is written as one record of fixed size fields,
+ * followed by its methods sorted by name and descriptor and its fields
+ * sorted by name, so that a member is found by binary search without
+ * decoding the others. A class got from the map is a small
+ * {@link ClassInfo} whose method and field maps are views of its record,
+ * creating a {@link MethodInfo} or {@link FieldInfo} only when asked for
+ * one; these are short-lived and stay in the young generation.
+ * Methods are keyed by name and descriptor and fields by name, as by
+ * {@link ClassInfoVisitor}.
+ * <p>
+ * Keys are sorted as by a {@link java.util.TreeMap}. {@link #put} always
+ * returns null and classes cannot be removed; the buffers are freed when
+ * the map is garbage collected, and count against
+ * <code>-XX:MaxDirectMemorySize</code>. The map must not be read while
+ * classes are put, but can then be read from several threads.
+ */
+public final class ClassInfoArena extends AbstractMap<String, ClassInfo>
+{
+    /**
+     * Size of the first buffer; each following one is as large as all the
+     * previous ones, up to {@link #MAX_CHUNK_SIZE}.
+     */
+    static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Number of decoded strings kept, a power of two.
+     */
+    private static final int CACHE_SIZE = 4096;
+
+    private static final int NULL = -1;
+
+    private static final int NULL_VALUE = 0;
+    private static final int INTEGER = 1;
+    private static final int LONG = 2;
+    private static final int FLOAT = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+
+    // Class record: version, access, name, signature, supername, number of
+    // interfaces, methods and fields, then the interfaces, methods and fields
+    private static final int CLASS_SIZE = 32;
+
+    // Method: access, name, descriptor, signature, address of exceptions
+    private static final int METHOD_SIZE = 24;
+
+    // Field: access, name, descriptor, signature, value type, value
+    private static final int FIELD_SIZE = 28;
+
+    /**
+     * A decoded string and its index.
+     */
+    private static final class Cached
+    {
+        final int id;
+        final String string;
+
+        Cached(int id, String string) {
+            this.id = id;
+            this.string = string;
+        }
+    }
+
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+    private ByteBuffer chunk;
+
+    private long allocated;
+
+    /**
+     * Address of each string, by index.
+     */
+    private long[] strings = new long[1024];
+
+    private int stringCount;
+
+    /**
+     * Open addressing table of the pooled strings: index + 1, 0 if empty.
+     */
+    private int[] table = new int[2048];
+
+    /**
+     * Address of the class named by each string, NULL if none.
+     */
+    private long[] classes = filled(new long[1024]);
+
+    /**
+     * The names of the classes, sorted if <code>sorted</code>.
+     */
+    private int[] classIds = new int[256];
+
+    private int classCount;
+
+    private volatile boolean sorted = true;
+
+    private final Cached[] cache = new Cached[CACHE_SIZE];
+
+    /**
+     * Create an empty arena.
+     */
+    public ClassInfoArena() {
+    }
+
+    /**
+     * @return the bytes of direct memory taken by the arena
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocated;
+    }
+
+    /**
+     * @return the number of distinct strings pooled
+     */
+    public synchronized int getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * Write a class to the arena.
+     *
+     * @param name the internal name of the class
+     * @param info the class
+     * @return null, whether the map already contained the class or not
+     */
+    @Override
+    public synchronized ClassInfo put(String name, ClassInfo info) {
+        if (name == null) {
+            throw new IllegalArgumentException("null name");
+        }
+        int id = intern(name);
+        long address = write(info);
+        if (classes[id] == NULL) {
+            if (classCount == classIds.length) {
+                classIds = Arrays.copyOf(classIds, classCount * 2);
+            }
+            classIds[classCount++] = id;
+            sorted = false;
+        }
+        classes[id] = address;
+        return null;
+    }
+
+    private long write(ClassInfo info) {
+        // Pool the strings first, as pooling allocates, and sort members by
+        // key
+        TreeMap<String, MethodInfo> methods = new TreeMap<String, MethodInfo>();
+        for (MethodInfo method : info.getMethodMap().values()) {
+            methods.put(method.getName() + method.getDesc(), method);
+        }
+        TreeMap<String, FieldInfo> fields = new TreeMap<String, FieldInfo>();
+        for (FieldInfo field : info.getFieldMap().values()) {
+            fields.put(field.getName(), field);
+        }
+        long[] exceptions = new long[methods.size()];
+        int i = 0;
+        for (MethodInfo method : methods.values()) {
+            exceptions[i++] = writeStrings(method.getExceptions());
+        }
+        String[] interfaces = info.getInterfaces();
+        int interfaceCount = interfaces == null ? NULL : interfaces.length;
+        int size = CLASS_SIZE + 4 * Math.max(interfaceCount, 0)
+            + METHOD_SIZE * methods.size() + FIELD_SIZE * fields.size();
+        int[] members = new int[methods.size() * 3 + fields.size() * 4];
+        int m = 0;
+        for (MethodInfo method : methods.values()) {
+            members[m++] = intern(method.getName());
+            members[m++] = intern(method.getDesc());
+            members[m++] = intern(method.getSignature());
+        }
+        for (FieldInfo field : fields.values()) {
+            members[m++] = intern(field.getName());
+            members[m++] = intern(field.getDesc());
+            members[m++] = intern(field.getSignature());
+            Object value = field.getValue();
+            members[m++] = value instanceof String ? intern((String) value) : NULL;
+        }
+        int name = intern(info.getName());
+        int signature = intern(info.getSignature());
+        int supername = intern(info.getSupername());
+        int[] ids = new int[Math.max(interfaceCount, 0)];
+        for (int j = 0; j < interfaceCount; j++) {
+            ids[j] = intern(interfaces[j]);
+        }
+
+        // Then write the record, in one piece
+
+        long address = allocate(size);
+        ByteBuffer buffer = buffer(address);
+        int p = position(address);
+        buffer.putInt(p, info.getVersion());
+        buffer.putInt(p + 4, info.getAccess());
+        buffer.putInt(p + 8, name);
+        buffer.putInt(p + 12, signature);
+        buffer.putInt(p + 16, supername);
+        buffer.putInt(p + 20, interfaceCount);
+        buffer.putInt(p + 24, methods.size());
+        buffer.putInt(p + 28, fields.size());
+        p += CLASS_SIZE;
+        for (int j = 0; j < interfaceCount; j++, p += 4) {
+            buffer.putInt(p, ids[j]);
+        }
+        m = 0;
+        i = 0;
+        for (MethodInfo method : methods.values()) {
+            buffer.putInt(p, method.getAccess());
+            buffer.putInt(p + 4, members[m++]);
+            buffer.putInt(p + 8, members[m++]);
+            buffer.putInt(p + 12, members[m++]);
+            buffer.putLong(p + 16, exceptions[i++]);
+            p += METHOD_SIZE;
+        }
+        for (FieldInfo field : fields.values()) {
+            buffer.putInt(p, field.getAccess());
+            buffer.putInt(p + 4, members[m++]);
+            buffer.putInt(p + 8, members[m++]);
+            buffer.putInt(p + 12, members[m++]);
+            writeValue(field.getValue(), members[m++], buffer, p + 16);
+            p += FIELD_SIZE;
+        }
+        return address;
+    }
+
+    private static void writeValue(Object value, int stringId, ByteBuffer buffer, int p) {
+        if (value == null) {
+            buffer.putInt(p, NULL_VALUE);
+            buffer.putLong(p + 4, 0);
+        } else if (value instanceof Integer) {
+            buffer.putInt(p, INTEGER);
+            buffer.putLong(p + 4, (Integer) value);
+        } else if (value instanceof Long) {
+            buffer.putInt(p, LONG);
+            buffer.putLong(p + 4, (Long) value);
+        } else if (value instanceof Float) {
+            buffer.putInt(p, FLOAT);
+            buffer.putLong(p + 4, Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Double) {
+            buffer.putInt(p, DOUBLE);
+            buffer.putLong(p + 4, Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof String) {
+            buffer.putInt(p, STRING);
+            buffer.putLong(p + 4, stringId);
+        } else {
+            throw new IllegalArgumentException("invalid value " + value);
+        }
+    }
+
+    /**
+     * @return the address of the number of strings and their indexes,
+     *         NULL if <code>strings</code> is null
+     */
+    private long writeStrings(String[] strings) {
+        if (strings == null) {
+            return NULL;
+        }
+        int[] ids = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            ids[i] = intern(strings[i]);
+        }
+        long address = allocate(4 + 4 * ids.length);
+        ByteBuffer buffer = buffer(address);
+        int p = position(address);
+        buffer.putInt(p, ids.length);
+        for (int id : ids) {
+            buffer.putInt(p += 4, id);
+        }
+        return address;
+    }
+
+    /**
+     * Reserve <code>size</code> bytes in the current buffer, or in a new one
+     * if they do not fit.
+     *
+     * @return the address of the bytes: the index of their buffer in the
+     *         high 32 bits, their position in the low 32 bits
+     */
+    private long allocate(int size) {
+        if (chunk == null || chunk.remaining() < size) {
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, allocated));
+            chunk = ByteBuffer.allocateDirect((int) Math.max(chunkSize, size));
+            chunks.add(chunk);
+            allocated += chunk.capacity();
+        }
+        int position = chunk.position();
+        chunk.position(position + size);
+        return ((long) (chunks.size() - 1) << 32) | position;
+    }
+
+    private ByteBuffer buffer(long address) {
+        return chunks.get((int) (address >>> 32));
+    }
+
+    private static int position(long address) {
+        return (int) address;
+    }
+
+    // Strings: hash code, length shifted left once with 1 if two bytes are
+    // used per char, then the chars
+
+    private static int slot(int hash, int mask) {
+        // Spread the bits of String.hashCode(), as by HashMap
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        return (hash ^ (hash >>> 7) ^ (hash >>> 4)) & mask;
+    }
+
+    /**
+     * @return the index of <code>string</code>, pooled if needed, or NULL
+     *         if <code>string</code> is null
+     */
+    private int intern(String string) {
+        if (string == null) {
+            return NULL;
+        }
+        int found = find(string);
+        if (found != NULL) {
+            return found;
+        }
+        boolean wide = false;
+        int length = string.length();
+        for (int i = 0; i < length && !wide; i++) {
+            wide = string.charAt(i) > 0xff;
+        }
+        long address = allocate(8 + (wide ? 2 * length : length));
+        ByteBuffer buffer = buffer(address);
+        int p = position(address);
+        buffer.putInt(p, string.hashCode());
+        buffer.putInt(p + 4, length << 1 | (wide ? 1 : 0));
+        p += 8;
+        for (int i = 0; i < length; i++) {
+            if (wide) {
+                buffer.putChar(p + 2 * i, string.charAt(i));
+            } else {
+                buffer.put(p + i, (byte) string.charAt(i));
+            }
+        }
+
+        int id = stringCount++;
+        if (id == strings.length) {
+            strings = Arrays.copyOf(strings, id * 2);
+            classes = filled(Arrays.copyOf(classes, id * 2), id);
+        }
+        strings[id] = address;
+        if (stringCount * 2 > table.length) {
+            int[] previous = table;
+            table = new int[previous.length * 2];
+            for (int entry : previous) {
+                if (entry != 0) {
+                    insert(entry - 1);
+                }
+            }
+        }
+        insert(id);
+        return id;
+    }
+
+    private void insert(int id) {
+        long address = strings[id];
+        int mask = table.length - 1;
+        int slot = slot(buffer(address).getInt(position(address)), mask);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    private static long[] filled(long[] array) {
+        return filled(array, 0);
+    }
+
+    private static long[] filled(long[] array, int from) {
+        Arrays.fill(array, from, array.length, NULL);
+        return array;
+    }
+
+    /**
+     * @return the index of <code>string</code>, NULL if not pooled
+     */
+    private int find(String string) {
+        int hash = string.hashCode();
+        int[] table = this.table;
+        int mask = table.length - 1;
+        for (int slot = slot(hash, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            long address = strings[id];
+            ByteBuffer buffer = buffer(address);
+            int p = position(address);
+            if (buffer.getInt(p) == hash && compare(string, 0, id) == 0
+                && length(id) == string.length()) {
+                return id;
+            }
+        }
+        return NULL;
+    }
+
+    private int length(int id) {
+        long address = strings[id];
+        return buffer(address).getInt(position(address) + 4) >>> 1;
+    }
+
+    /**
+     * Compare the chars of <code>key</code> from <code>start</code> with
+     * the pooled string <code>id</code>, as by {@link String#compareTo}
+     * but only up to the end of the pooled string.
+     *
+     * @return the difference of the first differing chars, 0 if the
+     *         pooled string is a prefix of the rest of <code>key</code>,
+     *         or negative if the rest of <code>key</code> is a prefix of it
+     */
+    private int compare(String key, int start, int id) {
+        long address = strings[id];
+        ByteBuffer buffer = buffer(address);
+        int p = position(address);
+        int header = buffer.getInt(p + 4);
+        int length = header >>> 1;
+        boolean wide = (header & 1) != 0;
+        p += 8;
+        int available = key.length() - start;
+        int n = Math.min(length, available);
+        for (int i = 0; i < n; i++) {
+            char c = wide ? buffer.getChar(p + 2 * i) : (char) (buffer.get(p + i) & 0xff);
+            int difference = key.charAt(start + i) - c;
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return available < length ? -1 : 0;
+    }
+
+    /**
+     * @return the pooled string <code>id</code>, null if NULL
+     */
+    private String string(int id) {
+        if (id == NULL) {
+            return null;
+        }
+        int slot = id & (CACHE_SIZE - 1);
+        Cached cached = cache[slot];
+        if (cached != null && cached.id == id) {
+            return cached.string;
+        }
+        long address = strings[id];
+        ByteBuffer buffer = buffer(address);
+        int p = position(address);
+        int header = buffer.getInt(p + 4);
+        char[] chars = new char[header >>> 1];
+        p += 8;
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (header & 1) != 0 ? buffer.getChar(p + 2 * i) : (char) (buffer.get(p + i) & 0xff);
+        }
+        String string = new String(chars);
+        cache[slot] = new Cached(id, string);
+        return string;
+    }
+
+    private String[] strings(long address) {
+        if (address == NULL) {
+            return null;
+        }
+        ByteBuffer buffer = buffer(address);
+        int p = position(address);
+        String[] strings = new String[buffer.getInt(p)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = string(buffer.getInt(p + 4 + 4 * i));
+        }
+        return strings;
+    }
+
+    /**
+     * Read a class from the arena, its members being read when asked for.
+     *
+     * @param name the internal name of the class
+     * @return the class, or null if the map does not contain it
+     */
+    @Override
+    public ClassInfo get(Object name) {
+        long address = address(name);
+        return address == NULL ? null : classInfo(address);
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return address(name) != NULL;
+    }
+
+    private long address(Object name) {
+        if (!(name instanceof String)) {
+            return NULL;
+        }
+        int id = find((String) name);
+        return id == NULL ? NULL : classes[id];
+    }
+
+    private ClassInfo classInfo(long address) {
+        ByteBuffer buffer = buffer(address);
+        int p = position(address);
+        int interfaceCount = buffer.getInt(p + 20);
+        String[] interfaces = null;
+        if (interfaceCount != NULL) {
+            interfaces = new String[interfaceCount];
+            for (int i = 0; i < interfaceCount; i++) {
+                interfaces[i] = string(buffer.getInt(p + CLASS_SIZE + 4 * i));
+            }
+        }
+        int methodCount = buffer.getInt(p + 24);
+        long methods = address + CLASS_SIZE + 4 * Math.max(interfaceCount, 0);
+        return new ClassInfo(buffer.getInt(p), buffer.getInt(p + 4),
+            string(buffer.getInt(p + 8)), string(buffer.getInt(p + 12)),
+            string(buffer.getInt(p + 16)), interfaces,
+            new MethodMap(methods, methodCount),
+            new FieldMap(methods + METHOD_SIZE * methodCount, buffer.getInt(p + 28)));
+    }
+
+    @Override
+    public synchronized int size() {
+        return classCount;
+    }
+
+    /**
+     * @return the names of the classes, in order
+     */
+    private int[] sortedIds() {
+        if (!sorted) {
+            synchronized (this) {
+                if (sorted) {
+                    return classIds;
+                }
+                String[] names = new String[classCount];
+                for (int i = 0; i < classCount; i++) {
+                    names[i] = string(classIds[i]);
+                }
+                Arrays.sort(names);
+                for (int i = 0; i < classCount; i++) {
+                    classIds[i] = find(names[i]);
+                }
+                sorted = true;
+            }
+        }
+        return classIds;
+    }
+
+    /**
+     * @return the classes, read from the arena as they are iterated over.
+     */
+    @Override
+    public Set<Map.Entry<String, ClassInfo>> entrySet() {
+        return new AbstractSet<Map.Entry<String, ClassInfo>>() {
+            @Override
+            public Iterator<Map.Entry<String, ClassInfo>> iterator() {
+                final int[] ids = sortedIds();
+                final int count = size();
+                return new Iterator<Map.Entry<String, ClassInfo>>() {
+                    private int next;
+
+                    public boolean hasNext() {
+                        return next < count;
+                    }
+
+                    public Map.Entry<String, ClassInfo> next() {
+                        if (next == count) {
+                            throw new NoSuchElementException();
+                        }
+                        int id = ids[next++];
+                        return new AbstractMap.SimpleImmutableEntry<String, ClassInfo>(
+                            string(id), classInfo(classes[id]));
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ClassInfoArena.this.size();
+            }
+        };
+    }
+
+    /**
+     * A read-only view of the methods or fields of a class record, sorted
+     * by key.
+     */
+    private abstract class MemberMap<T extends AbstractInfo> extends AbstractMap<String, T>
+    {
+        final long address;
+        final int count;
+        final int memberSize;
+
+        MemberMap(long address, int count, int memberSize) {
+            this.address = address;
+            this.count = count;
+            this.memberSize = memberSize;
+        }
+
+        /**
+         * Compare a key with the key of member <code>p</code>.
+         */
+        abstract int compare(String key, ByteBuffer buffer, int p);
+
+        abstract String key(ByteBuffer buffer, int p);
+
+        abstract T member(ByteBuffer buffer, int p);
+
+        /**
+         * @return the position of the member with the key, or NULL
+         */
+        private int find(Object key) {
+            if (!(key instanceof String)) {
+                return NULL;
+            }
+            ByteBuffer buffer = buffer(address);
+            int start = position(address);
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int p = start + middle * memberSize;
+                int difference = compare((String) key, buffer, p);
+                if (difference > 0) {
+                    low = middle + 1;
+                } else if (difference < 0) {
+                    high = middle - 1;
+                } else {
+                    return p;
+                }
+            }
+            return NULL;
+        }
+
+        @Override
+        public T get(Object key) {
+            int p = find(key);
+            return p == NULL ? null : member(buffer(address), p);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) != NULL;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Set<Map.Entry<String, T>> entrySet() {
+            return new AbstractSet<Map.Entry<String, T>>() {
+                @Override
+                public Iterator<Map.Entry<String, T>> iterator() {
+                    final ByteBuffer buffer = buffer(address);
+                    final int start = position(address);
+                    return new Iterator<Map.Entry<String, T>>() {
+                        private int next;
+
+                        public boolean hasNext() {
+                            return next < count;
+                        }
+
+                        public Map.Entry<String, T> next() {
+                            if (next == count) {
+                                throw new NoSuchElementException();
+                            }
+                            int p = start + memberSize * next++;
+                            return new AbstractMap.SimpleImmutableEntry<String, T>(
+                                key(buffer, p), member(buffer, p));
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+    }
+
+    private final class MethodMap extends MemberMap<MethodInfo>
+    {
+        MethodMap(long address, int count) {
+            super(address, count, METHOD_SIZE);
+        }
+
+        @Override
+        int compare(String key, ByteBuffer buffer, int p) {
+            int name = buffer.getInt(p + 4);
+            int difference = ClassInfoArena.this.compare(key, 0, name);
+            if (difference != 0) {
+                return difference;
+            }
+            int desc = buffer.getInt(p + 8);
+            int start = length(name);
+            difference = ClassInfoArena.this.compare(key, start, desc);
+            return difference != 0 ? difference : key.length() - start - length(desc);
+        }
+
+        @Override
+        String key(ByteBuffer buffer, int p) {
+            return string(buffer.getInt(p + 4)) + string(buffer.getInt(p + 8));
+        }
+
+        @Override
+        MethodInfo member(ByteBuffer buffer, int p) {
+            return new MethodInfo(buffer.getInt(p), string(buffer.getInt(p + 4)),
+                string(buffer.getInt(p + 8)), string(buffer.getInt(p + 12)),
+                strings(buffer.getLong(p + 16)));
+        }
+    }
+
+    private final class FieldMap extends MemberMap<FieldInfo>
+    {
+        FieldMap(long address, int count) {
+            super(address, count, FIELD_SIZE);
+        }
+
+        @Override
+        int compare(String key, ByteBuffer buffer, int p) {
+            int name = buffer.getInt(p + 4);
+            int difference = ClassInfoArena.this.compare(key, 0, name);
+            return difference != 0 ? difference : key.length() - length(name);
+        }
+
+        @Override
+        String key(ByteBuffer buffer, int p) {
+            return string(buffer.getInt(p + 4));
+        }
+
+        @Override
+        FieldInfo member(ByteBuffer buffer, int p) {
+            return new FieldInfo(buffer.getInt(p), string(buffer.getInt(p + 4)),
+                string(buffer.getInt(p + 8)), string(buffer.getInt(p + 12)),
+                value(buffer, p + 16));
+        }
+
+        private Object value(ByteBuffer buffer, int p) {
+            long bits = buffer.getLong(p + 4);
+            switch (buffer.getInt(p)) {
+            case INTEGER:
+                return (int) bits;
+            case LONG:
+                return bits;
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case STRING:
+                return string((int) bits);
+            default:
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a {@link ClassInfo}, with its methods and fields, in a compact
+ * binary form and reads it back, e.g. to keep parsed classes on disk.
+ * Strings are written with {@link DataOutput#writeUTF(String)}, which fits
+ * any string of a class file.
+ */
+public final class ClassInfoCodec
+{
+    /**
+     * Version of the format, to change whenever the format changes.
+     */
+    public static final int FORMAT = 1;
+
+    private static final int NULL = 0;
+    private static final int INTEGER = 1;
+    private static final int LONG = 2;
+    private static final int FLOAT = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+
+    private ClassInfoCodec() {
+    }
+
+    /**
+     * Write a class.
+     *
+     * @param info the class
+     * @param out where to write it
+     * @throws IOException if <code>out</code> cannot be written
+     */
+    public static void write(ClassInfo info, DataOutput out) throws IOException {
+        out.writeInt(info.getVersion());
+        out.writeInt(info.getAccess());
+        out.writeUTF(info.getName());
+        writeString(info.getSignature(), out);
+        writeString(info.getSupername(), out);
+        writeStrings(info.getInterfaces(), out);
+        out.writeInt(info.getMethodMap().size());
+        for (MethodInfo method : info.getMethodMap().values()) {
+            out.writeInt(method.getAccess());
+            out.writeUTF(method.getName());
+            out.writeUTF(method.getDesc());
+            writeString(method.getSignature(), out);
+            writeStrings(method.getExceptions(), out);
+        }
+        out.writeInt(info.getFieldMap().size());
+        for (FieldInfo field : info.getFieldMap().values()) {
+            out.writeInt(field.getAccess());
+            out.writeUTF(field.getName());
+            out.writeUTF(field.getDesc());
+            writeString(field.getSignature(), out);
+            writeValue(field.getValue(), out);
+        }
+    }
+
+    /**
+     * Read a class written by {@link #write(ClassInfo, DataOutput)}.
+     *
+     * @param in where to read it from
+     * @return the class, with methods keyed by name and descriptor and
+     *         fields keyed by name as by {@link ClassInfoVisitor}
+     * @throws IOException if <code>in</code> cannot be read or is not a class
+     */
+    public static ClassInfo read(DataInput in) throws IOException {
+        int version = in.readInt();
+        int access = in.readInt();
+        String name = in.readUTF();
+        String signature = readString(in);
+        String supername = readString(in);
+        String[] interfaces = readStrings(in);
+        int methods = readCount(in);
+        Map<String, MethodInfo> methodMap = new HashMap<String, MethodInfo>(capacity(methods));
+        for (int i = 0; i < methods; i++) {
+            int methodAccess = in.readInt();
+            String methodName = in.readUTF();
+            String desc = in.readUTF();
+            methodMap.put(methodName + desc, new MethodInfo(methodAccess,
+                methodName, desc, readString(in), readStrings(in)));
+        }
+        int fields = readCount(in);
+        Map<String, FieldInfo> fieldMap = new HashMap<String, FieldInfo>(capacity(fields));
+        for (int i = 0; i < fields; i++) {
+            int fieldAccess = in.readInt();
+            String fieldName = in.readUTF();
+            String desc = in.readUTF();
+            fieldMap.put(fieldName, new FieldInfo(fieldAccess, fieldName, desc,
+                readString(in), readValue(in)));
+        }
+        return new ClassInfo(version, access, name, signature, supername,
+                             interfaces, methodMap, fieldMap);
+    }
+
+    private static int capacity(int size) {
+        return size * 4 / 3 + 1;
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("invalid count " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(String string, DataOutput out) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(String[] strings, DataOutput out) throws IOException {
+        out.writeInt(strings == null ? -1 : strings.length);
+        if (strings != null) {
+            for (String string : strings) {
+                out.writeUTF(string);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        String[] strings = new String[length];
+        for (int i = 0; i < length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    /**
+     * Write the constant value of a field, one of the types allowed by the
+     * ConstantValue attribute.
+     */
+    private static void writeValue(Object value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else {
+            throw new IllegalArgumentException("invalid value " + value);
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+        case NULL:
+            return null;
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case FLOAT:
+            return in.readFloat();
+        case DOUBLE:
+            return in.readDouble();
+        case STRING:
+            return in.readUTF();
+        default:
+            throw new IOException("invalid value type " + type);
+        }
+    }
+}
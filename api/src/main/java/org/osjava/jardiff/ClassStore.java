@@ -0,0 +1,54 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.IOException;
+
+/**
+ * Keeps parsed classes keyed by the SHA-1 digest of their class file, so
+ * that a class file seen before, in any jar, is not parsed again.
+ * Registered on {@link JarDiff#setClassStore(ClassStore)}; see
+ * {@link DiskClassStore} for a store shared by all the builds of a machine.
+ * Implementations must be thread safe.
+ */
+public interface ClassStore
+{
+    /**
+     * @param digest the SHA-1 digest of a class file
+     * @return the class parsed from that class file, or null if unknown.
+     * @throws IOException if the store cannot be read
+     */
+    ClassInfo get(byte[] digest) throws IOException;
+
+    /**
+     * Keep a parsed class, unless already known.
+     *
+     * @param digest the SHA-1 digest of the class file
+     * @param info the class parsed from it
+     * @throws IOException if the store cannot be written
+     */
+    void put(byte[] digest, ClassInfo info) throws IOException;
+
+    /**
+     * Keep parsed classes, unless already known, at once.
+     *
+     * @param digests the SHA-1 digests of the class files
+     * @param infos the classes parsed from them, in the same order
+     * @throws IOException if the store cannot be written
+     */
+    void putAll(byte[][] digests, ClassInfo[] infos) throws IOException;
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+/**
+ * A {@link BatchDiffHandler} replaying the differences it receives as the
+ * events of a {@link DiffHandler}, in the exact order {@link JarDiff} used
+ * to emit them.
+ * This is how existing handlers keep working on top of
+ * {@link JarDiff#batchDiff(BatchDiffHandler, DiffCriteria)}.
+ */
+public class DiffHandlerAdapter implements BatchDiffHandler
+{
+    /**
+     * The handler receiving the replayed events.
+     */
+    private final DiffHandler handler;
+
+    /**
+     * Create a new adapter.
+     *
+     * @param handler the handler receiving the replayed events
+     */
+    public DiffHandlerAdapter(DiffHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("null handler");
+        }
+        this.handler = handler;
+    }
+
+    /**
+     * Get the handler receiving the replayed events.
+     *
+     * @return the adapted handler
+     */
+    public DiffHandler getHandler() {
+        return handler;
+    }
+
+    public void startDiff(String a, String b) throws DiffException {
+        handler.startDiff(a, b);
+    }
+
+    public void contents(ClassInfo[] oldContents, ClassInfo[] newContents)
+        throws DiffException
+    {
+        handler.startOldContents();
+        for (int i = 0; i < oldContents.length; i++) {
+            handler.contains(oldContents[i]);
+        }
+        handler.endOldContents();
+        handler.startNewContents();
+        for (int i = 0; i < newContents.length; i++) {
+            handler.contains(newContents[i]);
+        }
+        handler.endNewContents();
+    }
+
+    public void classesRemoved(ClassInfo[] classes) throws DiffException {
+        handler.startRemoved();
+        for (int i = 0; i < classes.length; i++) {
+            handler.classRemoved(classes[i]);
+        }
+        handler.endRemoved();
+    }
+
+    /**
+     * Replay the added classes, then open the section of changed classes
+     * which {@link #endDiff()} closes.
+     */
+    public void classesAdded(ClassInfo[] classes) throws DiffException {
+        handler.startAdded();
+        for (int i = 0; i < classes.length; i++) {
+            handler.classAdded(classes[i]);
+        }
+        handler.endAdded();
+        handler.startChanged();
+    }
+
+    public void classChanges(ClassChanges changes) throws DiffException {
+        handler.startClassChanged(changes.getName());
+
+        handler.startRemoved();
+        FieldInfo[] fields = changes.getRemovedFields();
+        for (int i = 0; i < fields.length; i++) {
+            handler.fieldRemoved(fields[i]);
+        }
+        MethodInfo[] methods = changes.getRemovedMethods();
+        for (int i = 0; i < methods.length; i++) {
+            handler.methodRemoved(methods[i]);
+        }
+        handler.endRemoved();
+
+        handler.startAdded();
+        fields = changes.getAddedFields();
+        for (int i = 0; i < fields.length; i++) {
+            handler.fieldAdded(fields[i]);
+        }
+        methods = changes.getAddedMethods();
+        for (int i = 0; i < methods.length; i++) {
+            handler.methodAdded(methods[i]);
+        }
+        handler.endAdded();
+
+        handler.startChanged();
+        if (changes.isClassChanged()) {
+            handler.classChanged(changes.getOldInfo(), changes.getNewInfo());
+        } else if (changes.isClassDeprecated()) {
+            handler.classDeprecated(changes.getOldInfo(), changes.getNewInfo());
+        }
+        replayChangedFields(changes);
+        replayChangedMethods(changes);
+        handler.endChanged();
+
+        handler.endClassChanged();
+    }
+
+    /**
+     * Close the section of changed classes and end the diff.
+     */
+    public void endDiff() throws DiffException {
+        handler.endChanged();
+        handler.endDiff();
+    }
+
+    /**
+     * Replay changed and deprecated fields merged by name.
+     */
+    private void replayChangedFields(ClassChanges changes)
+        throws DiffException
+    {
+        FieldInfo[] changedFrom = changes.getChangedFieldsFrom();
+        FieldInfo[] changedTo = changes.getChangedFieldsTo();
+        FieldInfo[] deprecatedFrom = changes.getDeprecatedFieldsFrom();
+        FieldInfo[] deprecatedTo = changes.getDeprecatedFieldsTo();
+        int c = 0;
+        int d = 0;
+        while (c < changedFrom.length || d < deprecatedFrom.length) {
+            if (d == deprecatedFrom.length
+                || (c < changedFrom.length
+                    && changedFrom[c].getName().compareTo(
+                        deprecatedFrom[d].getName()) < 0)) {
+                handler.fieldChanged(changedFrom[c], changedTo[c]);
+                c++;
+            } else {
+                handler.fieldDeprecated(deprecatedFrom[d], deprecatedTo[d]);
+                d++;
+            }
+        }
+    }
+
+    /**
+     * Replay changed and deprecated methods merged by name and descriptor.
+     */
+    private void replayChangedMethods(ClassChanges changes)
+        throws DiffException
+    {
+        MethodInfo[] changedFrom = changes.getChangedMethodsFrom();
+        MethodInfo[] changedTo = changes.getChangedMethodsTo();
+        MethodInfo[] deprecatedFrom = changes.getDeprecatedMethodsFrom();
+        MethodInfo[] deprecatedTo = changes.getDeprecatedMethodsTo();
+        int c = 0;
+        int d = 0;
+        while (c < changedFrom.length || d < deprecatedFrom.length) {
+            if (d == deprecatedFrom.length
+                || (c < changedFrom.length
+                    && compareKeys(changedFrom[c], deprecatedFrom[d]) < 0)) {
+                handler.methodChanged(changedFrom[c], changedTo[c]);
+                c++;
+            } else {
+                handler.methodDeprecated(deprecatedFrom[d], deprecatedTo[d]);
+                d++;
+            }
+        }
+    }
+
+    /**
+     * Compare the keys (name followed by descriptor) of two methods without
+     * building them.
+     */
+    private static int compareKeys(MethodInfo a, MethodInfo b) {
+        String aName = a.getName();
+        String aDesc = a.getDesc();
+        String bName = b.getName();
+        String bDesc = b.getDesc();
+        int aLength = aName.length() + aDesc.length();
+        int bLength = bName.length() + bDesc.length();
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            char ca = i < aName.length() ? aName.charAt(i)
+                : aDesc.charAt(i - aName.length());
+            char cb = i < bName.length() ? bName.charAt(i)
+                : bDesc.charAt(i - bName.length());
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return aLength - bLength;
+    }
+}
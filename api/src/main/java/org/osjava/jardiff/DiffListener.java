@@ -0,0 +1,153 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Receives the start and end of the work done while loading and diffing
+ * classes, e.g. to emit profiling events such as Flight Recorder ones.
+ * Each <code>start</code> method returns an opaque event which is handed
+ * back to the matching <code>end</code> method; a listener with nothing to
+ * record returns <code>null</code>, which is passed back the same way.
+ * <p>
+ * The listener used by default is the first one registered as a
+ * {@link ServiceLoader} service under
+ * <code>META-INF/services/org.osjava.jardiff.DiffListener</code>.
+ * Without one, the callers skip the calls altogether.
+ * Implementations must be thread safe.
+ */
+public abstract class DiffListener
+{
+    /**
+     * Looks the listener up when first needed.
+     */
+    private static final class Installed
+    {
+        static final DiffListener LISTENER
+            = load(DiffListener.class.getClassLoader());
+    }
+
+    /**
+     * @return the first listener registered as a service, or null if none.
+     */
+    public static DiffListener installed() {
+        return Installed.LISTENER;
+    }
+
+    /**
+     * @param loader the class loader looking for the service
+     * @return the first listener registered as a service, or null if none
+     *         or if it cannot be instantiated.
+     */
+    static DiffListener load(ClassLoader loader) {
+        try {
+            Iterator<DiffListener> listeners
+                = ServiceLoader.load(DiffListener.class, loader).iterator();
+            return listeners.hasNext() ? listeners.next() : null;
+        } catch (ServiceConfigurationError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Called before the classes of a jar are loaded.
+     *
+     * @param jar the path of the jar
+     * @return the event to hand to {@link #endJar}, or null
+     */
+    public Object startJar(String jar) {
+        return null;
+    }
+
+    /**
+     * Called once the classes of a jar are loaded.
+     *
+     * @param event what {@link #startJar} returned
+     * @param jar the path of the jar
+     * @param classes the number of classes loaded
+     * @param members the number of fields and methods loaded
+     * @param bytes the number of class file bytes read
+     */
+    public void endJar(Object event, String jar, long classes, long members,
+                       long bytes) {
+    }
+
+    /**
+     * Called before a class is read from a jar.
+     *
+     * @return the event to hand to {@link #endClass}, or null
+     */
+    public Object startClass() {
+        return null;
+    }
+
+    /**
+     * Called once a class is loaded.
+     *
+     * @param event what {@link #startClass} returned
+     * @param className the internal name of the class
+     * @param bytes the size of the class file
+     */
+    public void endClass(Object event, String className, int bytes) {
+    }
+
+    /**
+     * Called before a class existing in both versions is compared.
+     *
+     * @return the event to hand to {@link #endClassDiff}, or null
+     */
+    public Object startClassDiff() {
+        return null;
+    }
+
+    /**
+     * Called once a class existing in both versions is compared.
+     *
+     * @param event what {@link #startClassDiff} returned
+     * @param className the internal name of the class
+     * @param changes the changes to the class, or null if it did not change
+     */
+    public void endClassDiff(Object event, String className,
+                             ClassChanges changes) {
+    }
+
+    /**
+     * Called when a phase starts.
+     *
+     * @param phase the phase
+     * @return the event to hand to {@link #endPhase}, or null
+     */
+    public Object startPhase(DiffStatistics.Phase phase) {
+        return null;
+    }
+
+    /**
+     * Called when a phase ends, with the same counts as recorded by
+     * {@link DiffStatistics}.
+     *
+     * @param event what {@link #startPhase} returned
+     * @param phase the phase
+     * @param classes the number of classes processed
+     * @param members the number of members processed
+     */
+    public void endPhase(Object event, DiffStatistics.Phase phase,
+                         long classes, long members) {
+    }
+}
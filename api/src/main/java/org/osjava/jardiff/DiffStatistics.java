@@ -0,0 +1,282 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * Accumulates the cost of each phase of a comparison: wall time, number of
+ * classes and members processed, bytes read and bytes allocated.
+ * Instances are handed to the components doing the work, e.g.
+ * {@link JarDiff#setStatistics(DiffStatistics)}, which then record what they
+ * did; nothing is recorded otherwise.
+ * Phases may nest, e.g. {@link Phase#FILTER} happens during
+ * {@link Phase#DIFF}, so their times are not meant to be summed.
+ * This class is thread safe.
+ */
+public final class DiffStatistics
+{
+    /**
+     * The phases of a comparison.
+     */
+    public enum Phase {
+        /** Finding the JARs to compare, e.g. in a Maven repository. */
+        RESOLVE,
+        /** Parsing the classes of the JARs. */
+        LOAD,
+        /** Comparing the classes, including handling the differences. */
+        DIFF,
+        /** Turning differences into the accumulated result. */
+        FILTER,
+        /** Writing the results. */
+        DUMP
+    }
+
+    /**
+     * The totals of a phase.
+     */
+    public static final class Counters
+    {
+        private final long count;
+        private final long wallNanos;
+        private final long classes;
+        private final long members;
+        private final long bytesRead;
+        private final long allocatedBytes;
+
+        Counters(long[] totals) {
+            this.count = totals[0];
+            this.wallNanos = totals[1];
+            this.classes = totals[2];
+            this.members = totals[3];
+            this.bytesRead = totals[4];
+            this.allocatedBytes = totals[5];
+        }
+
+        /**
+         * @return the number of times the phase was recorded.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the wall time spent in the phase, in nanoseconds.
+         */
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * @return the number of classes processed.
+         */
+        public long getClasses() {
+            return classes;
+        }
+
+        /**
+         * @return the number of fields and methods processed.
+         */
+        public long getMembers() {
+            return members;
+        }
+
+        /**
+         * @return the number of bytes read.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return the number of bytes allocated by the threads running the
+         *         phase, or -1 if the JVM cannot tell.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return the number of classes processed per second.
+         */
+        public double getClassesPerSecond() {
+            return perSecond(classes);
+        }
+
+        /**
+         * @return the number of members processed per second.
+         */
+        public double getMembersPerSecond() {
+            return perSecond(members);
+        }
+
+        private double perSecond(long value) {
+            return wallNanos == 0 ? 0 : value * 1e9 / wallNanos;
+        }
+    }
+
+    /**
+     * The allocation counter of the running JVM, null if unsupported.
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+    /**
+     * For each phase: count, wall time, classes, members, bytes read and
+     * allocated bytes.
+     */
+    private final long[][] totals = new long[Phase.values().length][6];
+
+    private static com.sun.management.ThreadMXBean allocations() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+                if (allocations.isThreadAllocatedMemorySupported()
+                        && allocations.isThreadAllocatedMemoryEnabled()) {
+                    return allocations;
+                }
+            }
+        } catch (Throwable t) {
+            // Not a HotSpot JVM, or too old
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of bytes allocated so far by the current thread, to be
+     * subtracted from the value at the end of a phase.
+     *
+     * @return the allocated bytes, or -1 if the JVM cannot tell.
+     */
+    public static long allocatedBytes() {
+        return ALLOCATIONS == null ? -1
+            : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Record one run of a phase.
+     *
+     * @param phase the phase.
+     * @param wallNanos the wall time spent, in nanoseconds.
+     * @param classes the number of classes processed.
+     * @param members the number of fields and methods processed.
+     * @param bytesRead the number of bytes read.
+     * @param allocatedBytes the number of bytes allocated, -1 if unknown.
+     */
+    public void record(Phase phase, long wallNanos, long classes,
+        long members, long bytesRead, long allocatedBytes)
+    {
+        long[] total = totals[phase.ordinal()];
+        synchronized (total) {
+            total[0]++;
+            total[1] += wallNanos;
+            total[2] += classes;
+            total[3] += members;
+            total[4] += bytesRead;
+            if (allocatedBytes < 0 || total[5] < 0) {
+                total[5] = -1;
+            } else {
+                total[5] += allocatedBytes;
+            }
+        }
+    }
+
+    /**
+     * Record one run of a phase which started at the specified time.
+     *
+     * @param phase the phase.
+     * @param startNanos the value of {@link System#nanoTime()} when the
+     *                   phase started.
+     * @param startAllocatedBytes the value of {@link #allocatedBytes()} when
+     *                            the phase started, on the current thread.
+     * @param classes the number of classes processed.
+     * @param members the number of fields and methods processed.
+     * @param bytesRead the number of bytes read.
+     */
+    public void recordSince(Phase phase, long startNanos,
+        long startAllocatedBytes, long classes, long members, long bytesRead)
+    {
+        long wallNanos = System.nanoTime() - startNanos;
+        long allocated = startAllocatedBytes < 0 ? -1
+            : allocatedBytes() - startAllocatedBytes;
+        record(phase, wallNanos, classes, members, bytesRead, allocated);
+    }
+
+    /**
+     * Get the totals of a phase.
+     *
+     * @param phase the phase.
+     * @return a snapshot of the totals.
+     */
+    public Counters get(Phase phase) {
+        long[] total = totals[phase.ordinal()];
+        synchronized (total) {
+            return new Counters(total.clone());
+        }
+    }
+
+    /**
+     * Write a table of the recorded phases, one per line.
+     *
+     * @param out where to write the table.
+     * @throws IOException when there is an underlying IOException.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        Formatter formatter = new Formatter(out, Locale.ROOT);
+        formatter.format("%-8s %6s %10s %9s %11s %9s %11s %12s %14s%n",
+                         "phase", "count", "wall ms", "classes", "classes/s",
+                         "members", "members/s", "bytes read", "allocated");
+        for (Phase phase : Phase.values()) {
+            Counters counters = get(phase);
+            if (counters.getCount() == 0) {
+                continue;
+            }
+            formatter.format("%-8s %6d %10.1f %9d %11.0f %9d %11.0f %12d %14s%n",
+                             phase.name().toLowerCase(Locale.ROOT),
+                             counters.getCount(),
+                             counters.getWallNanos() / 1e6,
+                             counters.getClasses(),
+                             counters.getClassesPerSecond(),
+                             counters.getMembers(),
+                             counters.getMembersPerSecond(),
+                             counters.getBytesRead(),
+                             counters.getAllocatedBytes() < 0 ? "n/a"
+                                 : String.valueOf(counters.getAllocatedBytes()));
+        }
+        formatter.flush();
+        if (formatter.ioException() != null) {
+            throw formatter.ioException();
+        }
+    }
+
+    /**
+     * @return the table written by {@link #appendTo(Appendable)}.
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendTo(builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+}
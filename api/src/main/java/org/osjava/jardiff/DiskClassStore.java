@@ -0,0 +1,477 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link ClassStore} in a directory, meant to be shared by all the builds
+ * of a machine, whatever the project.
+ * Parsed classes are appended to data segments of at most
+ * <code>segmentSize</code> bytes, and their location to an index file
+ * which is read back when a digest is not known yet.
+ * Nothing is ever rewritten: appends are serialized by a lock on the index
+ * file, so that concurrent builds can share a store, and readers only see
+ * an entry once its class is written to disk. A record found damaged is
+ * appended again, its new entry superseding the old one.
+ * <p>
+ * {@link #configured()} is the store of the directory given by the
+ * <code>semver.classStore</code> system property, which {@link JarDiff}
+ * uses by default.
+ */
+public final class DiskClassStore implements ClassStore, Closeable
+{
+    /**
+     * The system property naming the directory of {@link #configured()}.
+     */
+    public static final String PROPERTY = "semver.classStore";
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    private static final String INDEX = "index";
+
+    private static final int MAGIC = 0x53564353;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Digest, segment, offset and length of a class.
+     */
+    private static final int ENTRY_SIZE = 20 + 4 + 8 + 4;
+
+    /**
+     * One lock per directory for the stores of this JVM, as file locks are
+     * held on behalf of the whole JVM.
+     */
+    private static final Map<File, Object> LOCKS = new HashMap<File, Object>();
+
+    /**
+     * Opens the configured store when first needed.
+     */
+    private static final class Configured
+    {
+        static final DiskClassStore STORE = open(System.getProperty(PROPERTY));
+    }
+
+    /**
+     * A digest usable as a key.
+     */
+    private static final class Digest
+    {
+        private final byte[] bytes;
+
+        Digest(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Digest
+                && Arrays.equals(bytes, ((Digest) other).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            // Digests are already evenly distributed
+            return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16
+                | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+        }
+    }
+
+    /**
+     * Where a class is written.
+     */
+    private static final class Location
+    {
+        final int segment;
+        final long offset;
+        final int length;
+
+        Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File directory;
+
+    private final long segmentSize;
+
+    private final Object lock;
+
+    private final FileChannel index;
+
+    private final Map<Digest, Location> locations = new HashMap<Digest, Location>();
+
+    private final Map<Integer, FileChannel> segments = new HashMap<Integer, FileChannel>();
+
+    /**
+     * Length of the index read so far.
+     */
+    private long indexed = HEADER_SIZE;
+
+    /**
+     * The segment appended to.
+     */
+    private int segment;
+
+    /**
+     * Open the store of a directory, with segments of
+     * {@link #DEFAULT_SEGMENT_SIZE} bytes.
+     *
+     * @param directory the directory, created if needed
+     * @throws IOException if the store cannot be opened
+     */
+    public DiskClassStore(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open the store of a directory.
+     *
+     * @param directory the directory, created if needed
+     * @param segmentSize the size above which no more classes are appended
+     *                    to a segment
+     * @throws IOException if the store cannot be opened
+     */
+    public DiskClassStore(File directory, long segmentSize) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("null directory");
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("invalid segmentSize " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Cannot create <" + directory + ">");
+        }
+        this.directory = directory.getCanonicalFile();
+        this.segmentSize = segmentSize;
+        synchronized (LOCKS) {
+            Object lock = LOCKS.get(this.directory);
+            if (lock == null) {
+                lock = new Object();
+                LOCKS.put(this.directory, lock);
+            }
+            this.lock = lock;
+        }
+        this.index = new RandomAccessFile(new File(this.directory, INDEX), "rw").getChannel();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            synchronized (this.lock) {
+                FileLock fileLock = this.index.lock();
+                try {
+                    if (this.index.size() < HEADER_SIZE) {
+                        header.putInt(MAGIC).putInt(ClassInfoCodec.FORMAT).flip();
+                        write(this.index, header, 0);
+                    } else {
+                        read(this.index, header, 0);
+                        if (header.getInt() != MAGIC || header.getInt() != ClassInfoCodec.FORMAT) {
+                            throw new IOException("Unsupported class store <" + this.directory + ">");
+                        }
+                    }
+                } finally {
+                    fileLock.release();
+                }
+            }
+        } catch (IOException e) {
+            this.index.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the store of the directory given by the
+     *         <code>semver.classStore</code> system property when first
+     *         needed, or null if none or if it cannot be opened.
+     */
+    public static DiskClassStore configured() {
+        return Configured.STORE;
+    }
+
+    private static DiskClassStore open(String directory) {
+        if (directory == null || directory.length() == 0) {
+            return null;
+        }
+        try {
+            return new DiskClassStore(new File(directory));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public ClassInfo get(byte[] digest) throws IOException {
+        Digest key = key(digest);
+        Location location;
+        FileChannel channel;
+        synchronized (this) {
+            location = locations.get(key);
+            if (location == null) {
+                refresh();
+                location = locations.get(key);
+                if (location == null) {
+                    return null;
+                }
+            }
+            channel = segment(location.segment);
+        }
+        ClassInfo info = read(channel, location, digest);
+        if (info == null) {
+            // Forget the record, so that it is appended again by put
+            synchronized (this) {
+                if (locations.get(key) == location) {
+                    locations.remove(key);
+                }
+            }
+        }
+        return info;
+    }
+
+    /**
+     * @return the class recorded at a location, or null if the record was
+     *         lost or damaged by a crash.
+     */
+    private static ClassInfo read(FileChannel channel, Location location, byte[] digest) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(location.length);
+        try {
+            read(channel, record, location.offset);
+        } catch (EOFException e) {
+            return null;
+        }
+        // Each record starts with its digest, so that a record lost by a
+        // crash is not taken for another class
+        byte[] recorded = new byte[digest.length];
+        record.get(recorded);
+        if (!Arrays.equals(digest, recorded)) {
+            return null;
+        }
+        try {
+            return ClassInfoCodec.read(new DataInputStream(new ByteArrayInputStream(
+                record.array(), record.position(), record.remaining())));
+        } catch (IOException e) {
+            // Only thrown by a damaged record, read from memory
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void put(byte[] digest, ClassInfo info) throws IOException {
+        putAll(new byte[][] { digest }, new ClassInfo[] { info });
+    }
+
+    /**
+     * Keep parsed classes, unless already known, taking the lock on the
+     * index once.
+     * The records are forced to disk before their index entries are
+     * written, so that an entry never points to a record lost by a crash.
+     */
+    public void putAll(byte[][] digests, ClassInfo[] infos) throws IOException {
+        if (digests == null) {
+            throw new IllegalArgumentException("null digests");
+        }
+        if (infos == null) {
+            throw new IllegalArgumentException("null infos");
+        }
+        if (digests.length != infos.length) {
+            throw new IllegalArgumentException("invalid infos length " + infos.length);
+        }
+        Digest[] keys = new Digest[digests.length];
+        boolean[] known = new boolean[digests.length];
+        int unknown = 0;
+        synchronized (this) {
+            for (int i = 0; i < digests.length; i++) {
+                keys[i] = key(digests[i]);
+                known[i] = locations.containsKey(keys[i]);
+                if (!known[i]) {
+                    unknown++;
+                }
+            }
+        }
+        if (unknown == 0) {
+            return;
+        }
+        // Serialized before taking the lock
+        ByteBuffer[] records = new ByteBuffer[digests.length];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < digests.length; i++) {
+            if (known[i]) {
+                continue;
+            }
+            bytes.reset();
+            out.write(digests[i]);
+            ClassInfoCodec.write(infos[i], out);
+            out.flush();
+            records[i] = ByteBuffer.wrap(bytes.toByteArray());
+        }
+
+        synchronized (lock) {
+            FileLock fileLock = index.lock();
+            try {
+                synchronized (this) {
+                    refresh();
+                    // Drop an entry left incomplete by a crash
+                    if (index.size() > indexed) {
+                        index.truncate(indexed);
+                    }
+                    Map<Digest, Location> appended = new HashMap<Digest, Location>();
+                    Set<FileChannel> written = new HashSet<FileChannel>();
+                    FileChannel channel = segment(segment);
+                    long offset = channel.size();
+                    for (int i = 0; i < keys.length; i++) {
+                        if (known[i] || locations.containsKey(keys[i]) || appended.containsKey(keys[i])) {
+                            continue;
+                        }
+                        ByteBuffer record = records[i];
+                        if (offset > 0 && offset + record.remaining() > segmentSize) {
+                            segment++;
+                            channel = segment(segment);
+                            offset = channel.size();
+                        }
+                        Location location = new Location(segment, offset, record.remaining());
+                        write(channel, record, offset);
+                        written.add(channel);
+                        offset += location.length;
+                        appended.put(keys[i], location);
+                    }
+                    if (appended.isEmpty()) {
+                        return;
+                    }
+                    for (FileChannel segmentChannel : written) {
+                        segmentChannel.force(false);
+                    }
+
+                    ByteBuffer entries = ByteBuffer.allocate(appended.size() * ENTRY_SIZE);
+                    for (Map.Entry<Digest, Location> entry : appended.entrySet()) {
+                        Location location = entry.getValue();
+                        entries.put(entry.getKey().bytes).putInt(location.segment)
+                            .putLong(location.offset).putInt(location.length);
+                    }
+                    entries.flip();
+                    write(index, entries, indexed);
+                    indexed += entries.capacity();
+                    locations.putAll(appended);
+                }
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * @return the number of classes in the store, as last read.
+     */
+    public synchronized int size() {
+        return locations.size();
+    }
+
+    /**
+     * @return the directory of the store
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized void close() throws IOException {
+        try {
+            for (FileChannel channel : segments.values()) {
+                channel.close();
+            }
+            segments.clear();
+        } finally {
+            index.close();
+        }
+    }
+
+    private static Digest key(byte[] digest) {
+        if (digest == null) {
+            throw new IllegalArgumentException("null digest");
+        }
+        if (digest.length != 20) {
+            throw new IllegalArgumentException("invalid digest length " + digest.length);
+        }
+        return new Digest(digest.clone());
+    }
+
+    /**
+     * Read the entries appended to the index since last read, ignoring an
+     * incomplete last entry.
+     */
+    private void refresh() throws IOException {
+        long size = index.size();
+        long complete = size - (size - HEADER_SIZE) % ENTRY_SIZE;
+        if (complete <= indexed) {
+            return;
+        }
+        ByteBuffer entries = ByteBuffer.allocate((int) (complete - indexed));
+        read(index, entries, indexed);
+        while (entries.hasRemaining()) {
+            byte[] digest = new byte[20];
+            entries.get(digest);
+            Location location = new Location(entries.getInt(), entries.getLong(), entries.getInt());
+            locations.put(new Digest(digest), location);
+            segment = Math.max(segment, location.segment);
+        }
+        indexed = complete;
+    }
+
+    private FileChannel segment(int number) throws IOException {
+        FileChannel channel = segments.get(number);
+        if (channel == null) {
+            File file = new File(directory, String.format("segment-%05d", number));
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            segments.put(number, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * Fill a buffer from a position of a channel, then flip it.
+     */
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
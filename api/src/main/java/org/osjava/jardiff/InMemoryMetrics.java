@@ -0,0 +1,224 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * A {@link MetricsListener} keeping the totals of counters and a summary of
+ * histograms in memory, until {@link #reset()}.
+ * Histogram values are counted in power of two buckets, so that percentiles
+ * are known to within a factor of two whatever the number of values.
+ * This class is thread safe.
+ */
+public final class InMemoryMetrics implements MetricsListener
+{
+    /**
+     * Number of histogram buckets, bucket <code>i</code> counting the
+     * values having <code>i</code> significant bits.
+     */
+    private static final int BUCKETS = 64;
+
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    private static final int FIRST_BUCKET = 4;
+
+    /**
+     * For each metric: count, sum, minimum, maximum and, for histograms,
+     * the count of each bucket.
+     */
+    private final long[][] values = new long[Metric.values().length][];
+
+    public InMemoryMetrics() {
+        for (Metric metric : Metric.values()) {
+            values[metric.ordinal()]
+                = new long[metric.isHistogram() ? FIRST_BUCKET + BUCKETS : 1];
+        }
+    }
+
+    public void increment(Metric counter, long amount) {
+        if (counter.isHistogram()) {
+            throw new IllegalArgumentException("invalid counter " + counter);
+        }
+        long[] value = values[counter.ordinal()];
+        synchronized (value) {
+            value[COUNT] += amount;
+        }
+    }
+
+    public void record(Metric histogram, long value) {
+        if (!histogram.isHistogram()) {
+            throw new IllegalArgumentException("invalid histogram " + histogram);
+        }
+        long[] summary = values[histogram.ordinal()];
+        int bucket = BUCKETS - Long.numberOfLeadingZeros(Math.max(value, 0));
+        synchronized (summary) {
+            if (summary[COUNT] == 0 || value < summary[MIN]) {
+                summary[MIN] = value;
+            }
+            if (summary[COUNT] == 0 || value > summary[MAX]) {
+                summary[MAX] = value;
+            }
+            summary[COUNT]++;
+            summary[SUM] += value;
+            summary[FIRST_BUCKET + bucket]++;
+        }
+    }
+
+    /**
+     * @param metric a metric
+     * @return the total of a counter, or the number of values of a histogram.
+     */
+    public long getCount(Metric metric) {
+        long[] value = values[metric.ordinal()];
+        synchronized (value) {
+            return value[COUNT];
+        }
+    }
+
+    /**
+     * @param histogram a histogram
+     * @return the sum of the values, 0 if none.
+     */
+    public long getSum(Metric histogram) {
+        return summary(histogram)[SUM];
+    }
+
+    /**
+     * @param histogram a histogram
+     * @return the smallest value, 0 if none.
+     */
+    public long getMin(Metric histogram) {
+        return summary(histogram)[MIN];
+    }
+
+    /**
+     * @param histogram a histogram
+     * @return the largest value, 0 if none.
+     */
+    public long getMax(Metric histogram) {
+        return summary(histogram)[MAX];
+    }
+
+    /**
+     * @param histogram a histogram
+     * @return the mean of the values, 0 if none.
+     */
+    public double getMean(Metric histogram) {
+        long[] summary = summary(histogram);
+        return summary[COUNT] == 0 ? 0 : (double) summary[SUM] / summary[COUNT];
+    }
+
+    /**
+     * Get an upper bound of a percentile, at most twice the exact value.
+     *
+     * @param histogram a histogram
+     * @param fraction the fraction of values which are lower, e.g. 0.99
+     * @return the upper bound of the bucket containing the percentile, or the
+     *         largest value if smaller; 0 if none.
+     */
+    public long getPercentile(Metric histogram, double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("invalid fraction " + fraction);
+        }
+        long[] summary = summary(histogram);
+        if (summary[COUNT] == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * summary[COUNT]);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += summary[FIRST_BUCKET + bucket];
+            if (seen >= rank) {
+                return Math.min((1L << bucket) - 1, summary[MAX]);
+            }
+        }
+        return summary[MAX];
+    }
+
+    private long[] summary(Metric histogram) {
+        if (!histogram.isHistogram()) {
+            throw new IllegalArgumentException("invalid histogram " + histogram);
+        }
+        long[] summary = values[histogram.ordinal()];
+        synchronized (summary) {
+            return summary.clone();
+        }
+    }
+
+    /**
+     * Forget all the measurements.
+     */
+    public void reset() {
+        for (long[] value : values) {
+            synchronized (value) {
+                Arrays.fill(value, 0);
+            }
+        }
+    }
+
+    /**
+     * Write each counter, then a summary of each histogram, one per line.
+     * Metrics never incremented or recorded are skipped.
+     *
+     * @param out where to write the metrics.
+     * @throws IOException when there is an underlying IOException.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        Formatter formatter = new Formatter(out, Locale.ROOT);
+        for (Metric metric : Metric.values()) {
+            long count = getCount(metric);
+            if (!metric.isHistogram() && count != 0) {
+                formatter.format("%-22s %12d%n",
+                                 metric.name().toLowerCase(Locale.ROOT), count);
+            }
+        }
+        for (Metric metric : Metric.values()) {
+            if (metric.isHistogram() && getCount(metric) != 0) {
+                formatter.format("%-22s count=%d min=%d mean=%.0f p50=%d p99=%d max=%d%n",
+                                 metric.name().toLowerCase(Locale.ROOT),
+                                 getCount(metric), getMin(metric),
+                                 getMean(metric),
+                                 getPercentile(metric, 0.5),
+                                 getPercentile(metric, 0.99),
+                                 getMax(metric));
+            }
+        }
+        formatter.flush();
+        if (formatter.ioException() != null) {
+            throw formatter.ioException();
+        }
+    }
+
+    /**
+     * @return the metrics written by {@link #appendTo(Appendable)}.
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendTo(builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+}
@@ -19,6 +19,8 @@ package org.osjava.jardiff;
 import java.io.*;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -90,6 +92,42 @@ public class JarDiff
      */
     private ClassInfoVisitor infoVisitor = new ClassInfoVisitor();
 
+    /**
+     * Where to record the cost of loading and diffing, null if not needed.
+     */
+    private DiffStatistics statistics;
+
+    /**
+     * Who to tell about loading and diffing, null if nobody.
+     */
+    private DiffListener listener = DiffListener.installed();
+
+    /**
+     * Where to send measurements, null if not needed.
+     */
+    private MetricsListener metrics;
+
+    /**
+     * Where parsed classes are kept, null if nowhere.
+     */
+    private ClassStore classStore = DiskClassStore.configured();
+
+    /**
+     * The number of parsed classes handed to the class store at once.
+     */
+    private static final int STORE_BATCH = 256;
+
+    /**
+     * Heap budget of each map loaded by loadClasses(File), negative if
+     * classes are kept on the heap.
+     */
+    private long heapBudget = -1;
+
+    /**
+     * Whether loadClasses(File) packs classes into a ClassInfoArena.
+     */
+    private boolean offHeap;
+
     /**
      * Create a new JarDiff object.
      */
@@ -132,6 +170,127 @@ public class JarDiff
         return newVersion;
     }
 
+    /**
+     * Set where to record the cost of loading and diffing.
+     *
+     * @param statistics the statistics, or null to record nothing.
+     */
+    public void setStatistics(DiffStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Get where the cost of loading and diffing is recorded.
+     *
+     * @return the statistics, or null
+     */
+    public DiffStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Set the listener told about each jar and class loaded, each class
+     * compared and each phase; defaults to {@link DiffListener#installed()}.
+     *
+     * @param listener the listener, or null to tell nobody.
+     */
+    public void setListener(DiffListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the listener told about loading and diffing.
+     *
+     * @return the listener, or null
+     */
+    public DiffListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Set where to send the measurements of each jar loaded and each diff.
+     *
+     * @param metrics the metrics listener, or null to measure nothing.
+     */
+    public void setMetricsListener(MetricsListener metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get where to send measurements.
+     *
+     * @return the metrics listener, or null
+     */
+    public MetricsListener getMetricsListener() {
+        return metrics;
+    }
+
+    /**
+     * Set where classes are looked up by the digest of their class file
+     * before being parsed, and kept once parsed; defaults to
+     * {@link DiskClassStore#configured()}.
+     *
+     * @param classStore the store, or null to parse every class.
+     */
+    public void setClassStore(ClassStore classStore) {
+        this.classStore = classStore;
+    }
+
+    /**
+     * Get where parsed classes are kept.
+     *
+     * @return the store, or null
+     */
+    public ClassStore getClassStore() {
+        return classStore;
+    }
+
+    /**
+     * Set the heap budget of the maps returned by {@link #loadClasses(File)}.
+     * With a budget, each map is a {@link SpillingClassMap}, keeping the
+     * members of its classes in a temporary file and at most about
+     * <code>heapBudget</code> bytes of them on the heap; it should be
+     * closed once diffed. The contents handed to
+     * {@link BatchDiffHandler#contents} then have no members.
+     *
+     * @param heapBudget the budget of each map, in bytes, or a negative
+     *                   value to keep all classes on the heap, the default.
+     */
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    /**
+     * Get the heap budget of the maps returned by {@link #loadClasses(File)}.
+     *
+     * @return the budget in bytes, negative if classes are kept on the heap
+     */
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * Set whether the maps returned by {@link #loadClasses(File)} are
+     * {@link ClassInfoArena}s, packing classes outside of the heap.
+     * Ignored if there is a {@link #setHeapBudget heap budget}.
+     *
+     * @param offHeap true to pack classes outside of the heap, false to
+     *                keep them as objects on the heap, the default.
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Get whether the maps returned by {@link #loadClasses(File)} are
+     * packed outside of the heap.
+     *
+     * @return true if they are {@link ClassInfoArena}s
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
     /**
      * Set the dependencies.
      *
@@ -215,21 +374,151 @@ public class JarDiff
      *                     class.
      */
     private void loadClasses(Map infoMap, File file) throws DiffException {
+        final DiffStatistics statistics = this.statistics;
+        final MetricsListener metrics = this.metrics;
+        final long startNanos = statistics == null && metrics == null ? 0 : System.nanoTime();
+        final long startAllocated = statistics == null ? 0 : DiffStatistics.allocatedBytes();
+        final DiffListener listener = this.listener;
+        final Object jarEvent = listener == null ? null : listener.startJar(file.getPath());
+        ClassStore store = this.classStore;
+        long classes = 0;
+        long stored = 0;
+        long members = 0;
+        long bytesRead = 0;
         try {
+            MessageDigest sha1 = store == null ? null : MessageDigest.getInstance("SHA-1");
+            byte[][] digests = store == null ? null : new byte[STORE_BATCH][];
+            ClassInfo[] parsed = store == null ? null : new ClassInfo[STORE_BATCH];
+            int pending = 0;
             JarFile jar = new JarFile(file);
-            Enumeration e = jar.entries();
-            while (e.hasMoreElements()) {
-                JarEntry entry = (JarEntry) e.nextElement();
-                String name = entry.getName();
-                if (!entry.isDirectory() && name.endsWith(".class")) {
-                    ClassReader reader
-                        = new ClassReader(jar.getInputStream(entry));
-                    ClassInfo ci = loadClassInfo(reader);
-                    infoMap.put(ci.getName(), ci);
+            try {
+                Enumeration e = jar.entries();
+                while (e.hasMoreElements()) {
+                    JarEntry entry = (JarEntry) e.nextElement();
+                    String name = entry.getName();
+                    if (!entry.isDirectory() && name.endsWith(".class")) {
+                        Object classEvent = listener == null ? null : listener.startClass();
+                        ClassReader reader
+                            = new ClassReader(jar.getInputStream(entry));
+                        byte[] digest = null;
+                        ClassInfo ci = null;
+                        if (store != null) {
+                            digest = sha1.digest(reader.b);
+                            try {
+                                ci = store.get(digest);
+                            } catch (IOException ioe) {
+                                // The store is only a cache: parse the
+                                // rest of the jar without it
+                                store = null;
+                            } catch (RuntimeException re) {
+                                store = null;
+                            }
+                        }
+                        if (ci != null) {
+                            stored++;
+                        } else {
+                            ci = loadClassInfo(reader);
+                            if (store != null) {
+                                digests[pending] = digest;
+                                parsed[pending] = ci;
+                                if (++pending == STORE_BATCH) {
+                                    if (!putStored(store, digests, parsed)) {
+                                        store = null;
+                                    }
+                                    pending = 0;
+                                }
+                            }
+                        }
+                        infoMap.put(ci.getName(), ci);
+                        classes++;
+                        members += ci.getMethodMap().size() + ci.getFieldMap().size();
+                        bytesRead += reader.b.length;
+                        if (listener != null) {
+                            listener.endClass(classEvent, ci.getName(), reader.b.length);
+                        }
+                    }
                 }
+            } finally {
+                jar.close();
+            }
+            if (store != null && pending > 0) {
+                putStored(store, Arrays.copyOf(digests, pending), Arrays.copyOf(parsed, pending));
+            }
+            if (statistics != null) {
+                statistics.recordSince(DiffStatistics.Phase.LOAD, startNanos,
+                                       startAllocated, classes, members, bytesRead);
+            }
+            if (listener != null) {
+                listener.endJar(jarEvent, file.getPath(), classes, members, bytesRead);
+            }
+            if (metrics != null) {
+                metrics.record(MetricsListener.Metric.JAR_LOAD_NANOS, System.nanoTime() - startNanos);
+                metrics.increment(MetricsListener.Metric.CLASSES_PARSED, classes - stored);
+                metrics.increment(MetricsListener.Metric.STORE_HITS, stored);
+                metrics.increment(MetricsListener.Metric.BYTES_READ, bytesRead);
             }
         } catch (IOException ioe) {
             throw new DiffException(ioe);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new DiffException(nsae);
+        }
+    }
+
+    /**
+     * Keep parsed classes in a store, if it can.
+     *
+     * @return false if the store failed, and should not be used for the
+     *         rest of the jar.
+     */
+    private static boolean putStored(ClassStore store, byte[][] digests, ClassInfo[] infos) {
+        try {
+            store.putAll(digests, infos);
+            return true;
+        } catch (IOException ioe) {
+            return false;
+        } catch (RuntimeException re) {
+            return false;
+        }
+    }
+
+    /**
+     * Load all the classes from the specified jar file into a new map,
+     * without touching the old or new classes of this JarDiff.
+     * The map can be handed to
+     * {@link #diff(DiffHandler, DiffCriteria, String, String, Map, Map)}
+     * as many times as needed.
+     *
+     * @param file The location of a jar file to load classes from.
+     * @return the ClassInfo of each class, keyed by internal class name,
+     *         in a {@link SpillingClassMap} if there is a
+     *         {@link #setHeapBudget heap budget}, or in a
+     *         {@link ClassInfoArena} if {@link #setOffHeap off heap}.
+     * @throws DiffException if there is an IOException
+     */
+    public Map<String, ClassInfo> loadClasses(File file) throws DiffException {
+        if (heapBudget < 0) {
+            Map<String, ClassInfo> infoMap = offHeap
+                ? new ClassInfoArena() : new TreeMap<String, ClassInfo>();
+            loadClasses(infoMap, file);
+            return infoMap;
+        }
+        SpillingClassMap infoMap = null;
+        try {
+            infoMap = new SpillingClassMap(heapBudget);
+            loadClasses(infoMap, file);
+            SpillingClassMap loaded = infoMap;
+            infoMap = null;
+            return loaded;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        } finally {
+            if (infoMap != null) {
+                try {
+                    infoMap.close();
+                } catch (IOException ioe) {
+                    // Already failing
+                }
+            }
         }
     }
 
@@ -292,213 +581,384 @@ public class JarDiff
         String oldVersion, String newVersion,
         Map<String, ClassInfo> oldClassInfo, Map<String, ClassInfo> newClassInfo) throws DiffException
     {
+        batchDiff(new DiffHandlerAdapter(handler), criteria,
+                  oldVersion, newVersion, oldClassInfo, newClassInfo);
+    }
+
+    /**
+     * Perform a diff sending the output to the specified batch handler,
+     * using the specified criteria to select diffs.
+     * The handler is called once per list of classes and once per changed
+     * class rather than once per member.
+     *
+     * @param handler The handler to receive and handle differences.
+     * @param criteria The criteria we use to select differences.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void batchDiff(BatchDiffHandler handler, DiffCriteria criteria)
+        throws DiffException
+    {
+        batchDiff(handler, criteria, oldVersion, newVersion, oldClassInfo, newClassInfo);
+    }
+
+    public void batchDiff(BatchDiffHandler handler, DiffCriteria criteria,
+        String oldVersion, String newVersion,
+        Map<String, ClassInfo> oldClassInfo, Map<String, ClassInfo> newClassInfo) throws DiffException
+    {
+        final DiffStatistics statistics = this.statistics;
+        final MetricsListener metrics = this.metrics;
+        final long startNanos = statistics == null && metrics == null ? 0 : System.nanoTime();
+        final long startAllocated = statistics == null ? 0 : DiffStatistics.allocatedBytes();
+        final DiffListener listener = this.listener;
+        final Object phaseEvent = listener == null
+            ? null : listener.startPhase(DiffStatistics.Phase.DIFF);
+        long members = 0;
+        long compared = 0;
+        long changed = 0;
+
         // TODO: Build the name from the MANIFEST rather than the filename
         handler.startDiff(oldVersion, newVersion);
 
-        handler.startOldContents();
-        for (ClassInfo ci : oldClassInfo.values()) {
-            if (criteria.validClass(ci)) {
-                handler.contains(ci);
+        handler.contents(validClasses(criteria, headers(oldClassInfo)),
+                         validClasses(criteria, headers(newClassInfo)));
+
+        Set<String> oldNames = new TreeSet<String>(oldClassInfo.keySet());
+        Set<String> newNames = new TreeSet<String>(newClassInfo.keySet());
+
+        List<ClassInfo> removed = new ArrayList<ClassInfo>();
+        for (String s : oldNames) {
+            if (!newClassInfo.containsKey(s)) {
+                ClassInfo ci = oldClassInfo.get(s);
+                if (criteria.validClass(ci)) {
+                    removed.add(ci);
+                }
             }
         }
-        handler.endOldContents();
-
-        handler.startNewContents();
-        for (ClassInfo ci : newClassInfo.values()) {
-            if (criteria.validClass(ci)) {
-                handler.contains(ci);
+        handler.classesRemoved(removed.toArray(new ClassInfo[removed.size()]));
+
+        List<ClassInfo> added = new ArrayList<ClassInfo>();
+        for (String s : newNames) {
+            if (!oldClassInfo.containsKey(s)) {
+                ClassInfo ci = newClassInfo.get(s);
+                if (criteria.validClass(ci)) {
+                    added.add(ci);
+                }
             }
         }
-        handler.endNewContents();
-
-        Set<String> onlyOld = new TreeSet<String>(oldClassInfo.keySet());
-        Set<String> onlyNew = new TreeSet<String>(newClassInfo.keySet());
-        Set<String> both = new TreeSet<String>(oldClassInfo.keySet());
-        onlyOld.removeAll(newClassInfo.keySet());
-        onlyNew.removeAll(oldClassInfo.keySet());
-        both.retainAll(newClassInfo.keySet());
-
-        handler.startRemoved();
-        for (String s : onlyOld) {
-            ClassInfo ci = oldClassInfo.get(s);
-            if (criteria.validClass(ci)) {
-                handler.classRemoved(ci);
+        handler.classesAdded(added.toArray(new ClassInfo[added.size()]));
+
+        MemberKeys keys = new MemberKeys();
+        for (String s : oldNames) {
+            ClassInfo nci = newClassInfo.get(s);
+            if (nci == null) {
+                continue;
+            }
+            ClassInfo oci = oldClassInfo.get(s);
+            if (criteria.validClass(oci) || criteria.validClass(nci)) {
+                Object classEvent = listener == null ? null : listener.startClassDiff();
+                ClassChanges changes = diffClass(criteria, oci, nci, newClassInfo, keys);
+                if (listener != null) {
+                    listener.endClassDiff(classEvent, s, changes);
+                }
+                if (changes != null) {
+                    handler.classChanges(changes);
+                    changed++;
+                }
+                compared++;
+                members += oci.getMethodMap().size() + oci.getFieldMap().size()
+                    + nci.getMethodMap().size() + nci.getFieldMap().size();
             }
         }
-        handler.endRemoved();
 
-        handler.startAdded();
-        for (String s : onlyNew) {
-            ClassInfo ci = newClassInfo.get(s);
-            if (criteria.validClass(ci)) {
-                handler.classAdded(ci);
+        handler.endDiff();
+        if (statistics != null) {
+            statistics.recordSince(DiffStatistics.Phase.DIFF, startNanos, startAllocated,
+                                   oldClassInfo.size() + newClassInfo.size(), members, 0);
+        }
+        if (listener != null) {
+            listener.endPhase(phaseEvent, DiffStatistics.Phase.DIFF,
+                              oldClassInfo.size() + newClassInfo.size(), members);
+        }
+        if (metrics != null) {
+            metrics.record(MetricsListener.Metric.DIFF_NANOS, System.nanoTime() - startNanos);
+            metrics.increment(MetricsListener.Metric.CLASSES_COMPARED, compared);
+            metrics.increment(MetricsListener.Metric.CLASSES_CHANGED, changed);
+        }
+    }
+
+    /**
+     * Compute the changes to a single class existing in both versions, as
+     * {@link #batchDiff(BatchDiffHandler, DiffCriteria)} would report them.
+     * This allows callers keeping both versions in memory to diff again
+     * only the classes which changed.
+     * The changes of a class also depend on its superclasses in the new
+     * version, as members moved up to a superclass are not removed.
+     *
+     * @param criteria the criteria used to select differences
+     * @param oci the class in the old version
+     * @param nci the class in the new version
+     * @param newClassInfo all the classes of the new version
+     * @return the changes, or null if the class did not change
+     */
+    public static ClassChanges classChanges(DiffCriteria criteria,
+        ClassInfo oci, ClassInfo nci, Map<String, ClassInfo> newClassInfo)
+    {
+        return diffClass(criteria, oci, nci, newClassInfo, new MemberKeys());
+    }
+
+    /**
+     * Keys of the members of a class, reused from one class to the next.
+     */
+    private static final class MemberKeys
+    {
+        final Set<String> removedMethods = new TreeSet<String>();
+        final Set<String> removedFields = new TreeSet<String>();
+        final Set<String> addedMethods = new TreeSet<String>();
+        final Set<String> addedFields = new TreeSet<String>();
+        final Set<String> changedMethods = new TreeSet<String>();
+        final Set<String> changedFields = new TreeSet<String>();
+
+        void clear() {
+            removedMethods.clear();
+            removedFields.clear();
+            addedMethods.clear();
+            addedFields.clear();
+            changedMethods.clear();
+            changedFields.clear();
+        }
+    }
+
+    /**
+     * Compute the changes to a class existing in both versions.
+     *
+     * @param criteria the criteria used to select differences
+     * @param oci the class in the old version
+     * @param nci the class in the new version
+     * @param newClassInfo all the classes of the new version, used to
+     *                     resolve members inherited from superclasses
+     * @param keys the scratch sets, empty on entry and on exit
+     * @return the changes, or null if the class did not change
+     */
+    private static ClassChanges diffClass(DiffCriteria criteria,
+        ClassInfo oci, ClassInfo nci, Map<String, ClassInfo> newClassInfo,
+        MemberKeys keys)
+    {
+        Map<String, MethodInfo> oldMethods = oci.getMethodMap();
+        Map<String, FieldInfo> oldFields = oci.getFieldMap();
+        Map<String, MethodInfo> newMethods = nci.getMethodMap();
+        Map<String, FieldInfo> newFields = nci.getFieldMap();
+
+        Set<String> removedMethods = keys.removedMethods;
+        Set<String> removedFields = keys.removedFields;
+        Set<String> addedMethods = keys.addedMethods;
+        Set<String> addedFields = keys.addedFields;
+        Set<String> changedMethods = keys.changedMethods;
+        Set<String> changedFields = keys.changedFields;
+
+        for (Map.Entry<String, MethodInfo> entry : oldMethods.entrySet()) {
+            if (criteria.validMethod(entry.getValue()))
+                removedMethods.add(entry.getKey());
+        }
+        for (Map.Entry<String, FieldInfo> entry : oldFields.entrySet()) {
+            if (criteria.validField(entry.getValue()))
+                removedFields.add(entry.getKey());
+        }
+
+        for (Map.Entry<String, MethodInfo> entry : newMethods.entrySet()) {
+            if (criteria.validMethod(entry.getValue()))
+                addedMethods.add(entry.getKey());
+        }
+        for (Map.Entry<String, FieldInfo> entry : newFields.entrySet()) {
+            if (criteria.validField(entry.getValue()))
+                addedFields.add(entry.getKey());
+        }
+
+        // We add all the old methods that match the criteria
+        changedMethods.addAll(removedMethods);
+        // We keep the intersection of these with all the new methods
+        // to detect as changed a method that no longer match the
+        // criteria (i.e. a method that was public and is now private)
+        changedMethods.retainAll(newMethods.keySet());
+        removedMethods.removeAll(changedMethods);
+        addedMethods.removeAll(changedMethods);
+        changedFields.addAll(removedFields);
+        changedFields.retainAll(newFields.keySet());
+        removedFields.removeAll(changedFields);
+        addedFields.removeAll(changedFields);
+
+        // Members moved up to a superclass of the new version are not
+        // removed
+        String superClass = nci.getSupername();
+        while (superClass != null
+                && (!removedMethods.isEmpty() || !removedFields.isEmpty())) {
+            ClassInfo sci = newClassInfo.get(superClass);
+            if (sci == null) {
+                break;
             }
+            removeInherited(removedFields, sci.getFieldMap());
+            removeInherited(removedMethods, sci.getMethodMap());
+            superClass = sci.getSupername();
         }
-        handler.endAdded();
 
-        Set<String> removedMethods = new TreeSet<String>();
-        Set<String> removedFields = new TreeSet<String>();
-        Set<String> addedMethods = new TreeSet<String>();
-        Set<String> addedFields = new TreeSet<String>();
-        Set<String> changedMethods = new TreeSet<String>();
-        Set<String> changedFields = new TreeSet<String>();
+        Iterator<String> j = changedMethods.iterator();
+        while (j.hasNext()) {
+            String desc = j.next();
+            MethodInfo oldInfo = oldMethods.get(desc);
+            MethodInfo newInfo = newMethods.get(desc);
+            if (!criteria.differs(oldInfo, newInfo))
+                j.remove();
+        }
+        j = changedFields.iterator();
+        while (j.hasNext()) {
+            String desc = j.next();
+            FieldInfo oldInfo = oldFields.get(desc);
+            FieldInfo newInfo = newFields.get(desc);
+            if (!criteria.differs(oldInfo, newInfo))
+                j.remove();
+        }
 
-        handler.startChanged();
-        for (String s : both) {
-            ClassInfo oci = oldClassInfo.get(s);
-            ClassInfo nci = newClassInfo.get(s);
-            if (criteria.validClass(oci) || criteria.validClass(nci)) {
-                Map<String, MethodInfo> oldMethods = oci.getMethodMap();
-                Map<String, FieldInfo> oldFields = oci.getFieldMap();
-                Map<String, MethodInfo> newMethods = nci.getMethodMap();
-                Map<String, FieldInfo> newFields = nci.getFieldMap();
-
-                Map<String, MethodInfo> extNewMethods = new HashMap<String, MethodInfo>(newMethods);
-                Map<String, FieldInfo> extNewFields = new HashMap<String, FieldInfo>(newFields);
-
-                String superClass = nci.getSupername();
-                while (superClass != null && newClassInfo.containsKey(superClass)) {
-                    ClassInfo sci = newClassInfo.get(superClass);
-                    for (Map.Entry<String, FieldInfo> entry : sci.getFieldMap().entrySet()) {
-                        if (!(entry.getValue()).isPrivate()
-                                && !extNewFields.containsKey(entry.getKey())) {
-                            extNewFields.put(entry.getKey(), entry.getValue());
-                        }
-                    }
-                    for (Map.Entry<String, MethodInfo> entry : sci.getMethodMap().entrySet()) {
-                        if (!(entry.getValue()).isPrivate()
-                                && !extNewMethods.containsKey(entry.getKey())) {
-                            extNewMethods.put(entry.getKey(), entry.getValue());
-                        }
-                    }
-                    superClass = sci.getSupername();
-                }
+        boolean classchanged = criteria.differs(oci, nci);
+        if (!classchanged && removedMethods.isEmpty()
+                && removedFields.isEmpty() && addedMethods.isEmpty()
+                && addedFields.isEmpty() && changedMethods.isEmpty()
+                && changedFields.isEmpty()) {
+            return null;
+        }
 
-                for (Map.Entry<String, MethodInfo> entry : oldMethods.entrySet()) {
-                    if (criteria.validMethod(entry.getValue()))
-                        removedMethods.add(entry.getKey());
-                }
-                for (Map.Entry<String, FieldInfo> entry : oldFields.entrySet()) {
-                    if (criteria.validField(entry.getValue()))
-                        removedFields.add(entry.getKey());
-                }
+        boolean classdeprecated = false;
+        if (classchanged) {
+            // Was only deprecated?
+            if (wasDeprecated(oci, nci)
+                && !criteria.differs(cloneDeprecated(oci), nci)) {
+                classchanged = false;
+                classdeprecated = true;
+            }
+        }
 
-                for (Map.Entry<String, MethodInfo> entry : newMethods.entrySet()) {
-                    if (criteria.validMethod(entry.getValue()))
-                        addedMethods.add(entry.getKey());
-                }
-                for (Map.Entry<String, FieldInfo> entry : newFields.entrySet()) {
-                    if (criteria.validField(entry.getValue()))
-                        addedFields.add(entry.getKey());
-                }
+        List<FieldInfo> changedFieldsFrom = new ArrayList<FieldInfo>();
+        List<FieldInfo> changedFieldsTo = new ArrayList<FieldInfo>();
+        List<FieldInfo> deprecatedFieldsFrom = new ArrayList<FieldInfo>();
+        List<FieldInfo> deprecatedFieldsTo = new ArrayList<FieldInfo>();
+        for (String field : changedFields) {
+            FieldInfo oldFieldInfo = oldFields.get(field);
+            FieldInfo newFieldInfo = newFields.get(field);
+            // Was only deprecated?
+            if (wasDeprecated(oldFieldInfo, newFieldInfo)
+                && !criteria.differs(
+                    cloneDeprecated(oldFieldInfo),
+                    newFieldInfo)) {
+                deprecatedFieldsFrom.add(oldFieldInfo);
+                deprecatedFieldsTo.add(newFieldInfo);
+            } else {
+                changedFieldsFrom.add(oldFieldInfo);
+                changedFieldsTo.add(newFieldInfo);
+            }
+        }
+        List<MethodInfo> changedMethodsFrom = new ArrayList<MethodInfo>();
+        List<MethodInfo> changedMethodsTo = new ArrayList<MethodInfo>();
+        List<MethodInfo> deprecatedMethodsFrom = new ArrayList<MethodInfo>();
+        List<MethodInfo> deprecatedMethodsTo = new ArrayList<MethodInfo>();
+        for (String method : changedMethods) {
+            MethodInfo oldMethodInfo = oldMethods.get(method);
+            MethodInfo newMethodInfo = newMethods.get(method);
+            // Was only deprecated?
+            if (wasDeprecated(oldMethodInfo, newMethodInfo)
+                && !criteria.differs(
+                    cloneDeprecated(oldMethodInfo),
+                    newMethodInfo)) {
+                deprecatedMethodsFrom.add(oldMethodInfo);
+                deprecatedMethodsTo.add(newMethodInfo);
+            } else {
+                changedMethodsFrom.add(oldMethodInfo);
+                changedMethodsTo.add(newMethodInfo);
+            }
+        }
 
-                // We add all the old methods that match the criteria
-                changedMethods.addAll(removedMethods);
-                // We keep the intersection of these with all the new methods
-                // to detect as changed a method that no longer match the
-                // criteria (i.e. a method that was public and is now private)
-                changedMethods.retainAll(newMethods.keySet());
-                removedMethods.removeAll(changedMethods);
-                removedMethods.removeAll(extNewMethods.keySet());
-                addedMethods.removeAll(changedMethods);
-                changedFields.addAll(removedFields);
-                changedFields.retainAll(newFields.keySet());
-                removedFields.removeAll(changedFields);
-                removedFields.removeAll(extNewFields.keySet());
-                addedFields.removeAll(changedFields);
-
-                Iterator<String> j = changedMethods.iterator();
-                while (j.hasNext()) {
-                    String desc = j.next();
-                    MethodInfo oldInfo = oldMethods.get(desc);
-                    MethodInfo newInfo = newMethods.get(desc);
-                    if (!criteria.differs(oldInfo, newInfo))
-                        j.remove();
-                }
-                j = changedFields.iterator();
-                while (j.hasNext()) {
-                    String desc = j.next();
-                    FieldInfo oldInfo = oldFields.get(desc);
-                    FieldInfo newInfo = newFields.get(desc);
-                    if (!criteria.differs(oldInfo, newInfo))
-                        j.remove();
-                }
+        ClassChanges changes = new ClassChanges(oci, nci,
+            classchanged, classdeprecated,
+            fields(removedFields, oldFields), methods(removedMethods, oldMethods),
+            fields(addedFields, newFields), methods(addedMethods, newMethods),
+            toFieldArray(changedFieldsFrom), toFieldArray(changedFieldsTo),
+            toMethodArray(changedMethodsFrom), toMethodArray(changedMethodsTo),
+            toFieldArray(deprecatedFieldsFrom), toFieldArray(deprecatedFieldsTo),
+            toMethodArray(deprecatedMethodsFrom), toMethodArray(deprecatedMethodsTo));
+        keys.clear();
+        return changes;
+    }
 
-                boolean classchanged = criteria.differs(oci, nci);
-                if (classchanged || !removedMethods.isEmpty()
-                        || !removedFields.isEmpty() || !addedMethods.isEmpty()
-                        || !addedFields.isEmpty() || !changedMethods.isEmpty()
-                        || !changedFields.isEmpty()) {
-                    handler.startClassChanged(s);
+    /**
+     * Remove from <code>keys</code> the non private members of a superclass.
+     */
+    private static void removeInherited(Set<String> keys,
+        Map<String, ? extends AbstractInfo> superMembers)
+    {
+        Iterator<String> i = keys.iterator();
+        while (i.hasNext()) {
+            AbstractInfo info = superMembers.get(i.next());
+            if (info != null && !info.isPrivate()) {
+                i.remove();
+            }
+        }
+    }
 
-                    handler.startRemoved();
-                    for (String field : removedFields) {
-                        handler.fieldRemoved(oldFields.get(field));
-                    }
-                    for (String method : removedMethods) {
-                        handler.methodRemoved(oldMethods.get(method));
-                    }
-                    handler.endRemoved();
+    private static final ClassInfo[] NO_CLASSES = new ClassInfo[0];
 
-                    handler.startAdded();
-                    for (String field : addedFields) {
-                        handler.fieldAdded(newFields.get(field));
-                    }
-                    for (String method : addedMethods) {
-                        handler.methodAdded(newMethods.get(method));
-                    }
-                    handler.endAdded();
-
-                    handler.startChanged();
-                    if (classchanged) {
-			            // Was only deprecated?
-			            if (wasDeprecated(oci, nci)
-				            && !criteria.differs(cloneDeprecated(oci), nci))
-			                handler.classDeprecated(oci, nci);
-			            else
-			                handler.classChanged(oci, nci);
-                    }
+    private static final FieldInfo[] NO_FIELDS = new FieldInfo[0];
 
-                    for (String field : changedFields) {
-                        FieldInfo oldFieldInfo = oldFields.get(field);
-                        FieldInfo newFieldInfo = newFields.get(field);
-                        // Was only deprecated?
-                        if (wasDeprecated(oldFieldInfo, newFieldInfo)
-                            && !criteria.differs(
-                                cloneDeprecated(oldFieldInfo),
-                                newFieldInfo))
-                            handler.fieldDeprecated(oldFieldInfo, newFieldInfo);
-                        else
-                            handler.fieldChanged(oldFieldInfo, newFieldInfo);
-                    }
-                    for (String method : changedMethods) {
-                        MethodInfo oldMethodInfo = oldMethods.get(method);
-                        MethodInfo newMethodInfo = newMethods.get(method);
-                        // Was only deprecated?
-                        if (wasDeprecated(oldMethodInfo, newMethodInfo)
-                            && !criteria.differs(
-                                cloneDeprecated(oldMethodInfo),
-                                newMethodInfo))
-                            handler.methodDeprecated(oldMethodInfo,
-                                newMethodInfo);
-                        else
-                            handler.methodChanged(oldMethodInfo, newMethodInfo);
-                    }
-                    handler.endChanged();
-                    handler.endClassChanged();
-
-                    removedMethods.clear();
-                    removedFields.clear();
-                    addedMethods.clear();
-                    addedFields.clear();
-                    changedMethods.clear();
-                    changedFields.clear();
-                }
+    private static final MethodInfo[] NO_METHODS = new MethodInfo[0];
+
+    /**
+     * @return the classes of a map, without their members if they would
+     *         have to be read from a file.
+     */
+    private static Collection<ClassInfo> headers(Map<String, ClassInfo> classes) {
+        return classes instanceof SpillingClassMap
+            ? ((SpillingClassMap) classes).headers() : classes.values();
+    }
+
+    private static ClassInfo[] validClasses(DiffCriteria criteria,
+        Collection<ClassInfo> classes)
+    {
+        List<ClassInfo> valid = new ArrayList<ClassInfo>(classes.size());
+        for (ClassInfo ci : classes) {
+            if (criteria.validClass(ci)) {
+                valid.add(ci);
             }
         }
-        handler.endChanged();
+        return valid.isEmpty() ? NO_CLASSES : valid.toArray(new ClassInfo[valid.size()]);
+    }
 
-        handler.endDiff();
+    private static FieldInfo[] fields(Set<String> keys, Map<String, FieldInfo> fields) {
+        if (keys.isEmpty()) {
+            return NO_FIELDS;
+        }
+        FieldInfo[] ret = new FieldInfo[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            ret[i++] = fields.get(key);
+        }
+        return ret;
+    }
+
+    private static MethodInfo[] methods(Set<String> keys, Map<String, MethodInfo> methods) {
+        if (keys.isEmpty()) {
+            return NO_METHODS;
+        }
+        MethodInfo[] ret = new MethodInfo[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            ret[i++] = methods.get(key);
+        }
+        return ret;
+    }
+
+    private static FieldInfo[] toFieldArray(List<FieldInfo> fields) {
+        return fields.isEmpty() ? NO_FIELDS : fields.toArray(new FieldInfo[fields.size()]);
+    }
+
+    private static MethodInfo[] toMethodArray(List<MethodInfo> methods) {
+        return methods.isEmpty() ? NO_METHODS : methods.toArray(new MethodInfo[methods.size()]);
     }
 
     /**
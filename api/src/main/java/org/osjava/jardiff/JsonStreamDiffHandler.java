@@ -0,0 +1,731 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.objectweb.asm.Type;
+
+/**
+ * A specific type of DiffHandler which uses an OutputStream to create a
+ * JSON document describing the changes in the diff.
+ * The document mirrors the XML one written by {@link StreamDiffHandler}:
+ * every element of the removed, added and changed lists becomes an object
+ * whose <code>element</code> member holds the XML element name, XML
+ * attributes become members (<code>"yes"</code> flags become
+ * <code>true</code>) and lists of child elements become arrays.
+ * <pre>
+ * {"old":"a.jar","new":"b.jar",
+ *  "oldcontents":["a/A"],"newcontents":["a/A"],
+ *  "removed":[{"element":"class",...}],"added":[...],
+ *  "changed":[{"element":"classchanged","name":"a/A",
+ *              "removed":[{"element":"field",...}],"added":[...],
+ *              "changed":[{"element":"methodchange","from":{...},"to":{...}}]}]}
+ * </pre>
+ * Output is encoded as UTF-8 straight into a reusable byte buffer, names
+ * which only contain plain ASCII characters being copied without escaping.
+ */
+public class JsonStreamDiffHandler implements DiffHandler
+{
+    private static final byte[] OLD = Utf8Output.ascii("{\"old\":");
+    private static final byte[] NEW = Utf8Output.ascii(",\"new\":");
+    private static final byte[] OLD_CONTENTS = Utf8Output.ascii(",\"oldcontents\":[");
+    private static final byte[] NEW_CONTENTS = Utf8Output.ascii(",\"newcontents\":[");
+    private static final byte[] REMOVED = Utf8Output.ascii(",\"removed\":[");
+    private static final byte[] ADDED = Utf8Output.ascii(",\"added\":[");
+    private static final byte[] CHANGED = Utf8Output.ascii(",\"changed\":[");
+    private static final byte[] CLASS_CHANGED = Utf8Output.ascii("{\"element\":\"classchanged\",\"name\":");
+    private static final byte[] CLASS = Utf8Output.ascii("{\"element\":\"class\"");
+    private static final byte[] FIELD = Utf8Output.ascii("{\"element\":\"field\"");
+    private static final byte[] METHOD = Utf8Output.ascii("{\"element\":\"method\"");
+    private static final byte[] CLASS_CHANGE = Utf8Output.ascii("{\"element\":\"classchange\",\"from\":");
+    private static final byte[] FIELD_CHANGE = Utf8Output.ascii("{\"element\":\"fieldchange\",\"from\":");
+    private static final byte[] METHOD_CHANGE = Utf8Output.ascii("{\"element\":\"methodchange\",\"from\":");
+    private static final byte[] TO = Utf8Output.ascii(",\"to\":");
+    private static final byte[] ACCESS = Utf8Output.ascii(",\"access\":\"");
+    private static final byte[] NAME = Utf8Output.ascii(",\"name\":");
+    private static final byte[] SIGNATURE = Utf8Output.ascii(",\"signature\":");
+    private static final byte[] SUPERCLASS = Utf8Output.ascii(",\"superclass\":");
+    private static final byte[] VALUE = Utf8Output.ascii(",\"value\":");
+    private static final byte[] IMPLEMENTS = Utf8Output.ascii(",\"implements\":[");
+    private static final byte[] EXCEPTIONS = Utf8Output.ascii(",\"exceptions\":[");
+    private static final byte[] ARGUMENTS = Utf8Output.ascii(",\"arguments\":[");
+    private static final byte[] RETURN = Utf8Output.ascii("],\"return\":");
+    private static final byte[] TYPE = Utf8Output.ascii(",\"type\":");
+    private static final byte[] TYPE_ARRAY = Utf8Output.ascii("{\"array\":true,\"dimensions\":");
+    private static final byte[] TYPE_OBJECT = Utf8Output.ascii("{\"name\":");
+    private static final byte[] TYPE_NAME = Utf8Output.ascii(",\"name\":");
+    private static final byte[] PRIMITIVE = Utf8Output.ascii("{\"primitive\":true,\"name\":\"");
+    private static final byte[] ARRAY_PRIMITIVE = Utf8Output.ascii(",\"primitive\":true,\"name\":\"");
+    private static final byte[] END_PRIMITIVE = Utf8Output.ascii("\"}");
+    private static final byte[] QUOTE = Utf8Output.ascii("\"");
+    private static final byte[] COMMA = Utf8Output.ascii(",");
+    private static final byte[] END_ARRAY = Utf8Output.ascii("]");
+    private static final byte[] END_OBJECT = Utf8Output.ascii("}");
+    private static final byte[] END_ARRAY_OBJECT = Utf8Output.ascii("]}");
+    private static final byte[] END_DIFF = Utf8Output.ascii("}\n");
+
+    /**
+     * The members written for access flags, indexed by the bit they test
+     * in {@link #flags(AbstractInfo)}.
+     */
+    private static final byte[][] FLAGS = {
+        Utf8Output.ascii(",\"abstract\":true"),
+        Utf8Output.ascii(",\"annotation\":true"),
+        Utf8Output.ascii(",\"bridge\":true"),
+        Utf8Output.ascii(",\"deprecated\":true"),
+        Utf8Output.ascii(",\"enum\":true"),
+        Utf8Output.ascii(",\"final\":true"),
+        Utf8Output.ascii(",\"interface\":true"),
+        Utf8Output.ascii(",\"native\":true"),
+        Utf8Output.ascii(",\"static\":true"),
+        Utf8Output.ascii(",\"strict\":true"),
+        Utf8Output.ascii(",\"super\":true"),
+        Utf8Output.ascii(",\"synchronized\":true"),
+        Utf8Output.ascii(",\"synthetic\":true"),
+        Utf8Output.ascii(",\"transient\":true"),
+        Utf8Output.ascii(",\"varargs\":true"),
+        Utf8Output.ascii(",\"volatile\":true")
+    };
+
+    /**
+     * Where the document is written.
+     */
+    private final Utf8Output out;
+
+    /**
+     * Whether the next array element must be preceded by a comma.
+     */
+    private boolean needComma;
+
+    /**
+     * Create a new JsonStreamDiffHandler which writes to System.out
+     */
+    public JsonStreamDiffHandler() {
+        this(System.out);
+    }
+
+    /**
+     * Create a new JsonStreamDiffHandler with the specified OutputStream.
+     *
+     * @param out Where to write output.
+     */
+    public JsonStreamDiffHandler(OutputStream out) {
+        this.out = new Utf8Output(out);
+    }
+
+    /**
+     * Start the diff.
+     * This writes out the start of the document with the jar names.
+     *
+     * @param oldJar name of old jar file.
+     * @param newJar name of new jar file.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startDiff(String oldJar, String newJar) throws DiffException {
+        try {
+            out.write(OLD);
+            out.writeJsonString(oldJar);
+            out.write(NEW);
+            out.writeJsonString(newJar);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Start the list of old contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startOldContents() throws DiffException {
+        startArray(OLD_CONTENTS);
+    }
+
+    /**
+     * Start the list of new contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startNewContents() throws DiffException {
+        startArray(NEW_CONTENTS);
+    }
+
+    /**
+     * Add a contained class.
+     * Contents are listed by name only.
+     *
+     * @param info information about a class
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void contains(ClassInfo info) throws DiffException {
+        try {
+            separate();
+            out.writeJsonString(info.getName());
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the list of old contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endOldContents() throws DiffException {
+        end(END_ARRAY);
+    }
+
+    /**
+     * End the list of new contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endNewContents() throws DiffException {
+        end(END_ARRAY);
+    }
+
+    /**
+     * Start the removed array, either for classes or for the members of
+     * a changed class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startRemoved() throws DiffException {
+        startArray(REMOVED);
+    }
+
+    /**
+     * Write out class info for a removed class.
+     *
+     * @param info The info to write out.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classRemoved(ClassInfo info) throws DiffException {
+        try {
+            separate();
+            writeClassInfo(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the removed array.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endRemoved() throws DiffException {
+        end(END_ARRAY);
+    }
+
+    /**
+     * Start the added array, either for classes or for the members of
+     * a changed class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startAdded() throws DiffException {
+        startArray(ADDED);
+    }
+
+    /**
+     * Write out the class info for an added class.
+     *
+     * @param info The class info describing the added class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classAdded(ClassInfo info) throws DiffException {
+        try {
+            separate();
+            writeClassInfo(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * End the added array.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endAdded() throws DiffException {
+        end(END_ARRAY);
+    }
+
+    /**
+     * Start the changed array, either for classes or for the members of
+     * a changed class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startChanged() throws DiffException {
+        startArray(CHANGED);
+    }
+
+    /**
+     * Start the object describing the changes of an individual class.
+     *
+     * @param internalName the internal name of the class that has changed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startClassChanged(String internalName) throws DiffException {
+        try {
+            separate();
+            out.write(CLASS_CHANGED);
+            out.writeJsonString(internalName);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out info about a removed field.
+     *
+     * @param info Info about the field that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldRemoved(FieldInfo info) throws DiffException {
+        try {
+            separate();
+            writeFieldInfo(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out info about a removed method.
+     *
+     * @param info Info about the method that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodRemoved(MethodInfo info) throws DiffException {
+        try {
+            separate();
+            writeMethodInfo(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out info about an added field.
+     *
+     * @param info Info about the added field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldAdded(FieldInfo info) throws DiffException {
+        try {
+            separate();
+            writeFieldInfo(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out info about an added method.
+     *
+     * @param info Info about the added method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodAdded(MethodInfo info) throws DiffException {
+        try {
+            separate();
+            writeMethodInfo(info);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a classchange object with the old information about the
+     * class as <code>from</code> and the new one as <code>to</code>.
+     *
+     * @param oldInfo Info about the old class.
+     * @param newInfo Info about the new class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classChanged(ClassInfo oldInfo, ClassInfo newInfo)
+        throws DiffException
+    {
+        try {
+            separate();
+            out.write(CLASS_CHANGE);
+            writeClassInfo(oldInfo);
+            out.write(TO);
+            writeClassInfo(newInfo);
+            out.write(END_OBJECT);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Invokes {@link #classChanged(ClassInfo, ClassInfo)}.
+     */
+    public void classDeprecated(ClassInfo oldInfo, ClassInfo newInfo)
+        throws DiffException
+    {
+        classChanged(oldInfo, newInfo);
+    }
+
+    /**
+     * Write out a fieldchange object with the old information about the
+     * field as <code>from</code> and the new one as <code>to</code>.
+     *
+     * @param oldInfo Info about the old field.
+     * @param newInfo Info about the new field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldChanged(FieldInfo oldInfo, FieldInfo newInfo)
+        throws DiffException
+    {
+        try {
+            separate();
+            out.write(FIELD_CHANGE);
+            writeFieldInfo(oldInfo);
+            out.write(TO);
+            writeFieldInfo(newInfo);
+            out.write(END_OBJECT);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Invokes {@link #fieldChanged(FieldInfo, FieldInfo)}.
+     */
+    public void fieldDeprecated(FieldInfo oldInfo, FieldInfo newInfo)
+        throws DiffException
+    {
+        fieldChanged(oldInfo, newInfo);
+    }
+
+    /**
+     * Write out a methodchange object with the old information about the
+     * method as <code>from</code> and the new one as <code>to</code>.
+     *
+     * @param oldInfo Info about the old method.
+     * @param newInfo Info about the new method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodChanged(MethodInfo oldInfo, MethodInfo newInfo)
+        throws DiffException
+    {
+        try {
+            separate();
+            out.write(METHOD_CHANGE);
+            writeMethodInfo(oldInfo);
+            out.write(TO);
+            writeMethodInfo(newInfo);
+            out.write(END_OBJECT);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Invokes {@link #methodChanged(MethodInfo, MethodInfo)}.
+     */
+    public void methodDeprecated(MethodInfo oldInfo, MethodInfo newInfo)
+        throws DiffException
+    {
+        methodChanged(oldInfo, newInfo);
+    }
+
+    /**
+     * End the object describing the changes of an individual class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endClassChanged() throws DiffException {
+        end(END_OBJECT);
+    }
+
+    /**
+     * End the changed array.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endChanged() throws DiffException {
+        end(END_ARRAY);
+    }
+
+    /**
+     * End the diff.
+     * This closes the document and the underlying stream.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endDiff() throws DiffException {
+        try {
+            out.write(END_DIFF);
+            out.close();
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a member opening an array.
+     *
+     * @param member the encoded member name, followed by the bracket.
+     * @throws DiffException when there is an underlying exception.
+     */
+    private void startArray(byte[] member) throws DiffException {
+        try {
+            out.write(member);
+            needComma = false;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Close an array or an object, which is then a complete value.
+     *
+     * @param end the encoded closing bracket.
+     * @throws DiffException when there is an underlying exception.
+     */
+    private void end(byte[] end) throws DiffException {
+        try {
+            out.write(end);
+            needComma = true;
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        }
+    }
+
+    /**
+     * Write out a comma unless the next value is the first of its array.
+     *
+     * @throws IOException when there is an underlying IOException.
+     */
+    private void separate() throws IOException {
+        if (needComma) {
+            out.write(COMMA);
+        }
+        needComma = true;
+    }
+
+    /**
+     * Write out information about a class.
+     *
+     * @param info Info about the class to write out.
+     * @throws IOException when there is an underlying IOException.
+     */
+    protected void writeClassInfo(ClassInfo info) throws IOException {
+        out.write(CLASS);
+        addAccessFlags(info);
+        if (info.getName() != null) {
+            out.write(NAME);
+            out.writeJsonString(info.getName());
+        }
+        if (info.getSignature() != null) {
+            out.write(SIGNATURE);
+            out.writeJsonString(info.getSignature());
+        }
+        if (info.getSupername() != null) {
+            out.write(SUPERCLASS);
+            out.writeJsonString(info.getSupername());
+        }
+        out.write(IMPLEMENTS);
+        writeNames(info.getInterfaces());
+        out.write(END_ARRAY_OBJECT);
+    }
+
+    /**
+     * Write out information about a method, with its argument types,
+     * return type and the exceptions it throws.
+     *
+     * @param info Info about the method.
+     * @throws IOException when there is an underlying IOException.
+     */
+    protected void writeMethodInfo(MethodInfo info) throws IOException {
+        out.write(METHOD);
+        addAccessFlags(info);
+        if (info.getName() != null) {
+            out.write(NAME);
+            out.writeJsonString(info.getName());
+        }
+        if (info.getSignature() != null) {
+            out.write(SIGNATURE);
+            out.writeJsonString(info.getSignature());
+        }
+        if (info.getDesc() != null) {
+            Type[] args = Type.getArgumentTypes(info.getDesc());
+            out.write(ARGUMENTS);
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    out.write(COMMA);
+                }
+                addType(args[i]);
+            }
+            out.write(RETURN);
+            addType(Type.getReturnType(info.getDesc()));
+        }
+        out.write(EXCEPTIONS);
+        String[] exceptions = info.getExceptions();
+        if (exceptions != null) {
+            writeNames(exceptions);
+        }
+        out.write(END_ARRAY_OBJECT);
+    }
+
+    /**
+     * Write out information about a field.
+     * The value of a constant is written as a string, like the XML
+     * attribute.
+     *
+     * @param info Info about the field.
+     * @throws IOException when there is an underlying IOException.
+     */
+    protected void writeFieldInfo(FieldInfo info) throws IOException {
+        out.write(FIELD);
+        addAccessFlags(info);
+        if (info.getName() != null) {
+            out.write(NAME);
+            out.writeJsonString(info.getName());
+        }
+        if (info.getSignature() != null) {
+            out.write(SIGNATURE);
+            out.writeJsonString(info.getSignature());
+        }
+        if (info.getValue() != null) {
+            out.write(VALUE);
+            out.writeJsonString(info.getValue().toString());
+        }
+        if (info.getDesc() != null) {
+            out.write(TYPE);
+            addType(Type.getType(info.getDesc()));
+        }
+        out.write(END_OBJECT);
+    }
+
+    /**
+     * Write out the access type and the access flags which are set.
+     *
+     * @param info Info describing the access flags.
+     * @throws IOException when there is an underlying IOException.
+     */
+    protected void addAccessFlags(AbstractInfo info) throws IOException {
+        out.write(ACCESS);
+        // Doesn't need escaping.
+        out.writeAscii(info.getAccessType());
+        out.write(QUOTE);
+        int flags = flags(info);
+        for (int i = 0; flags != 0; i++, flags >>>= 1) {
+            if ((flags & 1) != 0) {
+                out.write(FLAGS[i]);
+            }
+        }
+    }
+
+    /**
+     * Collect the access flags of some info as a bit set, in the order
+     * of {@link #FLAGS}.
+     *
+     * @param info Info describing the access flags.
+     * @return the bit set.
+     */
+    private static int flags(AbstractInfo info) {
+        int flags = 0;
+        if (info.isAbstract()) flags |= 1;
+        if (info.isAnnotation()) flags |= 1 << 1;
+        if (info.isBridge()) flags |= 1 << 2;
+        if (info.isDeprecated()) flags |= 1 << 3;
+        if (info.isEnum()) flags |= 1 << 4;
+        if (info.isFinal()) flags |= 1 << 5;
+        if (info.isInterface()) flags |= 1 << 6;
+        if (info.isNative()) flags |= 1 << 7;
+        if (info.isStatic()) flags |= 1 << 8;
+        if (info.isStrict()) flags |= 1 << 9;
+        if (info.isSuper()) flags |= 1 << 10;
+        if (info.isSynchronized()) flags |= 1 << 11;
+        if (info.isSynthetic()) flags |= 1 << 12;
+        if (info.isTransient()) flags |= 1 << 13;
+        if (info.isVarargs()) flags |= 1 << 14;
+        if (info.isVolatile()) flags |= 1 << 15;
+        return flags;
+    }
+
+    /**
+     * Write out the elements of an array of names.
+     *
+     * @param names the names.
+     * @throws IOException when there is an underlying IOException.
+     */
+    private void writeNames(String[] names) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                out.write(COMMA);
+            }
+            out.writeJsonString(names[i]);
+        }
+    }
+
+    /**
+     * Write out an object describing a type.
+     *
+     * @param type The type to describe.
+     * @throws IOException when there is an underlying IOException.
+     */
+    protected void addType(Type type) throws IOException {
+        boolean array = type.getSort() == Type.ARRAY;
+        if (array) {
+            out.write(TYPE_ARRAY);
+            out.writeAscii(Integer.toString(type.getDimensions()));
+            type = type.getElementType();
+        }
+        if (type.getSort() == Type.OBJECT) {
+            out.write(array ? TYPE_NAME : TYPE_OBJECT);
+            out.writeJsonString(type.getInternalName());
+            out.write(END_OBJECT);
+        } else {
+            out.write(array ? ARRAY_PRIMITIVE : PRIMITIVE);
+            out.writeAscii(type.getClassName());
+            out.write(END_PRIMITIVE);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+/**
+ * Receives measurements of comparisons, e.g. to export them to a metrics
+ * system. Counters are incremented after each jar, each diff or each cache
+ * lookup, never from within the loops over classes.
+ * Registered on {@link JarDiff#setMetricsListener(MetricsListener)} or
+ * <code>org.semver.Comparer</code>; nothing is measured otherwise.
+ * {@link InMemoryMetrics} aggregates the measurements in memory.
+ * Implementations must be thread safe.
+ */
+public interface MetricsListener
+{
+    /**
+     * The measurements, either counters or histograms.
+     */
+    enum Metric {
+        /** Time taken to load the classes of a jar, in nanoseconds. */
+        JAR_LOAD_NANOS(true),
+        /** Number of classes parsed, i.e. not found in a {@link ClassStore}. */
+        CLASSES_PARSED(false),
+        /** Number of class file bytes read. */
+        BYTES_READ(false),
+        /** Time taken to compare two versions, in nanoseconds. */
+        DIFF_NANOS(true),
+        /** Number of classes existing in both versions which were compared. */
+        CLASSES_COMPARED(false),
+        /** Number of classes existing in both versions which changed. */
+        CLASSES_CHANGED(false),
+        /** Number of added classes and members reported. */
+        DIFFERENCES_ADDED(false),
+        /** Number of removed classes and members reported. */
+        DIFFERENCES_REMOVED(false),
+        /** Number of changed classes and members reported. */
+        DIFFERENCES_CHANGED(false),
+        /** Number of newly deprecated classes and members reported. */
+        DIFFERENCES_DEPRECATED(false),
+        /** Number of jars whose classes were found in a cache. */
+        CACHE_HITS(false),
+        /** Number of jars whose classes had to be loaded into a cache. */
+        CACHE_MISSES(false),
+        /** Number of classes found in a {@link ClassStore} instead of being parsed. */
+        STORE_HITS(false);
+
+        private final boolean histogram;
+
+        Metric(boolean histogram) {
+            this.histogram = histogram;
+        }
+
+        /**
+         * @return true if values are {@link MetricsListener#record recorded},
+         *         false if the metric is {@link MetricsListener#increment incremented}.
+         */
+        public boolean isHistogram() {
+            return histogram;
+        }
+    }
+
+    /**
+     * Increment a counter.
+     *
+     * @param counter a metric which is not a histogram
+     * @param amount the amount to add, zero or more
+     */
+    void increment(Metric counter, long amount);
+
+    /**
+     * Record one value of a histogram.
+     *
+     * @param histogram a metric which is a histogram
+     * @param value the value, zero or more
+     */
+    void record(Metric histogram, long value);
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opens the streams reports are written to and read back from.
+ * Reports whose file name ends with {@link #GZIP_SUFFIX} are GZIP compressed
+ * while they are streamed, so huge diffs never hit the disk uncompressed.
+ * Reading detects compressed reports from their content rather than their
+ * name and decompresses them on the fly.
+ */
+public final class ReportStreams
+{
+    /**
+     * The file name suffix of compressed reports.
+     */
+    public static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * The compression level used when none is specified.
+     */
+    public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Size of the buffers in front of the compressor and decompressor.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The two first bytes of any GZIP stream, as read little-endian.
+     */
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    /**
+     * Private constructor so this class can't be instantiated.
+     */
+    private ReportStreams() {
+        /* empty */
+    }
+
+    /**
+     * Whether a report written to the specified file is compressed.
+     *
+     * @param file the report file.
+     * @return true if the file name ends with {@link #GZIP_SUFFIX}.
+     */
+    public static boolean isCompressed(File file) {
+        return file.getName().endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Compress everything written to the returned stream to the specified
+     * stream.
+     * Closing the returned stream finishes the compressed data and closes
+     * the specified stream.
+     *
+     * @param out where to write compressed data.
+     * @param level the compression level, from 0 to 9, or
+     *              {@link #DEFAULT_LEVEL}.
+     * @return the stream to write uncompressed data to.
+     * @throws IOException when the GZIP header cannot be written.
+     */
+    public static OutputStream compress(OutputStream out, final int level)
+        throws IOException
+    {
+        if (out == null) {
+            throw new IllegalArgumentException("null out");
+        }
+        checkLevel(level);
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Open the specified report file for writing, compressing it with the
+     * default level when its name ends with {@link #GZIP_SUFFIX}.
+     *
+     * @param file the report file.
+     * @return the stream to write the report to.
+     * @throws IOException when the file cannot be created.
+     */
+    public static OutputStream openOutput(File file) throws IOException {
+        return openOutput(file, DEFAULT_LEVEL);
+    }
+
+    /**
+     * Open the specified report file for writing, compressing it with the
+     * specified level when its name ends with {@link #GZIP_SUFFIX}.
+     *
+     * @param file the report file.
+     * @param level the compression level, from 0 to 9, or
+     *              {@link #DEFAULT_LEVEL}.
+     * @return the stream to write the report to.
+     * @throws IOException when the file cannot be created.
+     */
+    public static OutputStream openOutput(File file, int level)
+        throws IOException
+    {
+        if (file == null) {
+            throw new IllegalArgumentException("null file");
+        }
+        checkLevel(level);
+        final OutputStream out = new FileOutputStream(file);
+        if (!isCompressed(file)) {
+            return out;
+        }
+        try {
+            return compress(out, level);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decompress the specified stream if it holds GZIP data, otherwise
+     * return its content unchanged.
+     *
+     * @param in the report content.
+     * @return the stream to read the uncompressed report from.
+     * @throws IOException when the content cannot be read.
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("null in");
+        }
+        final InputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        final int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        if (magic == GZIP_MAGIC) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    /**
+     * Open the specified report file for reading, decompressing it on the fly
+     * when it is compressed.
+     *
+     * @param file the report file.
+     * @return the stream to read the uncompressed report from.
+     * @throws IOException when the file cannot be read.
+     */
+    public static InputStream openInput(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("null file");
+        }
+        final InputStream in = new FileInputStream(file);
+        try {
+            return decompress(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static void checkLevel(int level) {
+        if (level != DEFAULT_LEVEL
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("invalid compression level " + level);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A map of classes, keyed by internal class name, which keeps the members
+ * of its classes in a temporary file rather than on the heap.
+ * Classes are written with {@link ClassInfoCodec} when put and read back
+ * when got, the most recently got ones being kept until the estimated size
+ * of the classes kept exceeds the heap budget of the map.
+ * Only the names, offsets and a header of each class, i.e. the class
+ * without its members, stay on the heap, so that the map can hold far more
+ * classes than the heap could.
+ * <p>
+ * Keys are sorted as by a {@link java.util.TreeMap}. Classes are got from
+ * the file each time they are iterated over, unless kept; {@link #put}
+ * always returns null and classes cannot be removed.
+ * The temporary file is deleted by {@link #close()}, or on exit.
+ * Reads and writes are synchronized, but the map must not be iterated
+ * over while classes are put.
+ */
+public final class SpillingClassMap extends AbstractMap<String, ClassInfo>
+    implements Closeable
+{
+    /**
+     * Ratio of the heap used by a class to the size of its encoded form,
+     * as measured on generated jars.
+     */
+    static final int EXPANSION = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Map<String, MethodInfo> NO_METHODS = Collections.emptyMap();
+
+    private static final Map<String, FieldInfo> NO_FIELDS = Collections.emptyMap();
+
+    /**
+     * Where a class is written, and its header.
+     */
+    private static final class Location
+    {
+        final long offset;
+        final int length;
+        final ClassInfo header;
+
+        Location(long offset, int length, ClassInfo header) {
+            this.offset = offset;
+            this.length = length;
+            this.header = header;
+        }
+    }
+
+    private final long heapBudget;
+
+    private final File file;
+
+    private final DataOutputStream out;
+
+    private final FileChannel in;
+
+    private final TreeMap<String, Location> locations = new TreeMap<String, Location>();
+
+    /**
+     * The classes kept, least recently got first.
+     */
+    private final LinkedHashMap<String, ClassInfo> kept
+        = new LinkedHashMap<String, ClassInfo>(16, 0.75f, true);
+
+    /**
+     * Estimated heap used by the classes kept.
+     */
+    private long keptBytes;
+
+    /**
+     * Length of the file, including what is still buffered.
+     */
+    private long length;
+
+    private boolean flushed = true;
+
+    /**
+     * Create an empty map, backed by a new temporary file.
+     *
+     * @param heapBudget the estimated heap the classes kept may use, in bytes
+     * @throws IOException if the temporary file cannot be created
+     */
+    public SpillingClassMap(long heapBudget) throws IOException {
+        if (heapBudget < 0) {
+            throw new IllegalArgumentException("invalid heapBudget " + heapBudget);
+        }
+        this.heapBudget = heapBudget;
+        this.file = File.createTempFile("semver", ".classes");
+        this.file.deleteOnExit();
+        this.out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(file), BUFFER_SIZE));
+        this.in = new RandomAccessFile(file, "r").getChannel();
+    }
+
+    /**
+     * @return the estimated heap the classes kept may use, in bytes
+     */
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * Write a class to the file.
+     *
+     * @param name the internal name of the class
+     * @param info the class
+     * @return null, whether the map already contained the class or not
+     * @throws IllegalStateException if the file cannot be written
+     */
+    @Override
+    public synchronized ClassInfo put(String name, ClassInfo info) {
+        if (name == null) {
+            throw new IllegalArgumentException("null name");
+        }
+        int start = out.size();
+        try {
+            ClassInfoCodec.write(info, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write <" + file + ">", e);
+        }
+        // Wraps around past 2 GB, still giving the right difference
+        int recordLength = out.size() - start;
+        ClassInfo header = new ClassInfo(info.getVersion(), info.getAccess(),
+            info.getName(), info.getSignature(), info.getSupername(),
+            info.getInterfaces(), NO_METHODS, NO_FIELDS);
+        Location previous = locations.put(name, new Location(length, recordLength, header));
+        if (previous != null && kept.remove(name) != null) {
+            keptBytes -= (long) previous.length * EXPANSION;
+        }
+        length += recordLength;
+        flushed = false;
+        return null;
+    }
+
+    /**
+     * Read a class from the file, unless kept.
+     *
+     * @param name the internal name of the class
+     * @return the class, or null if the map does not contain it
+     * @throws IllegalStateException if the file cannot be read
+     */
+    @Override
+    public synchronized ClassInfo get(Object name) {
+        ClassInfo info = kept.get(name);
+        if (info != null) {
+            return info;
+        }
+        Location location = locations.get(name);
+        if (location == null) {
+            return null;
+        }
+        try {
+            if (!flushed) {
+                out.flush();
+                flushed = true;
+            }
+            ByteBuffer record = ByteBuffer.allocate(location.length);
+            while (record.hasRemaining()) {
+                if (in.read(record, location.offset + record.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            info = ClassInfoCodec.read(new DataInputStream(
+                new ByteArrayInputStream(record.array())));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read <" + file + ">", e);
+        }
+        keep((String) name, info, location.length);
+        return info;
+    }
+
+    private void keep(String name, ClassInfo info, int recordLength) {
+        long bytes = (long) recordLength * EXPANSION;
+        if (bytes > heapBudget) {
+            return;
+        }
+        kept.put(name, info);
+        keptBytes += bytes;
+        Iterator<Map.Entry<String, ClassInfo>> eldest = kept.entrySet().iterator();
+        while (keptBytes > heapBudget) {
+            Map.Entry<String, ClassInfo> entry = eldest.next();
+            keptBytes -= (long) locations.get(entry.getKey()).length * EXPANSION;
+            eldest.remove();
+        }
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object name) {
+        return locations.containsKey(name);
+    }
+
+    @Override
+    public synchronized int size() {
+        return locations.size();
+    }
+
+    /**
+     * @return the sorted names of the classes, which can be iterated over
+     *         without reading the file.
+     */
+    @Override
+    public synchronized Set<String> keySet() {
+        return Collections.unmodifiableSet(locations.keySet());
+    }
+
+    /**
+     * @return the classes without their members, in the order of their
+     *         names, which can be iterated over without reading the file.
+     */
+    public synchronized Collection<ClassInfo> headers() {
+        final Collection<Location> values = locations.values();
+        return new AbstractCollection<ClassInfo>() {
+            @Override
+            public Iterator<ClassInfo> iterator() {
+                final Iterator<Location> iterator = values.iterator();
+                return new Iterator<ClassInfo>() {
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    public ClassInfo next() {
+                        return iterator.next().header;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+        };
+    }
+
+    /**
+     * @return the classes, read from the file as they are iterated over.
+     */
+    @Override
+    public Set<Map.Entry<String, ClassInfo>> entrySet() {
+        return new AbstractSet<Map.Entry<String, ClassInfo>>() {
+            @Override
+            public Iterator<Map.Entry<String, ClassInfo>> iterator() {
+                final Iterator<String> names = keySet().iterator();
+                return new Iterator<Map.Entry<String, ClassInfo>>() {
+                    public boolean hasNext() {
+                        return names.hasNext();
+                    }
+
+                    public Map.Entry<String, ClassInfo> next() {
+                        String name = names.next();
+                        return new AbstractMap.SimpleImmutableEntry<String, ClassInfo>(name, get(name));
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SpillingClassMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Delete the temporary file; the map must not be used any more.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+            in.close();
+        } finally {
+            locations.clear();
+            kept.clear();
+            file.delete();
+        }
+    }
+}
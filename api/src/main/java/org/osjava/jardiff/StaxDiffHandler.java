@@ -0,0 +1,802 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Result;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+
+import org.objectweb.asm.Type;
+
+/**
+ * A specific type of DiffHandler which streams an XML document describing
+ * the changes in the diff through an XMLStreamWriter.
+ * The document follows the same schema as the one built by
+ * {@link DOMDiffHandler}, but elements are written as soon as the
+ * corresponding events are received, so memory use does not grow with the
+ * number of differences.
+ *
+ * @see DOMDiffHandler
+ */
+public class StaxDiffHandler implements DiffHandler
+{
+    /**
+     * The XML namespace used.
+     */
+    public static final String XML_URI = "http://www.osjava.org/jardiff/0.1";
+
+    /**
+     * The writer the document is streamed to.
+     */
+    private final XMLStreamWriter writer;
+
+    /**
+     * The stream underlying the writer, closed at the end of the diff.
+     * May be null when the caller owns the writer.
+     */
+    private final OutputStream out;
+
+    /**
+     * The thread running the transformation, when a Transformer is used.
+     */
+    private final TransformThread transformThread;
+
+    /**
+     * Create a new StaxDiffHandler which writes to System.out
+     *
+     * @throws DiffException when the XMLStreamWriter cannot be created.
+     */
+    public StaxDiffHandler() throws DiffException {
+        this(System.out);
+    }
+
+    /**
+     * Create a new StaxDiffHandler with the specified OutputStream.
+     * The document is encoded as UTF-8.
+     *
+     * @param out Where to write output.
+     * @throws DiffException when the XMLStreamWriter cannot be created.
+     */
+    public StaxDiffHandler(OutputStream out) throws DiffException {
+        if (out == null) {
+            throw new IllegalArgumentException("null out");
+        }
+        try {
+            this.writer = XMLOutputFactory.newInstance()
+                .createXMLStreamWriter(out, "UTF-8");
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+        this.out = out;
+        this.transformThread = null;
+    }
+
+    /**
+     * Create a new StaxDiffHandler with the specified XMLStreamWriter.
+     * The writer is flushed, not closed, at the end of the diff.
+     *
+     * @param writer Where to write output.
+     */
+    public StaxDiffHandler(XMLStreamWriter writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("null writer");
+        }
+        this.writer = writer;
+        this.out = null;
+        this.transformThread = null;
+    }
+
+    /**
+     * Create a new StaxDiffHandler feeding the document to a Transformer,
+     * as {@link DOMDiffHandler#DOMDiffHandler(Transformer, Result)} does.
+     * The document is piped to the transformer, which runs in a
+     * background thread, rather than being built in memory first.
+     *
+     * @param transformer The transformer to transform the output with.
+     * @param result Where to put the result.
+     * @throws DiffException when the pipe or the XMLStreamWriter cannot be
+     *                       created.
+     */
+    public StaxDiffHandler(Transformer transformer, Result result)
+        throws DiffException
+    {
+        if (transformer == null) {
+            throw new IllegalArgumentException("null transformer");
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("null result");
+        }
+        try {
+            PipedInputStream in = new PipedInputStream(Utf8Output.FLUSH_THRESHOLD);
+            this.out = new PipedOutputStream(in);
+            this.writer = XMLOutputFactory.newInstance()
+                .createXMLStreamWriter(this.out, "UTF-8");
+            this.transformThread = new TransformThread(transformer, in, result);
+        } catch (IOException ioe) {
+            throw new DiffException(ioe);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+        this.transformThread.start();
+    }
+
+    /**
+     * Start the diff.
+     * This writes out the start of a &lt;diff&gt; node.
+     *
+     * @param oldJar name of old jar file.
+     * @param newJar name of new jar file.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startDiff(String oldJar, String newJar) throws DiffException {
+        try {
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.setDefaultNamespace(XML_URI);
+            writer.writeStartElement(XML_URI, "diff");
+            writer.writeDefaultNamespace(XML_URI);
+            writer.writeAttribute("old", oldJar);
+            writer.writeAttribute("new", newJar);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Start the list of old contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startOldContents() throws DiffException {
+        startElement("oldcontents");
+    }
+
+    /**
+     * Start the list of new contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startNewContents() throws DiffException {
+        startElement("newcontents");
+    }
+
+    /**
+     * Add a contained class.
+     *
+     * @param info information about a class
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void contains(ClassInfo info) throws DiffException {
+        try {
+            writer.writeEmptyElement("class");
+            writer.writeAttribute("name", info.getName());
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * End the list of old contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endOldContents() throws DiffException {
+        endElement();
+    }
+
+    /**
+     * End the list of new contents.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endNewContents() throws DiffException {
+        endElement();
+    }
+
+    /**
+     * Start the removed node.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startRemoved() throws DiffException {
+        startElement("removed");
+    }
+
+    /**
+     * Write out class info for a removed class.
+     *
+     * @param info The info to write out.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classRemoved(ClassInfo info) throws DiffException {
+        try {
+            writeClassInfo(info);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * End the removed section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endRemoved() throws DiffException {
+        endElement();
+    }
+
+    /**
+     * Start the added section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startAdded() throws DiffException {
+        startElement("added");
+    }
+
+    /**
+     * Write out the class info for an added class.
+     *
+     * @param info The class info describing the added class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classAdded(ClassInfo info) throws DiffException {
+        try {
+            writeClassInfo(info);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * End the added section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endAdded() throws DiffException {
+        endElement();
+    }
+
+    /**
+     * Start the changed section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startChanged() throws DiffException {
+        startElement("changed");
+    }
+
+    /**
+     * Start a changed section for an individual class.
+     * This writes out an &lt;classchanged&gt; node with the real class
+     * name as the name attribute.
+     *
+     * @param internalName the internal name of the class that has changed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void startClassChanged(String internalName) throws DiffException {
+        try {
+            writer.writeStartElement("classchanged");
+            writer.writeAttribute("name", internalName);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Write out info about a removed field.
+     *
+     * @param info Info about the field that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldRemoved(FieldInfo info) throws DiffException {
+        try {
+            writeFieldInfo(info);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Write out info about a removed method.
+     *
+     * @param info Info about the method that's been removed.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodRemoved(MethodInfo info) throws DiffException {
+        try {
+            writeMethodInfo(info);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Write out info about an added field.
+     *
+     * @param info Info about the added field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldAdded(FieldInfo info) throws DiffException {
+        try {
+            writeFieldInfo(info);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Write out info about an added method.
+     *
+     * @param info Info about the added method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodAdded(MethodInfo info) throws DiffException {
+        try {
+            writeMethodInfo(info);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Write out info about a changed class.
+     * This writes out a &lt;classchange&gt; node, containing a
+     * &lt;from&gt; node with the old information about the class
+     * and a &lt;to&gt; node with the new information about the class.
+     *
+     * @param oldInfo Info about the old class.
+     * @param newInfo Info about the new class.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void classChanged(ClassInfo oldInfo, ClassInfo newInfo)
+        throws DiffException
+    {
+        try {
+            writer.writeStartElement("classchange");
+            writer.writeStartElement("from");
+            writeClassInfo(oldInfo);
+            writer.writeEndElement();
+            writer.writeStartElement("to");
+            writeClassInfo(newInfo);
+            writer.writeEndElement();
+            writer.writeEndElement();
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Invokes {@link #classChanged(ClassInfo, ClassInfo)}.
+     */
+    public void classDeprecated(ClassInfo oldInfo, ClassInfo newInfo)
+        throws DiffException
+    {
+        classChanged(oldInfo, newInfo);
+    }
+
+    /**
+     * Write out info about a changed field.
+     * This writes out a &lt;fieldchange&gt; node, containing a
+     * &lt;from&gt; node with the old information about the field
+     * and a &lt;to&gt; node with the new information about the field.
+     *
+     * @param oldInfo Info about the old field.
+     * @param newInfo Info about the new field.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void fieldChanged(FieldInfo oldInfo, FieldInfo newInfo)
+        throws DiffException
+    {
+        try {
+            writer.writeStartElement("fieldchange");
+            writer.writeStartElement("from");
+            writeFieldInfo(oldInfo);
+            writer.writeEndElement();
+            writer.writeStartElement("to");
+            writeFieldInfo(newInfo);
+            writer.writeEndElement();
+            writer.writeEndElement();
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Invokes {@link #fieldChanged(FieldInfo, FieldInfo)}.
+     */
+    public void fieldDeprecated(FieldInfo oldInfo, FieldInfo newInfo)
+        throws DiffException
+    {
+        fieldChanged(oldInfo, newInfo);
+    }
+
+    /**
+     * Write out info about a changed method.
+     * This writes out a &lt;methodchange&gt; node, containing a
+     * &lt;from&gt; node with the old information about the method
+     * and a &lt;to&gt; node with the new information about the method.
+     *
+     * @param oldInfo Info about the old method.
+     * @param newInfo Info about the new method.
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void methodChanged(MethodInfo oldInfo, MethodInfo newInfo)
+        throws DiffException
+    {
+        try {
+            writer.writeStartElement("methodchange");
+            writer.writeStartElement("from");
+            writeMethodInfo(oldInfo);
+            writer.writeEndElement();
+            writer.writeStartElement("to");
+            writeMethodInfo(newInfo);
+            writer.writeEndElement();
+            writer.writeEndElement();
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Invokes {@link #methodChanged(MethodInfo, MethodInfo)}.
+     */
+    public void methodDeprecated(MethodInfo oldInfo, MethodInfo newInfo)
+        throws DiffException
+    {
+        methodChanged(oldInfo, newInfo);
+    }
+
+    /**
+     * End the changed section for an individual class.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endClassChanged() throws DiffException {
+        endElement();
+    }
+
+    /**
+     * End the changed section.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException
+     */
+    public void endChanged() throws DiffException {
+        endElement();
+    }
+
+    /**
+     * End the diff.
+     * This closes the document and, unless the writer was given by the
+     * caller, the underlying stream. When a Transformer is used, this
+     * waits for the transformation to complete.
+     *
+     * @throws DiffException when there is an underlying exception, e.g.
+     *                       writing to a file caused an IOException, or
+     *                       when the transformation failed.
+     */
+    public void endDiff() throws DiffException {
+        try {
+            writer.writeEndDocument();
+            writer.flush();
+            if (out != null) {
+                writer.close();
+                out.close();
+            }
+        } catch (XMLStreamException xse) {
+            throw transformFailure(xse);
+        } catch (IOException ioe) {
+            throw transformFailure(ioe);
+        }
+        if (transformThread != null) {
+            transformThread.await();
+        }
+    }
+
+    /**
+     * The pipe is closed once the transformation stops, so report why it
+     * stopped rather than the failure to write to it.
+     *
+     * @param e the failure to write the end of the document.
+     * @return the exception to throw.
+     * @throws DiffException when the transformation failed.
+     */
+    private DiffException transformFailure(Exception e) throws DiffException {
+        if (transformThread != null) {
+            transformThread.await();
+        }
+        return new DiffException(e);
+    }
+
+    /**
+     * Start an element without attributes.
+     *
+     * @param localName the name of the element.
+     * @throws DiffException when there is an underlying exception.
+     */
+    private void startElement(String localName) throws DiffException {
+        try {
+            writer.writeStartElement(localName);
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * End the current element.
+     *
+     * @throws DiffException when there is an underlying exception.
+     */
+    private void endElement() throws DiffException {
+        try {
+            writer.writeEndElement();
+        } catch (XMLStreamException xse) {
+            throw new DiffException(xse);
+        }
+    }
+
+    /**
+     * Write out information about a class.
+     * This writes out a &lt;class&gt; node, which contains information about
+     * what interfaces are implemented each in a &lt;implements&gt; node.
+     *
+     * @param info Info about the class to write out.
+     * @throws XMLStreamException when there is an underlying exception.
+     */
+    protected void writeClassInfo(ClassInfo info) throws XMLStreamException {
+        writer.writeStartElement("class");
+        addAccessFlags(info);
+        if (info.getName() != null)
+            writer.writeAttribute("name", info.getName());
+        if (info.getSignature() != null)
+            writer.writeAttribute("signature", info.getSignature());
+        if (info.getSupername() != null)
+            writer.writeAttribute("superclass", info.getSupername());
+        String[] interfaces = info.getInterfaces();
+        for (int i = 0; i < interfaces.length; i++) {
+            writer.writeEmptyElement("implements");
+            writer.writeAttribute("name", interfaces[i]);
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Write out information about a method.
+     * This writes out a &lt;method&gt; node which contains information about
+     * the arguments, the return type, and the exceptions thrown by the
+     * method.
+     *
+     * @param info Info about the method.
+     * @throws XMLStreamException when there is an underlying exception.
+     */
+    protected void writeMethodInfo(MethodInfo info) throws XMLStreamException {
+        writer.writeStartElement("method");
+        addAccessFlags(info);
+        if (info.getName() != null)
+            writer.writeAttribute("name", info.getName());
+        if (info.getSignature() != null)
+            writer.writeAttribute("signature", info.getSignature());
+        if (info.getDesc() != null)
+            addMethodNodes(info.getDesc());
+        String[] exceptions = info.getExceptions();
+        if (exceptions != null) {
+            for (int i = 0; i < exceptions.length; i++) {
+                writer.writeEmptyElement("exception");
+                writer.writeAttribute("name", exceptions[i]);
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Write out information about a field.
+     * This writes out a &lt;field&gt; node with attributes describing the
+     * field.
+     *
+     * @param info Info about the field.
+     * @throws XMLStreamException when there is an underlying exception.
+     */
+    protected void writeFieldInfo(FieldInfo info) throws XMLStreamException {
+        writer.writeStartElement("field");
+        addAccessFlags(info);
+        if (info.getName() != null)
+            writer.writeAttribute("name", info.getName());
+        if (info.getSignature() != null)
+            writer.writeAttribute("signature", info.getSignature());
+        if (info.getValue() != null)
+            writer.writeAttribute("value", info.getValue().toString());
+        if (info.getDesc() != null)
+            addTypeNode(Type.getType(info.getDesc()));
+        writer.writeEndElement();
+    }
+
+    /**
+     * Add attributes describing some access flags to the current element.
+     *
+     * @param info Info describing the access flags.
+     * @throws XMLStreamException when there is an underlying exception.
+     */
+    protected void addAccessFlags(AbstractInfo info) throws XMLStreamException {
+        writer.writeAttribute("access", info.getAccessType());
+        if (info.isAbstract())
+            writer.writeAttribute("abstract", "yes");
+        if (info.isAnnotation())
+            writer.writeAttribute("annotation", "yes");
+        if (info.isBridge())
+            writer.writeAttribute("bridge", "yes");
+        if (info.isDeprecated())
+            writer.writeAttribute("deprecated", "yes");
+        if (info.isEnum())
+            writer.writeAttribute("enum", "yes");
+        if (info.isFinal())
+            writer.writeAttribute("final", "yes");
+        if (info.isInterface())
+            writer.writeAttribute("interface", "yes");
+        if (info.isNative())
+            writer.writeAttribute("native", "yes");
+        if (info.isStatic())
+            writer.writeAttribute("static", "yes");
+        if (info.isStrict())
+            writer.writeAttribute("strict", "yes");
+        if (info.isSuper())
+            writer.writeAttribute("super", "yes");
+        if (info.isSynchronized())
+            writer.writeAttribute("synchronized", "yes");
+        if (info.isSynthetic())
+            writer.writeAttribute("synthetic", "yes");
+        if (info.isTransient())
+            writer.writeAttribute("transient", "yes");
+        if (info.isVarargs())
+            writer.writeAttribute("varargs", "yes");
+        if (info.isVolatile())
+            writer.writeAttribute("volatile", "yes");
+    }
+
+    /**
+     * Add the method nodes for the method descriptor.
+     * This writes out an &lt;arguments&gt; node containing the
+     * argument types for the method, followed by a &lt;return&gt; node
+     * containing the return type.
+     *
+     * @param desc The descriptor for the method to write out.
+     * @throws XMLStreamException when there is an underlying exception.
+     */
+    protected void addMethodNodes(String desc) throws XMLStreamException {
+        Type[] args = Type.getArgumentTypes(desc);
+        writer.writeStartElement("arguments");
+        for (int i = 0; i < args.length; i++)
+            addTypeNode(args[i]);
+        writer.writeEndElement();
+        writer.writeStartElement("return");
+        addTypeNode(Type.getReturnType(desc));
+        writer.writeEndElement();
+    }
+
+    /**
+     * Add a type node for the specified type.
+     * This writes out a &lt;type&gt; node with attributes describing
+     * the type.
+     *
+     * @param type The type to describe.
+     * @throws XMLStreamException when there is an underlying exception.
+     */
+    protected void addTypeNode(Type type) throws XMLStreamException {
+        writer.writeEmptyElement("type");
+        if (type.getSort() == Type.ARRAY) {
+            writer.writeAttribute("array", "yes");
+            writer.writeAttribute("dimensions", "" + type.getDimensions());
+            type = type.getElementType();
+        }
+        if (type.getSort() == Type.OBJECT) {
+            writer.writeAttribute("name", type.getInternalName());
+        } else {
+            writer.writeAttribute("primitive", "yes");
+            writer.writeAttribute("name", type.getClassName());
+        }
+    }
+
+    /**
+     * Runs a Transformer over the document read from a pipe.
+     */
+    private static final class TransformThread extends Thread
+    {
+        private final Transformer transformer;
+        private final PipedInputStream in;
+        private final Result result;
+        private volatile Throwable failure;
+
+        TransformThread(Transformer transformer, PipedInputStream in, Result result) {
+            super("StaxDiffHandler transformer");
+            setDaemon(true);
+            this.transformer = transformer;
+            this.in = in;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            try {
+                transformer.transform(new StreamSource(in), result);
+            } catch (TransformerException te) {
+                failure = te;
+            } catch (RuntimeException re) {
+                failure = re;
+            } catch (Error e) {
+                failure = e;
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    // Nothing more to read anyway.
+                }
+            }
+        }
+
+        /**
+         * Wait for the transformation to complete.
+         *
+         * @throws DiffException when the transformation failed or the
+         *                       current thread was interrupted.
+         * @throws Error when the transformation threw an Error.
+         */
+        void await() throws DiffException {
+            try {
+                join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new DiffException(ie);
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new DiffException((Exception) failure);
+            }
+        }
+    }
+}
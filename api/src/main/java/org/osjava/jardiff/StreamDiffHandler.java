@@ -16,11 +16,8 @@
  */
 package org.osjava.jardiff;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 
 import org.objectweb.asm.Type;
 
@@ -28,6 +25,9 @@ import org.objectweb.asm.Type;
  * A specific type of DiffHandler which uses an OutputStream to create an 
  * XML document describing the changes in the diff.
  * This is needed for java 1.2 compatibility for the ant task.
+ * Markup is written as pre-encoded UTF-8 fragments into a single byte
+ * buffer, and names are only escaped when they contain a character which
+ * needs it.
  *
  * @author <a href="mailto:antony@cyberiantiger.org">Antony Riley</a>
  */
@@ -38,11 +38,87 @@ public class StreamDiffHandler implements DiffHandler
      */
     public static final String XML_URI = "http://www.osjava.org/jardiff/0.1";
 
+    /*
+     * Markup, pre-encoded once.
+     */
+    private static final byte[] XML_DECLARATION = Utf8Output.ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    private static final byte[] DIFF = Utf8Output.ascii("<diff xmlns=\"");
+    private static final byte[] OLD = Utf8Output.ascii("\" old=\"");
+    private static final byte[] NEW = Utf8Output.ascii("\" new=\"");
+    private static final byte[] END_START_TAG = Utf8Output.ascii("\">");
+    private static final byte[] OLD_CONTENTS = Utf8Output.ascii("<oldcontents>");
+    private static final byte[] NEW_CONTENTS = Utf8Output.ascii("<newcontents>");
+    private static final byte[] CONTAINS = Utf8Output.ascii("<class name=\"");
+    private static final byte[] END_EMPTY_TAG = Utf8Output.ascii("\"/>");
+    private static final byte[] END_OLD_CONTENTS = Utf8Output.ascii("</oldcontents>");
+    private static final byte[] END_NEW_CONTENTS = Utf8Output.ascii("</newcontents>");
+    private static final byte[] REMOVED = Utf8Output.ascii("<removed>");
+    private static final byte[] END_REMOVED = Utf8Output.ascii("</removed>");
+    private static final byte[] ADDED = Utf8Output.ascii("<added>");
+    private static final byte[] END_ADDED = Utf8Output.ascii("</added>");
+    private static final byte[] CHANGED = Utf8Output.ascii("<changed>");
+    private static final byte[] CLASS_CHANGED = Utf8Output.ascii("<classchanged name=\"");
+    private static final byte[] CLASS_CHANGE = Utf8Output.ascii("<classchange><from>");
+    private static final byte[] FROM_TO = Utf8Output.ascii("</from><to>");
+    private static final byte[] END_CLASS_CHANGE = Utf8Output.ascii("</to></classchange>");
+    private static final byte[] FIELD_CHANGE = Utf8Output.ascii("<fieldchange><from>");
+    private static final byte[] END_FIELD_CHANGE = Utf8Output.ascii("</to></fieldchange>");
+    private static final byte[] METHOD_CHANGE = Utf8Output.ascii("<methodchange><from>");
+    private static final byte[] END_METHOD_CHANGE = Utf8Output.ascii("</to></methodchange>");
+    private static final byte[] END_CLASS_CHANGED = Utf8Output.ascii("</classchanged>");
+    private static final byte[] END_CHANGED = Utf8Output.ascii("</changed>");
+    private static final byte[] END_DIFF = Utf8Output.ascii("</diff>" + System.getProperty("line.separator"));
+    private static final byte[] CLASS = Utf8Output.ascii("<class");
+    private static final byte[] NAME = Utf8Output.ascii(" name=\"");
+    private static final byte[] QUOTE = Utf8Output.ascii("\"");
+    private static final byte[] SIGNATURE = Utf8Output.ascii(" signature=\"");
+    private static final byte[] SUPERCLASS = Utf8Output.ascii(" superclass=\"");
+    private static final byte[] IMPLEMENTS = Utf8Output.ascii("<implements name=\"");
+    private static final byte[] END_CLASS = Utf8Output.ascii("</class>");
+    private static final byte[] METHOD = Utf8Output.ascii("<method");
+    private static final byte[] END_TAG = Utf8Output.ascii(">");
+    private static final byte[] EXCEPTION = Utf8Output.ascii("<exception name=\"");
+    private static final byte[] END_METHOD = Utf8Output.ascii("</method>");
+    private static final byte[] FIELD = Utf8Output.ascii("<field");
+    private static final byte[] VALUE = Utf8Output.ascii(" value=\"");
+    private static final byte[] END_FIELD = Utf8Output.ascii("</field>");
+    private static final byte[] ACCESS = Utf8Output.ascii(" access=\"");
+    private static final byte[] ABSTRACT = Utf8Output.ascii(" abstract=\"yes\"");
+    private static final byte[] ANNOTATION = Utf8Output.ascii(" annotation=\"yes\"");
+    private static final byte[] BRIDGE = Utf8Output.ascii(" bridge=\"yes\"");
+    private static final byte[] DEPRECATED = Utf8Output.ascii(" deprecated=\"yes\"");
+    private static final byte[] ENUM = Utf8Output.ascii(" enum=\"yes\"");
+    private static final byte[] FINAL = Utf8Output.ascii(" final=\"yes\"");
+    private static final byte[] INTERFACE = Utf8Output.ascii(" interface=\"yes\"");
+    private static final byte[] NATIVE = Utf8Output.ascii(" native=\"yes\"");
+    private static final byte[] STATIC = Utf8Output.ascii(" static=\"yes\"");
+    private static final byte[] STRICT = Utf8Output.ascii(" strict=\"yes\"");
+    private static final byte[] SUPER = Utf8Output.ascii(" super=\"yes\"");
+    private static final byte[] SYNCHRONIZED = Utf8Output.ascii(" synchronized=\"yes\"");
+    private static final byte[] SYNTHETIC = Utf8Output.ascii(" synthetic=\"yes\"");
+    private static final byte[] TRANSIENT = Utf8Output.ascii(" transient=\"yes\"");
+    private static final byte[] VARARGS = Utf8Output.ascii(" varargs=\"yes\"");
+    private static final byte[] VOLATILE = Utf8Output.ascii(" volatile=\"yes\"");
+    private static final byte[] ARGUMENTS = Utf8Output.ascii("<arguments>");
+    private static final byte[] END_ARGUMENTS = Utf8Output.ascii("</arguments>");
+    private static final byte[] RETURN = Utf8Output.ascii("<return>");
+    private static final byte[] END_RETURN = Utf8Output.ascii("</return>");
+    private static final byte[] TYPE = Utf8Output.ascii("<type");
+    private static final byte[] ARRAY = Utf8Output.ascii(" array=\"yes\" dimensions=\"");
+    private static final byte[] BOOLEAN = Utf8Output.ascii(" primitive=\"yes\" name=\"boolean\"/>");
+    private static final byte[] BYTE = Utf8Output.ascii(" primitive=\"yes\" name=\"byte\"/>");
+    private static final byte[] CHAR = Utf8Output.ascii(" primitive=\"yes\" name=\"char\"/>");
+    private static final byte[] DOUBLE = Utf8Output.ascii(" primitive=\"yes\" name=\"double\"/>");
+    private static final byte[] FLOAT = Utf8Output.ascii(" primitive=\"yes\" name=\"float\"/>");
+    private static final byte[] INT = Utf8Output.ascii(" primitive=\"yes\" name=\"int\"/>");
+    private static final byte[] LONG = Utf8Output.ascii(" primitive=\"yes\" name=\"long\"/>");
+    private static final byte[] SHORT = Utf8Output.ascii(" primitive=\"yes\" name=\"short\"/>");
+    private static final byte[] VOID = Utf8Output.ascii(" primitive=\"yes\" name=\"void\"/>");
+
     /**
-     * The javax.xml.transform.sax.Transformer used to convert
-     * the DOM to text.
+     * Where the document is encoded.
      */
-    private final BufferedWriter out;
+    private final Utf8Output out;
 
     /**
      * Create a new StreamDiffHandler which writes to System.out
@@ -51,13 +127,7 @@ public class StreamDiffHandler implements DiffHandler
      *                       writing to a file caused an IOException
      */
     public StreamDiffHandler() throws DiffException {
-        try {
-            out = new BufferedWriter(
-                    new OutputStreamWriter(System.out, "UTF-8")
-                    );
-        } catch (IOException ioe) {
-            throw new DiffException(ioe);
-        }
+        this(System.out);
     }
     
     /**
@@ -68,13 +138,7 @@ public class StreamDiffHandler implements DiffHandler
     public StreamDiffHandler(OutputStream out)
         throws DiffException
     {
-        try {
-            this.out = new BufferedWriter(
-                    new OutputStreamWriter(out, "UTF-8")
-                    );
-        } catch (IOException ioe) {
-            throw new DiffException(ioe);
-        }
+        this.out = new Utf8Output(out);
     }
     
     /**
@@ -88,14 +152,14 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void startDiff(String oldJar, String newJar) throws DiffException {
         try {
-            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            out.write("<diff xmlns=\"");
-            out.write(xmlEscape(XML_URI));
-            out.write("\" old=\"");
-            out.write(xmlEscape(oldJar));
-            out.write("\" new=\"");
-            out.write(xmlEscape(newJar));
-            out.write("\">");
+            out.write(XML_DECLARATION);
+            out.write(DIFF);
+            out.writeXmlEscaped(XML_URI);
+            out.write(OLD);
+            out.writeXmlEscaped(oldJar);
+            out.write(NEW);
+            out.writeXmlEscaped(newJar);
+            out.write(END_START_TAG);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -109,7 +173,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void startOldContents() throws DiffException {
         try {
-            out.write("<oldcontents>");
+            out.write(OLD_CONTENTS);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -123,7 +187,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void startNewContents() throws DiffException {
         try {
-            out.write("<newcontents>");
+            out.write(NEW_CONTENTS);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -138,9 +202,9 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void contains(ClassInfo info) throws DiffException {
         try {
-            out.write("<class name=\"");
-            out.write(xmlEscape(info.getName()));
-            out.write("\"/>");
+            out.write(CONTAINS);
+            out.writeXmlEscaped(info.getName());
+            out.write(END_EMPTY_TAG);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -154,7 +218,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void endOldContents() throws DiffException {
         try {
-            out.write("</oldcontents>");
+            out.write(END_OLD_CONTENTS);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -168,7 +232,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void endNewContents() throws DiffException {
         try {
-            out.write("</newcontents>");
+            out.write(END_NEW_CONTENTS);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -183,7 +247,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void startRemoved() throws DiffException {
         try {
-            out.write("<removed>");
+            out.write(REMOVED);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -214,7 +278,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void endRemoved() throws DiffException {
         try {
-            out.write("</removed>");
+            out.write(END_REMOVED);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -229,7 +293,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void startAdded() throws DiffException {
         try {
-            out.write("<added>");
+            out.write(ADDED);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -260,7 +324,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void endAdded() throws DiffException {
         try {
-            out.write("</added>");
+            out.write(END_ADDED);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -275,7 +339,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void startChanged() throws DiffException {
         try {
-            out.write("<changed>");
+            out.write(CHANGED);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -293,9 +357,9 @@ public class StreamDiffHandler implements DiffHandler
     public void startClassChanged(String internalName) throws DiffException 
     {
         try {
-            out.write("<classchanged name=\"");
-            out.write(xmlEscape(internalName));
-            out.write("\">");
+            out.write(CLASS_CHANGED);
+            out.writeXmlEscaped(internalName);
+            out.write(END_START_TAG);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -385,11 +449,11 @@ public class StreamDiffHandler implements DiffHandler
         throws DiffException 
     {
         try {
-            out.write("<classchange><from>");
+            out.write(CLASS_CHANGE);
             writeClassInfo(oldInfo);
-            out.write("</from><to>");
+            out.write(FROM_TO);
             writeClassInfo(newInfo);
-            out.write("</to></classchange>");
+            out.write(END_CLASS_CHANGE);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -419,11 +483,11 @@ public class StreamDiffHandler implements DiffHandler
         throws DiffException 
     {
         try {
-            out.write("<fieldchange><from>");
+            out.write(FIELD_CHANGE);
             writeFieldInfo(oldInfo);
-            out.write("</from><to>");
+            out.write(FROM_TO);
             writeFieldInfo(newInfo);
-            out.write("</to></fieldchange>");
+            out.write(END_FIELD_CHANGE);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -453,11 +517,11 @@ public class StreamDiffHandler implements DiffHandler
         throws DiffException
     {
         try {
-            out.write("<methodchange><from>");
+            out.write(METHOD_CHANGE);
             writeMethodInfo(oldInfo);
-            out.write("</from><to>");
+            out.write(FROM_TO);
             writeMethodInfo(newInfo);
-            out.write("</to></methodchange>");
+            out.write(END_METHOD_CHANGE);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -480,7 +544,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void endClassChanged() throws DiffException {
         try {
-            out.write("</classchanged>");
+            out.write(END_CLASS_CHANGED);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -495,7 +559,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void endChanged() throws DiffException {
         try {
-            out.write("</changed>");
+            out.write(END_CHANGED);
         } catch (IOException ioe) {
             throw new DiffException(ioe);
         }
@@ -510,8 +574,7 @@ public class StreamDiffHandler implements DiffHandler
      */
     public void endDiff() throws DiffException {
         try {
-            out.write("</diff>");
-            out.newLine();
+            out.write(END_DIFF);
             out.close();
         } catch (IOException ioe) {
             throw new DiffException(ioe);
@@ -527,30 +590,30 @@ public class StreamDiffHandler implements DiffHandler
      * @throws IOException when there is an underlying IOException.
      */
     protected void writeClassInfo(ClassInfo info) throws IOException {
-        out.write("<class");
+        out.write(CLASS);
         addAccessFlags(info);
         if(info.getName() != null) {
-            out.write(" name=\"");
-            out.write(xmlEscape(info.getName()));
-            out.write("\"");
+            out.write(NAME);
+            out.writeXmlEscaped(info.getName());
+            out.write(QUOTE);
         }
         if(info.getSignature() != null) {
-            out.write(" signature=\"");
-            out.write(xmlEscape(info.getSignature()));
-            out.write("\"");
+            out.write(SIGNATURE);
+            out.writeXmlEscaped(info.getSignature());
+            out.write(QUOTE);
         }
         if(info.getSupername() != null) {
-            out.write(" superclass=\"");
-            out.write(xmlEscape(info.getSupername()));
-            out.write("\">");
+            out.write(SUPERCLASS);
+            out.writeXmlEscaped(info.getSupername());
+            out.write(END_START_TAG);
         }
         String[] interfaces = info.getInterfaces();
         for (int i = 0; i < interfaces.length; i++) {
-            out.write("<implements name=\"");
-            out.write(xmlEscape(interfaces[i]));
-            out.write("\"/>");
+            out.write(IMPLEMENTS);
+            out.writeXmlEscaped(interfaces[i]);
+            out.write(END_EMPTY_TAG);
         }
-        out.write("</class>");
+        out.write(END_CLASS);
     }
     
     /**
@@ -563,33 +626,33 @@ public class StreamDiffHandler implements DiffHandler
      * @throws IOException when there is an underlying IOException.
      */
     protected void writeMethodInfo(MethodInfo info) throws IOException {
-        out.write("<method");
+        out.write(METHOD);
 
         addAccessFlags(info);
 
         if (info.getName() != null) {
-            out.write(" name=\"");
-            out.write(xmlEscape(info.getName()));
-            out.write("\"");
+            out.write(NAME);
+            out.writeXmlEscaped(info.getName());
+            out.write(QUOTE);
         }
         if (info.getSignature() != null) {
-            out.write(" signature=\"");
-            out.write(xmlEscape(info.getSignature()));
-            out.write("\"");
+            out.write(SIGNATURE);
+            out.writeXmlEscaped(info.getSignature());
+            out.write(QUOTE);
         }
-        out.write(">");
+        out.write(END_TAG);
         if (info.getDesc() != null) {
             addMethodNodes(info.getDesc());
         }
         String[] exceptions = info.getExceptions();
         if (exceptions != null) {
             for (int i = 0; i < exceptions.length; i++) {
-                out.write("<exception name=\"");
-                out.write(xmlEscape(exceptions[i]));
-                out.write("\"/>");
+                out.write(EXCEPTION);
+                out.writeXmlEscaped(exceptions[i]);
+                out.write(END_EMPTY_TAG);
             }
         }
-        out.write("</method>");
+        out.write(END_METHOD);
     }
     
     /**
@@ -601,30 +664,30 @@ public class StreamDiffHandler implements DiffHandler
      * @throws IOException when there is an underlying IOException.
      */
     protected void writeFieldInfo(FieldInfo info) throws IOException {
-        out.write("<field");
+        out.write(FIELD);
 
         addAccessFlags(info);
 
         if(info.getName() != null) {
-            out.write(" name=\"");
-            out.write(xmlEscape(info.getName()));
-            out.write("\"");
+            out.write(NAME);
+            out.writeXmlEscaped(info.getName());
+            out.write(QUOTE);
         }
         if (info.getSignature() != null) {
-            out.write(" signature=\"");
-            out.write(xmlEscape(info.getSignature()));
-            out.write("\"");
+            out.write(SIGNATURE);
+            out.writeXmlEscaped(info.getSignature());
+            out.write(QUOTE);
         }
         if (info.getValue() != null) {
-            out.write(" value=\"");
-            out.write(xmlEscape(info.getValue().toString()));
-            out.write("\"");
+            out.write(VALUE);
+            out.writeXmlEscaped(info.getValue().toString());
+            out.write(QUOTE);
         }
-        out.write(">");
+        out.write(END_TAG);
         if (info.getDesc() != null) {
             addTypeNode(info.getDesc());
         }
-        out.write("</field>");
+        out.write(END_FIELD);
     }
     
     /**
@@ -635,42 +698,42 @@ public class StreamDiffHandler implements DiffHandler
      * @throws IOException when there is an underlying IOException.
      */
     protected void addAccessFlags(AbstractInfo info) throws IOException {
-        out.write(" access=\"");
+        out.write(ACCESS);
         // Doesn't need escaping.
-        out.write(info.getAccessType());
-        out.write("\"");
+        out.writeAscii(info.getAccessType());
+        out.write(QUOTE);
         if (info.isAbstract())
-            out.write(" abstract=\"yes\"");
+            out.write(ABSTRACT);
         if (info.isAnnotation())
-            out.write(" annotation=\"yes\"");
+            out.write(ANNOTATION);
         if (info.isBridge())
-            out.write(" bridge=\"yes\"");
+            out.write(BRIDGE);
         if (info.isDeprecated())
-            out.write(" deprecated=\"yes\"");
+            out.write(DEPRECATED);
         if (info.isEnum())
-            out.write(" enum=\"yes\"");
+            out.write(ENUM);
         if (info.isFinal())
-            out.write(" final=\"yes\"");
+            out.write(FINAL);
         if (info.isInterface())
-            out.write(" interface=\"yes\"");
+            out.write(INTERFACE);
         if (info.isNative())
-            out.write(" native=\"yes\"");
+            out.write(NATIVE);
         if (info.isStatic())
-            out.write(" static=\"yes\"");
+            out.write(STATIC);
         if (info.isStrict())
-            out.write(" strict=\"yes\"");
+            out.write(STRICT);
         if (info.isSuper())
-            out.write(" super=\"yes\"");
+            out.write(SUPER);
         if (info.isSynchronized())
-            out.write(" synchronized=\"yes\"");
+            out.write(SYNCHRONIZED);
         if (info.isSynthetic())
-            out.write(" synthetic=\"yes\"");
+            out.write(SYNTHETIC);
         if (info.isTransient())
-            out.write(" transient=\"yes\"");
+            out.write(TRANSIENT);
         if (info.isVarargs())
-            out.write(" varargs=\"yes\"");
+            out.write(VARARGS);
         if (info.isVolatile())
-            out.write(" volatile=\"yes\"");
+            out.write(VOLATILE);
     }
     
     /**
@@ -685,13 +748,13 @@ public class StreamDiffHandler implements DiffHandler
     protected void addMethodNodes(String desc) throws IOException {
         Type[] args = Type.getArgumentTypes(desc);
         Type ret = Type.getReturnType(desc);
-        out.write("<arguments>");
+        out.write(ARGUMENTS);
         for (int i = 0; i < args.length; i++)
             addTypeNode(args[i]);
-        out.write("</arguments>");
-        out.write("<return>");
+        out.write(END_ARGUMENTS);
+        out.write(RETURN);
         addTypeNode(ret);
-        out.write("</return>");
+        out.write(END_RETURN);
     }
     
     /**
@@ -713,75 +776,48 @@ public class StreamDiffHandler implements DiffHandler
      * @throws IOException when there is an underlying IOException.
      */
     protected void addTypeNode(Type type) throws IOException {
-        out.write("<type");
+        out.write(TYPE);
         int i = type.getSort();
         if (i == Type.ARRAY) {
-            out.write(" array=\"yes\" dimensions=\"");
-            out.write(""+type.getDimensions());
-            out.write("\"");
+            out.write(ARRAY);
+            out.writeAscii(Integer.toString(type.getDimensions()));
+            out.write(QUOTE);
             type = type.getElementType();
             i = type.getSort();
         }
         switch (i) {
         case Type.BOOLEAN:
-            out.write(" primitive=\"yes\" name=\"boolean\"/>");
+            out.write(BOOLEAN);
             break;
         case Type.BYTE:
-            out.write(" primitive=\"yes\" name=\"byte\"/>");
+            out.write(BYTE);
             break;
         case Type.CHAR:
-            out.write(" primitive=\"yes\" name=\"char\"/>");
+            out.write(CHAR);
             break;
         case Type.DOUBLE:
-            out.write(" primitive=\"yes\" name=\"double\"/>");
+            out.write(DOUBLE);
             break;
         case Type.FLOAT:
-            out.write(" primitive=\"yes\" name=\"float\"/>");
+            out.write(FLOAT);
             break;
         case Type.INT:
-            out.write(" primitive=\"yes\" name=\"int\"/>");
+            out.write(INT);
             break;
         case Type.LONG:
-            out.write(" primitive=\"yes\" name=\"long\"/>");
+            out.write(LONG);
             break;
         case Type.OBJECT:
-            out.write(" name=\"");
-            out.write(xmlEscape(type.getInternalName()));
-            out.write("\"/>");
+            out.write(NAME);
+            out.writeXmlEscaped(type.getInternalName());
+            out.write(END_EMPTY_TAG);
             break;
         case Type.SHORT:
-            out.write(" primitive=\"yes\" name=\"short\"/>");
+            out.write(SHORT);
             break;
         case Type.VOID:
-            out.write(" primitive=\"yes\" name=\"void\"/>");
+            out.write(VOID);
             break;
         }
     }
-
-    /**
-     * Escape some text into a format suitable for output as xml.
-     *
-     * @param str the text to format
-     * @return the formatted text
-     */
-    private final String xmlEscape(final String str) {
-        StringBuffer ret = new StringBuffer(str.length());
-        for(int i=0;i<str.length();i++) {
-            char ch = str.charAt(i);
-            switch(ch) {
-                case '<':
-                    ret.append("&lt;");
-                    break;
-                case '&':
-                    ret.append("&amp;");
-                    break;
-                case '>':
-                    ret.append("&gt;");
-                    break;
-                default:
-                    ret.append(ch);
-            }
-        }
-        return ret.toString();
-    }
 }
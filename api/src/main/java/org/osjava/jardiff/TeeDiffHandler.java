@@ -0,0 +1,237 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+/**
+ * A DiffHandler which forwards every event to several other handlers, in
+ * the order they were given.
+ * This allows producing several outputs (e.g. an XML report and an
+ * accumulated Delta) from a single diff, so that the jar files only have
+ * to be loaded and compared once.
+ */
+public class TeeDiffHandler implements DiffHandler
+{
+    /**
+     * The handlers events are forwarded to.
+     */
+    private final DiffHandler[] handlers;
+
+    /**
+     * Create a new TeeDiffHandler.
+     *
+     * @param handlers the handlers events are forwarded to.
+     */
+    public TeeDiffHandler(DiffHandler... handlers) {
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] == null) {
+                throw new IllegalArgumentException("null handler");
+            }
+        }
+        this.handlers = handlers.clone();
+    }
+
+    public void startDiff(String a, String b) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].startDiff(a, b);
+        }
+    }
+
+    public void startOldContents() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].startOldContents();
+        }
+    }
+
+    public void startNewContents() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].startNewContents();
+        }
+    }
+
+    public void contains(ClassInfo info) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].contains(info);
+        }
+    }
+
+    public void endOldContents() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].endOldContents();
+        }
+    }
+
+    public void endNewContents() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].endNewContents();
+        }
+    }
+
+    public void startRemoved() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].startRemoved();
+        }
+    }
+
+    public void classRemoved(ClassInfo classinfo) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].classRemoved(classinfo);
+        }
+    }
+
+    public void endRemoved() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].endRemoved();
+        }
+    }
+
+    public void startAdded() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].startAdded();
+        }
+    }
+
+    public void classAdded(ClassInfo classinfo) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].classAdded(classinfo);
+        }
+    }
+
+    public void endAdded() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].endAdded();
+        }
+    }
+
+    public void startChanged() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].startChanged();
+        }
+    }
+
+    public void startClassChanged(String string) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].startClassChanged(string);
+        }
+    }
+
+    public void fieldRemoved(FieldInfo fieldinfo) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].fieldRemoved(fieldinfo);
+        }
+    }
+
+    public void methodRemoved(MethodInfo methodinfo) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].methodRemoved(methodinfo);
+        }
+    }
+
+    public void fieldAdded(FieldInfo fieldinfo) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].fieldAdded(fieldinfo);
+        }
+    }
+
+    public void methodAdded(MethodInfo methodinfo) throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].methodAdded(methodinfo);
+        }
+    }
+
+    public void classChanged(ClassInfo oldClassinfo, ClassInfo newClassinfo)
+        throws DiffException
+    {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].classChanged(oldClassinfo, newClassinfo);
+        }
+    }
+
+    public void classDeprecated(ClassInfo oldClassinfo, ClassInfo newClassinfo)
+        throws DiffException
+    {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].classDeprecated(oldClassinfo, newClassinfo);
+        }
+    }
+
+    public void fieldChanged(FieldInfo oldFieldinfo, FieldInfo newFieldinfo)
+        throws DiffException
+    {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].fieldChanged(oldFieldinfo, newFieldinfo);
+        }
+    }
+
+    public void fieldDeprecated(FieldInfo oldFieldinfo, FieldInfo newFieldinfo)
+        throws DiffException
+    {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].fieldDeprecated(oldFieldinfo, newFieldinfo);
+        }
+    }
+
+    public void methodChanged(MethodInfo oldMethodInfo, MethodInfo newMethodInfo)
+        throws DiffException
+    {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].methodChanged(oldMethodInfo, newMethodInfo);
+        }
+    }
+
+    public void methodDeprecated(MethodInfo oldMethodInfo, MethodInfo newMethodInfo)
+        throws DiffException
+    {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].methodDeprecated(oldMethodInfo, newMethodInfo);
+        }
+    }
+
+    public void endClassChanged() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].endClassChanged();
+        }
+    }
+
+    public void endChanged() throws DiffException {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].endChanged();
+        }
+    }
+
+    /**
+     * End the diff.
+     * All handlers are ended, even when one of them fails, so that each
+     * gets a chance to release its resources.
+     *
+     * @throws DiffException the first exception thrown by a handler.
+     */
+    public void endDiff() throws DiffException {
+        DiffException failure = null;
+        for (int i = 0; i < handlers.length; i++) {
+            try {
+                handlers[i].endDiff();
+            } catch (DiffException de) {
+                if (failure == null) {
+                    failure = de;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
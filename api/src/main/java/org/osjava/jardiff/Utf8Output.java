@@ -0,0 +1,307 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A reusable byte buffer encoding text to UTF-8 in front of an OutputStream.
+ * Markup is written as pre-encoded fragments and names go through a single
+ * scan which copies plain ASCII characters straight into the buffer, only
+ * falling back to escaping and multi-byte encoding for the characters which
+ * need it.
+ * The buffer is handed to the underlying stream once it holds more than
+ * {@link #FLUSH_THRESHOLD} bytes, so memory use does not depend on the size
+ * of the document.
+ */
+final class Utf8Output
+{
+    /**
+     * Number of buffered bytes after which the buffer is written out.
+     */
+    static final int FLUSH_THRESHOLD = 8192;
+
+    /**
+     * The hexadecimal digits, used for JSON unicode escapes.
+     */
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    /*
+     * The XML entities written for escaped characters.
+     */
+    private static final byte[] LT = ascii("&lt;");
+    private static final byte[] AMP = ascii("&amp;");
+    private static final byte[] GT = ascii("&gt;");
+
+    /**
+     * The stream the encoded bytes are written to.
+     */
+    private final OutputStream out;
+
+    /**
+     * The buffered bytes.
+     */
+    private byte[] buf = new byte[FLUSH_THRESHOLD * 2];
+
+    /**
+     * The number of valid bytes in the buffer.
+     */
+    private int count;
+
+    /**
+     * Create a new Utf8Output writing to the specified OutputStream.
+     *
+     * @param out Where to write output.
+     */
+    Utf8Output(OutputStream out) {
+        if (out == null) {
+            throw new IllegalArgumentException("null out");
+        }
+        this.out = out;
+    }
+
+    /**
+     * Encode a string only made of ASCII characters, typically markup
+     * which is written over and over again.
+     *
+     * @param str the ASCII text.
+     * @return the encoded bytes.
+     */
+    static byte[] ascii(String str) {
+        byte[] ret = new byte[str.length()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = (byte) str.charAt(i);
+        }
+        return ret;
+    }
+
+    /**
+     * Write a pre-encoded fragment.
+     *
+     * @param fragment the bytes to write.
+     * @throws IOException when there is an underlying IOException.
+     */
+    void write(byte[] fragment) throws IOException {
+        ensureCapacity(fragment.length);
+        System.arraycopy(fragment, 0, buf, count, fragment.length);
+        count += fragment.length;
+        flushIfFull();
+    }
+
+    /**
+     * Write a string only made of ASCII characters, e.g. a number.
+     *
+     * @param str the ASCII text.
+     * @throws IOException when there is an underlying IOException.
+     */
+    void writeAscii(String str) throws IOException {
+        int len = str.length();
+        ensureCapacity(len);
+        for (int i = 0; i < len; i++) {
+            buf[count++] = (byte) str.charAt(i);
+        }
+        flushIfFull();
+    }
+
+    /**
+     * Write a string as a quoted JSON string.
+     * Quotes, backslashes and control characters are escaped, everything
+     * else is written as UTF-8.
+     *
+     * @param str the text to write.
+     * @throws IOException when there is an underlying IOException.
+     */
+    void writeJsonString(String str) throws IOException {
+        int len = str.length();
+        ensureCapacity(len + 2);
+        buf[count++] = '"';
+        int i = 0;
+        // Fast path: copy until the first character needing some work.
+        for (; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x20 || ch >= 0x80 || ch == '"' || ch == '\\') {
+                break;
+            }
+            buf[count++] = (byte) ch;
+        }
+        for (; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch >= 0x20 && ch < 0x80 && ch != '"' && ch != '\\') {
+                ensureCapacity(1);
+                buf[count++] = (byte) ch;
+            } else if (ch == '"' || ch == '\\') {
+                ensureCapacity(2);
+                buf[count++] = '\\';
+                buf[count++] = (byte) ch;
+            } else if (ch < 0x20) {
+                ensureCapacity(6);
+                buf[count++] = '\\';
+                switch (ch) {
+                    case '\n':
+                        buf[count++] = 'n';
+                        break;
+                    case '\r':
+                        buf[count++] = 'r';
+                        break;
+                    case '\t':
+                        buf[count++] = 't';
+                        break;
+                    default:
+                        buf[count++] = 'u';
+                        buf[count++] = '0';
+                        buf[count++] = '0';
+                        buf[count++] = HEX[ch >> 4];
+                        buf[count++] = HEX[ch & 0xf];
+                }
+            } else {
+                i = encode(str, i);
+            }
+        }
+        ensureCapacity(1);
+        buf[count++] = '"';
+        flushIfFull();
+    }
+
+    /**
+     * Write a string as XML text.
+     * Only <code>&lt;</code>, <code>&amp;</code> and <code>&gt;</code> are
+     * escaped, as {@link StreamDiffHandler} always did, everything else is
+     * written as UTF-8.
+     *
+     * @param str the text to write.
+     * @throws IOException when there is an underlying IOException.
+     */
+    void writeXmlEscaped(String str) throws IOException {
+        int len = str.length();
+        ensureCapacity(len);
+        int i = 0;
+        // Fast path: copy until the first character needing some work.
+        for (; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch >= 0x80 || ch == '<' || ch == '&' || ch == '>') {
+                break;
+            }
+            buf[count++] = (byte) ch;
+        }
+        for (; i < len; i++) {
+            char ch = str.charAt(i);
+            switch (ch) {
+                case '<':
+                    write(LT);
+                    break;
+                case '&':
+                    write(AMP);
+                    break;
+                case '>':
+                    write(GT);
+                    break;
+                default:
+                    if (ch < 0x80) {
+                        ensureCapacity(1);
+                        buf[count++] = (byte) ch;
+                    } else {
+                        i = encode(str, i);
+                    }
+            }
+        }
+        flushIfFull();
+    }
+
+    /**
+     * Encode the non ASCII character at the specified index as UTF-8.
+     * A lone surrogate is replaced by a question mark, as
+     * {@link String#getBytes(String)} does.
+     *
+     * @param str the text being written.
+     * @param i the index of the character to encode.
+     * @return the index of the last character consumed.
+     */
+    private int encode(String str, int i) {
+        char ch = str.charAt(i);
+        ensureCapacity(4);
+        if (ch < 0x800) {
+            buf[count++] = (byte) (0xc0 | (ch >> 6));
+            buf[count++] = (byte) (0x80 | (ch & 0x3f));
+        } else if (ch < Character.MIN_SURROGATE || ch > Character.MAX_SURROGATE) {
+            buf[count++] = (byte) (0xe0 | (ch >> 12));
+            buf[count++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+            buf[count++] = (byte) (0x80 | (ch & 0x3f));
+        } else if (Character.isHighSurrogate(ch) && i + 1 < str.length()
+                && Character.isLowSurrogate(str.charAt(i + 1))) {
+            int cp = Character.toCodePoint(ch, str.charAt(++i));
+            buf[count++] = (byte) (0xf0 | (cp >> 18));
+            buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+            buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            buf[count++] = (byte) (0x80 | (cp & 0x3f));
+        } else {
+            buf[count++] = '?';
+        }
+        return i;
+    }
+
+    /**
+     * Make room for at least the specified number of bytes.
+     *
+     * @param n the number of bytes about to be written.
+     */
+    private void ensureCapacity(int n) {
+        if (count + n > buf.length) {
+            byte[] tmp = new byte[Math.max(buf.length * 2, count + n)];
+            System.arraycopy(buf, 0, tmp, 0, count);
+            buf = tmp;
+        }
+    }
+
+    /**
+     * Hand the buffer to the underlying stream once it is large enough.
+     *
+     * @throws IOException when there is an underlying IOException.
+     */
+    private void flushIfFull() throws IOException {
+        if (count >= FLUSH_THRESHOLD) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * Write out the buffered bytes and flush the underlying stream.
+     *
+     * @throws IOException when there is an underlying IOException.
+     */
+    void flush() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+        out.flush();
+    }
+
+    /**
+     * Write out the buffered bytes and close the underlying stream.
+     *
+     * @throws IOException when there is an underlying IOException.
+     */
+    void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
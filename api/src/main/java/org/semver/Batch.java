@@ -0,0 +1,241 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import de.tototec.cmdoption.CmdlineParserException;
+import org.osjava.jardiff.DiffStatistics;
+
+/**
+ *
+ * Compares many pairs of JARs, as listed in a manifest, concurrently.
+ * <p>
+ * Each non blank line of the manifest holds the {@link Main} options of one pair, e.g.
+ * <code>--base-jar a-1.0.jar --new-jar a-1.1.jar --base-version 1.0.0 --new-version 1.1.0 --excludes a.internal.**</code>.
+ * Options are separated by whitespace and lines starting with <code>#</code> are ignored. Relative paths are resolved
+ * against the directory of the manifest.
+ * <p>
+ * One JSON object is written per pair, on its own line and in manifest order, holding the compatibility type and
+ * difference count of the pair, the inferred version when <code>--base-version</code> is given and the validation
+ * result when <code>--new-version</code> is also given, or the error which prevented the comparison.
+ * Pairs are compared by a {@link WorkStealingScheduler}, largest JARs first, and JARs appearing in several pairs are
+ * parsed once thanks to the shared {@link JarCache}.
+ *
+ */
+public class Batch {
+
+    private final JarCache jarCache;
+    private final int threads;
+    private DiffStatistics statistics;
+
+    /**
+     * @param jarCache cache shared by all pairs
+     * @param threads number of pairs compared concurrently
+     */
+    public Batch(final JarCache jarCache, final int threads) {
+        if (jarCache == null) {
+            throw new IllegalArgumentException("null jarCache");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid thread count "+threads);
+        }
+
+        this.jarCache = jarCache;
+        this.threads = threads;
+    }
+
+    /**
+     * @param statistics where to record the cost of all comparisons, <code>null</code> to record nothing
+     */
+    public void setStatistics(final DiffStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    private final class Pair implements Runnable {
+
+        private final int line;
+        private final String[] args;
+        private final File directory;
+        private final int compressionLevel;
+        private final Results results;
+        private final int index;
+        private final long size;
+
+        Pair(final int line, final String[] args, final File directory, final int compressionLevel, final Results results, final int index) {
+            this.line = line;
+            this.args = args;
+            this.directory = directory;
+            this.compressionLevel = compressionLevel;
+            this.results = results;
+            this.index = index;
+            this.size = length("--base-jar") + length("--new-jar");
+        }
+
+        /**
+         * @return the size of the JAR given with <code>option</code>, a rough estimate of the time needed to compare it
+         */
+        private long length(final String option) {
+            for (int i = 0; i + 1 < this.args.length; i++) {
+                if (option.equals(this.args[i])) {
+                    return Main.resolve(this.directory, this.args[i + 1]).length();
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void run() {
+            final StringBuilder result = new StringBuilder("{\"line\":").append(this.line);
+            boolean failed = true;
+            try {
+                final Main.Config config = new Main.Config();
+                Main.parser(config).parse(this.args);
+                Main.checkJars(config);
+                if (config.batch != null || config.daemon != null || config.connect != null) {
+                    final String message = "--batch, --daemon and --connect cannot be used in a manifest";
+                    throw new CmdlineParserException(message, message);
+                }
+
+                final Delta delta = Main.compare(config, this.directory, this.compressionLevel, Batch.this.jarCache, Batch.this.statistics);
+                field(result, "base-jar", config.baseJar);
+                field(result, "new-jar", config.newJar);
+                field(result, "compatibility", delta.computeCompatibilityType().name());
+                result.append(",\"differences\":").append(delta.getDifferences().size());
+                if (config.baseVersion != null) {
+                    final Version baseVersion = Version.parse(config.baseVersion);
+                    field(result, "inferred", delta.infer(baseVersion).toString());
+                    if (config.newVersion != null) {
+                        result.append(",\"valid\":").append(delta.validate(baseVersion, Version.parse(config.newVersion)));
+                    }
+                }
+                failed = false;
+            } catch (CmdlineParserException e) {
+                field(result, "error", e.getLocalizedMessage());
+            } catch (IOException e) {
+                field(result, "error", String.valueOf(e.getMessage()));
+            } catch (RuntimeException e) {
+                field(result, "error", String.valueOf(e.getMessage()));
+            }
+            this.results.set(this.index, result.append('}').toString(), failed);
+        }
+
+    }
+
+    /**
+     * Writes results in manifest order as soon as all the previous ones are known.
+     */
+    private static final class Results {
+
+        private final String[] results;
+        private final PrintStream out;
+        private int next;
+        private boolean failed;
+
+        Results(final int size, final PrintStream out) {
+            this.results = new String[size];
+            this.out = out;
+        }
+
+        synchronized void set(final int index, final String result, final boolean failed) {
+            this.results[index] = result;
+            this.failed |= failed;
+            while (this.next < this.results.length && this.results[this.next] != null) {
+                this.out.println(this.results[this.next]);
+                this.results[this.next++] = null;
+            }
+            this.out.flush();
+        }
+
+        synchronized boolean isFailed() {
+            return this.failed;
+        }
+
+    }
+
+    private static void field(final StringBuilder result, final String name, final String value) {
+        result.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", Integer.valueOf(c)));
+            } else {
+                result.append(c);
+            }
+        }
+        result.append('"');
+    }
+
+    /**
+     * @param manifest the file listing the pairs to compare
+     * @param compressionLevel level of the compressed reports requested in <code>manifest</code>
+     * @param out where to write the results
+     * @return the exit status: <code>0</code> if all pairs could be compared, <code>1</code> otherwise
+     * @throws IOException if <code>manifest</code> cannot be read
+     */
+    public int run(final File manifest, final int compressionLevel, final PrintStream out) throws IOException {
+        final List<Integer> lines = new ArrayList<Integer>();
+        final List<String[]> commands = new ArrayList<String[]>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+        try {
+            int line = 0;
+            for (String text = reader.readLine(); text != null; text = reader.readLine()) {
+                line++;
+                text = text.trim();
+                if (text.length() > 0 && !text.startsWith("#")) {
+                    lines.add(Integer.valueOf(line));
+                    commands.add(text.split("\\s+"));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        final File directory = manifest.getAbsoluteFile().getParentFile();
+        final Results results = new Results(commands.size(), out);
+        final List<Pair> pairs = new ArrayList<Pair>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            pairs.add(new Pair(lines.get(i).intValue(), commands.get(i), directory, compressionLevel, results, i));
+        }
+        Collections.sort(pairs, new Comparator<Pair>() {
+            @Override
+            public int compare(final Pair pair1, final Pair pair2) {
+                return pair1.size > pair2.size ? -1 : pair1.size < pair2.size ? 1 : 0;
+            }
+        });
+
+        try {
+            WorkStealingScheduler.run(pairs, this.threads, "semver-batch");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        return results.isFailed() ? 1 : 0;
+    }
+
+}
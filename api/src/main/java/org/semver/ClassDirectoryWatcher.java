@@ -0,0 +1,190 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.objectweb.asm.ClassReader;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.JarDiff;
+
+/**
+ *
+ * Finds the class files added, modified or removed in a directory tree since the previous {@link #scan()}, parsing
+ * only the added and modified ones.
+ * <p>
+ * Files are polled: a file is read again when its size or modification time changed, or when it was modified so
+ * recently that a later write within the resolution of modification times could go unnoticed. A file which cannot be
+ * parsed, e.g. because it is being written, is ignored until the next scan.
+ *
+ */
+@NotThreadSafe
+public class ClassDirectoryWatcher {
+
+    /**
+     * Coarsest resolution of file modification times to expect.
+     */
+    private static final long TIME_RESOLUTION = 2000;
+
+    private static final class Stamp {
+
+        private final long length;
+        private final long lastModified;
+        private final long checksum;
+        private final String className;
+
+        Stamp(final long length, final long lastModified, final long checksum, final String className) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.className = className;
+        }
+
+    }
+
+    private final File directory;
+    private final JarDiff jarDiff = new JarDiff();
+    private final Map<File, Stamp> stamps = new HashMap<File, Stamp>();
+    private final Map<String, ClassInfo> updated = new TreeMap<String, ClassInfo>();
+    private final Set<String> removed = new HashSet<String>();
+    private long lastScan;
+
+    public ClassDirectoryWatcher(final File directory) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("<"+directory+"> is not a valid directory");
+        }
+
+        this.directory = directory;
+    }
+
+    /**
+     * @return true if any class was added, modified or removed since the previous scan
+     */
+    public boolean scan() {
+        final long scanTime = System.currentTimeMillis();
+        this.updated.clear();
+        this.removed.clear();
+        final Set<File> seen = new HashSet<File>();
+        scan(this.directory, seen);
+
+        for (final Iterator<Map.Entry<File, Stamp>> iterator = this.stamps.entrySet().iterator(); iterator.hasNext(); ) {
+            final Map.Entry<File, Stamp> entry = iterator.next();
+            if (!seen.contains(entry.getKey())) {
+                this.removed.add(entry.getValue().className);
+                iterator.remove();
+            }
+        }
+        // A class moved to another file is updated, not removed
+        this.removed.removeAll(this.updated.keySet());
+        this.lastScan = scanTime;
+        return !this.updated.isEmpty() || !this.removed.isEmpty();
+    }
+
+    private void scan(final File directory, final Set<File> seen) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                scan(file, seen);
+            } else if (file.getName().endsWith(".class")) {
+                seen.add(file);
+                check(file);
+            }
+        }
+    }
+
+    private void check(final File file) {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final Stamp stamp = this.stamps.get(file);
+        if (stamp != null && stamp.length == length && stamp.lastModified == lastModified
+                && lastModified < this.lastScan - TIME_RESOLUTION) {
+            return;
+        }
+
+        try {
+            final byte[] bytes = read(file);
+            final CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if (stamp != null && stamp.checksum == crc.getValue()) {
+                this.stamps.put(file, new Stamp(length, lastModified, stamp.checksum, stamp.className));
+                return;
+            }
+            final ClassInfo classInfo = this.jarDiff.loadClassInfo(new ClassReader(bytes));
+            this.stamps.put(file, new Stamp(length, lastModified, crc.getValue(), classInfo.getName()));
+            this.updated.put(classInfo.getName(), classInfo);
+        } catch (IOException e) {
+            retry(file, stamp);
+        } catch (RuntimeException e) {
+            // Truncated class file
+            retry(file, stamp);
+        }
+    }
+
+    /**
+     * Forces the next scan to read <code>file</code> again, still knowing which class it held.
+     */
+    private void retry(final File file, final Stamp stamp) {
+        if (stamp != null) {
+            this.stamps.put(file, new Stamp(-1, -1, -1, stamp.className));
+        }
+    }
+
+    private static byte[] read(final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the classes added or modified by the last scan, keyed by internal name
+     */
+    public Map<String, ClassInfo> getUpdated() {
+        return this.updated;
+    }
+
+    /**
+     * @return the internal names of the classes removed by the last scan
+     */
+    public Set<String> getRemoved() {
+        return this.removed;
+    }
+
+}
@@ -19,11 +19,22 @@ package org.semver;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 
+import org.osjava.jardiff.BatchDiffHandler;
+import org.osjava.jardiff.ClassChanges;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.ClassInfoArena;
 import org.osjava.jardiff.DiffCriteria;
 import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.DiffHandler;
+import org.osjava.jardiff.DiffHandlerAdapter;
+import org.osjava.jardiff.DiffStatistics;
 import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.MetricsListener;
+import org.osjava.jardiff.SpillingClassMap;
+import org.osjava.jardiff.TeeDiffHandler;
 import org.semver.jardiff.DifferenceAccumulatingHandler;
 
 /**
@@ -41,6 +52,10 @@ public class Comparer {
     private final boolean includesAreRegExp;
     private final Set<String> excludes;
     private final boolean excludesAreRegExp;
+    private final JarCache jarCache;
+    private MetricsListener metrics;
+    private long heapBudget = -1;
+    private boolean offHeap;
 
     public Comparer(final DiffCriteria diffCriteria, final File previousJAR, final File currentJAR,
                     final Set<String> includes, final Set<String> excludes) {
@@ -49,6 +64,15 @@ public class Comparer {
 
     public Comparer(final DiffCriteria diffCriteria, final File previousJAR, final File currentJAR,
                     final Set<String> includes, final boolean includesAreRegExp, final Set<String> excludes, final boolean excludesAreRegExp) {
+        this(diffCriteria, previousJAR, currentJAR, includes, includesAreRegExp, excludes, excludesAreRegExp, null);
+    }
+
+    /**
+     * @param jarCache cache the classes of both JARs are taken from, <code>null</code> to parse both JARs on each diff
+     */
+    public Comparer(final DiffCriteria diffCriteria, final File previousJAR, final File currentJAR,
+                    final Set<String> includes, final boolean includesAreRegExp, final Set<String> excludes, final boolean excludesAreRegExp,
+                    final JarCache jarCache) {
         if (!previousJAR.isFile()) {
             throw new IllegalArgumentException("<"+previousJAR+"> is not a valid file");
         }
@@ -63,6 +87,44 @@ public class Comparer {
         this.includesAreRegExp = includesAreRegExp;
         this.excludes = excludes;
         this.excludesAreRegExp = excludesAreRegExp;
+        this.jarCache = jarCache;
+    }
+
+    /**
+     * @param metrics where to send the measurements of each diff: JAR loading, cache lookups and differences by kind,
+     * <code>null</code> to measure nothing
+     */
+    public void setMetricsListener(final MetricsListener metrics) {
+        this.metrics = metrics;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return this.metrics;
+    }
+
+    /**
+     * @param heapBudget bytes of parsed classes kept on the heap, shared by both JARs, the others being spilled to
+     * temporary files (see {@link SpillingClassMap}); negative to keep all classes on the heap, the default.
+     * Ignored when classes are taken from a {@link JarCache}.
+     */
+    public void setHeapBudget(final long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    public long getHeapBudget() {
+        return this.heapBudget;
+    }
+
+    /**
+     * @param offHeap true to pack the classes of both JARs outside of the heap (see {@link ClassInfoArena}), relieving
+     * the garbage collector on huge JARs. Ignored with a heap budget, or when classes are taken from a {@link JarCache}.
+     */
+    public void setOffHeap(final boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public boolean isOffHeap() {
+        return this.offHeap;
     }
 
     /**
@@ -70,16 +132,172 @@ public class Comparer {
      * @throws IOException
      */
     public final Delta diff() throws IOException {
+        return diff(new DiffHandler[0]);
+    }
+
+    /**
+     * Compares both JARs once, also feeding the raw diff to each of <code>additionalHandlers</code>
+     * (e.g. to write a report) so that no extra pass over the JARs is needed.
+     *
+     * @param additionalHandlers handlers receiving the diff in addition to the accumulated {@link Delta}
+     * @return all {@link Difference} between both JARs
+     * @throws IOException
+     */
+    public final Delta diff(final DiffHandler... additionalHandlers) throws IOException {
+        return diff(null, additionalHandlers);
+    }
+
+    /**
+     * As {@link #diff(DiffHandler...)}, also recording the cost of loading, diffing and filtering in <code>statistics</code>.
+     *
+     * @param statistics where to record the cost of each phase, <code>null</code> to record nothing
+     * @param additionalHandlers handlers receiving the diff in addition to the accumulated {@link Delta}
+     * @return all {@link Difference} between both JARs
+     * @throws IOException
+     */
+    public final Delta diff(final DiffStatistics statistics, final DiffHandler... additionalHandlers) throws IOException {
         try {
             final JarDiff jarDiff = new JarDiff();
-            jarDiff.loadOldClasses(this.previousJAR);
-            jarDiff.loadNewClasses(this.currentJAR);
-            final DifferenceAccumulatingHandler handler = new DifferenceAccumulatingHandler(this.includes, this.includesAreRegExp, this.excludes, this.excludesAreRegExp);
-            jarDiff.diff(handler, diffCriteria);
-            return handler.getDelta();
+            jarDiff.setStatistics(statistics);
+            jarDiff.setMetricsListener(this.metrics);
+            final Map<String, ClassInfo> previousClasses;
+            final Map<String, ClassInfo> currentClasses;
+            if (this.jarCache != null) {
+                final long startNanos = statistics == null ? 0 : System.nanoTime();
+                final long startAllocated = statistics == null ? 0 : DiffStatistics.allocatedBytes();
+                previousClasses = this.jarCache.getClasses(this.previousJAR, this.metrics);
+                currentClasses = this.jarCache.getClasses(this.currentJAR, this.metrics);
+                if (statistics != null) {
+                    // Bytes are only read when the cache misses, and not counted
+                    statistics.recordSince(DiffStatistics.Phase.LOAD, startNanos, startAllocated,
+                            previousClasses.size() + currentClasses.size(), members(previousClasses) + members(currentClasses), 0);
+                }
+            } else {
+                jarDiff.setHeapBudget(this.heapBudget < 0 ? -1 : this.heapBudget / 2);
+                jarDiff.setOffHeap(this.offHeap);
+                previousClasses = jarDiff.loadClasses(this.previousJAR);
+                try {
+                    currentClasses = jarDiff.loadClasses(this.currentJAR);
+                } catch (DiffException e) {
+                    close(previousClasses);
+                    throw e;
+                }
+            }
+            try {
+                return diff(jarDiff, statistics, previousClasses, currentClasses, additionalHandlers);
+            } finally {
+                close(previousClasses);
+                close(currentClasses);
+            }
         } catch (DiffException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private Delta diff(final JarDiff jarDiff, final DiffStatistics statistics, final Map<String, ClassInfo> previousClasses,
+                       final Map<String, ClassInfo> currentClasses, final DiffHandler... additionalHandlers) throws DiffException {
+        final DifferenceAccumulatingHandler handler = new DifferenceAccumulatingHandler(this.includes, this.includesAreRegExp, this.excludes, this.excludesAreRegExp);
+        handler.setStatistics(statistics);
+        final BatchDiffHandler batchHandler;
+        if (additionalHandlers.length == 0) {
+            batchHandler = handler;
+        } else {
+            final DiffHandler additionalHandler = additionalHandlers.length == 1 ? additionalHandlers[0] : new TeeDiffHandler(additionalHandlers);
+            batchHandler = new BatchTee(handler, new DiffHandlerAdapter(additionalHandler));
+        }
+        jarDiff.batchDiff(batchHandler, diffCriteria, this.previousJAR.getName(), this.currentJAR.getName(), previousClasses, currentClasses);
+        final Delta delta = handler.getDelta();
+        if (this.metrics != null) {
+            count(delta, this.metrics);
+        }
+        return delta;
+    }
+
+    /**
+     * Deletes the temporary file of <code>classes</code> if spilled.
+     */
+    private static void close(final Map<String, ClassInfo> classes) throws IOException {
+        if (classes instanceof SpillingClassMap) {
+            ((SpillingClassMap) classes).close();
+        }
+    }
+
+    /**
+     * Counts the differences of <code>delta</code> by kind.
+     */
+    private static void count(final Delta delta, final MetricsListener metrics) {
+        long added = 0;
+        long removed = 0;
+        long changed = 0;
+        long deprecated = 0;
+        for (final Delta.Difference difference : delta.getDifferences()) {
+            if (difference instanceof Delta.Add) {
+                added++;
+            } else if (difference instanceof Delta.Remove) {
+                removed++;
+            } else if (difference instanceof Delta.Deprecate) {
+                deprecated++;
+            } else if (difference instanceof Delta.Change) {
+                changed++;
+            }
+        }
+        metrics.increment(MetricsListener.Metric.DIFFERENCES_ADDED, added);
+        metrics.increment(MetricsListener.Metric.DIFFERENCES_REMOVED, removed);
+        metrics.increment(MetricsListener.Metric.DIFFERENCES_CHANGED, changed);
+        metrics.increment(MetricsListener.Metric.DIFFERENCES_DEPRECATED, deprecated);
+    }
+
+    private static long members(final Map<String, ClassInfo> classes) {
+        long members = 0;
+        for (final ClassInfo classInfo : classes.values()) {
+            members += classInfo.getMethodMap().size() + classInfo.getFieldMap().size();
+        }
+        return members;
+    }
+
+    /**
+     * Feeds the differences to the accumulating handler, then to the handlers writing reports.
+     */
+    private static final class BatchTee implements BatchDiffHandler {
+
+        private final BatchDiffHandler first;
+        private final BatchDiffHandler second;
+
+        BatchTee(final BatchDiffHandler first, final BatchDiffHandler second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public void startDiff(final String previous, final String current) throws DiffException {
+            this.first.startDiff(previous, current);
+            this.second.startDiff(previous, current);
+        }
+
+        public void contents(final ClassInfo[] oldContents, final ClassInfo[] newContents) throws DiffException {
+            this.first.contents(oldContents, newContents);
+            this.second.contents(oldContents, newContents);
+        }
+
+        public void classesRemoved(final ClassInfo[] classes) throws DiffException {
+            this.first.classesRemoved(classes);
+            this.second.classesRemoved(classes);
+        }
+
+        public void classesAdded(final ClassInfo[] classes) throws DiffException {
+            this.first.classesAdded(classes);
+            this.second.classesAdded(classes);
+        }
+
+        public void classChanges(final ClassChanges changes) throws DiffException {
+            this.first.classChanges(changes);
+            this.second.classChanges(changes);
+        }
+
+        public void endDiff() throws DiffException {
+            this.first.endDiff();
+            this.second.endDiff();
+        }
+
+    }
+
 }
\ No newline at end of file
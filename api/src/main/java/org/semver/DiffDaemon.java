@@ -0,0 +1,403 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ *
+ * Serves {@link Main} commands on a loopback port so that a single warm JVM, and a single {@link JarCache}, is shared
+ * by any number of short-lived clients.
+ * <p>
+ * A client sends a token, its working directory and its arguments, the daemon runs the command and sends back the exit
+ * status followed by everything written to standard output and standard error.
+ * Only connections from the local host are possible, and only clients able to read the token the daemon writes to a
+ * file readable by its owner only are served: reports are written with the permissions of the daemon.
+ *
+ */
+@ThreadSafe
+public class DiffDaemon implements Closeable, Runnable {
+
+    /**
+     * Sent first by clients, to reject anything not speaking this protocol.
+     */
+    static final int MAGIC = 0x73656d32;
+
+    /**
+     * Where tokens are written by default.
+     */
+    static final File DEFAULT_TOKEN_DIRECTORY = new File(System.getProperty("user.home"), ".semver");
+
+    /**
+     * Milliseconds a client has to send its request.
+     */
+    static final int READ_TIMEOUT = 10000;
+
+    /**
+     * The most arguments a client can send, each one being at most 65535 bytes long.
+     */
+    static final int MAX_ARGS = 256;
+
+    /**
+     * Options which cannot be run in a daemon: <code>--watch</code> never returns.
+     */
+    private static final String[] LOCAL_OPTIONS = { "--watch", "--daemon", "--connect" };
+
+    /**
+     * Milliseconds to wait before accepting connections again after a failure, e.g. when out of file descriptors,
+     * doubled after each consecutive failure up to {@link #MAX_ACCEPT_RETRY_DELAY}.
+     */
+    private static final long ACCEPT_RETRY_DELAY = 100;
+    private static final long MAX_ACCEPT_RETRY_DELAY = 5000;
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "semver-daemon");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final ServerSocket serverSocket;
+    private final JarCache jarCache;
+    private final ExecutorService executor;
+    private final File tokenFile;
+    private final byte[] token;
+    private final PrintStream err;
+
+    /**
+     * @param port the loopback port to listen on, <code>0</code> for any free port
+     * @param jarCache cache shared by all commands
+     * @throws IOException if <code>port</code> cannot be listened on or the token cannot be written
+     */
+    public DiffDaemon(final int port, final JarCache jarCache) throws IOException {
+        this(port, jarCache, DEFAULT_TOKEN_DIRECTORY);
+    }
+
+    /**
+     * @param port the loopback port to listen on, <code>0</code> for any free port
+     * @param jarCache cache shared by all commands
+     * @param tokenDirectory where to write the token clients must send, in a file readable by its owner only
+     * @throws IOException if <code>port</code> cannot be listened on or the token cannot be written
+     */
+    public DiffDaemon(final int port, final JarCache jarCache, final File tokenDirectory) throws IOException {
+        this(port, jarCache, tokenDirectory, System.err);
+    }
+
+    /**
+     * @param port the loopback port to listen on, <code>0</code> for any free port
+     * @param jarCache cache shared by all commands
+     * @param tokenDirectory where to write the token clients must send, in a file readable by its owner only
+     * @param err where to report failures to accept connections
+     * @throws IOException if <code>port</code> cannot be listened on or the token cannot be written
+     */
+    public DiffDaemon(final int port, final JarCache jarCache, final File tokenDirectory, final PrintStream err) throws IOException {
+        if (jarCache == null) {
+            throw new IllegalArgumentException("null jarCache");
+        }
+        if (tokenDirectory == null) {
+            throw new IllegalArgumentException("null tokenDirectory");
+        }
+        if (err == null) {
+            throw new IllegalArgumentException("null err");
+        }
+
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        try {
+            this.token = new byte[16];
+            new SecureRandom().nextBytes(this.token);
+            this.tokenFile = tokenFile(tokenDirectory, this.serverSocket.getLocalPort());
+            writeToken(this.tokenFile, this.token);
+        } catch (IOException e) {
+            this.serverSocket.close();
+            throw e;
+        }
+        this.jarCache = jarCache;
+        this.err = err;
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), THREAD_FACTORY);
+    }
+
+    /**
+     * @return the file holding the token of the daemon listening on <code>port</code>
+     */
+    static File tokenFile(final File tokenDirectory, final int port) {
+        return new File(tokenDirectory, "daemon-" + port + ".token");
+    }
+
+    private static void writeToken(final File file, final byte[] token) throws IOException {
+        final File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Cannot create <" + directory + ">");
+        }
+        // Created empty, then restricted to its owner before the token is written
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete <" + file + ">");
+        }
+        if (!file.createNewFile()) {
+            throw new IOException("Cannot create <" + file + ">");
+        }
+        // Permissions of others cannot be revoked on Windows, where home directories are private
+        final boolean revoked = file.setReadable(false, false) && file.setWritable(false, false);
+        if ((!revoked && File.separatorChar == '/') || !file.setReadable(true, true) || !file.setWritable(true, true)) {
+            file.delete();
+            throw new IOException("Cannot restrict <" + file + "> to its owner");
+        }
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(token);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readToken(final File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            final byte[] token = new byte[16];
+            in.readFully(token);
+            return token;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the port this daemon listens on
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until {@link #close()} is called.
+     */
+    @Override
+    public void run() {
+        long retryDelay = 0;
+        while (!this.serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (IOException e) {
+                if (this.serverSocket.isClosed()) {
+                    continue;
+                }
+                // Only the first of consecutive failures is reported
+                if (retryDelay == 0) {
+                    this.err.println("Cannot accept connections, retrying: " + e);
+                }
+                retryDelay = Math.min(retryDelay == 0 ? ACCEPT_RETRY_DELAY : retryDelay * 2, MAX_ACCEPT_RETRY_DELAY);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            if (retryDelay > 0) {
+                this.err.println("Accepting connections again");
+                retryDelay = 0;
+            }
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops accepting connections, deletes the token and waits for the commands being run.
+     */
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        this.tokenFile.delete();
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve(final Socket socket) {
+        try {
+            try {
+                socket.setSoTimeout(READ_TIMEOUT);
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readInt() != MAGIC) {
+                    return;
+                }
+                final byte[] token = new byte[this.token.length];
+                in.readFully(token);
+                if (!MessageDigest.isEqual(this.token, token)) {
+                    return;
+                }
+                final File directory = new File(in.readUTF());
+                final int count = in.readInt();
+
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final ByteArrayOutputStream err = new ByteArrayOutputStream();
+                final PrintStream outStream = new PrintStream(out, true);
+                final PrintStream errStream = new PrintStream(err, true);
+                int status;
+                final String[] args = count < 0 || count > MAX_ARGS ? null : new String[count];
+                for (int i = 0; args != null && i < args.length; i++) {
+                    args[i] = in.readUTF();
+                }
+                final String localOption = args == null ? null : localOption(args);
+                if (args == null) {
+                    errStream.println("Error: a daemon runs commands of at most " + MAX_ARGS + " arguments.");
+                    status = 1;
+                } else if (localOption != null) {
+                    errStream.println("Error: " + localOption + " cannot be run in a daemon.\nRun semver --help for help.");
+                    status = 1;
+                } else {
+                    try {
+                        status = Main.run(args, directory, outStream, errStream, this.jarCache);
+                    } catch (Exception e) {
+                        e.printStackTrace(errStream);
+                        status = 1;
+                    }
+                }
+
+                final DataOutputStream response = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                response.writeInt(status);
+                write(response, out);
+                write(response, err);
+                response.flush();
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // The client went away or timed out, nothing to report it to
+        }
+    }
+
+    /**
+     * @return the first option of <code>args</code> which cannot be run in a daemon, or null if none
+     */
+    static String localOption(final String[] args) {
+        for (final String arg : args) {
+            for (final String option : LOCAL_OPTIONS) {
+                if (arg.equals(option) || arg.startsWith(option + "=")) {
+                    return option;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void write(final DataOutputStream response, final ByteArrayOutputStream output) throws IOException {
+        response.writeInt(output.size());
+        output.writeTo(response);
+    }
+
+    private static void copy(final DataInputStream response, final PrintStream output) throws IOException {
+        final byte[] bytes = new byte[response.readInt()];
+        response.readFully(bytes);
+        output.write(bytes);
+        output.flush();
+    }
+
+    /**
+     * Runs a command in the daemon listening on <code>port</code>, whose token is in the default directory.
+     *
+     * @param port the loopback port the daemon listens on
+     * @param args the command line arguments
+     * @param directory the directory relative paths in <code>args</code> are resolved against
+     * @param out where to copy the standard output of the command
+     * @param err where to copy the standard error of the command
+     * @return the exit status of the command
+     * @throws java.net.ConnectException if no daemon of this user listens on <code>port</code>
+     * @throws IOException if the connection fails
+     */
+    public static int forward(final int port, final String[] args, final File directory, final PrintStream out, final PrintStream err) throws IOException {
+        return forward(port, DEFAULT_TOKEN_DIRECTORY, args, directory, out, err);
+    }
+
+    /**
+     * Runs a command in the daemon listening on <code>port</code>.
+     *
+     * @param port the loopback port the daemon listens on
+     * @param tokenDirectory where the daemon wrote its token
+     * @param args the command line arguments
+     * @param directory the directory relative paths in <code>args</code> are resolved against
+     * @param out where to copy the standard output of the command
+     * @param err where to copy the standard error of the command
+     * @return the exit status of the command
+     * @throws java.net.ConnectException if no daemon of this user listens on <code>port</code>
+     * @throws IOException if the connection fails
+     */
+    public static int forward(final int port, final File tokenDirectory, final String[] args, final File directory, final PrintStream out, final PrintStream err) throws IOException {
+        final File tokenFile = tokenFile(tokenDirectory, port);
+        if (!tokenFile.isFile()) {
+            throw new ConnectException("No daemon of this user on port " + port);
+        }
+        final byte[] token = readToken(tokenFile);
+        final Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            request.writeInt(MAGIC);
+            request.write(token);
+            request.writeUTF(directory.getAbsolutePath());
+            request.writeInt(args.length);
+            for (final String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+
+            final DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final int status = response.readInt();
+            copy(response, out);
+            copy(response, err);
+            return status;
+        } catch (SocketException e) {
+            throw new IOException("Daemon on port " + port + " failed", e);
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -16,18 +16,20 @@
  */
 package org.semver;
 
+import java.io.IOException;
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Formatter;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.objectweb.asm.Opcodes;
 import org.osjava.jardiff.AbstractInfo;
 import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.FieldInfo;
+import org.osjava.jardiff.MethodInfo;
 import org.semver.Delta.Difference;
 import org.semver.Delta.Change;
 
@@ -38,124 +40,173 @@ import org.semver.Delta.Change;
  */
 public class Dumper {
 
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * Access bits rendered in reports. The three visibility bits are kept, package-private access being rendered from
+     * {@link #PACKAGE_PRIVATE}.
+     */
+    private static final int ACCESS_MASK = 0x7fff;
+
+    /**
+     * Bit standing for package-private access, which is the absence of visibility bits.
+     */
+    private static final int PACKAGE_PRIVATE = 0x8000;
+
+    /**
+     * Rendered access names, in report order, with the bit testing them in a mask built by {@link #accessMask(AbstractInfo)}.
+     * <code>ACC_TRANSIENT</code> and <code>ACC_VARARGS</code> share a bit, which only means varargs for methods.
+     */
+    private static final String[] ACCESS_NAMES = { "abstract", "annotation", "bridge", "enum", "final", "interface", "native",
+            "package-private", "private", "protected", "public", "static", "strict", "super", "synchronized", "synthetic",
+            "transcient", "varargs", "volatile" };
+    private static final int[] ACCESS_BITS = { Opcodes.ACC_ABSTRACT, Opcodes.ACC_ANNOTATION, Opcodes.ACC_BRIDGE, Opcodes.ACC_ENUM,
+            Opcodes.ACC_FINAL, Opcodes.ACC_INTERFACE, Opcodes.ACC_NATIVE, PACKAGE_PRIVATE, Opcodes.ACC_PRIVATE, Opcodes.ACC_PROTECTED,
+            Opcodes.ACC_PUBLIC, Opcodes.ACC_STATIC, Opcodes.ACC_STRICT, Opcodes.ACC_SUPER, Opcodes.ACC_SYNCHRONIZED,
+            Opcodes.ACC_SYNTHETIC, Opcodes.ACC_TRANSIENT, Opcodes.ACC_VARARGS, Opcodes.ACC_VOLATILE };
+    private static final int TRANSCIENT = 16;
+    private static final int VARARGS = 17;
+
+    /**
+     * Space separated access names of every mask, for fields and classes then for methods. Filled lazily: a race only
+     * builds the same string twice.
+     */
+    private static final String[][] ACCESS_DETAILS = { new String[PACKAGE_PRIVATE << 1], new String[PACKAGE_PRIVATE << 1] };
+
     private Dumper() {
     }
 
     protected static String extractActionType(final Difference difference) {
+        if (difference instanceof Delta.Add) {
+            return "Added";
+        } else if (difference instanceof Delta.Change) {
+            return "Changed";
+        } else if (difference instanceof Delta.Deprecate) {
+            return "Deprecated";
+        } else if (difference instanceof Delta.Remove) {
+            return "Removed";
+        }
         final String actionType = difference.getClass().getSimpleName();
         return actionType.endsWith("e")?actionType+"d":actionType+"ed";
     }
 
     protected static String extractInfoType(final AbstractInfo info) {
+        if (info instanceof ClassInfo) {
+            return "Class";
+        } else if (info instanceof MethodInfo) {
+            return "Method";
+        } else if (info instanceof FieldInfo) {
+            return "Field";
+        }
         final String simpleClassName = info.getClass().getSimpleName();
         return simpleClassName.substring(0, simpleClassName.indexOf("Info"));
     }
 
     protected static String extractDetails(final Difference difference) {
-        if (difference instanceof Change) {
-            final Change change = (Change) difference;
-            return extractDetails(difference.getInfo())+", access "+extractAccessDetails(difference.getInfo(), change.getModifiedInfo());
-        } else {
-            return extractDetails(difference.getInfo())+", access "+extractAccessDetails(difference.getInfo());
+        final StringBuilder builder = new StringBuilder();
+        try {
+            appendDetails(difference, builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
         }
+        return builder.toString();
     }
 
     protected static String extractDetails(final AbstractInfo info) {
         final StringBuilder builder = new StringBuilder();
+        try {
+            appendDetails(info, builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+
+    private static void appendDetails(final Difference difference, final Appendable out) throws IOException {
+        final AbstractInfo info = difference.getInfo();
+        appendDetails(info, out);
+        out.append(", access ");
+        if (difference instanceof Change) {
+            appendAccessDetails(info, ((Change) difference).getModifiedInfo(), out);
+        } else {
+            out.append(accessDetails(info, accessMask(info)));
+        }
+    }
+
+    private static void appendDetails(final AbstractInfo info, final Appendable out) throws IOException {
         if (!(info instanceof ClassInfo)) {
-            builder.append(info.getName());
+            out.append(info.getName());
             if( null != info.getSignature() ) {
-                builder.append(", sig ").append(info.getSignature());
+                out.append(", sig ").append(info.getSignature());
             }
             if( null != info.getDesc() ) {
-                builder.append(", desc ").append(info.getDesc());
+                out.append(", desc ").append(info.getDesc());
             }
         }
-        return builder.toString();
     }
 
-    protected static void accumulateAccessDetails(final String access, final boolean previousAccess, final boolean currentAccess, final List<String> added, final List<String> removed) {
-        if (previousAccess != currentAccess) {
-            if (previousAccess) {
-                removed.add(access);
-            } else {
-                added.add(access);
-            }
+    /**
+     * @return the access bits of <code>info</code> indexing {@link #ACCESS_DETAILS}
+     */
+    private static int accessMask(final AbstractInfo info) {
+        final int access = info.getAccess() & ACCESS_MASK;
+        if ((access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_PRIVATE)) == 0) {
+            return access | PACKAGE_PRIVATE;
         }
+        return access;
     }
 
-    protected static String extractAccessDetails(final AbstractInfo previousInfo, final AbstractInfo currentInfo) {
-        final List<String> added = new LinkedList<String>();
-        final List<String> removed = new LinkedList<String>();
-        accumulateAccessDetails("abstract", previousInfo.isAbstract(), currentInfo.isAbstract(), added, removed);
-        accumulateAccessDetails("annotation", previousInfo.isAnnotation(), currentInfo.isAnnotation(), added, removed);
-        accumulateAccessDetails("bridge", previousInfo.isBridge(), currentInfo.isBridge(), added, removed);
-        accumulateAccessDetails("enum", previousInfo.isEnum(), currentInfo.isEnum(), added, removed);
-        accumulateAccessDetails("final", previousInfo.isFinal(), currentInfo.isFinal(), added, removed);
-        accumulateAccessDetails("interface", previousInfo.isInterface(), currentInfo.isInterface(), added, removed);
-        accumulateAccessDetails("native", previousInfo.isNative(), currentInfo.isNative(), added, removed);
-        accumulateAccessDetails("package-private", previousInfo.isPackagePrivate(), currentInfo.isPackagePrivate(), added, removed);
-        accumulateAccessDetails("private", previousInfo.isPrivate(), currentInfo.isPrivate(), added, removed);
-        accumulateAccessDetails("protected", previousInfo.isProtected(), currentInfo.isProtected(), added, removed);
-        accumulateAccessDetails("public", previousInfo.isPublic(), currentInfo.isPublic(), added, removed);
-        accumulateAccessDetails("static", previousInfo.isStatic(), currentInfo.isStatic(), added, removed);
-        accumulateAccessDetails("strict", previousInfo.isStrict(), currentInfo.isStrict(), added, removed);
-        accumulateAccessDetails("super", previousInfo.isSuper(), currentInfo.isSuper(), added, removed);
-        accumulateAccessDetails("synchronized", previousInfo.isSynchronized(), currentInfo.isSynchronized(), added, removed);
-        accumulateAccessDetails("synthetic", previousInfo.isSynthetic(), currentInfo.isSynthetic(), added, removed);
-        accumulateAccessDetails("transcient", previousInfo.isTransient(), currentInfo.isTransient(), added, removed);
-        accumulateAccessDetails("varargs", previousInfo.isVarargs(), currentInfo.isVarargs(), added, removed);
-        accumulateAccessDetails("volatile", previousInfo.isVolatile(), currentInfo.isVolatile(), added, removed);
-        final StringBuilder details = new StringBuilder();
-        if (!added.isEmpty()) {
-            details.append("added: ");
-            for (final String access : added) {
-                details.append(access).append(" ");
+    /**
+     * @return the space separated names of the access bits set in <code>mask</code>
+     */
+    private static String accessDetails(final AbstractInfo info, final int mask) {
+        final String[] table = ACCESS_DETAILS[info instanceof MethodInfo ? 1 : 0];
+        String details = table[mask];
+        if (details == null) {
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < ACCESS_NAMES.length; i++) {
+                if ((mask & ACCESS_BITS[i]) != 0 && i != (info instanceof MethodInfo ? TRANSCIENT : VARARGS)) {
+                    if (builder.length() > 0) {
+                        builder.append(' ');
+                    }
+                    builder.append(ACCESS_NAMES[i]);
+                }
             }
+            details = builder.toString();
+            table[mask] = details;
         }
-        if (!removed.isEmpty()) {
-            details.append("removed: ");
-            for (final String access : removed) {
-                details.append(access).append(" ");
+        return details;
+    }
+
+    private static void appendAccessDetails(final AbstractInfo previousInfo, final AbstractInfo currentInfo, final Appendable out) throws IOException {
+        final int previous = accessMask(previousInfo);
+        final int current = accessMask(currentInfo);
+        final int delta = previous ^ current;
+        final int added = current & delta;
+        final int removed = previous & delta;
+        if (added != 0) {
+            out.append("added: ").append(accessDetails(currentInfo, added));
+            if (removed != 0) {
+                out.append(' ');
             }
         }
-        return details.toString().trim();
+        if (removed != 0) {
+            out.append("removed: ").append(accessDetails(previousInfo, removed));
+        }
     }
 
-    protected static void accumulateAccessDetails(final String access, final boolean hasAccess, final List<String> accessList) {
-        if (hasAccess) {
-            accessList.add(access);
+    protected static String extractAccessDetails(final AbstractInfo previousInfo, final AbstractInfo currentInfo) {
+        final StringBuilder builder = new StringBuilder();
+        try {
+            appendAccessDetails(previousInfo, currentInfo, builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
         }
+        return builder.toString();
     }
 
     protected static String extractAccessDetails(final AbstractInfo info) {
-        final List<String> accessList = new LinkedList<String>();
-        accumulateAccessDetails("abstract", info.isAbstract(), accessList);
-        accumulateAccessDetails("annotation", info.isAnnotation(), accessList);
-        accumulateAccessDetails("bridge", info.isBridge(), accessList);
-        accumulateAccessDetails("enum", info.isEnum(), accessList);
-        accumulateAccessDetails("final", info.isFinal(), accessList);
-        accumulateAccessDetails("interface", info.isInterface(), accessList);
-        accumulateAccessDetails("native", info.isNative(), accessList);
-        accumulateAccessDetails("package-private", info.isPackagePrivate(), accessList);
-        accumulateAccessDetails("private", info.isPrivate(), accessList);
-        accumulateAccessDetails("protected", info.isProtected(), accessList);
-        accumulateAccessDetails("public", info.isPublic(), accessList);
-        accumulateAccessDetails("static", info.isStatic(), accessList);
-        accumulateAccessDetails("strict", info.isStrict(), accessList);
-        accumulateAccessDetails("super", info.isSuper(), accessList);
-        accumulateAccessDetails("synchronized", info.isSynchronized(), accessList);
-        accumulateAccessDetails("synthetic", info.isSynthetic(), accessList);
-        accumulateAccessDetails("transcient", info.isTransient(), accessList);
-        accumulateAccessDetails("varargs", info.isVarargs(), accessList);
-        accumulateAccessDetails("volatile", info.isVolatile(), accessList);
-        final StringBuilder details = new StringBuilder();
-        if (!accessList.isEmpty()) {
-            for (final String access : accessList) {
-                details.append(access).append(" ");
-            }
-        }
-        return details.toString().trim();
+        return accessDetails(info, accessMask(info));
     }
 
     /**
@@ -175,9 +226,23 @@ public class Dumper {
      * @param out
      */
     public static void dump(final Delta delta, final PrintStream out) {
-        final List<Difference> sortedDifferences = new LinkedList<Difference>(delta.getDifferences());
-        Collections.sort(sortedDifferences);
-        dump(sortedDifferences, out);
+        try {
+            dump(delta, (Appendable) out);
+        } catch (IOException e) {
+            // PrintStream does not throw IOException
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Dumps on <code>out</code> all differences, sorted by class name.
+     *
+     * @param delta the delta to be dumped
+     * @param out where to write the report
+     * @throws IOException if <code>out</code> cannot be written to
+     */
+    public static void dump(final Delta delta, final Appendable out) throws IOException {
+        dump(sort(delta.getDifferences()), out);
     }
 
     /**
@@ -187,12 +252,32 @@ public class Dumper {
      * @param out the print output stream
      */
     public static void dump(final List<Difference> sortedDifferences, final PrintStream out) {
+        try {
+            dump(sortedDifferences.toArray(new Difference[sortedDifferences.size()]), out);
+        } catch (IOException e) {
+            // PrintStream does not throw IOException
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Difference[] sort(final Set<Difference> differences) {
+        final Difference[] sortedDifferences = differences.toArray(new Difference[differences.size()]);
+        // Stable, as Collections.sort was
+        Arrays.sort(sortedDifferences);
+        return sortedDifferences;
+    }
+
+    private static void dump(final Difference[] sortedDifferences, final Appendable out) throws IOException {
         String currentClassName = "";
         for (final Difference difference : sortedDifferences) {
             if (!currentClassName.equals(difference.getClassName())) {
-                out.println("Class "+difference.getClassName());
+                out.append("Class ").append(difference.getClassName()).append(LINE_SEPARATOR);
             }
-            out.println(" "+extractActionType(difference)+" "+extractInfoType(difference.getInfo())+" "+extractDetails(difference));
+            out.append(' ').append(extractActionType(difference))
+                .append(' ').append(extractInfoType(difference.getInfo()))
+                .append(' ');
+            appendDetails(difference, out);
+            out.append(LINE_SEPARATOR);
             currentClassName = difference.getClassName();
         }
     }
@@ -208,18 +293,38 @@ public class Dumper {
      * @param out the print output stream
      */
     public static void dumpFullStats(final Delta delta, final int iwidth, final PrintStream out) {
-        final Set<Difference> diffs = delta.getDifferences();
+        try {
+            dumpFullStats(delta, iwidth, (Appendable) out);
+        } catch (IOException e) {
+            // PrintStream does not throw IOException
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Dumps on <code>out</code> all differences separated by its type in the order
+     * <code>remove</code>, <code>change</code>, <code>deprecate</code> and <code>add</code>.
+     * <p>
+     * Prepends statistics per class regarding difference type.
+     * </p>
+     * @param delta the delta to be dumped
+     * @param iwidth the integer width for formated integer counter
+     * @param out where to write the report
+     * @throws IOException if <code>out</code> cannot be written to
+     */
+    public static void dumpFullStats(final Delta delta, final int iwidth, final Appendable out) throws IOException {
+        final Difference[] diffs = sort(delta.getDifferences());
 
-        final List<Difference> diffsAdd = new ArrayList<Difference>();
-        final List<Difference> diffsChange = new ArrayList<Difference>();
-        final List<Difference> diffsDeprecate = new ArrayList<Difference>();
-        final List<Difference> diffsRemove = new ArrayList<Difference>();
+        // Differences of each type, kept in sorted order
+        final Difference[][] diffsByType = new Difference[4][diffs.length];
+        final int[] counts = new int[4];
         final Map<String, DiffCount> className2DiffCount = new HashMap<String, DiffCount>();
+        final String[] classNames = new String[diffs.length];
+        int classCount = 0;
 
         int maxClassNameLen = 0;
 
-        for(final Iterator<Difference> iter = diffs.iterator(); iter.hasNext(); ) {
-            final Difference diff = iter.next();
+        for (final Difference diff : diffs) {
             final String className = diff.getClassName();
             maxClassNameLen = Math.max(maxClassNameLen, className.length());
 
@@ -227,56 +332,56 @@ public class Dumper {
             if( null == dc ) {
                 dc = new DiffCount(className);
                 className2DiffCount.put(className, dc);
+                classNames[classCount++] = className;
             }
 
-            if( diff instanceof Delta.Add ) {
-                diffsAdd.add(diff);
-                dc.additions++;
+            final int type;
+            if( diff instanceof Delta.Remove ) {
+                type = 0;
+                dc.removes++;
             } else if( diff instanceof Delta.Change ) {
-                diffsChange.add(diff);
+                type = 1;
                 dc.changes++;
             } else if( diff instanceof Delta.Deprecate ) {
-                diffsDeprecate.add(diff);
+                type = 2;
                 dc.deprecates++;
-            } else if( diff instanceof Delta.Remove ) {
-                diffsRemove.add(diff);
-                dc.removes++;
+            } else if( diff instanceof Delta.Add ) {
+                type = 3;
+                dc.additions++;
+            } else {
+                continue;
             }
-        }
-        Collections.sort(diffsAdd);
-        Collections.sort(diffsChange);
-        Collections.sort(diffsDeprecate);
-        Collections.sort(diffsRemove);
-
-        final List<String> classNames = new ArrayList<String>(className2DiffCount.keySet());
-        Collections.sort(classNames);
-
-        System.err.println("Summary: "+diffs.size()+" differences in "+classNames.size()+" classes:");
-        System.err.println("  Remove "+diffsRemove.size()+
-                           ", Change "+diffsChange.size()+
-                           ", Deprecate "+diffsDeprecate.size()+
-                           ", Add "+diffsAdd.size());
-        System.err.printf("%n");
-
-        int iterI = 0;
-        for(final Iterator<String> iter = classNames.iterator(); iter.hasNext(); iterI++) {
-            final String className = iter.next();
-            final DiffCount dc = className2DiffCount.get(className);
-            System.err.printf("%"+iwidth+"d/%"+iwidth+"d: %-"+maxClassNameLen+"s: %s%n", iterI, classNames.size(), className, dc.format(iwidth));
+            diffsByType[type][counts[type]++] = diff;
         }
 
-        System.err.printf("%n%nRemoves%n%n");
-        dump(diffsRemove, System.err);
+        final Formatter formatter = new Formatter(out);
+        formatter.format("Summary: %d differences in %d classes:%n", diffs.length, classCount);
+        formatter.format("  Remove %d, Change %d, Deprecate %d, Add %d%n", counts[0], counts[1], counts[2], counts[3]);
+        formatter.format("%n");
 
-        System.err.printf("%n%nChanges%n%n");
-        dump(diffsChange, System.err);
+        for (int i = 0; i < classCount; i++) {
+            final DiffCount dc = className2DiffCount.get(classNames[i]);
+            formatter.format("%"+iwidth+"d/%"+iwidth+"d: %-"+maxClassNameLen+"s: %s%n", i, classCount, classNames[i], dc.format(iwidth));
+        }
 
-        System.err.printf("%n%nDeprecates%n%n");
-        dump(diffsDeprecate, System.err);
+        final String[] titles = { "Removes", "Changes", "Deprecates", "Additions" };
+        for (int type = 0; type < titles.length; type++) {
+            formatter.format("%n%n%s%n%n", titles[type]);
+            flush(formatter);
+            dump(Arrays.copyOf(diffsByType[type], counts[type]), out);
+        }
+        formatter.format("%n%n");
+        flush(formatter);
+    }
 
-        System.err.printf("%n%nAdditions%n%n");
-        dump(diffsAdd, System.err);
-        System.err.printf("%n%n");
+    /**
+     * Flushes <code>formatter</code>, rethrowing the failure it swallows.
+     */
+    private static void flush(final Formatter formatter) throws IOException {
+        formatter.flush();
+        if (formatter.ioException() != null) {
+            throw formatter.ioException();
+        }
     }
 
     static class DiffCount {
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.MetricsListener;
+
+/**
+ *
+ * Keeps the classes of recently compared JARs in memory so that comparing the same JARs again does not parse them again.
+ * A JAR requested by several threads at once is parsed once, by the first of them.
+ * A JAR is parsed again as soon as its size or modification time changes, and the least recently used JARs are
+ * evicted once more than <code>capacity</code> JARs are cached.
+ *
+ */
+@ThreadSafe
+public class JarCache {
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private static final class Entry {
+
+        private final long length;
+        private final long lastModified;
+        private final FutureTask<Map<String, ClassInfo>> classes;
+
+        Entry(final long length, final long lastModified, final FutureTask<Map<String, ClassInfo>> classes) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.classes = classes;
+        }
+
+        boolean isUpToDate(final long length, final long lastModified) {
+            return this.length == length && this.lastModified == lastModified;
+        }
+
+    }
+
+    private final Map<File, Entry> entries;
+
+    public JarCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public JarCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity "+capacity);
+        }
+
+        this.entries = new LinkedHashMap<File, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<File, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param jar a JAR file
+     * @return the unmodifiable classes of <code>jar</code>, keyed by internal class name
+     * @throws IOException if <code>jar</code> cannot be read
+     */
+    public Map<String, ClassInfo> getClasses(final File jar) throws IOException {
+        return getClasses(jar, null);
+    }
+
+    /**
+     * @param jar a JAR file
+     * @param metrics where to count the cache hit or miss and measure the loading of <code>jar</code>,
+     * <code>null</code> to measure nothing
+     * @return the unmodifiable classes of <code>jar</code>, keyed by internal class name
+     * @throws IOException if <code>jar</code> cannot be read
+     */
+    public Map<String, ClassInfo> getClasses(final File jar, final MetricsListener metrics) throws IOException {
+        if (jar == null) {
+            throw new IllegalArgumentException("null jar");
+        }
+
+        final File key = jar.getCanonicalFile();
+        // Read size and date before parsing so that a JAR modified while being parsed is parsed again next time
+        final long length = key.length();
+        final long lastModified = key.lastModified();
+        final Entry entry;
+        boolean load = false;
+        synchronized (this.entries) {
+            final Entry cached = this.entries.get(key);
+            if (cached != null && cached.isUpToDate(length, lastModified)) {
+                entry = cached;
+            } else {
+                entry = new Entry(length, lastModified, new FutureTask<Map<String, ClassInfo>>(new Callable<Map<String, ClassInfo>>() {
+                    @Override
+                    public Map<String, ClassInfo> call() throws DiffException {
+                        final JarDiff jarDiff = new JarDiff();
+                        jarDiff.setMetricsListener(metrics);
+                        return Collections.unmodifiableMap(jarDiff.loadClasses(key));
+                    }
+                }));
+                this.entries.put(key, entry);
+                load = true;
+            }
+        }
+
+        // Parse outside of the lock so that distinct JARs are parsed concurrently, concurrent requests for the same JAR
+        // wait for the first one
+        if (load) {
+            entry.classes.run();
+        }
+        if (metrics != null) {
+            metrics.increment(load ? MetricsListener.Metric.CACHE_MISSES : MetricsListener.Metric.CACHE_HITS, 1);
+        }
+        try {
+            return entry.classes.get();
+        } catch (ExecutionException e) {
+            synchronized (this.entries) {
+                if (this.entries.get(key) == entry) {
+                    this.entries.remove(key);
+                }
+            }
+            throw new IOException("Cannot read <"+jar+">", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading <"+jar+">", e);
+        }
+    }
+
+    /**
+     * @return the number of cached JARs
+     */
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+}
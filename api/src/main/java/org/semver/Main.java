@@ -18,16 +18,31 @@ package org.semver;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import de.tototec.cmdoption.CmdOption;
 import de.tototec.cmdoption.CmdlineParser;
 import de.tototec.cmdoption.CmdlineParserException;
+import org.osjava.jardiff.ClassInfo;
 import org.osjava.jardiff.DiffCriteria;
+import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.DiffHandler;
+import org.osjava.jardiff.DiffStatistics;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.JsonStreamDiffHandler;
 import org.osjava.jardiff.PublicDiffCriteria;
+import org.osjava.jardiff.ReportStreams;
 import org.osjava.jardiff.SimpleDiffCriteria;
+import org.osjava.jardiff.StreamDiffHandler;
+import org.semver.jardiff.IncrementalDiff;
 
 /**
  * 
@@ -57,10 +72,10 @@ public class Main {
                 "--diff", "--check", "--infer" }, description = "Validate that the versions of two jars fulfil the semver specification.")
         public boolean validate;
 
-        @CmdOption(names = { "--base-jar" }, args = { "JAR" }, minCount = 1, description = "The base jar.")
+        @CmdOption(names = { "--base-jar" }, args = { "JAR" }, conflictsWith = { "--batch" }, description = "The base jar.")
         public String baseJar;
 
-        @CmdOption(names = { "--new-jar" }, args = { "JAR" }, minCount = 1, description = "The new jar.")
+        @CmdOption(names = { "--new-jar" }, args = { "JAR" }, conflictsWith = { "--batch", "--watch" }, description = "The new jar.")
         public String newJar;
 
         final Set<String> includes = new LinkedHashSet<String>();
@@ -86,47 +101,398 @@ public class Main {
 
         @CmdOption(names = { "--new-version" }, args = { "VERSION" }, description = "Version of the new jar (given with --new-jar).")
         public String newVersion;
+
+        @CmdOption(names = { "--text-report" }, args = { "FILE" }, description = "Write the differences between two jars as text to FILE.")
+        public String textReport;
+
+        @CmdOption(names = { "--xml-report" }, args = { "FILE" }, description = "Write the differences between two jars as XML to FILE.")
+        public String xmlReport;
+
+        @CmdOption(names = { "--json-report" }, args = { "FILE" }, description = "Write the differences between two jars as JSON to FILE.")
+        public String jsonReport;
+
+        @CmdOption(names = { "--compression-level" }, args = { "LEVEL" }, description = "Compression level (0-9) of reports written to FILEs ending with .gz.")
+        public String compressionLevel;
+
+        @CmdOption(names = { "--stats" }, description = "Write the time spent and the work done in each phase to standard error.")
+        public boolean stats;
+
+        @CmdOption(names = { "--batch" }, args = { "MANIFEST" }, conflictsWith = { "--diff", "--check", "--infer", "--validate" },
+                description = "Compare each pair of jars listed in MANIFEST, one line of options per pair, and write one JSON result per line.")
+        public String batch;
+
+        @CmdOption(names = { "--threads" }, args = { "COUNT" }, requires = { "--batch" }, description = "Number of pairs compared concurrently by --batch (default: number of processors).")
+        public String threads;
+
+        int threads() {
+            if (threads == null) {
+                return Runtime.getRuntime().availableProcessors();
+            }
+            try {
+                final int count = Integer.parseInt(threads);
+                if (count > 0) {
+                    return count;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            final String message = "Invalid thread count <" + threads + ">";
+            throw new CmdlineParserException(message, message);
+        }
+
+        @CmdOption(names = { "--heap-budget" }, args = { "MEGABYTES" }, conflictsWith = { "--watch" },
+                description = "Keep at most about MEGABYTES of parsed classes on the heap, spilling the others to temporary files, to compare jars too large for the heap.")
+        public String heapBudget;
+
+        /**
+         * @return the heap budget in bytes, negative if none
+         */
+        long heapBudget() {
+            if (heapBudget == null) {
+                return -1;
+            }
+            try {
+                final long megabytes = Long.parseLong(heapBudget);
+                if (megabytes >= 0 && megabytes <= Long.MAX_VALUE >> 20) {
+                    return megabytes << 20;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            final String message = "Invalid heap budget <" + heapBudget + ">";
+            throw new CmdlineParserException(message, message);
+        }
+
+        @CmdOption(names = { "--off-heap" }, conflictsWith = { "--watch", "--heap-budget" },
+                description = "Pack parsed classes outside of the heap, to relieve the garbage collector when comparing huge jars.")
+        public boolean offHeap;
+
+        @CmdOption(names = { "--watch" }, args = { "DIR" }, conflictsWith = { "--batch" },
+                description = "Compare the base jar with the classes in DIR each time they change, until interrupted.")
+        public String watch;
+
+        @CmdOption(names = { "--daemon" }, args = { "PORT" }, description = "Serve commands on the loopback PORT, keeping parsed jars in memory. Must be the only option.")
+        public String daemon;
+
+        @CmdOption(names = { "--connect" }, args = { "PORT" }, description = "Run the command in the daemon listening on the loopback PORT. Must come first.")
+        public String connect;
+
+        int compressionLevel() {
+            if (compressionLevel == null) {
+                return ReportStreams.DEFAULT_LEVEL;
+            }
+            try {
+                final int level = Integer.parseInt(compressionLevel);
+                if (level >= 0 && level <= 9) {
+                    return level;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            final String message = "Invalid compression level <" + compressionLevel + ">";
+            throw new CmdlineParserException(message, message);
+        }
     }
 
+    /**
+     * Environment variable holding the loopback port of a {@link DiffDaemon} commands are forwarded to when possible.
+     */
+    static final String DAEMON_PORT_VARIABLE = "SEMVER_DAEMON_PORT";
+
+    /**
+     * Milliseconds between two scans of the class directory given with <code>--watch</code>.
+     */
+    static final long WATCH_INTERVAL = 200;
+
     public static void main(final String[] args) throws IOException {
-        Config config = new Config();
-        CmdlineParser cmdlineParser = new CmdlineParser(config);
+        if (args.length > 0 && "--daemon".equals(args[0])) {
+            if (args.length != 2) {
+                System.err.println("Error: --daemon PORT must be the only option.\nRun semver --help for help.");
+                System.exit(1);
+            }
+            final DiffDaemon daemon = new DiffDaemon(parsePort(args[1]), new JarCache());
+            System.out.println("Listening on port " + daemon.getPort());
+            daemon.run();
+            return;
+        }
+
+        String[] commandArgs = args;
+        String port = System.getenv(DAEMON_PORT_VARIABLE);
+        final boolean connect = args.length > 0 && "--connect".equals(args[0]);
+        if (connect) {
+            if (args.length < 2) {
+                System.err.println("Error: --connect requires PORT.\nRun semver --help for help.");
+                System.exit(1);
+            }
+            port = args[1];
+            commandArgs = new String[args.length - 2];
+            System.arraycopy(args, 2, commandArgs, 0, commandArgs.length);
+        }
+        // --watch never returns, so it is only sent to a daemon to be rejected there
+        if (port != null && port.length() > 0 && (connect || DiffDaemon.localOption(commandArgs) == null)) {
+            try {
+                final int status = DiffDaemon.forward(parsePort(port), commandArgs, new File("").getAbsoluteFile(), System.out, System.err);
+                if (status != 0) {
+                    System.exit(status);
+                }
+                return;
+            } catch (ConnectException e) {
+                // Without an explicit --connect, run locally when no daemon is listening
+                if (connect) {
+                    throw e;
+                }
+            }
+        }
+
+        final int status = run(commandArgs, new File("").getAbsoluteFile(), System.out, System.err, null);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    private static int parsePort(final String port) {
+        try {
+            final int value = Integer.parseInt(port);
+            if (value >= 0 && value <= 0xffff) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid port <" + port + ">");
+    }
+
+    static File resolve(final File directory, final String path) {
+        final File file = new File(path);
+        return file.isAbsolute() ? file : new File(directory, path);
+    }
+
+    static CmdlineParser parser(final Config config) {
+        final CmdlineParser cmdlineParser = new CmdlineParser(config);
         // Load translations of command line descriptions
         cmdlineParser.setResourceBundle(Main.class.getPackage().getName() + ".Messages", Main.class.getClassLoader());
         cmdlineParser.setProgramName("semver");
         cmdlineParser.setAboutLine("Semantic Version validator.");
+        return cmdlineParser;
+    }
+
+    static void checkJars(final Config config) {
+        if (config.baseJar == null || (config.newJar == null && config.watch == null)) {
+            final String message = "Missing option: " + (config.baseJar == null ? "--base-jar" : "--new-jar");
+            throw new CmdlineParserException(message, message);
+        }
+    }
+
+    /**
+     * Compares the jars of <code>config</code> and writes the requested reports.
+     */
+    static Delta compare(final Config config, final File directory, final int compressionLevel, final JarCache jarCache,
+                         final DiffStatistics statistics) throws IOException {
+        final DiffCriteria diffCriteria = config.publicOnly ? new PublicDiffCriteria() : new SimpleDiffCriteria();
+        final long heapBudget = config.heapBudget();
+        // Cached classes stay on the heap, a budget or packing bypasses the cache
+        final Comparer comparer = new Comparer(diffCriteria, resolve(directory, config.baseJar), resolve(directory, config.newJar),
+                config.includes, false, config.excludes, false, heapBudget < 0 && !config.offHeap ? jarCache : null);
+        comparer.setHeapBudget(heapBudget);
+        comparer.setOffHeap(config.offHeap);
+        // All reports are fed from the same comparison
+        final List<DiffHandler> reportHandlers = new ArrayList<DiffHandler>();
+        // Closed by the handlers at the end of the diff, or below if it does not complete
+        final List<OutputStream> reportStreams = new ArrayList<OutputStream>();
+        final List<File> reportFiles = new ArrayList<File>();
+        final Delta delta;
+        boolean completed = false;
+        try {
+            if (config.xmlReport != null) {
+                final File file = resolve(directory, config.xmlReport);
+                final OutputStream stream = ReportStreams.openOutput(file, compressionLevel);
+                reportStreams.add(stream);
+                reportFiles.add(file);
+                try {
+                    reportHandlers.add(new StreamDiffHandler(stream));
+                } catch (DiffException e) {
+                    throw new IOException("Cannot write <" + config.xmlReport + ">", e);
+                }
+            }
+            if (config.jsonReport != null) {
+                final File file = resolve(directory, config.jsonReport);
+                final OutputStream stream = ReportStreams.openOutput(file, compressionLevel);
+                reportStreams.add(stream);
+                reportFiles.add(file);
+                reportHandlers.add(new JsonStreamDiffHandler(stream));
+            }
+            delta = comparer.diff(statistics, reportHandlers.toArray(new DiffHandler[reportHandlers.size()]));
+            completed = true;
+        } finally {
+            if (!completed) {
+                discard(reportStreams, reportFiles);
+            }
+        }
+
+        if (config.textReport != null) {
+            final long startNanos = statistics == null ? 0 : System.nanoTime();
+            final long startAllocated = statistics == null ? 0 : DiffStatistics.allocatedBytes();
+            final PrintStream report = new PrintStream(ReportStreams.openOutput(resolve(directory, config.textReport), compressionLevel), false, "UTF-8");
+            try {
+                Dumper.dump(delta, report);
+            } finally {
+                report.close();
+            }
+            if (statistics != null) {
+                statistics.recordSince(DiffStatistics.Phase.DUMP, startNanos, startAllocated, 0, delta.getDifferences().size(), 0);
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Closes and deletes the reports of a comparison which did not complete, rather than leaving them half written.
+     */
+    private static void discard(final List<OutputStream> streams, final List<File> files) {
+        for (final OutputStream stream : streams) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Deleted anyway
+            }
+        }
+        for (final File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Runs a single command, as {@link #main(String[])} does, without exiting the JVM.
+     *
+     * @param args the command line arguments
+     * @param directory the directory relative paths in <code>args</code> are resolved against
+     * @param out where to write results
+     * @param err where to write errors
+     * @param jarCache cache the JARs are taken from, <code>null</code> to parse them
+     * @return the exit status
+     * @throws IOException if a JAR cannot be read or a report cannot be written
+     */
+    static int run(final String[] args, final File directory, final PrintStream out, final PrintStream err, final JarCache jarCache) throws IOException {
+        final Config config = new Config();
+        final CmdlineParser cmdlineParser = parser(config);
+        int compressionLevel = ReportStreams.DEFAULT_LEVEL;
+        int threads = 0;
         try {
             cmdlineParser.parse(args);
+            compressionLevel = config.compressionLevel();
+            config.heapBudget();
+            if (config.daemon != null || config.connect != null) {
+                final String message = "--daemon and --connect must come first";
+                throw new CmdlineParserException(message, message);
+            }
+            if (config.batch != null) {
+                threads = config.threads();
+            } else if (!config.help) {
+                checkJars(config);
+            }
         } catch (CmdlineParserException e) {
-            System.err.println("Error: " + e.getLocalizedMessage() + "\nRun semver --help for help.");
-            System.exit(1);
+            err.println("Error: " + e.getLocalizedMessage() + "\nRun semver --help for help.");
+            return 1;
         }
 
         if (config.help) {
-            cmdlineParser.usage();
-            System.exit(0);
+            final StringBuilder usage = new StringBuilder();
+            cmdlineParser.usage(usage);
+            out.print(usage);
+            return 0;
         }
 
-        final DiffCriteria diffCriteria = config.publicOnly ? new PublicDiffCriteria() : new SimpleDiffCriteria();
-        final Comparer comparer = new Comparer(diffCriteria, new File(config.baseJar), new File(config.newJar),
-                config.includes, config.excludes);
-        final Delta delta = comparer.diff();
+        final DiffStatistics statistics = config.stats ? new DiffStatistics() : null;
+        if (config.batch != null) {
+            final Batch batch = new Batch(jarCache != null ? jarCache : new JarCache(), threads);
+            batch.setStatistics(statistics);
+            final int status = batch.run(resolve(directory, config.batch), compressionLevel, out);
+            if (statistics != null) {
+                statistics.appendTo(err);
+            }
+            return status;
+        }
+
+        if (config.watch != null) {
+            return watch(config, directory, out, jarCache);
+        }
 
+        final Delta delta = compare(config, directory, compressionLevel, jarCache, statistics);
+        final long startNanos = statistics == null ? 0 : System.nanoTime();
+        final long startAllocated = statistics == null ? 0 : DiffStatistics.allocatedBytes();
+        report(config, delta, out);
+        if (statistics != null) {
+            statistics.recordSince(DiffStatistics.Phase.DUMP, startNanos, startAllocated, 0, delta.getDifferences().size(), 0);
+            statistics.appendTo(err);
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the results of the operation requested by <code>config</code>.
+     */
+    static void report(final Config config, final Delta delta, final Appendable out) throws IOException {
+        final String lineSeparator = System.getProperty("line.separator");
         if (config.diff) {
-            Dumper.dump(delta);
+            Dumper.dump(delta, out);
         }
 
         if (config.check) {
-            System.out.println(delta.computeCompatibilityType());
+            out.append(delta.computeCompatibilityType().toString()).append(lineSeparator);
         }
 
         if (config.infer) {
-            System.out.println(delta.infer(Version.parse(config.baseVersion)));
+            out.append(delta.infer(Version.parse(config.baseVersion)).toString()).append(lineSeparator);
         }
 
         if (config.validate) {
-            System.out.println(delta.validate(Version.parse(config.baseVersion), Version.parse(config.newVersion)));
+            out.append(String.valueOf(delta.validate(Version.parse(config.baseVersion), Version.parse(config.newVersion)))).append(lineSeparator);
+        }
+    }
+
+    /**
+     * Polls the class directory of <code>config</code> every {@link #WATCH_INTERVAL} milliseconds, only parsing and
+     * diffing again the classes which changed, and writes the results again each time they change.
+     *
+     * @return the exit status once interrupted
+     */
+    static int watch(final Config config, final File directory, final PrintStream out, final JarCache jarCache) throws IOException {
+        final File baseJar = resolve(directory, config.baseJar);
+        final Map<String, ClassInfo> oldClasses;
+        if (jarCache != null) {
+            oldClasses = jarCache.getClasses(baseJar);
+        } else {
+            try {
+                oldClasses = new JarDiff().loadClasses(baseJar);
+            } catch (DiffException e) {
+                throw new IOException("Cannot read <" + config.baseJar + ">", e);
+            }
+        }
+        final DiffCriteria diffCriteria = config.publicOnly ? new PublicDiffCriteria() : new SimpleDiffCriteria();
+        final IncrementalDiff diff = new IncrementalDiff(diffCriteria, oldClasses, config.includes, config.excludes);
+        final ClassDirectoryWatcher watcher = new ClassDirectoryWatcher(resolve(directory, config.watch));
+        if (!config.diff && !config.infer && !config.validate) {
+            config.check = true;
         }
 
+        String previous = null;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (watcher.scan()) {
+                    diff.update(watcher.getUpdated(), watcher.getRemoved());
+                    final StringBuilder current = new StringBuilder();
+                    report(config, diff.getDelta(), current);
+                    if (!current.toString().equals(previous)) {
+                        previous = current.toString();
+                        out.print(previous);
+                        out.flush();
+                    }
+                }
+                Thread.sleep(WATCH_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
     }
 }
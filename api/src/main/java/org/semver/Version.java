@@ -16,16 +16,20 @@
  */
 package org.semver;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
-import org.apache.commons.lang.StringUtils;
-
 /**
  *
  * Version following semantic defined by <a href="http://semver.org/">Semantic Versioning</a> document.
@@ -42,20 +46,44 @@ public final class Version implements Comparable<Version> {
     }
 
     private static final String FORMAT = "(\\d+)\\.(\\d+)(?:\\.)?(\\d*)(\\.|-|\\+)?([0-9A-Za-z-.]*)?";
-    private static final Pattern PATTERN = Pattern.compile(Version.FORMAT);
 
-    private static final Pattern DIGITS_ONLY = Pattern.compile("\\d+");
+    /**
+     * Number of entries of the parse cache, a power of two.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Direct mapped cache of parsed versions, indexed by the hash of the parsed string.
+     */
+    private static final AtomicReferenceArray<CacheEntry> CACHE = new AtomicReferenceArray<CacheEntry>(Version.CACHE_SIZE);
+
+    private static final class CacheEntry {
+        private final String string;
+        private final Version version;
+
+        CacheEntry(final String string, final Version version) {
+            this.string = string;
+            this.version = version;
+        }
+    }
 
     private static final String SNAPSHOT_VERSION_SUFFIX = "SNAPSHOT";
 
+    private static final int KEY_ELEMENT_BITS = 21;
+    private static final int KEY_ELEMENT_LIMIT = 1 << Version.KEY_ELEMENT_BITS;
+
     private final int major;
     private final int minor;
     private final int patch;
     private final String separator;
     private final Special special;
+    /**
+     * Major, minor and patch packed in 21 bits each so that they compare as one long, or -1 if one does not fit.
+     */
+    private final long key;
 
     public Version(@Nonnegative final int major, @Nonnegative final int minor, @Nonnegative final int patch) {
-        this(major, minor, patch, null, null);
+        this(major, minor, patch, null, (String) null);
     }
 
     public Version(@Nonnegative final int major, @Nonnegative final int minor, @Nonnegative final int patch, @Nullable final String separator, @Nullable final String special) {
@@ -73,45 +101,135 @@ public final class Version implements Comparable<Version> {
         this.minor = minor;
         this.patch = patch;
         this.separator = separator;
-        this.special = parseSpecial(special);
+        this.special = special == null ? null : Special.parse(special, 0, special.length());
+        this.key = packKey(major, minor, patch);
     }
 
-    private Special parseSpecial(String specialString) {
-      if (specialString == null) {
-        return null;
-      }
-      Special special = new Special(specialString);
-      if (special.ids.length == 0) {
-        return null;
-      }
-      return special;
+    /**
+     * Used by {@link #parse(String)}, whose elements are known to be positive.
+     */
+    private Version(final int major, final int minor, final int patch, final String separator, final Special special) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.separator = separator;
+        this.special = special;
+        this.key = packKey(major, minor, patch);
+    }
+
+    private static long packKey(final int major, final int minor, final int patch) {
+        if (major >= Version.KEY_ELEMENT_LIMIT || minor >= Version.KEY_ELEMENT_LIMIT || patch >= Version.KEY_ELEMENT_LIMIT) {
+            return -1;
+        }
+        return ((long) major << (2 * Version.KEY_ELEMENT_BITS)) | ((long) minor << Version.KEY_ELEMENT_BITS) | patch;
     }
 
     /**
      *
      * Creates a Version from a string representation. Must match Version#FORMAT.
+     * Recently parsed strings are served from a small cache.
      *
      * @param version
      * @return
      */
     public static Version parse(@Nonnull final String version) {
-        final Matcher matcher = Version.PATTERN.matcher(version);
-        if (!matcher.matches()) {
-            throw new IllegalArgumentException("<"+version+"> does not match format "+Version.FORMAT);
-        }
-
-        final int major = Integer.valueOf(matcher.group(1));
-        final int minor = Integer.valueOf(matcher.group(2));
-        final int patch;
-        final String patchMatch = matcher.group(3);
-        if (StringUtils.isNotEmpty(patchMatch)) {
-           patch = Integer.valueOf(patchMatch);
-        } else {
-            patch = 0;
-        }
-        final String separator = matcher.group(4);
-        final String special = matcher.group(5);
-        return new Version(major, minor, patch, separator, "".equals(special) ? null : special);
+        final int hash = version.hashCode();
+        final int index = (hash ^ (hash >>> 16)) & (Version.CACHE_SIZE - 1);
+        final CacheEntry entry = Version.CACHE.get(index);
+        if (entry != null && entry.string.equals(version)) {
+            return entry.version;
+        }
+
+        final Version parsed = parseUncached(version);
+        Version.CACHE.set(index, new CacheEntry(version, parsed));
+        return parsed;
+    }
+
+    /**
+     * Single pass equivalent of matching {@link #FORMAT}: major and minor are the longest runs of digits, followed by
+     * an optional dot, the patch digits, an optional separator and the special part.
+     */
+    private static Version parseUncached(final String version) {
+        final int length = version.length();
+        int i = 0;
+        while (i < length && isDigit(version.charAt(i))) {
+            i++;
+        }
+        final int majorEnd = i;
+        if (majorEnd == 0 || i == length || version.charAt(i) != '.') {
+            throw doesNotMatch(version);
+        }
+        final int minorStart = ++i;
+        while (i < length && isDigit(version.charAt(i))) {
+            i++;
+        }
+        final int minorEnd = i;
+        if (minorEnd == minorStart) {
+            throw doesNotMatch(version);
+        }
+        if (i < length && version.charAt(i) == '.') {
+            i++;
+        }
+        final int patchStart = i;
+        while (i < length && isDigit(version.charAt(i))) {
+            i++;
+        }
+        final int patchEnd = i;
+        String separator = null;
+        if (i < length) {
+            switch (version.charAt(i)) {
+                case '.':
+                    separator = ".";
+                    break;
+                case '-':
+                    separator = "-";
+                    break;
+                case '+':
+                    separator = "+";
+                    break;
+                default:
+                    break;
+            }
+            if (separator != null) {
+                i++;
+            }
+        }
+        final int specialStart = i;
+        for (; i < length; i++) {
+            final char c = version.charAt(i);
+            if (!isDigit(c) && !(c >= 'A' && c <= 'Z') && !(c >= 'a' && c <= 'z') && c != '-' && c != '.') {
+                throw doesNotMatch(version);
+            }
+        }
+
+        final int major = parseInt(version, 0, majorEnd);
+        final int minor = parseInt(version, minorStart, minorEnd);
+        final int patch = patchStart == patchEnd ? 0 : parseInt(version, patchStart, patchEnd);
+        final Special special = specialStart == length ? null : Special.parse(version, specialStart, length);
+        return new Version(major, minor, patch, separator, special);
+    }
+
+    private static IllegalArgumentException doesNotMatch(final String version) {
+        return new IllegalArgumentException("<"+version+"> does not match format "+Version.FORMAT);
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Parses digits between <code>from</code> and <code>to</code>, failing like {@link Integer#parseInt(String)} on
+     * overflow.
+     */
+    private static int parseInt(final String digits, final int from, final int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (digits.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                return Integer.parseInt(digits.substring(from, to));
+            }
+        }
+        return (int) value;
     }
 
     /**
@@ -168,6 +286,10 @@ public final class Version implements Comparable<Version> {
         return this.special != null && this.special.isSnapshot();
     }
 
+    boolean isPreRelease() {
+        return this.special != null;
+    }
+
     /**
      * @param version version to check with
      * @return {@code true}, if supplied version is compatible with this version, {@code false} - otherwise
@@ -200,13 +322,16 @@ public final class Version implements Comparable<Version> {
     }
 
 
-    private static SpecialId parseSpecialId(String id) {
-      Matcher matcher = DIGITS_ONLY.matcher(id);
-      if (matcher.matches()) {
-        return new IntId(Integer.parseInt(id));
-      } else {
-        return new StringId(id);
+    private static SpecialId parseSpecialId(String s, int from, int to) {
+      for (int i = from; i < to; i++) {
+        if (!isDigit(s.charAt(i))) {
+          return new StringId(s.substring(from, to));
+        }
       }
+      if (from == to) {
+        return new StringId("");
+      }
+      return new IntId(parseInt(s, from, to));
     }
 
     abstract private static class SpecialId implements Comparable<SpecialId> {
@@ -245,6 +370,14 @@ public final class Version implements Comparable<Version> {
       public int compareTo(StringId other) {
         return id.compareTo(other.id);
       }
+      @Override
+      public boolean equals(Object object) {
+        return object instanceof StringId && id.equals(((StringId) object).id);
+      }
+      @Override
+      public int hashCode() {
+        return id.hashCode();
+      }
     }
 
     private static class IntId extends SpecialId {
@@ -275,16 +408,54 @@ public final class Version implements Comparable<Version> {
         //Numeric identifiers always have lower precedence than non-numeric identifiers.
         return -1;
       }
+      @Override
+      public boolean equals(Object object) {
+        return object instanceof IntId && id == ((IntId) object).id;
+      }
+      @Override
+      public int hashCode() {
+        return id;
+      }
     }
 
     private static class Special implements Comparable<Special> {
       private final SpecialId[] ids;
-      Special(String s) {
-        String[] split = s.split("\\.");
-        ids = new SpecialId[split.length];
-        for (int i = 0; i < split.length; i++) {
-          ids[i] = parseSpecialId(split[i]);
+      private Special(SpecialId[] ids) {
+        this.ids = ids;
+      }
+
+      /**
+       * Splits the identifiers between <code>from</code> and <code>to</code> on dots, dropping trailing empty ones
+       * like {@link String#split(String)}.
+       * @return the special, or null if there is no identifier
+       */
+      static Special parse(String s, int from, int to) {
+        if (from == to) {
+          return new Special(new SpecialId[] { new StringId("") });
+        }
+        while (to > from && s.charAt(to - 1) == '.') {
+          to--;
+        }
+        if (to == from) {
+          return null;
+        }
+        int count = 1;
+        for (int i = from; i < to; i++) {
+          if (s.charAt(i) == '.') {
+            count++;
+          }
         }
+        SpecialId[] ids = new SpecialId[count];
+        int start = from;
+        int id = 0;
+        for (int i = from; i < to; i++) {
+          if (s.charAt(i) == '.') {
+            ids[id++] = parseSpecialId(s, start, i);
+            start = i + 1;
+          }
+        }
+        ids[id] = parseSpecialId(s, start, to);
+        return new Special(ids);
       }
 
       public SpecialId last() {
@@ -315,6 +486,20 @@ public final class Version implements Comparable<Version> {
         return 0;
       }
 
+      @Override
+      public boolean equals(Object object) {
+        return object instanceof Special && compareTo((Special) object) == 0;
+      }
+
+      @Override
+      public int hashCode() {
+        int hash = 1;
+        for (SpecialId id : ids) {
+          hash = 31 * hash + id.hashCode();
+        }
+        return hash;
+      }
+
       @Override
       public String toString() {
         final StringBuilder builder = new StringBuilder();
@@ -331,30 +516,147 @@ public final class Version implements Comparable<Version> {
 
     @Override
     public int compareTo(final Version other) {
-        if (equals(other)) {
-            return 0;
+        final int result = compareElements(other);
+        if (result != 0) {
+            return result;
+        }
+        return compareSpecials(this.special, other.special);
+    }
+
+    /**
+     * @return the comparison of major, minor and patch only
+     */
+    int compareElements(final Version other) {
+        if (this.key >= 0 && other.key >= 0) {
+            if (this.key == other.key) {
+                return 0;
+            }
+            return this.key < other.key ? -1 : 1;
         }
+        if (this.major != other.major) {
+            return this.major < other.major ? -1 : 1;
+        }
+        if (this.minor != other.minor) {
+            return this.minor < other.minor ? -1 : 1;
+        }
+        if (this.patch != other.patch) {
+            return this.patch < other.patch ? -1 : 1;
+        }
+        return 0;
+    }
 
-        if (this.major < other.major) {
+    /**
+     * A pre-release has lower precedence than the release.
+     */
+    private static int compareSpecials(final Special special, final Special otherSpecial) {
+        if (special != null && otherSpecial != null) {
+            return special.compareTo(otherSpecial);
+        } else if (otherSpecial != null) {
+            return 1;
+        } else if (special != null) {
             return -1;
-        } else if (this.major == other.major) {
-            if (this.minor < other.minor) {
-                return -1;
-            } else if (this.minor == other.minor) {
-                if (this.patch < other.patch) {
-                    return -1;
-                } else if (this.patch == other.patch) {
-                    if (this.special != null && other.special != null) {
-                        return this.special.compareTo(other.special);
-                    } else if (other.special != null) {
-                        return 1;
-                    } else if (this.special != null) {
-                       return -1;
-                    } // else handled by previous equals check
+        }
+        return 0;
+    }
+
+    /**
+     * Sorts <code>versions</code> in ascending order, exactly like {@link java.util.Collections#sort(List)} does but
+     * sorting the packed major, minor and patch as primitive keys, pre-releases only being compared with
+     * {@link Special#compareTo(Special)} when they share their key.
+     *
+     * @param versions the versions to sort, without null elements
+     */
+    public static void sort(@Nonnull final List<Version> versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("null versions");
+        }
+
+        final Version[] array = versions.toArray(new Version[versions.size()]);
+        final int size = array.length;
+        final long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = array[i].key;
+            if (keys[i] < 0) {
+                // Rare enough not to deserve primitive keys
+                Collections.sort(versions);
+                return;
+            }
+        }
+
+        // Distinct keys, in order
+        final long[] distinct = keys.clone();
+        Arrays.sort(distinct);
+        int groupCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                distinct[groupCount++] = distinct[i];
+            }
+        }
+
+        // Versions sharing a key are placed together, in their original order, then ordered by pre-release
+        final int[] groups = new int[size];
+        final int[] starts = new int[groupCount + 1];
+        for (int i = 0; i < size; i++) {
+            groups[i] = Arrays.binarySearch(distinct, 0, groupCount, keys[i]);
+            starts[groups[i] + 1]++;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            starts[group + 1] += starts[group];
+        }
+        final int[] next = starts.clone();
+        final boolean[] hasPreRelease = new boolean[groupCount];
+        final Version[] sorted = new Version[size];
+        for (int i = 0; i < size; i++) {
+            sorted[next[groups[i]]++] = array[i];
+            hasPreRelease[groups[i]] |= array[i].special != null;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            if (hasPreRelease[group] && starts[group + 1] - starts[group] > 1) {
+                Arrays.sort(sorted, starts[group], starts[group + 1], Version.SPECIAL_ORDER);
+            }
+        }
+
+        final ListIterator<Version> iterator = versions.listIterator();
+        for (final Version version : sorted) {
+            iterator.next();
+            iterator.set(version);
+        }
+    }
+
+    /**
+     * Orders versions by pre-release only, releases last.
+     */
+    private static final Comparator<Version> SPECIAL_ORDER = new Comparator<Version>() {
+        public int compare(final Version version1, final Version version2) {
+            return compareSpecials(version1.special, version2.special);
+        }
+    };
+
+    /**
+     * @param versions the versions to compare
+     * @return the greatest of <code>versions</code>, the first one if several are equal
+     * @throws java.util.NoSuchElementException if <code>versions</code> is empty
+     */
+    @Nonnull
+    public static Version max(@Nonnull final Collection<Version> versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("null versions");
+        }
+
+        final Iterator<Version> iterator = versions.iterator();
+        Version max = iterator.next();
+        while (iterator.hasNext()) {
+            final Version version = iterator.next();
+            if (version.key >= 0 && max.key >= 0 && version.key != max.key) {
+                if (version.key > max.key) {
+                    max = version;
                 }
+            } else if (version.compareTo(max) > 0) {
+                // Pre-releases of the same version, or elements too large for a key
+                max = version;
             }
         }
-        return 1; //if this (major, minor or patch) is > than other
+        return max;
     }
 
     @Override
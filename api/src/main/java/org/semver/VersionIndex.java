@@ -0,0 +1,168 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ *
+ * Released versions of an artifact, each parsed once and sorted following Semantic Versioning, answering which
+ * release precedes a given {@link Version} by binary search.
+ * Snapshots are not releases; strings not following {@link Version} format are ignored.
+ *
+ */
+@Immutable
+public final class VersionIndex {
+
+    private final Version[] releases;
+    private final String[] releaseStrings;
+    private final List<String> ignored;
+
+    public VersionIndex(@Nonnull final Collection<String> versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("null versions");
+        }
+
+        final List<Version> parsed = new ArrayList<Version>(versions.size());
+        final Map<Version, String> strings = new IdentityHashMap<Version, String>();
+        final List<String> ignored = new ArrayList<String>();
+        for (final String string : versions) {
+            final Version version;
+            try {
+                version = Version.parse(string);
+            } catch (IllegalArgumentException e) {
+                // Includes NumberFormatException
+                ignored.add(string);
+                continue;
+            }
+            if (!version.isSnapshot()) {
+                parsed.add(version);
+                strings.put(version, string);
+            }
+        }
+        Version.sort(parsed);
+
+        this.releases = parsed.toArray(new Version[parsed.size()]);
+        this.releaseStrings = new String[this.releases.length];
+        for (int i = 0; i < this.releases.length; i++) {
+            this.releaseStrings[i] = strings.get(this.releases[i]);
+        }
+        this.ignored = Collections.unmodifiableList(ignored);
+    }
+
+    /**
+     * @return all releases, from oldest to most recent
+     */
+    @Nonnull
+    public List<String> getReleases() {
+        final List<String> releases = new ArrayList<String>(this.releaseStrings.length);
+        Collections.addAll(releases, this.releaseStrings);
+        return releases;
+    }
+
+    /**
+     * @return versions not following {@link Version} format
+     */
+    @Nonnull
+    public List<String> getIgnored() {
+        return this.ignored;
+    }
+
+    /**
+     * @param version
+     * @return releases compatible with and preceding <code>version</code>, from most recent to oldest
+     */
+    @Nonnull
+    public List<String> getCompatibleReleasesBefore(@Nonnull final Version version) {
+        if (version == null) {
+            throw new IllegalArgumentException("null version");
+        }
+
+        final List<String> compatibleReleases = new ArrayList<String>();
+        for (int i = indexOf(version) - 1; i >= 0 && version.isCompatible(this.releases[i]); i--) {
+            compatibleReleases.add(this.releaseStrings[i]);
+        }
+        return compatibleReleases;
+    }
+
+    /**
+     * @param version
+     * @return the most recent release compatible with and preceding <code>version</code>, null if there is none
+     */
+    @Nullable
+    public String getLatestCompatibleReleaseBefore(@Nonnull final Version version) {
+        if (version == null) {
+            throw new IllegalArgumentException("null version");
+        }
+
+        final int index = indexOf(version) - 1;
+        if (index >= 0 && version.isCompatible(this.releases[index])) {
+            return this.releaseStrings[index];
+        }
+        return null;
+    }
+
+    /**
+     * @param version
+     * @param range
+     * @return the most recent release preceding <code>version</code> and belonging to <code>range</code>, null if
+     *         there is none
+     */
+    @Nullable
+    public String getLatestReleaseBefore(@Nonnull final Version version, @Nonnull final VersionRange range) {
+        if (version == null) {
+            throw new IllegalArgumentException("null version");
+        }
+        if (range == null) {
+            throw new IllegalArgumentException("null range");
+        }
+
+        for (int i = indexOf(version) - 1; i >= 0; i--) {
+            if (range.matches(this.releases[i])) {
+                return this.releaseStrings[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the first release not preceding <code>version</code>
+     */
+    private int indexOf(final Version version) {
+        int low = 0;
+        int high = this.releases.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (this.releases[middle].compareTo(version) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
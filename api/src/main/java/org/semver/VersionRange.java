@@ -0,0 +1,453 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ *
+ * A set of {@link Version}s described by an expression, compiled once into a program of primitive comparisons.
+ * <p>
+ * An expression is a list of alternatives separated by <code>||</code>, each of them either:
+ * <ul>
+ * <li>Maven intervals such as <code>[1.2,2.0)</code>, <code>[1.0,)</code>, <code>(,1.0]</code> or <code>[1.2]</code>,
+ * several intervals separated by commas meaning their union</li>
+ * <li>comparators separated by spaces, all of which must be satisfied: <code>&gt;=1.2.0 &lt;2.0.0</code>,
+ * <code>=1.2.3</code> (or <code>1.2.3</code>), <code>^1.4</code> (up to next major, or next minor for
+ * <code>0.x</code>) and <code>~1.4.2</code> (up to next minor)</li>
+ * </ul>
+ * <code>*</code> or an empty expression match all releases. Empty alternatives and wildcard elements such as
+ * <code>1.x</code> are rejected, <code>^1</code> or <code>~1.2</code> being the way to write them.
+ * </p>
+ * <p>
+ * Versions are compared with {@link Version#compareTo(Version)}. Like in node-semver, a pre-release only matches an
+ * alternative having a bound with a pre-release on the same major, minor and patch: <code>&gt;=1.2.0-RC1</code> matches
+ * <code>1.2.0-RC2</code> but not <code>1.3.0-RC1</code>.
+ * </p>
+ *
+ */
+@Immutable
+public final class VersionRange {
+
+    private static final int EQ = 0;
+    private static final int GT = 1;
+    private static final int GE = 2;
+    private static final int LT = 3;
+    private static final int LE = 4;
+
+    private final String expression;
+
+    /**
+     * For each alternative: the number of comparisons, then an operator and an operand index per comparison, then
+     * the number of operands with a pre-release and their indexes.
+     */
+    private final int[] program;
+    private final Version[] operands;
+
+    private VersionRange(final String expression, final int[] program, final Version[] operands) {
+        this.expression = expression;
+        this.program = program;
+        this.operands = operands;
+    }
+
+    /**
+     *
+     * Compiles a range expression.
+     *
+     * @param expression
+     * @return
+     */
+    public static VersionRange parse(@Nonnull final String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("null expression");
+        }
+
+        final Compiler compiler = new Compiler(expression);
+        final List<String> alternatives = split(expression, "||");
+        for (final String alternative : alternatives) {
+            final String trimmed = alternative.trim();
+            if (trimmed.length() == 0 && alternatives.size() > 1) {
+                throw compiler.invalid("empty alternative");
+            }
+            if (trimmed.startsWith("[") || trimmed.startsWith("(")) {
+                compiler.intervals(trimmed);
+            } else {
+                compiler.comparators(trimmed);
+            }
+        }
+        return compiler.compile();
+    }
+
+    /**
+     * @param version
+     * @return true if <code>version</code> belongs to this range
+     */
+    public boolean matches(@Nonnull final Version version) {
+        final int[] program = this.program;
+        int pc = 0;
+        while (pc < program.length) {
+            boolean matches = true;
+            final int comparisons = program[pc++];
+            for (int i = 0; i < comparisons; i++) {
+                final int operator = program[pc++];
+                final Version operand = this.operands[program[pc++]];
+                if (matches && !satisfies(operator, version.compareTo(operand))) {
+                    matches = false;
+                }
+            }
+            final int preReleases = program[pc++];
+            if (matches && version.isPreRelease()) {
+                matches = false;
+                for (int i = 0; i < preReleases; i++) {
+                    if (version.compareElements(this.operands[program[pc + i]]) == 0) {
+                        matches = true;
+                        break;
+                    }
+                }
+            }
+            pc += preReleases;
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param versions
+     * @return versions belonging to this range, in iteration order
+     */
+    @Nonnull
+    public List<Version> filter(@Nonnull final Collection<Version> versions) {
+        if (versions == null) {
+            throw new IllegalArgumentException("null versions");
+        }
+
+        final List<Version> matching = new ArrayList<Version>();
+        for (final Version version : versions) {
+            if (matches(version)) {
+                matching.add(version);
+            }
+        }
+        return matching;
+    }
+
+    private static boolean satisfies(final int operator, final int comparison) {
+        switch (operator) {
+            case EQ:
+                return comparison == 0;
+            case GT:
+                return comparison > 0;
+            case GE:
+                return comparison >= 0;
+            case LT:
+                return comparison < 0;
+            default:
+                return comparison <= 0;
+        }
+    }
+
+    private static List<String> split(final String string, final String separator) {
+        final List<String> parts = new ArrayList<String>();
+        int from = 0;
+        int index;
+        while ((index = string.indexOf(separator, from)) >= 0) {
+            parts.add(string.substring(from, index));
+            from = index + separator.length();
+        }
+        parts.add(string.substring(from));
+        return parts;
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+    /**
+     * Accumulates the program while parsing.
+     */
+    private static final class Compiler {
+        private final String expression;
+        private final List<Integer> program = new ArrayList<Integer>();
+        private final List<Version> operands = new ArrayList<Version>();
+        private final List<Integer> comparisons = new ArrayList<Integer>();
+
+        Compiler(final String expression) {
+            this.expression = expression;
+        }
+
+        IllegalArgumentException invalid(final String reason) {
+            return new IllegalArgumentException("<"+this.expression+"> is not a valid version range: "+reason);
+        }
+
+        private void compare(final int operator, final Version operand) {
+            this.comparisons.add(operator);
+            this.comparisons.add(this.operands.size());
+            this.operands.add(operand);
+        }
+
+        private void endAlternative() {
+            final int count = this.comparisons.size() / 2;
+            this.program.add(count);
+            this.program.addAll(this.comparisons);
+            final List<Integer> preReleases = new ArrayList<Integer>();
+            for (int i = 1; i < this.comparisons.size(); i += 2) {
+                final int operand = this.comparisons.get(i);
+                if (this.operands.get(operand).isPreRelease()) {
+                    preReleases.add(operand);
+                }
+            }
+            this.program.add(preReleases.size());
+            this.program.addAll(preReleases);
+            this.comparisons.clear();
+        }
+
+        /**
+         * Maven intervals, each one an alternative.
+         */
+        void intervals(final String alternative) {
+            int i = 0;
+            while (i < alternative.length()) {
+                final char open = alternative.charAt(i);
+                if (open != '[' && open != '(') {
+                    throw invalid("expected '[' or '(' at <"+alternative.substring(i)+">");
+                }
+                int close = i + 1;
+                while (close < alternative.length() && alternative.charAt(close) != ']' && alternative.charAt(close) != ')') {
+                    close++;
+                }
+                if (close == alternative.length()) {
+                    throw invalid("unclosed interval <"+alternative.substring(i)+">");
+                }
+                interval(open, alternative.substring(i + 1, close), alternative.charAt(close));
+                i = close + 1;
+                while (i < alternative.length() && Character.isWhitespace(alternative.charAt(i))) {
+                    i++;
+                }
+                if (i < alternative.length()) {
+                    if (alternative.charAt(i) != ',') {
+                        throw invalid("expected ',' between intervals");
+                    }
+                    i++;
+                    while (i < alternative.length() && Character.isWhitespace(alternative.charAt(i))) {
+                        i++;
+                    }
+                    if (i == alternative.length()) {
+                        throw invalid("missing interval after ','");
+                    }
+                }
+            }
+        }
+
+        private void interval(final char open, final String bounds, final char close) {
+            final int comma = bounds.indexOf(',');
+            if (comma < 0) {
+                if (open != '[' || close != ']') {
+                    throw invalid("a single version must be written [version]");
+                }
+                compare(EQ, version(bounds.trim()));
+            } else {
+                final String lower = bounds.substring(0, comma).trim();
+                final String upper = bounds.substring(comma + 1).trim();
+                if (lower.length() == 0 && upper.length() == 0) {
+                    throw invalid("an interval needs at least one bound");
+                }
+                if (lower.length() > 0) {
+                    compare(open == '[' ? GE : GT, version(lower));
+                }
+                if (upper.length() > 0) {
+                    compare(close == ']' ? LE : LT, version(upper));
+                }
+            }
+            endAlternative();
+        }
+
+        /**
+         * Comparators separated by spaces, an operator being possibly separated from its version.
+         */
+        void comparators(final String alternative) {
+            final List<String> tokens = new ArrayList<String>();
+            for (final String token : alternative.split("\\s+")) {
+                if (token.length() == 0) {
+                    continue;
+                }
+                final int size = tokens.size();
+                if (size > 0 && isOperator(tokens.get(size - 1))) {
+                    tokens.set(size - 1, tokens.get(size - 1) + token);
+                } else {
+                    tokens.add(token);
+                }
+            }
+            for (final String token : tokens) {
+                comparator(token);
+            }
+            endAlternative();
+        }
+
+        private static boolean isOperator(final String token) {
+            return token.equals(">") || token.equals(">=") || token.equals("<") || token.equals("<=")
+                    || token.equals("=") || token.equals("^") || token.equals("~");
+        }
+
+        private void comparator(final String token) {
+            if (token.equals("*")) {
+                return;
+            }
+            if (token.startsWith(">=")) {
+                compare(GE, version(token.substring(2)));
+            } else if (token.startsWith("<=")) {
+                compare(LE, version(token.substring(2)));
+            } else if (token.startsWith(">")) {
+                compare(GT, version(token.substring(1)));
+            } else if (token.startsWith("<")) {
+                compare(LT, version(token.substring(1)));
+            } else if (token.startsWith("=")) {
+                compare(EQ, version(token.substring(1)));
+            } else if (token.startsWith("^")) {
+                final String operand = token.substring(1);
+                final int parts = parts(operand);
+                final int[] elements = elements(operand);
+                final Version upper;
+                if (elements[0] > 0 || parts == 1) {
+                    upper = new Version(elements[0] + 1, 0, 0);
+                } else if (elements[1] > 0 || parts == 2) {
+                    upper = new Version(0, elements[1] + 1, 0);
+                } else {
+                    upper = new Version(0, 0, elements[2] + 1);
+                }
+                compare(GE, version(operand));
+                compare(LT, upper);
+            } else if (token.startsWith("~")) {
+                final String operand = token.substring(1);
+                final int[] elements = elements(operand);
+                compare(GE, version(operand));
+                compare(LT, parts(operand) == 1 ? new Version(elements[0] + 1, 0, 0) : new Version(elements[0], elements[1] + 1, 0));
+            } else {
+                compare(EQ, version(token));
+            }
+        }
+
+        /**
+         * @return the number of major, minor and patch elements written in <code>version</code>
+         */
+        private static int parts(final String version) {
+            int parts = 1;
+            for (int i = 0; i < version.length(); i++) {
+                final char c = version.charAt(i);
+                if (c == '.' && parts < 3 && i + 1 < version.length() && isDigit(version.charAt(i + 1))) {
+                    parts++;
+                } else if (!isDigit(c)) {
+                    break;
+                }
+            }
+            return parts;
+        }
+
+        /**
+         * @return major, minor and patch written in <code>version</code>, missing ones being 0
+         */
+        private int[] elements(final String version) {
+            final int[] elements = new int[3];
+            final int parts = parts(version);
+            int i = 0;
+            for (int element = 0; element < parts; element++) {
+                final int start = i;
+                while (i < version.length() && isDigit(version.charAt(i))) {
+                    i++;
+                }
+                try {
+                    elements[element] = Integer.parseInt(version.substring(start, i));
+                } catch (NumberFormatException e) {
+                    throw invalid("<"+version+"> is not a valid version");
+                }
+                i++;
+            }
+            return elements;
+        }
+
+        private static boolean isDigit(final char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        /**
+         * Parses an operand, a missing minor meaning 0.
+         */
+        private Version version(final String operand) {
+            if (operand.length() == 0) {
+                throw invalid("missing version");
+            }
+            if (hasWildcard(operand)) {
+                throw invalid("wildcard in <"+operand+">, use ^ or ~ instead");
+            }
+            final String completed = parts(operand) == 1 ? completeMinor(operand) : operand;
+            try {
+                return Version.parse(completed);
+            } catch (IllegalArgumentException e) {
+                throw invalid(e.getMessage());
+            }
+        }
+
+        /**
+         * @return true if the element following the written major or minor is a wildcard, as in <code>1.x</code>
+         */
+        private static boolean hasWildcard(final String operand) {
+            final int parts = parts(operand);
+            if (parts == 3) {
+                return false;
+            }
+            int i = 0;
+            for (int element = 0; element < parts; element++) {
+                while (i < operand.length() && isDigit(operand.charAt(i))) {
+                    i++;
+                }
+                i++;
+            }
+            if (i > operand.length() || operand.charAt(i - 1) != '.') {
+                return false;
+            }
+            final int end = i + 1;
+            if (end > operand.length()) {
+                return false;
+            }
+            final char c = operand.charAt(i);
+            return (c == 'x' || c == 'X' || c == '*') && (end == operand.length() || operand.charAt(end) == '.');
+        }
+
+        private static String completeMinor(final String operand) {
+            int end = 0;
+            while (end < operand.length() && isDigit(operand.charAt(end))) {
+                end++;
+            }
+            return operand.substring(0, end) + ".0" + operand.substring(end);
+        }
+
+        VersionRange compile() {
+            final int[] program = new int[this.program.size()];
+            for (int i = 0; i < program.length; i++) {
+                program[i] = this.program.get(i);
+            }
+            return new VersionRange(this.expression, program, this.operands.toArray(new Version[this.operands.size()]));
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ *
+ * Runs a fixed list of independent tasks on a fixed number of threads.
+ * Tasks are dealt round-robin to one deque per thread. Each thread takes tasks from the head of its own deque and, once
+ * it is empty, steals from the tail of the other deques, so that threads which drew short tasks take over the remaining
+ * work of the others.
+ * Tasks are expected to be given longest first: each thread then starts with the longest tasks and thieves take the
+ * shortest ones.
+ *
+ */
+final class WorkStealingScheduler {
+
+    private WorkStealingScheduler() {
+    }
+
+    /**
+     * Runs all <code>tasks</code> and returns once they all completed.
+     * Tasks must handle their own failures, an unchecked exception only stops the thread which ran it.
+     *
+     * @param tasks the tasks, preferably longest first
+     * @param threads the number of threads
+     * @param name the prefix of the thread names
+     * @throws InterruptedException if interrupted while waiting for the tasks
+     */
+    static void run(final List<? extends Runnable> tasks, final int threads, final String name) throws InterruptedException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid thread count "+threads);
+        }
+
+        final int workers = Math.max(1, Math.min(threads, tasks.size()));
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final BlockingDeque<Runnable>[] deques = new BlockingDeque[workers];
+        for (int i = 0; i < workers; i++) {
+            deques[i] = new LinkedBlockingDeque<Runnable>();
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            deques[i % workers].addLast(tasks.get(i));
+        }
+
+        final Thread[] pool = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            final int self = i;
+            pool[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (Runnable task = next(deques, self); task != null; task = next(deques, self)) {
+                        task.run();
+                    }
+                }
+            }, name + "-" + i);
+            pool[i].setDaemon(true);
+            pool[i].start();
+        }
+        for (final Thread thread : pool) {
+            thread.join();
+        }
+    }
+
+    /**
+     * No task is ever added once the threads started, so a thread can stop as soon as all deques are found empty.
+     */
+    private static Runnable next(final BlockingDeque<Runnable>[] deques, final int self) {
+        final Runnable own = deques[self].pollFirst();
+        if (own != null) {
+            return own;
+        }
+        for (int i = 1; i < deques.length; i++) {
+            final Runnable stolen = deques[(self + i) % deques.length].pollLast();
+            if (stolen != null) {
+                return stolen;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jardiff;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ *
+ * Selects classes by includes and excludes, compiled once.
+ *
+ */
+@ThreadSafe
+public final class ClassFilter {
+    private final Pattern[] includes;
+    private final Pattern[] excludes;
+
+    public ClassFilter(@Nonnull final Set<String> includes, final boolean includesAreRegExp,
+                       @Nonnull final Set<String> excludes, final boolean excludesAreRegExp) {
+        if (includes == null) {
+            throw new IllegalArgumentException("null includes");
+        }
+        if (excludes == null) {
+            throw new IllegalArgumentException("null excludes");
+        }
+
+        this.includes = compile(includes, includesAreRegExp);
+        this.excludes = compile(excludes, excludesAreRegExp);
+    }
+
+    private static Pattern[] compile(final Set<String> expressions, final boolean areRegExp) {
+        final Pattern[] patterns = new Pattern[expressions.size()];
+        int i = 0;
+        for (String expression : expressions) {
+            if (!areRegExp) {
+                if (expression.contains("/**/")) {
+                    expression = expression.replaceAll("/\\*\\*/", "{0,1}**/");
+                }
+                if (expression.contains("/*/")) {
+                    expression = expression.replaceAll("/\\*/", "{0,1}*/{0,1}");
+                }
+                patterns[i++] = simplifyRegularExpression(expression, false);
+            } else {
+                patterns[i++] = Pattern.compile(expression);
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     *
+     * Is considered a class whose package:
+     * * is included
+     * * is not excluded
+     *
+     * If includes are provided then package must be defined here.
+     *
+     * @param className the class name, either internal or with '.' separators
+     * @return true if the class is considered
+     */
+    public boolean isClassConsidered(final String className) {
+        // Fix case where class names are reported with '.'
+        final String fixedClassName = className.replace('.', '/');
+        for (final Pattern exclude : this.excludes) {
+            if (exclude.matcher(fixedClassName).find()) {
+                return false;
+            }
+        }
+        if (this.includes.length > 0) {
+            for (final Pattern include : this.includes) {
+                if (include.matcher(fixedClassName).find()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Simplifies the given regular expression by the following pattern:<br>
+     * All substrings not containing "{0,1}", "*" and "?" get surrounded by "\\Q" and "\\E". Then all occurrences of
+     * "**" are replaced by ".*", "*" with "[^/]*" and all occurrences of "?" are replaced by "." In the end a "$" will
+     * be appended.
+     *
+     * @param regEx the regular expression which is in a simple form.
+     * @return the simple regular expression converted to a normal regular expression.
+     */
+    private static Pattern simplifyRegularExpression(final String regEx, final boolean caseSensitive) {
+        final StringBuilder strBuild = new StringBuilder();
+        final Pattern p = Pattern.compile("\\{0,1\\}|\\*|\\?|[[^*^?^{^}]|^]+", Pattern.CASE_INSENSITIVE);
+        final Matcher m = p.matcher(regEx);
+
+        while (m.find()) {
+            final String token = m.group();
+            if (token.equals("*") || token.equals("?")) { //$NON-NLS-1$ //$NON-NLS-2$
+                strBuild.append(token);
+            } else if (token.equals("{0,1}")) {
+                strBuild.append("/");
+                strBuild.append(token);
+            } else {
+                // Surround all tokens that are not "*" or "?" with "\\Q" and \\E"
+                strBuild.append("\\Q").append(token).append("\\E"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        // Replace all "*" and "?" with .* and .+
+        strBuild.append("$");
+        String result = strBuild.toString();
+        result = result.replaceAll("(?<!\\*)\\*(?!\\*)", "[^/]*");
+        result = result.replaceAll("[\\*][\\s]*[\\*]", ".\\*");
+        result = result.replaceAll("\\?", ".");
+        if (caseSensitive) {
+            return Pattern.compile(result);
+        } else {
+            return Pattern.compile(result, Pattern.CASE_INSENSITIVE);
+        }
+    }
+
+}
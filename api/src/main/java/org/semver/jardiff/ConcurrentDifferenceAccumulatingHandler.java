@@ -0,0 +1,279 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jardiff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.osjava.jardiff.AbstractInfo;
+import org.osjava.jardiff.BatchDiffHandler;
+import org.osjava.jardiff.ClassChanges;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.FieldInfo;
+import org.osjava.jardiff.MethodInfo;
+import org.semver.Delta;
+import org.semver.Delta.Add;
+import org.semver.Delta.Change;
+import org.semver.Delta.Deprecate;
+import org.semver.Delta.Difference;
+import org.semver.Delta.Remove;
+
+/**
+ *
+ * {@link BatchDiffHandler} implementation accumulating {@link Difference} from any number of threads, e.g. several
+ * {@link org.osjava.jardiff.JarDiff} sharing one handler.
+ * Each thread appends to its own buffer; buffers are merged, in a deterministic order, by {@link #endDiff()} and by
+ * {@link #getDelta()} for differences received since.
+ * Includes and excludes behave as in {@link DifferenceAccumulatingHandler}.
+ *
+ */
+@ThreadSafe
+public final class ConcurrentDifferenceAccumulatingHandler implements BatchDiffHandler {
+    private final ClassFilter filter;
+    /**
+     * Differences merged from the buffers, sorted; guarded by itself.
+     */
+    private final List<Difference> merged = new ArrayList<Difference>();
+    private final ConcurrentLinkedQueue<List<Difference>> buffers = new ConcurrentLinkedQueue<List<Difference>>();
+    private final ThreadLocal<List<Difference>> buffer = new ThreadLocal<List<Difference>>() {
+        @Override
+        protected List<Difference> initialValue() {
+            final List<Difference> buffer = new ArrayList<Difference>();
+            ConcurrentDifferenceAccumulatingHandler.this.buffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    public ConcurrentDifferenceAccumulatingHandler() {
+        this(Collections.<String>emptySet(), Collections.<String>emptySet());
+    }
+
+    public ConcurrentDifferenceAccumulatingHandler(@Nonnull final Set<String> includes, @Nonnull final Set<String> excludes) {
+        this(includes, false, excludes, false);
+    }
+
+    public ConcurrentDifferenceAccumulatingHandler(@Nonnull final Set<String> includes, final boolean includesAreRegExp,
+                                                   @Nonnull final Set<String> excludes, final boolean excludesAreRegExp) {
+        this.filter = new ClassFilter(includes, includesAreRegExp, excludes, excludesAreRegExp);
+    }
+
+    public void startDiff(final String previous, final String current) throws DiffException {
+    }
+
+    public void contents(final ClassInfo[] oldContents, final ClassInfo[] newContents) throws DiffException {
+    }
+
+    public void classesRemoved(final ClassInfo[] classes) throws DiffException {
+        if (classes.length == 0) {
+            return;
+        }
+        final List<Difference> buffer = this.buffer.get();
+        synchronized (buffer) {
+            for (final ClassInfo classInfo : classes) {
+                if (this.filter.isClassConsidered(classInfo.getName())) {
+                    buffer.add(new Remove(getClassName(classInfo.getName()), classInfo));
+                }
+            }
+        }
+    }
+
+    public void classesAdded(final ClassInfo[] classes) throws DiffException {
+        if (classes.length == 0) {
+            return;
+        }
+        final List<Difference> buffer = this.buffer.get();
+        synchronized (buffer) {
+            for (final ClassInfo classInfo : classes) {
+                if (this.filter.isClassConsidered(classInfo.getName())) {
+                    buffer.add(new Add(getClassName(classInfo.getName()), classInfo));
+                }
+            }
+        }
+    }
+
+    public void classChanges(final ClassChanges changes) throws DiffException {
+        final List<Difference> buffer = this.buffer.get();
+        // Only ever contended while buffers are merged
+        synchronized (buffer) {
+            DifferenceAccumulatingHandler.accumulate(changes, getClassName(changes.getName()), this.filter, buffer);
+        }
+    }
+
+    /**
+     * Merges the differences buffered by all threads, so that {@link #getDelta()} only has to copy them.
+     */
+    public void endDiff() throws DiffException {
+        merge();
+    }
+
+    /**
+     * @return all {@link Difference} accumulated so far by all threads, ordered by {@link #DIFFERENCE_ORDER}
+     */
+    public Delta getDelta() {
+        synchronized (this.merged) {
+            merge();
+            return new Delta(new LinkedHashSet<Difference>(this.merged));
+        }
+    }
+
+    private void merge() {
+        synchronized (this.merged) {
+            final int size = this.merged.size();
+            for (final List<Difference> buffer : this.buffers) {
+                synchronized (buffer) {
+                    this.merged.addAll(buffer);
+                    buffer.clear();
+                }
+            }
+            if (this.merged.size() > size) {
+                Collections.sort(this.merged, DIFFERENCE_ORDER);
+            }
+        }
+    }
+
+    private static String getClassName(final String internalName) {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+
+    /**
+     * Total order on {@link Difference}s, so that the merge does not depend on thread scheduling: by class name, kind
+     * of difference, kind of element, element name and descriptor, then by every other property of the element and
+     * of its modified version, if any. Differences only equal under this order cannot be told apart.
+     */
+    static final Comparator<Difference> DIFFERENCE_ORDER = new Comparator<Difference>() {
+        public int compare(final Difference d1, final Difference d2) {
+            int result = d1.getClassName().compareTo(d2.getClassName());
+            if (result != 0) {
+                return result;
+            }
+            result = d1.getClass().getName().compareTo(d2.getClass().getName());
+            if (result != 0) {
+                return result;
+            }
+            result = compareInfos(d1.getInfo(), d2.getInfo());
+            if (result != 0) {
+                return result;
+            }
+            return compareInfos(modifiedInfo(d1), modifiedInfo(d2));
+        }
+
+        private AbstractInfo modifiedInfo(final Difference difference) {
+            if (difference instanceof Change) {
+                return ((Change) difference).getModifiedInfo();
+            }
+            if (difference instanceof Deprecate) {
+                return ((Deprecate) difference).getModifiedInfo();
+            }
+            return null;
+        }
+
+        private int compareInfos(final AbstractInfo info1, final AbstractInfo info2) {
+            if (info1 == null || info2 == null) {
+                return info1 == null ? (info2 == null ? 0 : -1) : 1;
+            }
+            int result = rank(info1) - rank(info2);
+            if (result != 0) {
+                return result;
+            }
+            result = compareStrings(info1.getName(), info2.getName());
+            if (result != 0) {
+                return result;
+            }
+            result = compareStrings(info1.getDesc(), info2.getDesc());
+            if (result != 0) {
+                return result;
+            }
+            result = compareInts(info1.getAccess(), info2.getAccess());
+            if (result != 0) {
+                return result;
+            }
+            result = compareStrings(info1.getSignature(), info2.getSignature());
+            if (result != 0) {
+                return result;
+            }
+            if (info1 instanceof ClassInfo) {
+                final ClassInfo class1 = (ClassInfo) info1;
+                final ClassInfo class2 = (ClassInfo) info2;
+                result = compareInts(class1.getVersion(), class2.getVersion());
+                if (result != 0) {
+                    return result;
+                }
+                result = compareStrings(class1.getSupername(), class2.getSupername());
+                if (result != 0) {
+                    return result;
+                }
+                return compareArrays(class1.getInterfaces(), class2.getInterfaces());
+            }
+            if (info1 instanceof MethodInfo) {
+                return compareArrays(((MethodInfo) info1).getExceptions(), ((MethodInfo) info2).getExceptions());
+            }
+            final Object value1 = ((FieldInfo) info1).getValue();
+            final Object value2 = ((FieldInfo) info2).getValue();
+            result = compareStrings(value1 == null ? null : value1.getClass().getName(),
+                    value2 == null ? null : value2.getClass().getName());
+            if (result != 0) {
+                return result;
+            }
+            return compareStrings(value1 == null ? null : value1.toString(), value2 == null ? null : value2.toString());
+        }
+
+        private int rank(final AbstractInfo info) {
+            if (info instanceof ClassInfo) {
+                return 0;
+            }
+            return info instanceof FieldInfo ? 1 : 2;
+        }
+
+        private int compareInts(final int i1, final int i2) {
+            return i1 < i2 ? -1 : (i1 == i2 ? 0 : 1);
+        }
+
+        /**
+         * Null first.
+         */
+        private int compareStrings(final String s1, final String s2) {
+            if (s1 == null || s2 == null) {
+                return s1 == null ? (s2 == null ? 0 : -1) : 1;
+            }
+            return s1.compareTo(s2);
+        }
+
+        /**
+         * Null first, then shorter first.
+         */
+        private int compareArrays(final String[] a1, final String[] a2) {
+            if (a1 == null || a2 == null) {
+                return a1 == null ? (a2 == null ? 0 : -1) : 1;
+            }
+            int result = compareInts(a1.length, a2.length);
+            for (int i = 0; result == 0 && i < a1.length; i++) {
+                result = compareStrings(a1[i], a2[i]);
+            }
+            return result;
+        }
+    };
+
+}
@@ -16,17 +16,20 @@
  */
 package org.semver.jardiff;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nonnull;
 
 import org.osjava.jardiff.AbstractDiffHandler;
+import org.osjava.jardiff.BatchDiffHandler;
+import org.osjava.jardiff.ClassChanges;
 import org.osjava.jardiff.ClassInfo;
 import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.DiffListener;
+import org.osjava.jardiff.DiffStatistics;
 import org.osjava.jardiff.FieldInfo;
 import org.osjava.jardiff.MethodInfo;
 import org.semver.Delta;
@@ -39,15 +42,15 @@ import org.semver.Delta.Remove;
 /**
  *
  * {@link org.osjava.jardiff.DiffHandler} implementation accumulating {@link Difference}.
+ * Also a {@link BatchDiffHandler}, in which case includes and excludes are evaluated once per class.
  *
  */
-public final class DifferenceAccumulatingHandler extends AbstractDiffHandler {
+public final class DifferenceAccumulatingHandler extends AbstractDiffHandler implements BatchDiffHandler {
     private String currentClassName;
-    private final Set<String> includes;
-    private final boolean includesAreRegExp;
-    private final Set<String> excludes;
-    private final boolean excludesAreRegExp;
+    private final ClassFilter filter;
     private final Set<Difference> differences = new HashSet<Difference>();
+    private DiffStatistics statistics;
+    private DiffListener listener = DiffListener.installed();
 
     public DifferenceAccumulatingHandler() {
         this(Collections.<String>emptySet(), Collections.<String>emptySet());
@@ -58,10 +61,21 @@ public final class DifferenceAccumulatingHandler extends AbstractDiffHandler {
     }
     public DifferenceAccumulatingHandler(@Nonnull final Set<String> includes, final boolean includesAreRegExp,
                                          @Nonnull final Set<String> excludes, final boolean excludesAreRegExp) {
-        this.includes = includes;
-        this.includesAreRegExp = includesAreRegExp;
-        this.excludes = excludes;
-        this.excludesAreRegExp = excludesAreRegExp;
+        this.filter = new ClassFilter(includes, includesAreRegExp, excludes, excludesAreRegExp);
+    }
+
+    /**
+     * @param statistics where to record the {@link DiffStatistics.Phase#FILTER} phase of the batch callbacks, <code>null</code> to record nothing
+     */
+    public void setStatistics(final DiffStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * @param listener who to tell about the {@link DiffStatistics.Phase#FILTER} phase of the batch callbacks, <code>null</code> to tell nobody
+     */
+    public void setListener(final DiffListener listener) {
+        this.listener = listener;
     }
 
     public String getCurrentClassName() {
@@ -76,6 +90,110 @@ public final class DifferenceAccumulatingHandler extends AbstractDiffHandler {
     public void endDiff() throws DiffException {
     }
 
+    public void contents(final ClassInfo[] oldContents, final ClassInfo[] newContents) throws DiffException {
+    }
+
+    public void classesRemoved(final ClassInfo[] classes) throws DiffException {
+        final long startNanos = this.statistics == null ? 0 : System.nanoTime();
+        final long startAllocated = this.statistics == null ? 0 : DiffStatistics.allocatedBytes();
+        final Object event = this.listener == null ? null : this.listener.startPhase(DiffStatistics.Phase.FILTER);
+        final int size = this.differences.size();
+        for (final ClassInfo classInfo : classes) {
+            classRemoved(classInfo);
+        }
+        record(event, startNanos, startAllocated, classes.length, size);
+    }
+
+    public void classesAdded(final ClassInfo[] classes) throws DiffException {
+        final long startNanos = this.statistics == null ? 0 : System.nanoTime();
+        final long startAllocated = this.statistics == null ? 0 : DiffStatistics.allocatedBytes();
+        final Object event = this.listener == null ? null : this.listener.startPhase(DiffStatistics.Phase.FILTER);
+        final int size = this.differences.size();
+        for (final ClassInfo classInfo : classes) {
+            classAdded(classInfo);
+        }
+        record(event, startNanos, startAllocated, classes.length, size);
+    }
+
+    public void classChanges(final ClassChanges changes) throws DiffException {
+        final long startNanos = this.statistics == null ? 0 : System.nanoTime();
+        final long startAllocated = this.statistics == null ? 0 : DiffStatistics.allocatedBytes();
+        final Object event = this.listener == null ? null : this.listener.startPhase(DiffStatistics.Phase.FILTER);
+        final int size = this.differences.size();
+        this.currentClassName = getClassName(changes.getName());
+        accumulate(changes, this.currentClassName, this.filter, this.differences);
+        record(event, startNanos, startAllocated, 1, size);
+    }
+
+    /**
+     * Records the {@link DiffStatistics.Phase#FILTER} phase of a batch callback, counting accumulated differences as members.
+     */
+    private void record(final Object event, final long startNanos, final long startAllocated, final int classes,
+                        final int previousSize) {
+        if (this.statistics != null) {
+            this.statistics.recordSince(DiffStatistics.Phase.FILTER, startNanos, startAllocated, classes,
+                    this.differences.size() - previousSize, 0);
+        }
+        if (this.listener != null) {
+            this.listener.endPhase(event, DiffStatistics.Phase.FILTER, classes, this.differences.size() - previousSize);
+        }
+    }
+
+    /**
+     * Adds to <code>differences</code> all changes of a class considered by <code>filter</code>.
+     *
+     * @param changes the changes to a class
+     * @param className the class name with '.' separators
+     */
+    static void accumulate(final ClassChanges changes, final String className, final ClassFilter filter,
+                           final Collection<Difference> differences) {
+        final ClassInfo oldClassInfo = changes.getOldInfo();
+        final ClassInfo newClassInfo = changes.getNewInfo();
+        if (filter.isClassConsidered(oldClassInfo.getName())) {
+            if (changes.isClassChanged()) {
+                differences.add(new Change(className, oldClassInfo, newClassInfo));
+            } else if (changes.isClassDeprecated()) {
+                differences.add(new Deprecate(className, oldClassInfo, newClassInfo));
+            }
+        }
+        if (!filter.isClassConsidered(className)) {
+            return;
+        }
+
+        for (final FieldInfo fieldInfo : changes.getRemovedFields()) {
+            differences.add(new Remove(className, fieldInfo));
+        }
+        for (final MethodInfo methodInfo : changes.getRemovedMethods()) {
+            differences.add(new Remove(className, methodInfo));
+        }
+        for (final FieldInfo fieldInfo : changes.getAddedFields()) {
+            differences.add(new Add(className, fieldInfo));
+        }
+        for (final MethodInfo methodInfo : changes.getAddedMethods()) {
+            differences.add(new Add(className, methodInfo));
+        }
+        final FieldInfo[] changedFieldsFrom = changes.getChangedFieldsFrom();
+        final FieldInfo[] changedFieldsTo = changes.getChangedFieldsTo();
+        for (int i = 0; i < changedFieldsFrom.length; i++) {
+            differences.add(new Change(className, changedFieldsFrom[i], changedFieldsTo[i]));
+        }
+        final MethodInfo[] changedMethodsFrom = changes.getChangedMethodsFrom();
+        final MethodInfo[] changedMethodsTo = changes.getChangedMethodsTo();
+        for (int i = 0; i < changedMethodsFrom.length; i++) {
+            differences.add(new Change(className, changedMethodsFrom[i], changedMethodsTo[i]));
+        }
+        final FieldInfo[] deprecatedFieldsFrom = changes.getDeprecatedFieldsFrom();
+        final FieldInfo[] deprecatedFieldsTo = changes.getDeprecatedFieldsTo();
+        for (int i = 0; i < deprecatedFieldsFrom.length; i++) {
+            differences.add(new Deprecate(className, deprecatedFieldsFrom[i], deprecatedFieldsTo[i]));
+        }
+        final MethodInfo[] deprecatedMethodsFrom = changes.getDeprecatedMethodsFrom();
+        final MethodInfo[] deprecatedMethodsTo = changes.getDeprecatedMethodsTo();
+        for (int i = 0; i < deprecatedMethodsFrom.length; i++) {
+            differences.add(new Deprecate(className, deprecatedMethodsFrom[i], deprecatedMethodsTo[i]));
+        }
+    }
+
     @Override
     public void startOldContents() throws DiffException {
     }
@@ -248,91 +366,8 @@ public final class DifferenceAccumulatingHandler extends AbstractDiffHandler {
      * @return
      */
     protected boolean isClassConsidered( final String className ) {
-         // Fix case where class names are reported with '.'
-         final String fixedClassName = className.replace('.', '/');
-         for ( String exclude : this.excludes ) {
-             final Pattern excludePattern;
-             if( !excludesAreRegExp ) {
-                 if ( exclude.contains( "/**/" ) ) {
-                     exclude = exclude.replaceAll( "/\\*\\*/", "{0,1}**/" );
-                 }
-                 if ( exclude.contains( "/*/" ) ) {
-                     exclude = exclude.replaceAll( "/\\*/", "{0,1}*/{0,1}" );
-                 }
-                 excludePattern = simplifyRegularExpression( exclude, false );
-             } else {
-                 excludePattern = Pattern.compile( exclude );
-             }
-             final Matcher excludeMatcher = excludePattern.matcher( fixedClassName );
-
-             while ( excludeMatcher.find() ) {
-                  return false;
-             }
-         }
-         if ( !this.includes.isEmpty() ) {
-             for ( String include : this.includes ) {
-                 final Pattern includePattern;
-                 if( !includesAreRegExp ) {
-                     if ( include.contains( "/**/" ) ) {
-                         include = include.replaceAll( "/\\*\\*/", "{0,1}**/" );
-                     }
-                     if ( include.contains( "/*/" ) ) {
-                         include = include.replaceAll( "/\\*/", "{0,1}*/{0,1}" );
-                     }
-                     includePattern = simplifyRegularExpression( include, false );
-                 } else {
-                     includePattern = Pattern.compile( include );
-                 }
-                 final Matcher includeMatcher = includePattern.matcher( fixedClassName );
-
-                 while ( includeMatcher.find() ) {
-                     return true;
-                 }
-              }
-              return false;
-          }
-          return true;
-      }
-
-	  /**
-      *
-      * Simplifies the given regular expression by the following pattern:<br>
-      * All substrings not containing "{0,1}", "*" and "?" get surrounded by "\\Q" and "\\E". Then all occurrences of
-      * "**" are replaced by ".*", "*" with "[^/]*" and all occurrences of "?" are replaced by "." In the end a "$" will
-      * be appended.
-      *
-      * @param regEx the regular expression which is in a simple form.
-      * @return the simple regular expression converted to a normal regular expression.
-      */
-     private static Pattern simplifyRegularExpression( final String regEx, final boolean caseSensitive ) {
-         final StringBuilder strBuild = new StringBuilder();
-         final Pattern p = Pattern.compile( "\\{0,1\\}|\\*|\\?|[[^*^?^{^}]|^]+", Pattern.CASE_INSENSITIVE );
-         final Matcher m = p.matcher( regEx );
-
-         while ( m.find() ) {
-             final String token = m.group();
-             if ( token.equals( "*" ) || token.equals( "?" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
-                 strBuild.append( token );
-             } else if ( token.equals( "{0,1}" ) ) {
-                 strBuild.append( "/" );
-                 strBuild.append( token );
-             } else {
-                 // Surround all tokens that are not "*" or "?" with "\\Q" and \\E"
-                 strBuild.append( "\\Q" ).append( token ).append( "\\E" ); //$NON-NLS-1$ //$NON-NLS-2$
-             }
-         }
-         // Replace all "*" and "?" with .* and .+
-         strBuild.append( "$" );
-         String result = strBuild.toString();
-         result = result.replaceAll( "(?<!\\*)\\*(?!\\*)", "[^/]*" );
-         result = result.replaceAll( "[\\*][\\s]*[\\*]", ".\\*" );
-         result = result.replaceAll( "\\?", "." );
-         if ( caseSensitive ) {
-             return Pattern.compile( result );
-         } else {
-             return Pattern.compile( result, Pattern.CASE_INSENSITIVE );
-         }
-     }
+        return this.filter.isClassConsidered( className );
+    }
 
     public Delta getDelta() {
         return new Delta(this.differences);
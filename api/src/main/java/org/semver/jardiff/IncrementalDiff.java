@@ -0,0 +1,149 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jardiff;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.osjava.jardiff.ClassChanges;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffCriteria;
+import org.osjava.jardiff.JarDiff;
+import org.semver.Delta;
+import org.semver.Delta.Add;
+import org.semver.Delta.Difference;
+import org.semver.Delta.Remove;
+
+/**
+ *
+ * Keeps the {@link Difference}s between a fixed old version and a changing new version, one class at a time.
+ * Each {@link #update(Map, Collection)} only diffs again the updated classes and the classes extending them, whose
+ * changes depend on the members of their superclasses. Includes and excludes behave as in
+ * {@link DifferenceAccumulatingHandler}.
+ *
+ */
+@NotThreadSafe
+public final class IncrementalDiff {
+    private final DiffCriteria criteria;
+    private final ClassFilter filter;
+    private final Map<String, ClassInfo> oldClasses;
+    private final Map<String, ClassInfo> newClasses = new TreeMap<String, ClassInfo>();
+    private final Map<String, List<Difference>> differences = new HashMap<String, List<Difference>>();
+
+    public IncrementalDiff(@Nonnull final DiffCriteria criteria, @Nonnull final Map<String, ClassInfo> oldClasses,
+                           @Nonnull final Set<String> includes, @Nonnull final Set<String> excludes) {
+        this.criteria = criteria;
+        this.filter = new ClassFilter(includes, false, excludes, false);
+        this.oldClasses = oldClasses;
+        // Until a class of the new version is known, every old class is removed
+        update(Collections.<String, ClassInfo>emptyMap(), oldClasses.keySet());
+    }
+
+    /**
+     * @param updated the added or modified classes of the new version, keyed by internal name
+     * @param removed the internal names of the classes removed from the new version
+     * @return the internal names of the classes which were diffed again
+     */
+    public Set<String> update(@Nonnull final Map<String, ClassInfo> updated, @Nonnull final Collection<String> removed) {
+        final Set<String> names = new HashSet<String>(updated.keySet());
+        names.addAll(removed);
+        this.newClasses.keySet().removeAll(removed);
+        this.newClasses.putAll(updated);
+
+        // Subclasses of an updated class inherit its members. Stale class files may form a cycle, hence the bound
+        final int maxDepth = this.newClasses.size();
+        for (final ClassInfo classInfo : this.newClasses.values()) {
+            String superName = classInfo.getSupername();
+            for (int depth = 0; superName != null && depth < maxDepth; depth++) {
+                if (names.contains(superName)) {
+                    names.add(classInfo.getName());
+                    break;
+                }
+                final ClassInfo superInfo = this.newClasses.get(superName);
+                superName = superInfo != null ? superInfo.getSupername() : null;
+            }
+        }
+
+        for (final String name : names) {
+            final List<Difference> classDifferences = diff(name);
+            if (classDifferences.isEmpty()) {
+                this.differences.remove(name);
+            } else {
+                this.differences.put(name, classDifferences);
+            }
+        }
+        return names;
+    }
+
+    private List<Difference> diff(final String name) {
+        final ClassInfo oldInfo = this.oldClasses.get(name);
+        final ClassInfo newInfo = this.newClasses.get(name);
+        final List<Difference> classDifferences = new ArrayList<Difference>();
+        if (oldInfo == null && newInfo == null) {
+            return classDifferences;
+        } else if (newInfo == null) {
+            if (this.criteria.validClass(oldInfo) && this.filter.isClassConsidered(name)) {
+                classDifferences.add(new Remove(getClassName(name), oldInfo));
+            }
+        } else if (oldInfo == null) {
+            if (this.criteria.validClass(newInfo) && this.filter.isClassConsidered(name)) {
+                classDifferences.add(new Add(getClassName(name), newInfo));
+            }
+        } else if (this.criteria.validClass(oldInfo) || this.criteria.validClass(newInfo)) {
+            final ClassChanges changes = JarDiff.classChanges(this.criteria, oldInfo, newInfo, this.newClasses);
+            if (changes != null) {
+                DifferenceAccumulatingHandler.accumulate(changes, getClassName(name), this.filter, classDifferences);
+            }
+        }
+        return classDifferences;
+    }
+
+    /**
+     * @return the classes of the new version, keyed by internal name
+     */
+    public Map<String, ClassInfo> getNewClasses() {
+        return Collections.unmodifiableMap(this.newClasses);
+    }
+
+    /**
+     * @return all current {@link Difference}s, in the order of {@link ConcurrentDifferenceAccumulatingHandler#getDelta()}
+     */
+    public Delta getDelta() {
+        final List<Difference> all = new ArrayList<Difference>();
+        for (final List<Difference> classDifferences : this.differences.values()) {
+            all.addAll(classDifferences);
+        }
+        Collections.sort(all, ConcurrentDifferenceAccumulatingHandler.DIFFERENCE_ORDER);
+        return new Delta(new LinkedHashSet<Difference>(all));
+    }
+
+    private static String getClassName(final String internalName) {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+public class AsyncDiffHandlerTest {
+
+    private static DiffHandler recordingHandler(final List<String> events, final String failingMethod) {
+        return (DiffHandler) Proxy.newProxyInstance(DiffHandler.class.getClassLoader(), new Class<?>[] { DiffHandler.class },
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                        if (method.getName().equals(failingMethod)) {
+                            throw new DiffException(new IllegalStateException(failingMethod));
+                        }
+                        final StringBuilder event = new StringBuilder(method.getName());
+                        if (args != null) {
+                            for (final Object arg : args) {
+                                event.append(' ').append(arg instanceof AbstractInfo ? ((AbstractInfo) arg).getName() : arg);
+                            }
+                        }
+                        events.add(event.toString());
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void shouldPreserveEventOrder() throws Exception {
+        final Map<String, ClassInfo> oldClasses = TestClasses.classes("org/test", 300, Opcodes.ACC_PUBLIC);
+        final Map<String, ClassInfo> newClasses = TestClasses.classes("org/test", 200, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL);
+        final List<String> expected = new ArrayList<String>();
+        final List<String> actual = Collections.synchronizedList(new ArrayList<String>());
+
+        new JarDiff().diff(recordingHandler(expected, null), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+        new JarDiff().diff(new AsyncDiffHandler(recordingHandler(actual, null), 4), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals("endDiff", actual.get(actual.size() - 1));
+    }
+
+    @Test
+    public void shouldPropagateFailureAtEndDiff() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        final AsyncDiffHandler handler = new AsyncDiffHandler(recordingHandler(events, "classRemoved"), 2);
+        try {
+            new JarDiff().diff(handler, new SimpleDiffCriteria(), "old", "new", TestClasses.classes("org/test", 50, Opcodes.ACC_PUBLIC), new HashMap<String, ClassInfo>());
+            Assert.fail();
+        } catch (DiffException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            Assert.assertEquals("classRemoved", e.getCause().getMessage());
+        }
+        Assert.assertFalse("no event is handled after a failure", events.contains("endDiff"));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldNotBlockOnceAborted() throws Exception {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final AsyncDiffHandler handler = new AsyncDiffHandler(recordingHandler(events, null), 1);
+        handler.startDiff("old", "new");
+        handler.startRemoved();
+        handler.abort();
+        try {
+            for (int i = 0; i < 10; i++) {
+                handler.endRemoved();
+            }
+            Assert.fail();
+        } catch (DiffException e) {
+            Assert.assertEquals("writer thread stopped", e.getCause().getMessage());
+        }
+        Assert.assertFalse(events.contains("endRemoved"));
+    }
+
+    @Test
+    public void shouldWrapRuntimeFailure() throws Exception {
+        final DiffHandler failing = (DiffHandler) Proxy.newProxyInstance(DiffHandler.class.getClassLoader(), new Class<?>[] { DiffHandler.class },
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        final AsyncDiffHandler handler = new AsyncDiffHandler(failing);
+        handler.startDiff("old", "new");
+        try {
+            handler.endDiff();
+            Assert.fail();
+        } catch (DiffException e) {
+            Assert.assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.semver.generator.JarPairGenerator;
+import org.semver.generator.Profile;
+
+public class ClassInfoArenaTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ClassInfo classInfo(final String name) {
+        final Map<String, MethodInfo> methods = new HashMap<String, MethodInfo>();
+        methods.put("m()V", new MethodInfo(Opcodes.ACC_PUBLIC, "m", "()V", null, null));
+        methods.put("m(I)V", new MethodInfo(Opcodes.ACC_PUBLIC, "m", "(I)V", null, new String[0]));
+        methods.put("mm()V", new MethodInfo(Opcodes.ACC_PUBLIC, "mm", "()V", null, new String[] {"java/io/IOException"}));
+        methods.put("n(Ljava/util/List;)V", new MethodInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_DEPRECATED, "n",
+                "(Ljava/util/List;)V", "(Ljava/util/List<Ljava/lang/String;>;)V", null));
+        final Map<String, FieldInfo> fields = new HashMap<String, FieldInfo>();
+        fields.put("i", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "i", "I", null, -1));
+        fields.put("l", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "l", "J", null, Long.MIN_VALUE));
+        fields.put("f", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "f", "F", null, 3.5f));
+        fields.put("d", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "d", "D", null, Double.NaN));
+        fields.put("s", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "s", "Ljava/lang/String;", null, "é\u0000€"));
+        fields.put("o", new FieldInfo(Opcodes.ACC_PRIVATE, "o", "Ljava/lang/Object;", null, null));
+        return new ClassInfo(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name,
+                "<T:Ljava/lang/Object;>Ljava/lang/Object;", "java/lang/Object", new String[] {"java/io/Serializable"},
+                methods, fields);
+    }
+
+    @Test
+    public void shouldReadBackSortedClasses() {
+        final ClassInfoArena classes = new ClassInfoArena();
+        Assert.assertNull(classes.put("b/B€", classInfo("b/B€")));
+        Assert.assertNull(classes.put("a/A", classInfo("a/A")));
+        final ClassInfo withoutMembers = new ClassInfo(Opcodes.V1_8, Opcodes.ACC_INTERFACE, "a/I", null, null, null,
+                new HashMap<String, MethodInfo>(), new HashMap<String, FieldInfo>());
+        classes.put("a/I", withoutMembers);
+        classes.put("a/I", withoutMembers);
+
+        Assert.assertEquals(3, classes.size());
+        Assert.assertEquals(Arrays.asList("a/A", "a/I", "b/B€"), new ArrayList<String>(classes.keySet()));
+        Assert.assertTrue(classes.containsKey("a/A"));
+        Assert.assertFalse(classes.containsKey("a/"));
+        Assert.assertFalse(classes.containsKey(1));
+        Assert.assertNull(classes.get("a/AA"));
+        Assert.assertEquals(ClassInfoCodecTest.describe(classInfo("a/A")), ClassInfoCodecTest.describe(classes.get("a/A")));
+        Assert.assertEquals(ClassInfoCodecTest.describe(classInfo("b/B€")),
+                ClassInfoCodecTest.describe(classes.get("b/B€")));
+        Assert.assertEquals(ClassInfoCodecTest.describe(withoutMembers), ClassInfoCodecTest.describe(classes.get("a/I")));
+        Assert.assertNull(classes.get("a/I").getInterfaces());
+    }
+
+    @Test
+    public void shouldLookUpMembersByKey() {
+        final ClassInfoArena classes = new ClassInfoArena();
+        classes.put("a/A", classInfo("a/A"));
+        final ClassInfo info = classes.get("a/A");
+
+        Assert.assertEquals(Arrays.asList("m()V", "m(I)V", "mm()V", "n(Ljava/util/List;)V"),
+                new ArrayList<String>(info.getMethodMap().keySet()));
+        for (final String key : classInfo("a/A").getMethodMap().keySet()) {
+            Assert.assertEquals(key, info.getMethodMap().get(key).getName() + info.getMethodMap().get(key).getDesc());
+        }
+        for (final String key : new String[] {"m", "m()", "m()VV", "l()V", "o()V", ""}) {
+            Assert.assertFalse(key, info.getMethodMap().containsKey(key));
+        }
+        Assert.assertEquals("J", info.getFieldMap().get("l").getDesc());
+        Assert.assertNull(info.getFieldMap().get("ll"));
+        Assert.assertNull(info.getFieldMap().get(null));
+        Assert.assertEquals(6, info.getFieldMap().size());
+    }
+
+    @Test
+    public void shouldPoolStrings() {
+        final ClassInfoArena classes = new ClassInfoArena();
+        for (int i = 0; i < 5000; i++) {
+            classes.put("a/C" + i, classInfo("a/C" + i));
+        }
+        // The class names, and the strings shared by all classes
+        Assert.assertEquals(5000 + sharedStrings(), classes.getStringCount());
+        Assert.assertEquals(5000, classes.size());
+        Assert.assertEquals(ClassInfoCodecTest.describe(classInfo("a/C4321")),
+                ClassInfoCodecTest.describe(classes.get("a/C4321")));
+        Assert.assertTrue(classes.getAllocatedBytes() > ClassInfoArena.MIN_CHUNK_SIZE);
+    }
+
+    private static int sharedStrings() {
+        final ClassInfoArena classes = new ClassInfoArena();
+        classes.put("a/A", classInfo("a/A"));
+        return classes.getStringCount() - 1;
+    }
+
+    @Test
+    public void shouldLoadTheSameClassesOffHeap() throws Exception {
+        final File jar = this.folder.newFile("previous.jar");
+        new JarPairGenerator(new Profile(300, 6, 5, 0.1, 0.1, 0.1, 0.1), 7).write(jar, this.folder.newFile("current.jar"));
+        final JarDiff jarDiff = new JarDiff();
+        final Map<String, ClassInfo> expected = jarDiff.loadClasses(jar);
+
+        jarDiff.setOffHeap(true);
+        final Map<String, ClassInfo> loaded = jarDiff.loadClasses(jar);
+        Assert.assertTrue(loaded instanceof ClassInfoArena);
+        Assert.assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(loaded.keySet()));
+        for (final ClassInfo info : expected.values()) {
+            Assert.assertEquals(ClassInfoCodecTest.describe(info), ClassInfoCodecTest.describe(loaded.get(info.getName())));
+            Assert.assertEquals(info.getMethodMap().keySet(), loaded.get(info.getName()).getMethodMap().keySet());
+            Assert.assertEquals(info.getFieldMap().keySet(), loaded.get(info.getName()).getFieldMap().keySet());
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+public class ClassInfoCodecTest {
+
+    static String describe(final ClassInfo info) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(info.getVersion()).append(' ').append(info.getAccess()).append(' ').append(info.getName())
+                .append(' ').append(info.getSignature()).append(' ').append(info.getSupername()).append(' ')
+                .append(Arrays.toString(info.getInterfaces()));
+        for (final Map.Entry<String, MethodInfo> entry : new TreeMap<String, MethodInfo>(info.getMethodMap()).entrySet()) {
+            final MethodInfo method = entry.getValue();
+            builder.append('\n').append(entry.getKey()).append(": ").append(method.getAccess()).append(' ')
+                    .append(method.getName()).append(method.getDesc()).append(' ').append(method.getSignature())
+                    .append(' ').append(Arrays.toString(method.getExceptions()));
+        }
+        for (final Map.Entry<String, FieldInfo> entry : new TreeMap<String, FieldInfo>(info.getFieldMap()).entrySet()) {
+            final FieldInfo field = entry.getValue();
+            final Object value = field.getValue();
+            builder.append('\n').append(entry.getKey()).append(": ").append(field.getAccess()).append(' ')
+                    .append(field.getName()).append(' ').append(field.getDesc()).append(' ')
+                    .append(field.getSignature()).append(' ').append(value)
+                    .append(value == null ? "" : value.getClass().getSimpleName());
+        }
+        return builder.toString();
+    }
+
+    private static ClassInfo roundTrip(final ClassInfo info) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        ClassInfoCodec.write(info, out);
+        out.flush();
+        return ClassInfoCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void shouldReadBackWhatWasWritten() throws IOException {
+        final Map<String, MethodInfo> methods = new HashMap<String, MethodInfo>();
+        methods.put("m()V", new MethodInfo(Opcodes.ACC_PUBLIC, "m", "()V", null, null));
+        methods.put("n(Ljava/util/List;)V", new MethodInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_DEPRECATED, "n",
+                "(Ljava/util/List;)V", "(Ljava/util/List<Ljava/lang/String;>;)V", new String[] {"java/io/IOException"}));
+        final Map<String, FieldInfo> fields = new HashMap<String, FieldInfo>();
+        fields.put("i", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "i", "I", null, 1));
+        fields.put("l", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "l", "J", null, 2L));
+        fields.put("f", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "f", "F", null, 3f));
+        fields.put("d", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "d", "D", null, 4d));
+        fields.put("s", new FieldInfo(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "s", "Ljava/lang/String;", null, "é\u0000"));
+        fields.put("o", new FieldInfo(Opcodes.ACC_PRIVATE, "o", "Ljava/lang/Object;", null, null));
+        final ClassInfo info = new ClassInfo(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "a/A",
+                "<T:Ljava/lang/Object;>Ljava/lang/Object;", "java/lang/Object", new String[] {"java/io/Serializable"},
+                methods, fields);
+
+        final ClassInfo read = roundTrip(info);
+        Assert.assertEquals(describe(info), describe(read));
+        Assert.assertNull(read.getMethodMap().get("m()V").getExceptions());
+    }
+
+    @Test
+    public void shouldReadBackAClassWithoutMembers() throws IOException {
+        final ClassInfo info = new ClassInfo(Opcodes.V1_8, Opcodes.ACC_INTERFACE, "a/I", null, null, new String[0],
+                new HashMap<String, MethodInfo>(), new HashMap<String, FieldInfo>());
+
+        Assert.assertEquals(describe(info), describe(roundTrip(info)));
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+public class DiffHandlerAdapterTest {
+
+    private static DiffHandler recordingHandler(final List<String> events) {
+        return (DiffHandler) Proxy.newProxyInstance(DiffHandler.class.getClassLoader(), new Class<?>[] { DiffHandler.class },
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final StringBuilder event = new StringBuilder(method.getName());
+                        if (args != null) {
+                            for (final Object arg : args) {
+                                event.append(' ').append(arg instanceof AbstractInfo ? ((AbstractInfo) arg).getName() : arg);
+                            }
+                        }
+                        events.add(event.toString());
+                        return null;
+                    }
+                });
+    }
+
+    private static ClassInfo classInfo(final String name, final int access, final MethodInfo[] methods, final FieldInfo[] fields) {
+        final Map<String, MethodInfo> methodMap = new HashMap<String, MethodInfo>();
+        for (final MethodInfo method : methods) {
+            methodMap.put(method.getName() + method.getDesc(), method);
+        }
+        final Map<String, FieldInfo> fieldMap = new HashMap<String, FieldInfo>();
+        for (final FieldInfo field : fields) {
+            fieldMap.put(field.getName(), field);
+        }
+        return new ClassInfo(Opcodes.V1_6, access, name, null, "java/lang/Object", new String[0], methodMap, fieldMap);
+    }
+
+    private static MethodInfo method(final int access, final String name, final String desc) {
+        return new MethodInfo(access, name, desc, null, null);
+    }
+
+    private static FieldInfo field(final int access, final String name) {
+        return new FieldInfo(access, name, "I", null, null);
+    }
+
+    @Test
+    public void shouldReplayEventsInLegacyOrder() throws Exception {
+        final int pub = Opcodes.ACC_PUBLIC;
+        final int deprecated = Opcodes.ACC_PUBLIC | Opcodes.ACC_DEPRECATED;
+        final int fin = Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL;
+        final Map<String, ClassInfo> oldClasses = new HashMap<String, ClassInfo>();
+        final Map<String, ClassInfo> newClasses = new HashMap<String, ClassInfo>();
+        oldClasses.put("p/Removed", classInfo("p/Removed", pub, new MethodInfo[0], new FieldInfo[0]));
+        newClasses.put("p/Added", classInfo("p/Added", pub, new MethodInfo[0], new FieldInfo[0]));
+        oldClasses.put("p/Same", classInfo("p/Same", pub, new MethodInfo[] { method(pub, "m", "()V") }, new FieldInfo[0]));
+        newClasses.put("p/Same", classInfo("p/Same", pub, new MethodInfo[] { method(pub, "m", "()V") }, new FieldInfo[0]));
+        oldClasses.put("p/Changed", classInfo("p/Changed", pub,
+                new MethodInfo[] { method(pub, "a", "()V"), method(pub, "b", "()V"), method(pub, "b", "(I)V"), method(pub, "gone", "()V") },
+                new FieldInfo[] { field(pub, "x"), field(pub, "y"), field(pub, "z") }));
+        newClasses.put("p/Changed", classInfo("p/Changed", deprecated,
+                new MethodInfo[] { method(deprecated, "a", "()V"), method(fin, "b", "()V"), method(deprecated, "b", "(I)V"), method(pub, "fresh", "()V") },
+                new FieldInfo[] { field(fin, "x"), field(deprecated, "y"), field(fin, "z"), field(pub, "w") }));
+
+        final List<String> events = new ArrayList<String>();
+        new JarDiff().batchDiff(new DiffHandlerAdapter(recordingHandler(events)), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+
+        final List<String> expected = Arrays.asList(
+                "startDiff old new",
+                "startOldContents", "contains p/Changed", "contains p/Removed", "contains p/Same", "endOldContents",
+                "startNewContents", "contains p/Added", "contains p/Changed", "contains p/Same", "endNewContents",
+                "startRemoved", "classRemoved p/Removed", "endRemoved",
+                "startAdded", "classAdded p/Added", "endAdded",
+                "startChanged",
+                "startClassChanged p/Changed",
+                "startRemoved", "methodRemoved gone", "endRemoved",
+                "startAdded", "fieldAdded w", "methodAdded fresh", "endAdded",
+                "startChanged",
+                "classDeprecated p/Changed p/Changed",
+                "fieldChanged x x", "fieldDeprecated y y", "fieldChanged z z",
+                "methodDeprecated a a", "methodChanged b b", "methodDeprecated b b",
+                "endChanged",
+                "endClassChanged",
+                "endChanged",
+                "endDiff");
+        Assert.assertEquals(sortContents(expected), sortContents(events));
+    }
+
+    /**
+     * Contents follow the iteration order of the given maps.
+     */
+    private static List<String> sortContents(final List<String> events) {
+        final List<String> sorted = new ArrayList<String>(events);
+        int start = -1;
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i).startsWith("contains")) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                Collections.sort(sorted.subList(start, i));
+                start = -1;
+            }
+        }
+        return sorted;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNullHandler() {
+        new DiffHandlerAdapter(null);
+    }
+
+}
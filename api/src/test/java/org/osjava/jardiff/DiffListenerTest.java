@@ -0,0 +1,116 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semver.TestJars;
+import org.semver.jardiff.DifferenceAccumulatingHandler;
+
+public class DiffListenerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Records each call, checking every event comes back to its end method.
+     */
+    private static final class RecordingListener extends DiffListener {
+        final List<String> calls = new ArrayList<String>();
+
+        @Override
+        public Object startJar(final String jar) {
+            return "jar";
+        }
+
+        @Override
+        public void endJar(final Object event, final String jar, final long classes, final long members,
+                           final long bytes) {
+            this.calls.add(event + " " + new File(jar).getName() + " " + classes + " " + members);
+        }
+
+        @Override
+        public Object startClass() {
+            return "class";
+        }
+
+        @Override
+        public void endClass(final Object event, final String className, final int bytes) {
+            this.calls.add(event + " " + className);
+        }
+
+        @Override
+        public Object startClassDiff() {
+            return "classDiff";
+        }
+
+        @Override
+        public void endClassDiff(final Object event, final String className, final ClassChanges changes) {
+            this.calls.add(event + " " + className + " " + (changes != null));
+        }
+
+        @Override
+        public Object startPhase(final DiffStatistics.Phase phase) {
+            return phase;
+        }
+
+        @Override
+        public void endPhase(final Object event, final DiffStatistics.Phase phase, final long classes,
+                             final long members) {
+            Assert.assertSame(phase, event);
+            this.calls.add(phase + " " + classes + " " + members);
+        }
+    }
+
+    private File jar(final String name, final String... methods) throws Exception {
+        return TestJars.jar(this.folder.getRoot(), name, methods);
+    }
+
+    @Test
+    public void shouldNotBeInstalledByDefault() {
+        Assert.assertNull(DiffListener.installed());
+        Assert.assertNull(new JarDiff().getListener());
+    }
+
+    @Test
+    public void shouldBeToldAboutLoadingAndDiffing() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final JarDiff jarDiff = new JarDiff();
+        jarDiff.setListener(listener);
+        final Map<String, ClassInfo> oldClasses = jarDiff.loadClasses(jar("old.jar", "m"));
+        final Map<String, ClassInfo> newClasses = jarDiff.loadClasses(jar("new.jar", "m", "n"));
+        Assert.assertEquals(Arrays.asList("class a/A", "jar old.jar 1 1", "class a/A", "jar new.jar 1 2"),
+                listener.calls);
+
+        listener.calls.clear();
+        final DifferenceAccumulatingHandler handler = new DifferenceAccumulatingHandler();
+        handler.setListener(listener);
+        jarDiff.batchDiff(handler, new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+        Assert.assertEquals(Arrays.asList("FILTER 0 0", "FILTER 0 0", "classDiff a/A true", "FILTER 1 1",
+                "DIFF 2 3"), listener.calls);
+        Assert.assertEquals(1, handler.getDelta().getDifferences().size());
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.semver.TestJars;
+
+public class DiffStatisticsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldAccumulatePerPhase() throws Exception {
+        final DiffStatistics statistics = new DiffStatistics();
+        statistics.record(DiffStatistics.Phase.LOAD, 2000000000L, 10, 40, 1000, 500);
+        statistics.record(DiffStatistics.Phase.LOAD, 2000000000L, 10, 40, 1000, -1);
+
+        final DiffStatistics.Counters load = statistics.get(DiffStatistics.Phase.LOAD);
+        Assert.assertEquals(2, load.getCount());
+        Assert.assertEquals(4000000000L, load.getWallNanos());
+        Assert.assertEquals(20, load.getClasses());
+        Assert.assertEquals(2000, load.getBytesRead());
+        Assert.assertEquals(-1, load.getAllocatedBytes());
+        Assert.assertEquals(5.0, load.getClassesPerSecond(), 0.001);
+        Assert.assertEquals(20.0, load.getMembersPerSecond(), 0.001);
+        Assert.assertEquals(0, statistics.get(DiffStatistics.Phase.DIFF).getCount());
+
+        final String table = statistics.toString();
+        Assert.assertTrue(table.startsWith("phase "));
+        Assert.assertTrue(table.contains("load          2     4000.0        20           5        80          20         2000            n/a"));
+        Assert.assertFalse(table.contains("diff"));
+    }
+
+    @Test
+    public void shouldRecordLoadingAndDiffing() throws Exception {
+        final byte[] bytes = TestJars.classBytes("a/A", Opcodes.ACC_PUBLIC, "m");
+        final File jar = TestJars.jar(this.folder.getRoot(), "a.jar", "m");
+
+        final DiffStatistics statistics = new DiffStatistics();
+        final JarDiff jarDiff = new JarDiff();
+        jarDiff.setStatistics(statistics);
+        final Map<String, ClassInfo> classes = jarDiff.loadClasses(jar);
+        jarDiff.diff(new StreamDiffHandler(new ByteArrayOutputStream()), new SimpleDiffCriteria(), "old", "new", classes,
+                Collections.<String, ClassInfo>emptyMap());
+
+        final DiffStatistics.Counters load = statistics.get(DiffStatistics.Phase.LOAD);
+        Assert.assertEquals(1, load.getCount());
+        Assert.assertEquals(1, load.getClasses());
+        Assert.assertEquals(1, load.getMembers());
+        Assert.assertEquals(bytes.length, load.getBytesRead());
+        Assert.assertTrue(load.getWallNanos() > 0);
+        final DiffStatistics.Counters diff = statistics.get(DiffStatistics.Phase.DIFF);
+        Assert.assertEquals(1, diff.getCount());
+        Assert.assertEquals(1, diff.getClasses());
+        if (DiffStatistics.allocatedBytes() >= 0) {
+            Assert.assertTrue(load.getAllocatedBytes() > 0);
+        }
+    }
+
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.semver.TestJars;
+import org.semver.generator.JarPairGenerator;
+import org.semver.generator.Profile;
+
+public class DiskClassStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] digest(final int i) {
+        final byte[] digest = new byte[20];
+        digest[0] = (byte) (i >> 8);
+        digest[1] = (byte) i;
+        digest[19] = 1;
+        return digest;
+    }
+
+    private static ClassInfo classInfo(final int i) {
+        return TestClasses.classInfo("a/C" + i, TestClasses.method(Opcodes.ACC_PUBLIC, "m" + i));
+    }
+
+    private static void assertStored(final DiskClassStore store, final int i) throws IOException {
+        final ClassInfo stored = store.get(digest(i));
+        Assert.assertNotNull("class " + i, stored);
+        Assert.assertEquals(ClassInfoCodecTest.describe(classInfo(i)), ClassInfoCodecTest.describe(stored));
+    }
+
+    @Test
+    public void shouldShareClassesBetweenStoresOfADirectory() throws IOException {
+        final File directory = new File(this.folder.getRoot(), "store");
+        final DiskClassStore writer = new DiskClassStore(directory);
+        final DiskClassStore reader = new DiskClassStore(directory);
+        try {
+            Assert.assertNull(reader.get(digest(1)));
+            writer.put(digest(1), classInfo(1));
+            writer.put(digest(1), classInfo(1));
+            assertStored(writer, 1);
+            assertStored(reader, 1);
+            Assert.assertEquals(1, reader.size());
+        } finally {
+            writer.close();
+            reader.close();
+        }
+
+        final DiskClassStore reopened = new DiskClassStore(directory);
+        try {
+            assertStored(reopened, 1);
+            Assert.assertEquals(1, reopened.size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldStartNewSegmentsOnceFull() throws IOException {
+        final DiskClassStore store = new DiskClassStore(this.folder.getRoot(), 100);
+        try {
+            for (int i = 0; i < 5; i++) {
+                store.put(digest(i), classInfo(i));
+            }
+            for (int i = 0; i < 5; i++) {
+                assertStored(store, i);
+            }
+        } finally {
+            store.close();
+        }
+        Assert.assertTrue(new File(this.folder.getRoot(), "segment-00004").isFile());
+    }
+
+    @Test
+    public void shouldAppendEachClassOnceFromConcurrentStores() throws Exception {
+        final File directory = this.folder.getRoot();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        final DiskClassStore store = new DiskClassStore(directory, 1000);
+                        try {
+                            for (int i = 0; i < 100; i++) {
+                                store.put(digest(i), classInfo(i));
+                            }
+                        } finally {
+                            store.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(8 + 100 * 36, new File(directory, "index").length());
+        final DiskClassStore store = new DiskClassStore(directory);
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertStored(store, i);
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Appends the classes of {@link #shouldAppendEachClassOnceFromConcurrentProcesses()} from another JVM.
+     */
+    public static void main(final String[] args) throws IOException {
+        final DiskClassStore store = new DiskClassStore(new File(args[0]), 1000);
+        try {
+            for (int i = 0; i < 100; i++) {
+                store.put(digest(i), classInfo(i));
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void shouldAppendEachClassOnceFromConcurrentProcesses() throws Exception {
+        final File directory = this.folder.getRoot();
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final List<Process> processes = new ArrayList<Process>();
+        for (int p = 0; p < 3; p++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    DiskClassStoreTest.class.getName(), directory.getPath()).redirectErrorStream(true).start());
+        }
+        main(new String[] {directory.getPath()});
+        for (final Process process : processes) {
+            final String output = new String(toByteArray(process.getInputStream()), "UTF-8");
+            Assert.assertEquals(output, 0, process.waitFor());
+        }
+
+        Assert.assertEquals(8 + 100 * 36, new File(directory, "index").length());
+        final DiskClassStore store = new DiskClassStore(directory);
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertStored(store, i);
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private static byte[] toByteArray(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void shouldAppendAgainRecordsLostByACrash() throws IOException {
+        final File directory = this.folder.getRoot();
+        final DiskClassStore store = new DiskClassStore(directory);
+        try {
+            store.putAll(new byte[][] {digest(1), digest(2)}, new ClassInfo[] {classInfo(1), classInfo(2)});
+        } finally {
+            store.close();
+        }
+        final File segment = new File(directory, "segment-00000");
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            // The name of the first class is damaged, the second record lost
+            final long length = file.length();
+            file.seek(20 + 4 + 4);
+            file.write(new byte[] {-1, -1});
+            file.setLength(length - 1);
+        } finally {
+            file.close();
+        }
+
+        final DiskClassStore reopened = new DiskClassStore(directory);
+        try {
+            Assert.assertNull(reopened.get(digest(1)));
+            Assert.assertNull(reopened.get(digest(2)));
+            reopened.putAll(new byte[][] {digest(1), digest(2)}, new ClassInfo[] {classInfo(1), classInfo(2)});
+            assertStored(reopened, 1);
+            assertStored(reopened, 2);
+        } finally {
+            reopened.close();
+        }
+        final DiskClassStore again = new DiskClassStore(directory);
+        try {
+            assertStored(again, 1);
+            assertStored(again, 2);
+        } finally {
+            again.close();
+        }
+        Assert.assertEquals(8 + 4 * 36, new File(directory, "index").length());
+    }
+
+    @Test
+    public void shouldParseClassesTheStoreFailsToKeep() throws Exception {
+        final File jar = TestJars.jar(this.folder.getRoot(), "a.jar", "m");
+        final List<String> calls = new ArrayList<String>();
+        final JarDiff jarDiff = new JarDiff();
+        jarDiff.setClassStore(new ClassStore() {
+            @Override
+            public ClassInfo get(final byte[] digest) throws IOException {
+                calls.add("get");
+                throw new IOException("unreadable");
+            }
+
+            @Override
+            public void put(final byte[] digest, final ClassInfo info) {
+                calls.add("put");
+            }
+
+            @Override
+            public void putAll(final byte[][] digests, final ClassInfo[] infos) {
+                calls.add("putAll");
+            }
+        });
+
+        Assert.assertEquals(Collections.singleton("a/A"), jarDiff.loadClasses(jar).keySet());
+        Assert.assertEquals(Arrays.asList("get"), calls);
+    }
+
+    @Test
+    public void shouldNotParseStoredClassesAgain() throws Exception {
+        final File previous = this.folder.newFile("previous.jar");
+        final File current = this.folder.newFile("current.jar");
+        new JarPairGenerator(new Profile(50, 4, 3, 0.1, 0.1, 0.1, 0.1), 1).write(previous, current);
+        final Map<String, ClassInfo> expected = new JarDiff().loadClasses(current);
+        final DiskClassStore store = new DiskClassStore(this.folder.newFolder("store"));
+        try {
+            final InMemoryMetrics metrics = new InMemoryMetrics();
+            final JarDiff jarDiff = new JarDiff();
+            jarDiff.setClassStore(store);
+            jarDiff.setMetricsListener(metrics);
+            jarDiff.loadClasses(previous);
+            Assert.assertEquals(50, metrics.getCount(MetricsListener.Metric.CLASSES_PARSED));
+            Assert.assertEquals(0, metrics.getCount(MetricsListener.Metric.STORE_HITS));
+
+            metrics.reset();
+            final Map<String, ClassInfo> loaded = jarDiff.loadClasses(current);
+            final long hits = metrics.getCount(MetricsListener.Metric.STORE_HITS);
+            Assert.assertTrue(hits > 0);
+            Assert.assertTrue(hits < 50);
+            Assert.assertEquals(50, hits + metrics.getCount(MetricsListener.Metric.CLASSES_PARSED));
+            Assert.assertEquals(expected.keySet(), loaded.keySet());
+            for (final String name : expected.keySet()) {
+                Assert.assertEquals(ClassInfoCodecTest.describe(expected.get(name)),
+                        ClassInfoCodecTest.describe(loaded.get(name)));
+            }
+
+            metrics.reset();
+            jarDiff.loadClasses(current);
+            Assert.assertEquals(50, metrics.getCount(MetricsListener.Metric.STORE_HITS));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectAnotherFormat() throws IOException {
+        final FileOutputStream out = new FileOutputStream(new File(this.folder.getRoot(), "index"));
+        try {
+            out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        } finally {
+            out.close();
+        }
+        new DiskClassStore(this.folder.getRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidDigest() throws IOException {
+        final DiskClassStore store = new DiskClassStore(this.folder.getRoot());
+        try {
+            store.get(new byte[16]);
+        } finally {
+            store.close();
+        }
+    }
+
+}
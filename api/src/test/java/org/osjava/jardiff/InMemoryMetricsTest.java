@@ -0,0 +1,75 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InMemoryMetricsTest {
+
+    @Test
+    public void shouldSumCounters() {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.increment(MetricsListener.Metric.CLASSES_PARSED, 3);
+        metrics.increment(MetricsListener.Metric.CLASSES_PARSED, 4);
+
+        Assert.assertEquals(7, metrics.getCount(MetricsListener.Metric.CLASSES_PARSED));
+        Assert.assertEquals(0, metrics.getCount(MetricsListener.Metric.CACHE_HITS));
+        Assert.assertEquals(String.format("classes_parsed                    7%n"), metrics.toString());
+    }
+
+    @Test
+    public void shouldSummarizeHistograms() {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        Assert.assertEquals(0, metrics.getPercentile(MetricsListener.Metric.DIFF_NANOS, 0.5));
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(MetricsListener.Metric.DIFF_NANOS, i);
+        }
+
+        Assert.assertEquals(100, metrics.getCount(MetricsListener.Metric.DIFF_NANOS));
+        Assert.assertEquals(5050, metrics.getSum(MetricsListener.Metric.DIFF_NANOS));
+        Assert.assertEquals(1, metrics.getMin(MetricsListener.Metric.DIFF_NANOS));
+        Assert.assertEquals(100, metrics.getMax(MetricsListener.Metric.DIFF_NANOS));
+        Assert.assertEquals(50.5, metrics.getMean(MetricsListener.Metric.DIFF_NANOS), 0.001);
+        // 50 is in the bucket of 32 to 63, 99 in the one of 64 to 127
+        Assert.assertEquals(63, metrics.getPercentile(MetricsListener.Metric.DIFF_NANOS, 0.5));
+        Assert.assertEquals(100, metrics.getPercentile(MetricsListener.Metric.DIFF_NANOS, 0.99));
+        Assert.assertEquals(1, metrics.getPercentile(MetricsListener.Metric.DIFF_NANOS, 0.01));
+        Assert.assertEquals(String.format("diff_nanos             count=100 min=1 mean=51 p50=63 p99=100 max=100%n"),
+                metrics.toString());
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getCount(MetricsListener.Metric.DIFF_NANOS));
+        Assert.assertEquals("", metrics.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectRecordingACounter() {
+        new InMemoryMetrics().record(MetricsListener.Metric.CACHE_HITS, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectIncrementingAHistogram() {
+        new InMemoryMetrics().increment(MetricsListener.Metric.JAR_LOAD_NANOS, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidFraction() {
+        new InMemoryMetrics().getPercentile(MetricsListener.Metric.DIFF_NANOS, 0);
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+public class JsonStreamDiffHandlerTest {
+
+    private static final String[] SERIALIZABLE = { "java/io/Serializable" };
+
+    @Test
+    public void shouldWriteDocumentMirroringXml() throws Exception {
+        final Map<String, ClassInfo> oldClasses = new HashMap<String, ClassInfo>();
+        final Map<String, ClassInfo> newClasses = new HashMap<String, ClassInfo>();
+        oldClasses.put("a/A", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/A", null, SERIALIZABLE,
+                new FieldInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "f", "I", null, Integer.valueOf(1))));
+        newClasses.put("a/A", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/A", null, SERIALIZABLE,
+                new MethodInfo(Opcodes.ACC_PUBLIC, "m", "([Ljava/lang/String;J)V", null, new String[] { "java/io/IOException" })));
+        oldClasses.put("a/B", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/B", null, SERIALIZABLE));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JarDiff().diff(new JsonStreamDiffHandler(out), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+
+        final String clazz = "\"access\":\"public\",\"name\":\"a/B\",\"superclass\":\"java/lang/Object\",\"implements\":[\"java/io/Serializable\"]";
+        Assert.assertEquals("{\"old\":\"old\",\"new\":\"new\","
+                + "\"oldcontents\":[\"a/A\",\"a/B\"],\"newcontents\":[\"a/A\"],"
+                + "\"removed\":[{\"element\":\"class\"," + clazz + "}],\"added\":[],"
+                + "\"changed\":[{\"element\":\"classchanged\",\"name\":\"a/A\","
+                + "\"removed\":[{\"element\":\"field\",\"access\":\"public\",\"final\":true,\"static\":true,\"name\":\"f\",\"value\":\"1\",\"type\":{\"primitive\":true,\"name\":\"int\"}}],"
+                + "\"added\":[{\"element\":\"method\",\"access\":\"public\",\"name\":\"m\","
+                + "\"arguments\":[{\"array\":true,\"dimensions\":1,\"name\":\"java/lang/String\"},{\"primitive\":true,\"name\":\"long\"}],"
+                + "\"return\":{\"primitive\":true,\"name\":\"void\"},\"exceptions\":[\"java/io/IOException\"]}],"
+                + "\"changed\":[]}]}\n",
+                out.toString("UTF-8"));
+    }
+
+    @Test
+    public void shouldWriteObjectTypesAsPlainObjects() throws Exception {
+        final Map<String, ClassInfo> oldClasses = new HashMap<String, ClassInfo>();
+        final Map<String, ClassInfo> newClasses = new HashMap<String, ClassInfo>();
+        oldClasses.put("a/A", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/A", null, SERIALIZABLE));
+        newClasses.put("a/A", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/A", null, SERIALIZABLE,
+                new MethodInfo(Opcodes.ACC_PUBLIC, "m", "(Ljava/util/List;)Ljava/lang/String;", null, null)));
+        oldClasses.put("a/B", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/B", null, SERIALIZABLE,
+                new FieldInfo(Opcodes.ACC_PUBLIC, "o", "Ljava/lang/Object;", null, null)));
+        newClasses.put("a/B", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/B", null, SERIALIZABLE));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JarDiff().diff(new JsonStreamDiffHandler(out), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+
+        Assert.assertEquals("{\"old\":\"old\",\"new\":\"new\","
+                + "\"oldcontents\":[\"a/A\",\"a/B\"],\"newcontents\":[\"a/A\",\"a/B\"],\"removed\":[],\"added\":[],"
+                + "\"changed\":[{\"element\":\"classchanged\",\"name\":\"a/A\",\"removed\":[],"
+                + "\"added\":[{\"element\":\"method\",\"access\":\"public\",\"name\":\"m\","
+                + "\"arguments\":[{\"name\":\"java/util/List\"}],\"return\":{\"name\":\"java/lang/String\"},\"exceptions\":[]}],\"changed\":[]},"
+                + "{\"element\":\"classchanged\",\"name\":\"a/B\","
+                + "\"removed\":[{\"element\":\"field\",\"access\":\"public\",\"name\":\"o\",\"type\":{\"name\":\"java/lang/Object\"}}],"
+                + "\"added\":[],\"changed\":[]}]}\n",
+                out.toString("UTF-8"));
+    }
+
+    @Test
+    public void shouldEscapeNames() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JsonStreamDiffHandler handler = new JsonStreamDiffHandler(out);
+        handler.startDiff("a \"b\"\\c", "\u00e9\u20ac\ud83d\ude00\t\u0001");
+        handler.startOldContents();
+        handler.endOldContents();
+        handler.startNewContents();
+        handler.endNewContents();
+        handler.startRemoved();
+        handler.endRemoved();
+        handler.startAdded();
+        handler.endAdded();
+        handler.startChanged();
+        handler.endChanged();
+        handler.endDiff();
+
+        Assert.assertEquals("{\"old\":\"a \\\"b\\\"\\\\c\",\"new\":\"\u00e9\u20ac\ud83d\ude00\\t\\u0001\","
+                + "\"oldcontents\":[],\"newcontents\":[],\"removed\":[],\"added\":[],\"changed\":[]}\n",
+                out.toString("UTF-8"));
+    }
+
+    @Test
+    public void shouldWriteDocumentsLargerThanTheBuffer() throws Exception {
+        final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+        for (int i = 0; i < 2000; i++) {
+            final String name = "a/\u00e9" + i;
+            classes.put(name, TestClasses.classInfo(Opcodes.ACC_PUBLIC, name, null, SERIALIZABLE));
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JarDiff().diff(new JsonStreamDiffHandler(out), new SimpleDiffCriteria(), "old", "new",
+                Collections.<String, ClassInfo>emptyMap(), classes);
+
+        final String json = out.toString("UTF-8");
+        Assert.assertTrue(json.startsWith("{\"old\":\"old\",\"new\":\"new\",\"oldcontents\":[],\"newcontents\":[\"a/\u00e9"));
+        Assert.assertTrue(json.endsWith("\"implements\":[\"java/io/Serializable\"]}],\"changed\":[]}\n"));
+        int count = 0;
+        for (int i = json.indexOf("\"element\":\"class\""); i >= 0; i = json.indexOf("\"element\":\"class\"", i + 1)) {
+            count++;
+        }
+        Assert.assertEquals(2000, count);
+    }
+
+}
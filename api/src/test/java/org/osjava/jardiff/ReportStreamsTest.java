@@ -0,0 +1,106 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+
+public class ReportStreamsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void diff(final OutputStream out) throws DiffException {
+        final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+        for (int i = 0; i < 500; i++) {
+            final String name = "a/A" + i;
+            classes.put(name, new ClassInfo(Opcodes.V1_6, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", new String[0],
+                    Collections.<String, MethodInfo>emptyMap(), Collections.<String, FieldInfo>emptyMap()));
+        }
+        new JarDiff().diff(new StreamDiffHandler(out), new SimpleDiffCriteria(), "old", "new",
+                Collections.<String, ClassInfo>emptyMap(), classes);
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void shouldCompressReportsEndingWithGzipSuffix() throws Exception {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        diff(expected);
+        final File file = folder.newFile("report.xml.gz");
+        diff(ReportStreams.openOutput(file, 9));
+
+        Assert.assertTrue(file.length() < expected.size() / 4);
+        Assert.assertArrayEquals(expected.toByteArray(), read(new GZIPInputStream(new FileInputStream(file))));
+        Assert.assertArrayEquals(expected.toByteArray(), read(ReportStreams.openInput(file)));
+    }
+
+    @Test
+    public void shouldWritePlainReportsUnchanged() throws Exception {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        diff(expected);
+        final File file = folder.newFile("report.xml");
+        diff(ReportStreams.openOutput(file));
+
+        Assert.assertArrayEquals(expected.toByteArray(), read(new FileInputStream(file)));
+        Assert.assertArrayEquals(expected.toByteArray(), read(ReportStreams.openInput(file)));
+    }
+
+    @Test
+    public void shouldDecompressStreams() throws Exception {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final OutputStream out = ReportStreams.compress(compressed, 0);
+        out.write("<diff/>".getBytes("UTF-8"));
+        out.close();
+
+        Assert.assertEquals("<diff/>", new String(read(ReportStreams.decompress(new ByteArrayInputStream(compressed.toByteArray()))), "UTF-8"));
+        Assert.assertEquals(0, read(ReportStreams.decompress(new ByteArrayInputStream(new byte[0]))).length);
+        Assert.assertEquals("x", new String(read(ReportStreams.decompress(new ByteArrayInputStream("x".getBytes("UTF-8")))), "UTF-8"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidLevel() throws Exception {
+        ReportStreams.compress(new ByteArrayOutputStream(), 10);
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.semver.generator.JarPairGenerator;
+import org.semver.generator.Profile;
+
+public class SpillingClassMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ClassInfo classInfo(final String name, final String... methods) {
+        final MethodInfo[] methodInfos = new MethodInfo[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            methodInfos[i] = TestClasses.method(Opcodes.ACC_PUBLIC, methods[i]);
+        }
+        return TestClasses.classInfo(name, methodInfos);
+    }
+
+    @Test
+    public void shouldReadBackSortedClasses() throws Exception {
+        final SpillingClassMap classes = new SpillingClassMap(0);
+        try {
+            Assert.assertNull(classes.put("b/B", classInfo("b/B", "m")));
+            Assert.assertNull(classes.put("a/A", classInfo("a/A", "m", "n")));
+            Assert.assertNull(classes.put("a/A", classInfo("a/A", "o")));
+
+            Assert.assertEquals(2, classes.size());
+            Assert.assertEquals(Arrays.asList("a/A", "b/B"), new ArrayList<String>(classes.keySet()));
+            Assert.assertTrue(classes.containsKey("b/B"));
+            Assert.assertNull(classes.get("c/C"));
+            Assert.assertEquals(ClassInfoCodecTest.describe(classInfo("a/A", "o")),
+                    ClassInfoCodecTest.describe(classes.get("a/A")));
+            final List<String> names = new ArrayList<String>();
+            for (final ClassInfo info : classes.values()) {
+                names.add(info.getName() + info.getMethodMap().keySet());
+            }
+            Assert.assertEquals(Arrays.asList("a/A[o()V]", "b/B[m()V]"), names);
+            for (final ClassInfo header : classes.headers()) {
+                Assert.assertTrue(header.getMethodMap().isEmpty());
+            }
+        } finally {
+            classes.close();
+        }
+    }
+
+    @Test
+    public void shouldKeepRecentlyGotClassesWithinBudget() throws Exception {
+        final SpillingClassMap nothingKept = new SpillingClassMap(0);
+        final SpillingClassMap allKept = new SpillingClassMap(1 << 20);
+        try {
+            for (final SpillingClassMap classes : Arrays.asList(nothingKept, allKept)) {
+                classes.put("a/A", classInfo("a/A", "m"));
+                classes.put("b/B", classInfo("b/B", "m"));
+            }
+            Assert.assertNotSame(nothingKept.get("a/A"), nothingKept.get("a/A"));
+            Assert.assertSame(allKept.get("a/A"), allKept.get("a/A"));
+        } finally {
+            nothingKept.close();
+            allKept.close();
+        }
+    }
+
+    @Test
+    public void shouldLoadTheSameClassesWithinAHeapBudget() throws Exception {
+        final File previous = this.folder.newFile("previous.jar");
+        final File current = this.folder.newFile("current.jar");
+        new JarPairGenerator(new Profile(200, 4, 4, 0.1, 0.1, 0.1, 0.1), 3).write(previous, current);
+        final JarDiff jarDiff = new JarDiff();
+        final Map<String, ClassInfo> expected = jarDiff.loadClasses(current);
+
+        jarDiff.setHeapBudget(10 * 1024);
+        final Map<String, ClassInfo> previousClasses = jarDiff.loadClasses(previous);
+        final Map<String, ClassInfo> currentClasses = jarDiff.loadClasses(current);
+        try {
+            Assert.assertTrue(currentClasses instanceof SpillingClassMap);
+            Assert.assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(currentClasses.keySet()));
+            for (final String name : expected.keySet()) {
+                Assert.assertEquals(ClassInfoCodecTest.describe(expected.get(name)),
+                        ClassInfoCodecTest.describe(currentClasses.get(name)));
+            }
+        } finally {
+            ((SpillingClassMap) previousClasses).close();
+            ((SpillingClassMap) currentClasses).close();
+        }
+    }
+
+}
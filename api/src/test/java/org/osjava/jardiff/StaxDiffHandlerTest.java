@@ -0,0 +1,185 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+public class StaxDiffHandlerTest {
+
+    private static final String SIGNATURE = "<T:Ljava/lang/Object;>Ljava/lang/Object;";
+
+    private static void diff(final DiffHandler handler) throws DiffException {
+        final Map<String, ClassInfo> oldClasses = new HashMap<String, ClassInfo>();
+        final Map<String, ClassInfo> newClasses = new HashMap<String, ClassInfo>();
+        oldClasses.put("a/A", TestClasses.classInfo(Opcodes.ACC_PUBLIC, "a/A", SIGNATURE, new String[] { "java/io/Serializable" },
+                new MethodInfo(Opcodes.ACC_PUBLIC, "m", "([[ILjava/util/List;)Ljava/lang/String;", "(Ljava/util/List<TT;>;)Ljava/lang/String;", new String[] { "java/io/IOException" }),
+                new MethodInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_VARARGS, "n", "([Ljava/lang/Object;)V", null, null),
+                new FieldInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "F", "Ljava/lang/String;", null, "<&>\"'"),
+                new FieldInfo(Opcodes.ACC_PUBLIC, "g", "J", null, null)));
+        newClasses.put("a/A", TestClasses.classInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "a/A", SIGNATURE, new String[] { "java/io/Serializable", "java/lang/Cloneable" },
+                new MethodInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_DEPRECATED, "m", "([[ILjava/util/List;)Ljava/lang/String;", "(Ljava/util/List<TT;>;)Ljava/lang/String;", new String[] { "java/io/IOException" }),
+                new MethodInfo(Opcodes.ACC_PROTECTED, "o", "()Z", null, null),
+                new FieldInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "F", "Ljava/lang/String;", null, "changed"),
+                new FieldInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_VOLATILE, "h", "[D", null, null)));
+        oldClasses.put("a/B", TestClasses.classInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "a/B", SIGNATURE, new String[0]));
+        newClasses.put("a/C", TestClasses.classInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_ENUM, "a/C", SIGNATURE, new String[0]));
+        new JarDiff().diff(handler, new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+    }
+
+    private static Document parse(final byte[] xml) throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        document.normalizeDocument();
+        return document;
+    }
+
+    private static Document domDocument() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diff(new DOMDiffHandler(TransformerFactory.newInstance().newTransformer(), new StreamResult(out)));
+        return parse(out.toByteArray());
+    }
+
+    @Test
+    public void shouldWriteSameDocumentAsDOMDiffHandler() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diff(new StaxDiffHandler(out));
+
+        final Document expected = domDocument();
+        final Document actual = parse(out.toByteArray());
+        Assert.assertEquals(StaxDiffHandler.XML_URI, actual.getDocumentElement().getNamespaceURI());
+        Assert.assertTrue(expected.getDocumentElement().getElementsByTagNameNS(StaxDiffHandler.XML_URI, "fieldchange").getLength() > 0);
+        Assert.assertTrue(expected.getDocumentElement().isEqualNode(actual.getDocumentElement()));
+    }
+
+    @Test
+    public void shouldFeedTransformer() throws Exception {
+        final DOMResult result = new DOMResult();
+        diff(new StaxDiffHandler(TransformerFactory.newInstance().newTransformer(), result));
+
+        final Node actual = ((Document) result.getNode()).getDocumentElement();
+        Assert.assertTrue(domDocument().getDocumentElement().isEqualNode(actual));
+    }
+
+    /**
+     * Reads the document, then fails the way a buggy transformer would.
+     */
+    private static final class FailingTransformer extends Transformer {
+        private final RuntimeException failure;
+
+        FailingTransformer(final RuntimeException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public void transform(final Source source, final Result result) {
+            try {
+                final InputStream in = ((StreamSource) source).getInputStream();
+                while (in.read() >= 0) {
+                    // Consume the whole document.
+                }
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            throw this.failure;
+        }
+
+        @Override
+        public void setParameter(final String name, final Object value) {
+        }
+
+        @Override
+        public Object getParameter(final String name) {
+            return null;
+        }
+
+        @Override
+        public void clearParameters() {
+        }
+
+        @Override
+        public void setURIResolver(final URIResolver resolver) {
+        }
+
+        @Override
+        public URIResolver getURIResolver() {
+            return null;
+        }
+
+        @Override
+        public void setOutputProperties(final Properties oformat) {
+        }
+
+        @Override
+        public Properties getOutputProperties() {
+            return new Properties();
+        }
+
+        @Override
+        public void setOutputProperty(final String name, final String value) {
+        }
+
+        @Override
+        public String getOutputProperty(final String name) {
+            return null;
+        }
+
+        @Override
+        public void setErrorListener(final ErrorListener listener) {
+        }
+
+        @Override
+        public ErrorListener getErrorListener() {
+            return null;
+        }
+    }
+
+    @Test
+    public void shouldReportTransformerRuntimeExceptions() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("transformer failed");
+        try {
+            diff(new StaxDiffHandler(new FailingTransformer(failure), new DOMResult()));
+            Assert.fail();
+        } catch (DiffException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+    }
+
+}
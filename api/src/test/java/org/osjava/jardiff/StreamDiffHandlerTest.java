@@ -0,0 +1,114 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+public class StreamDiffHandlerTest {
+
+    /**
+     * Written by the handler before its output was buffered as bytes, quirks included: quotes are not escaped
+     * and a class without superclass does not close its start tag.
+     */
+    private static final String GOLDEN =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<diff xmlns=\"http://www.osjava.org/jardiff/0.1\" old=\"old&lt;&amp;&gt;.jar\" new=\"n\u00e9w.jar\">"
+            + "<oldcontents><class name=\"a/A\"/><class name=\"a/B\"/></oldcontents><newcontents><class name=\"a/A\"/>"
+            + "<class name=\"a/C\"/></newcontents><removed>"
+            + "<class access=\"public\" abstract=\"yes\" interface=\"yes\" name=\"a/B\" signature=\"&lt;T:Ljava/lang/Object;&gt;Ljava/lang/Object;\" superclass=\"java/lang/Object\">"
+            + "</class></removed><added>"
+            + "<class access=\"public\" enum=\"yes\" name=\"a/C\" signature=\"&lt;T:Ljava/lang/Object;&gt;Ljava/lang/Object;\""
+            + "</class></added><changed><classchanged name=\"a/A\"><removed><field access=\"public\" name=\"g\">"
+            + "<type primitive=\"yes\" name=\"long\"/></field><method access=\"public\" varargs=\"yes\" name=\"n\">"
+            + "<arguments><type array=\"yes\" dimensions=\"1\" name=\"java/lang/Object\"/></arguments><return>"
+            + "<type primitive=\"yes\" name=\"void\"/></return></method></removed><added>"
+            + "<field access=\"public\" bridge=\"yes\" volatile=\"yes\" name=\"h\">"
+            + "<type array=\"yes\" dimensions=\"2\" primitive=\"yes\" name=\"double\"/></field>"
+            + "<method access=\"protected\" name=\"o\"><arguments></arguments><return>"
+            + "<type primitive=\"yes\" name=\"boolean\"/></return></method></added><changed><classchange><from>"
+            + "<class access=\"public\" name=\"a/A\" signature=\"&lt;T:Ljava/lang/Object;&gt;Ljava/lang/Object;\" superclass=\"java/lang/Object\">"
+            + "<implements name=\"java/io/Serializable\"/></class></from><to>"
+            + "<class access=\"public\" final=\"yes\" name=\"a/A\" signature=\"&lt;T:Ljava/lang/Object;&gt;Ljava/lang/Object;\" superclass=\"java/lang/Object\">"
+            + "<implements name=\"java/io/Serializable\"/><implements name=\"java/lang/Cloneable\"/></class></to>"
+            + "</classchange><fieldchange><from>"
+            + "<field access=\"public\" final=\"yes\" static=\"yes\" name=\"F\" value=\"&lt;&amp;&gt;\"'\u00e9\u20ac\ud83d\ude00?\">"
+            + "<type name=\"java/lang/String\"/></field></from><to>"
+            + "<field access=\"public\" final=\"yes\" static=\"yes\" name=\"F\" value=\"1.5\"><type name=\"java/lang/String\"/>"
+            + "</field></to></fieldchange><methodchange><from>"
+            + "<method access=\"public\" name=\"m\" signature=\"(Ljava/util/List&lt;TT;&gt;;)Ljava/lang/String;\">"
+            + "<arguments><type array=\"yes\" dimensions=\"2\" primitive=\"yes\" name=\"int\"/>"
+            + "<type name=\"java/util/List\"/></arguments><return><type name=\"java/lang/String\"/></return>"
+            + "<exception name=\"java/io/IOException\"/></method></from><to>"
+            + "<method access=\"public\" deprecated=\"yes\" name=\"m\" signature=\"(Ljava/util/List&lt;TT;&gt;;)Ljava/lang/String;\">"
+            + "<arguments><type array=\"yes\" dimensions=\"2\" primitive=\"yes\" name=\"int\"/>"
+            + "<type name=\"java/util/List\"/></arguments><return><type name=\"java/lang/String\"/></return>"
+            + "<exception name=\"java/io/IOException\"/></method></to></methodchange></changed></classchanged>"
+            + "</changed></diff>";
+
+    private static ClassInfo classInfo(final String name, final int access, final String supername, final String[] interfaces, final MethodInfo[] methods, final FieldInfo[] fields) {
+        final Map<String, MethodInfo> methodMap = new HashMap<String, MethodInfo>();
+        for (final MethodInfo method : methods) {
+            methodMap.put(method.getName() + method.getDesc(), method);
+        }
+        final Map<String, FieldInfo> fieldMap = new HashMap<String, FieldInfo>();
+        for (final FieldInfo field : fields) {
+            fieldMap.put(field.getName(), field);
+        }
+        return new ClassInfo(Opcodes.V1_6, access, name, "<T:Ljava/lang/Object;>Ljava/lang/Object;", supername, interfaces, methodMap, fieldMap);
+    }
+
+    private static void diff(final DiffHandler handler, final String oldJar, final String newJar) throws Exception {
+        final Map<String, ClassInfo> oldClasses = new HashMap<String, ClassInfo>();
+        final Map<String, ClassInfo> newClasses = new HashMap<String, ClassInfo>();
+        oldClasses.put("a/A", classInfo("a/A", Opcodes.ACC_PUBLIC, "java/lang/Object", new String[] { "java/io/Serializable" },
+                new MethodInfo[] {
+                    new MethodInfo(Opcodes.ACC_PUBLIC, "m", "([[ILjava/util/List;)Ljava/lang/String;", "(Ljava/util/List<TT;>;)Ljava/lang/String;", new String[] { "java/io/IOException" }),
+                    new MethodInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_VARARGS, "n", "([Ljava/lang/Object;)V", null, null)
+                },
+                new FieldInfo[] {
+                    new FieldInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "F", "Ljava/lang/String;", null, "<&>\"'\u00e9\u20ac\ud83d\ude00\ud800"),
+                    new FieldInfo(Opcodes.ACC_PUBLIC, "g", "J", null, null)
+                }));
+        newClasses.put("a/A", classInfo("a/A", Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "java/lang/Object", new String[] { "java/io/Serializable", "java/lang/Cloneable" },
+                new MethodInfo[] {
+                    new MethodInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_DEPRECATED, "m", "([[ILjava/util/List;)Ljava/lang/String;", "(Ljava/util/List<TT;>;)Ljava/lang/String;", new String[] { "java/io/IOException" }),
+                    new MethodInfo(Opcodes.ACC_PROTECTED, "o", "()Z", null, null)
+                },
+                new FieldInfo[] {
+                    new FieldInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "F", "Ljava/lang/String;", null, Double.valueOf(1.5)),
+                    new FieldInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_VOLATILE, "h", "[[D", null, null)
+                }));
+        oldClasses.put("a/B", classInfo("a/B", Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "java/lang/Object", new String[0], new MethodInfo[0], new FieldInfo[0]));
+        newClasses.put("a/C", classInfo("a/C", Opcodes.ACC_PUBLIC | Opcodes.ACC_ENUM, null, new String[0], new MethodInfo[0], new FieldInfo[0]));
+        new JarDiff().diff(handler, new SimpleDiffCriteria(), oldJar, newJar, oldClasses, newClasses);
+    }
+
+    @Test
+    public void shouldWriteGoldenDocument() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diff(new StreamDiffHandler(out), "old<&>.jar", "n\u00e9w.jar");
+
+        Assert.assertArrayEquals((GOLDEN + System.getProperty("line.separator")).getBytes("UTF-8"), out.toByteArray());
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TeeDiffHandlerTest {
+
+    private static DiffHandler recordingHandler(final List<String> events, final boolean failOnEnd) {
+        return (DiffHandler) Proxy.newProxyInstance(DiffHandler.class.getClassLoader(), new Class<?>[] { DiffHandler.class },
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                        events.add(method.getName());
+                        if (failOnEnd && method.getName().equals("endDiff")) {
+                            throw new DiffException(new IllegalStateException());
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void shouldForwardAllEventsToAllHandlers() throws Exception {
+        final Map<String, ClassInfo> oldClasses = TestClasses.classes("a/A", "a/B");
+        final Map<String, ClassInfo> newClasses = TestClasses.classes("a/B", "a/C");
+        final List<String> expected = new ArrayList<String>();
+        final List<String> first = new ArrayList<String>();
+        final List<String> second = new ArrayList<String>();
+
+        new JarDiff().diff(recordingHandler(expected, false), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+        new JarDiff().diff(new TeeDiffHandler(recordingHandler(first, false), recordingHandler(second, false)), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+
+        Assert.assertEquals(expected, first);
+        Assert.assertEquals(expected, second);
+    }
+
+    @Test
+    public void shouldEndAllHandlersWhenOneFails() throws Exception {
+        final List<String> first = new ArrayList<String>();
+        final List<String> second = new ArrayList<String>();
+        try {
+            new TeeDiffHandler(recordingHandler(first, true), recordingHandler(second, false)).endDiff();
+            Assert.fail();
+        } catch (DiffException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(Collections.singletonList("endDiff"), second);
+    }
+
+}
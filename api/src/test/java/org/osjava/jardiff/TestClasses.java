@@ -0,0 +1,107 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osjava.jardiff;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Builds {@link ClassInfo}s for tests diffing classes without reading jars.
+ */
+public final class TestClasses {
+
+    private TestClasses() {
+    }
+
+    /**
+     * @return a public class extending <code>java.lang.Object</code>, declaring <code>members</code>, keyed as by
+     *         {@link ClassInfoVisitor}
+     */
+    public static ClassInfo classInfo(final String name, final AbstractInfo... members) {
+        return classInfo(Opcodes.ACC_PUBLIC, name, null, new String[0], members);
+    }
+
+    /**
+     * @return a class extending <code>java.lang.Object</code>, declaring <code>members</code>, keyed as by
+     *         {@link ClassInfoVisitor}
+     */
+    public static ClassInfo classInfo(final int access, final String name, final String signature,
+            final String[] interfaces, final AbstractInfo... members) {
+        final Map<String, MethodInfo> methods = new HashMap<String, MethodInfo>();
+        final Map<String, FieldInfo> fields = new HashMap<String, FieldInfo>();
+        for (final AbstractInfo member : members) {
+            if (member instanceof MethodInfo) {
+                methods.put(member.getName() + member.getDesc(), (MethodInfo) member);
+            } else {
+                fields.put(member.getName(), (FieldInfo) member);
+            }
+        }
+        return new ClassInfo(Opcodes.V1_6, access, name, signature, "java/lang/Object", interfaces, methods, fields);
+    }
+
+    /**
+     * @return a method taking and returning nothing
+     */
+    public static MethodInfo method(final int access, final String name) {
+        return new MethodInfo(access, name, "()V", null, null);
+    }
+
+    /**
+     * @return an <code>int</code> field without constant value
+     */
+    public static FieldInfo field(final int access, final String name) {
+        return new FieldInfo(access, name, "I", null, null);
+    }
+
+    /**
+     * @return classes keyed by name
+     */
+    public static Map<String, ClassInfo> classes(final ClassInfo... classes) {
+        final Map<String, ClassInfo> map = new HashMap<String, ClassInfo>();
+        for (final ClassInfo classInfo : classes) {
+            map.put(classInfo.getName(), classInfo);
+        }
+        return map;
+    }
+
+    /**
+     * @return classes without members, keyed by name
+     */
+    public static Map<String, ClassInfo> classes(final String... names) {
+        final Map<String, ClassInfo> map = new HashMap<String, ClassInfo>();
+        for (final String name : names) {
+            map.put(name, classInfo(name));
+        }
+        return map;
+    }
+
+    /**
+     * @return the classes <code>packageName/C0</code> to <code>C(count - 1)</code>, class <code>Ci</code> declaring
+     *         the method <code>mi</code> and the field <code>fi</code> with <code>access</code>
+     */
+    public static Map<String, ClassInfo> classes(final String packageName, final int count, final int access) {
+        final Map<String, ClassInfo> map = new HashMap<String, ClassInfo>();
+        for (int i = 0; i < count; i++) {
+            final String name = packageName + "/C" + i;
+            map.put(name, classInfo(name, method(access, "m" + i), field(access, "f" + i)));
+        }
+        return map;
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osjava.jardiff.ReportStreams;
+
+public class BatchTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File manifest(final String content) throws Exception {
+        final File manifest = this.folder.newFile("manifest.txt");
+        final FileOutputStream out = new FileOutputStream(manifest);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return manifest;
+    }
+
+    @Test
+    public void shouldWriteOneResultPerPairInManifestOrder() throws Exception {
+        final File root = this.folder.getRoot();
+        TestJars.jar(root, "1.0.jar", "m");
+        TestJars.jar(root, "1.1.jar", "m", "n");
+        TestJars.jar(root, "2.0.jar", "n");
+        final File manifest = manifest("# release pairs\n"
+                + "--base-jar 1.0.jar --new-jar 1.1.jar --base-version 1.0.0 --new-version 1.1.0\n"
+                + "\n"
+                + "  --base-jar 1.1.jar   --new-jar 2.0.jar --base-version 1.1.0 --new-version 1.2.0\n"
+                + "--base-jar 1.0.jar --new-jar missing.jar\n"
+                + "--base-jar 1.0.jar\n"
+                + "--base-jar 1.0.jar --new-jar 1.0.jar\n");
+        final JarCache jarCache = new JarCache();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Assert.assertEquals(1, new Batch(jarCache, 3).run(manifest, ReportStreams.DEFAULT_LEVEL, new PrintStream(out, true, "UTF-8")));
+
+        final String nl = System.getProperty("line.separator");
+        Assert.assertEquals("{\"line\":2,\"base-jar\":\"1.0.jar\",\"new-jar\":\"1.1.jar\",\"compatibility\":\"BACKWARD_COMPATIBLE_USER\",\"differences\":1,\"inferred\":\"1.1.0\",\"valid\":true}" + nl
+                + "{\"line\":4,\"base-jar\":\"1.1.jar\",\"new-jar\":\"2.0.jar\",\"compatibility\":\"NON_BACKWARD_COMPATIBLE\",\"differences\":1,\"inferred\":\"2.0.0\",\"valid\":false}" + nl
+                + "{\"line\":5,\"error\":\"<" + new File(root, "missing.jar").getPath().replace("\\", "\\\\") + "> is not a valid file\"}" + nl
+                + "{\"line\":6,\"error\":\"Missing option: --new-jar\"}" + nl
+                + "{\"line\":7,\"base-jar\":\"1.0.jar\",\"new-jar\":\"1.0.jar\",\"compatibility\":\"BACKWARD_COMPATIBLE_IMPLEMENTER\",\"differences\":0}" + nl,
+                out.toString("UTF-8"));
+        Assert.assertEquals(3, jarCache.size());
+    }
+
+    @Test
+    public void shouldRunBatchFromMain() throws Exception {
+        TestJars.jar(this.folder.getRoot(), "1.0.jar", "m");
+        manifest("--base-jar 1.0.jar --new-jar 1.0.jar\n");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        Assert.assertEquals(0, Main.run(new String[] { "--batch", "manifest.txt", "--threads", "2" }, this.folder.getRoot(),
+                new PrintStream(out), new PrintStream(err), null));
+        Assert.assertEquals("", err.toString());
+        Assert.assertTrue(out.toString().startsWith("{\"line\":1,"));
+
+        Assert.assertEquals(1, Main.run(new String[] { "--batch", "manifest.txt", "--threads", "0" }, this.folder.getRoot(),
+                new PrintStream(out), new PrintStream(err), null));
+        Assert.assertTrue(err.toString().startsWith("Error: Invalid thread count <0>"));
+    }
+
+    @Test
+    public void shouldDiscardReportsOfFailedPairs() throws Exception {
+        TestJars.jar(this.folder.getRoot(), "1.0.jar", "m");
+        final FileOutputStream broken = new FileOutputStream(this.folder.newFile("broken.jar"));
+        try {
+            broken.write("not a jar".getBytes("UTF-8"));
+        } finally {
+            broken.close();
+        }
+        final File manifest = manifest("--base-jar 1.0.jar --new-jar broken.jar --xml-report r.xml --json-report r.json\n");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Assert.assertEquals(1, new Batch(new JarCache(), 1).run(manifest, ReportStreams.DEFAULT_LEVEL, new PrintStream(out, true, "UTF-8")));
+        Assert.assertTrue(out.toString("UTF-8"), out.toString("UTF-8").contains("broken.jar"));
+        Assert.assertFalse(new File(this.folder.getRoot(), "r.xml").exists());
+        Assert.assertFalse(new File(this.folder.getRoot(), "r.json").exists());
+    }
+
+    @Test
+    public void shouldRunEveryTask() throws Exception {
+        final int[] counts = new int[100];
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int i = 0; i < counts.length; i++) {
+            final int index = i;
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (counts) {
+                        counts[index]++;
+                    }
+                }
+            });
+        }
+        WorkStealingScheduler.run(tasks, 7, "test");
+        for (final int count : counts) {
+            Assert.assertEquals(1, count);
+        }
+    }
+
+}
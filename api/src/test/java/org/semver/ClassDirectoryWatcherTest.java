@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+
+public class ClassDirectoryWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReportUpdatedAndRemovedClasses() throws Exception {
+        final File classes = this.folder.newFolder("classes");
+        TestJars.classFile(classes, "a/A", Opcodes.ACC_PUBLIC, "m");
+        final File b = TestJars.classFile(classes, "a/b/B", Opcodes.ACC_PUBLIC);
+        final ClassDirectoryWatcher watcher = new ClassDirectoryWatcher(classes);
+
+        Assert.assertTrue(watcher.scan());
+        Assert.assertEquals(2, watcher.getUpdated().size());
+        Assert.assertTrue(watcher.getUpdated().get("a/A").getMethodMap().containsKey("m()V"));
+        Assert.assertFalse(watcher.scan());
+
+        // Same size, most likely same modification time
+        TestJars.classFile(classes, "a/A", Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "m");
+        Assert.assertTrue(watcher.scan());
+        Assert.assertEquals(Collections.singleton("a/A"), watcher.getUpdated().keySet());
+        Assert.assertTrue(watcher.getUpdated().get("a/A").isFinal());
+        Assert.assertTrue(watcher.getRemoved().isEmpty());
+
+        Assert.assertTrue(b.delete());
+        Assert.assertTrue(watcher.scan());
+        Assert.assertTrue(watcher.getUpdated().isEmpty());
+        Assert.assertEquals(Collections.singleton("a/b/B"), watcher.getRemoved());
+    }
+
+    @Test
+    public void shouldReportAgainOnChange() throws Exception {
+        final File root = this.folder.getRoot();
+        TestJars.jar(root, "base.jar", "m");
+        final File classes = this.folder.newFolder("classes");
+        TestJars.classFile(classes, "a/A", Opcodes.ACC_PUBLIC, "m");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PrintStream printStream = new PrintStream(out, true);
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Main.run(new String[] { "--watch", "classes", "--base-jar", "base.jar" }, root, printStream, printStream, null);
+                } catch (Exception e) {
+                    e.printStackTrace(printStream);
+                }
+            }
+        };
+        thread.start();
+        try {
+            final String nl = System.getProperty("line.separator");
+            final String first = Delta.CompatibilityType.BACKWARD_COMPATIBLE_IMPLEMENTER + nl;
+            waitFor(out, first);
+            TestJars.classFile(classes, "a/A", Opcodes.ACC_PUBLIC, "m", "n");
+            waitFor(out, first + Delta.CompatibilityType.BACKWARD_COMPATIBLE_USER + nl);
+        } finally {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private static void waitFor(final ByteArrayOutputStream out, final String expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!expected.equals(out.toString()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(expected, out.toString());
+    }
+
+}
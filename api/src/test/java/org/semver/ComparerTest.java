@@ -0,0 +1,111 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osjava.jardiff.InMemoryMetrics;
+import org.osjava.jardiff.MethodInfo;
+import org.osjava.jardiff.MetricsListener;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.semver.generator.JarPairGenerator;
+import org.semver.generator.Profile;
+
+public class ComparerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldSendMetrics() throws Exception {
+        final File previous = TestJars.jar(this.folder.getRoot(), "previous.jar", "m", "n");
+        final File current = TestJars.jar(this.folder.getRoot(), "current.jar", "m", "o", "p");
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        final Comparer comparer = new Comparer(new SimpleDiffCriteria(), previous, current,
+                Collections.<String>emptySet(), false, Collections.<String>emptySet(), false, new JarCache());
+        comparer.setMetricsListener(metrics);
+        comparer.diff();
+        comparer.diff();
+
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.CACHE_MISSES));
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.CACHE_HITS));
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.JAR_LOAD_NANOS));
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.CLASSES_PARSED));
+        Assert.assertTrue(metrics.getCount(MetricsListener.Metric.BYTES_READ) > 0);
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.DIFF_NANOS));
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.CLASSES_COMPARED));
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.CLASSES_CHANGED));
+        Assert.assertEquals(4, metrics.getCount(MetricsListener.Metric.DIFFERENCES_ADDED));
+        Assert.assertEquals(2, metrics.getCount(MetricsListener.Metric.DIFFERENCES_REMOVED));
+        Assert.assertEquals(0, metrics.getCount(MetricsListener.Metric.DIFFERENCES_CHANGED));
+    }
+
+    /**
+     * Differences have no equality, so compare their kind, class and member.
+     */
+    private static Set<String> describe(final Delta delta) {
+        final Set<String> descriptions = new TreeSet<String>();
+        for (final Delta.Difference difference : delta.getDifferences()) {
+            final String member = difference.getInfo() instanceof MethodInfo
+                    ? difference.getInfo().getName() + ((MethodInfo) difference.getInfo()).getDesc()
+                    : difference.getInfo().getName();
+            descriptions.add(difference.getClass().getSimpleName() + " " + difference.getClassName() + " " + member);
+        }
+        return descriptions;
+    }
+
+    @Test
+    public void shouldFindTheSameDifferencesWithinAHeapBudget() throws Exception {
+        final File previous = this.folder.newFile("previous.jar");
+        final File current = this.folder.newFile("current.jar");
+        final Delta expected = new JarPairGenerator(new Profile(300, 6, 5, 0.1, 0.1, 0.1, 0.1), 5).write(previous, current);
+        for (final long heapBudget : new long[] {-1, 0, 64 * 1024}) {
+            final Comparer comparer = new Comparer(new SimpleDiffCriteria(), previous, current,
+                    Collections.<String>emptySet(), Collections.<String>emptySet());
+            comparer.setHeapBudget(heapBudget);
+            Assert.assertEquals("budget " + heapBudget, describe(expected), describe(comparer.diff()));
+        }
+    }
+
+    @Test
+    public void shouldFindTheSameDifferencesOffHeap() throws Exception {
+        final File previous = this.folder.newFile("previous.jar");
+        final File current = this.folder.newFile("current.jar");
+        final Delta expected = new JarPairGenerator(new Profile(300, 6, 5, 0.1, 0.1, 0.1, 0.1), 9).write(previous, current);
+        final Comparer comparer = new Comparer(new SimpleDiffCriteria(), previous, current,
+                Collections.<String>emptySet(), Collections.<String>emptySet());
+        comparer.setOffHeap(true);
+        Assert.assertEquals(describe(expected), describe(comparer.diff()));
+    }
+
+    @Test
+    public void shouldMeasureNothingByDefault() throws Exception {
+        final File previous = TestJars.jar(this.folder.getRoot(), "previous.jar", "m");
+        final Comparer comparer = new Comparer(new SimpleDiffCriteria(), previous, previous,
+                Collections.<String>emptySet(), Collections.<String>emptySet());
+        Assert.assertNull(comparer.getMetricsListener());
+        Assert.assertTrue(comparer.diff().getDifferences().isEmpty());
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osjava.jardiff.ClassInfo;
+
+public class DiffDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File jar(final String name, final String... methods) throws IOException {
+        return TestJars.jar(this.folder.getRoot(), name, methods);
+    }
+
+    @Test
+    public void shouldCacheJarsUntilModified() throws Exception {
+        final File jar = jar("a.jar", "m");
+        final JarCache jarCache = new JarCache(1);
+        final Map<String, ClassInfo> classes = jarCache.getClasses(jar);
+
+        Assert.assertTrue(classes.get("a/A").getMethodMap().containsKey("m()V"));
+        Assert.assertSame(classes, jarCache.getClasses(new File(jar.getParentFile(), "./a.jar")));
+
+        jar("a.jar", "m", "n");
+        jar.setLastModified(jar.lastModified() + 2000);
+        final Map<String, ClassInfo> modified = jarCache.getClasses(jar);
+        Assert.assertNotSame(classes, modified);
+        Assert.assertTrue(modified.get("a/A").getMethodMap().containsKey("n()V"));
+
+        jarCache.getClasses(jar("b.jar"));
+        Assert.assertEquals(1, jarCache.size());
+    }
+
+    @Test
+    public void shouldRunCommandsInDaemon() throws Exception {
+        jar("old.jar", "m");
+        jar("new.jar", "m", "n");
+        final JarCache jarCache = new JarCache();
+        final DiffDaemon daemon = new DiffDaemon(0, jarCache, this.folder.getRoot());
+        final Thread thread = new Thread(daemon);
+        thread.start();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            final String[] args = { "--check", "--base-jar", "old.jar", "--new-jar", "new.jar" };
+            Assert.assertEquals(0, DiffDaemon.forward(daemon.getPort(), this.folder.getRoot(), args, this.folder.getRoot(), new PrintStream(out), new PrintStream(err)));
+            Assert.assertEquals(0, DiffDaemon.forward(daemon.getPort(), this.folder.getRoot(), args, this.folder.getRoot(), new PrintStream(out), new PrintStream(err)));
+            Assert.assertEquals(Delta.CompatibilityType.BACKWARD_COMPATIBLE_USER + System.getProperty("line.separator")
+                    + Delta.CompatibilityType.BACKWARD_COMPATIBLE_USER + System.getProperty("line.separator"), out.toString());
+            Assert.assertEquals("", err.toString());
+            Assert.assertEquals(2, jarCache.size());
+
+            out.reset();
+            Assert.assertEquals(1, DiffDaemon.forward(daemon.getPort(), this.folder.getRoot(), new String[] { "--unknown" }, this.folder.getRoot(), new PrintStream(out), new PrintStream(err)));
+            Assert.assertEquals("", out.toString());
+            Assert.assertTrue(err.toString().startsWith("Error: "));
+        } finally {
+            daemon.close();
+            thread.join();
+        }
+    }
+
+    @Test(expected = ConnectException.class)
+    public void shouldFailWithoutDaemon() throws Exception {
+        final ServerSocket socket = new ServerSocket(0);
+        final int port = socket.getLocalPort();
+        socket.close();
+        DiffDaemon.forward(port, this.folder.getRoot(), new String[0], this.folder.getRoot(), System.out, System.err);
+    }
+
+    @Test(expected = ConnectException.class)
+    public void shouldFailWithAStaleToken() throws Exception {
+        final ServerSocket socket = new ServerSocket(0);
+        final int port = socket.getLocalPort();
+        socket.close();
+        final FileOutputStream token = new FileOutputStream(DiffDaemon.tokenFile(this.folder.getRoot(), port));
+        try {
+            token.write(new byte[16]);
+        } finally {
+            token.close();
+        }
+        DiffDaemon.forward(port, this.folder.getRoot(), new String[0], this.folder.getRoot(), System.out, System.err);
+    }
+
+    @Test
+    public void shouldOnlyServeClientsSendingTheToken() throws Exception {
+        final DiffDaemon daemon = new DiffDaemon(0, new JarCache(), this.folder.getRoot());
+        final Thread thread = new Thread(daemon);
+        thread.start();
+        final File tokenFile = DiffDaemon.tokenFile(this.folder.getRoot(), daemon.getPort());
+        try {
+            Assert.assertEquals(16, tokenFile.length());
+            final Socket socket = new Socket(InetAddress.getByName(null), daemon.getPort());
+            try {
+                final DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+                request.writeInt(DiffDaemon.MAGIC);
+                request.write(new byte[16]);
+                request.writeUTF(this.folder.getRoot().getPath());
+                request.writeInt(1);
+                request.writeUTF("--help");
+                request.flush();
+                Assert.assertEquals(-1, socket.getInputStream().read());
+            } finally {
+                socket.close();
+            }
+        } finally {
+            daemon.close();
+            thread.join();
+        }
+        Assert.assertFalse(tokenFile.exists());
+    }
+
+    @Test
+    public void shouldRejectCommandsWhichCannotRunInADaemon() throws Exception {
+        final DiffDaemon daemon = new DiffDaemon(0, new JarCache(), this.folder.getRoot());
+        final Thread thread = new Thread(daemon);
+        thread.start();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            final String[] watch = { "--base-jar", "old.jar", "--watch", "classes" };
+            Assert.assertEquals(1, DiffDaemon.forward(daemon.getPort(), this.folder.getRoot(), watch, this.folder.getRoot(), new PrintStream(out), new PrintStream(err)));
+            Assert.assertTrue(err.toString(), err.toString().startsWith("Error: --watch cannot be run in a daemon."));
+
+            err.reset();
+            final String[] tooMany = new String[DiffDaemon.MAX_ARGS + 1];
+            Arrays.fill(tooMany, "--help");
+            Assert.assertEquals(1, DiffDaemon.forward(daemon.getPort(), this.folder.getRoot(), tooMany, this.folder.getRoot(), new PrintStream(out), new PrintStream(err)));
+            Assert.assertTrue(err.toString(), err.toString().startsWith("Error: a daemon runs commands of at most "));
+            Assert.assertEquals("", out.toString());
+        } finally {
+            daemon.close();
+            thread.join();
+        }
+    }
+
+}
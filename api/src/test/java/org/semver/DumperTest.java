@@ -0,0 +1,101 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.FieldInfo;
+import org.osjava.jardiff.MethodInfo;
+import org.semver.Delta.Difference;
+
+public class DumperTest {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    private static Delta delta() {
+        final Set<Difference> differences = new LinkedHashSet<Difference>();
+        differences.add(new Delta.Change("b.B",
+                new MethodInfo(Opcodes.ACC_PUBLIC, "m", "()V", null, null),
+                new MethodInfo(Opcodes.ACC_PROTECTED | Opcodes.ACC_FINAL | Opcodes.ACC_VARARGS, "m", "()V", null, null)));
+        differences.add(new Delta.Add("a.A",
+                new FieldInfo(Opcodes.ACC_TRANSIENT | Opcodes.ACC_VOLATILE, "f", "I", null, null)));
+        differences.add(new Delta.Remove("b.B",
+                new ClassInfo(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "b/B", null, "java/lang/Object", new String[0],
+                        Collections.<String, MethodInfo>emptyMap(), Collections.<String, FieldInfo>emptyMap())));
+        differences.add(new Delta.Deprecate("a.A",
+                new MethodInfo(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "n", "(I)I", "sig", null),
+                new MethodInfo(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_DEPRECATED, "n", "(I)I", "sig", null)));
+        return new Delta(differences);
+    }
+
+    @Test
+    public void shouldDumpSortedDifferences() throws Exception {
+        final StringBuilder out = new StringBuilder();
+        Dumper.dump(delta(), out);
+
+        Assert.assertEquals("Class a.A" + NL
+                + " Added Field f, desc I, access bridge package-private transcient volatile" + NL
+                + " Deprecated Method n, sig sig, desc (I)I, access private static" + NL
+                + "Class b.B" + NL
+                + " Changed Method m, desc ()V, access added: final protected varargs removed: public" + NL
+                + " Removed Class , access public super synchronized" + NL, out.toString());
+    }
+
+    @Test
+    public void shouldDumpSameOnPrintStream() throws Exception {
+        final StringBuilder expected = new StringBuilder();
+        Dumper.dump(delta(), expected);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Dumper.dump(delta(), new PrintStream(out, true, "UTF-8"));
+
+        Assert.assertEquals(expected.toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void shouldDumpFullStatsOnGivenDestination() throws Exception {
+        final StringBuilder out = new StringBuilder();
+        Dumper.dumpFullStats(delta(), 2, out);
+
+        Assert.assertEquals("Summary: 4 differences in 2 classes:" + NL
+                + "  Remove 1, Change 1, Deprecate 1, Add 1" + NL
+                + NL
+                + " 0/ 2: a.A: Remove  0, Change  0, Deprecate  1, Add  1" + NL
+                + " 1/ 2: b.B: Remove  1, Change  1, Deprecate  0, Add  0" + NL
+                + NL + NL + "Removes" + NL + NL
+                + "Class b.B" + NL
+                + " Removed Class , access public super synchronized" + NL
+                + NL + NL + "Changes" + NL + NL
+                + "Class b.B" + NL
+                + " Changed Method m, desc ()V, access added: final protected varargs removed: public" + NL
+                + NL + NL + "Deprecates" + NL + NL
+                + "Class a.A" + NL
+                + " Deprecated Method n, sig sig, desc (I)I, access private static" + NL
+                + NL + NL + "Additions" + NL + NL
+                + "Class a.A" + NL
+                + " Added Field f, desc I, access bridge package-private transcient volatile" + NL
+                + NL + NL, out.toString());
+    }
+
+}
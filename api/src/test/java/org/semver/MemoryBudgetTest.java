@@ -0,0 +1,201 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffStatistics;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.semver.generator.JarPairGenerator;
+import org.semver.generator.Profile;
+import org.semver.jardiff.DifferenceAccumulatingHandler;
+
+/**
+ * Fails when loading or diffing generated JARs allocates or retains more memory than the budgets of
+ * <code>memory-budgets.properties</code>.
+ * Allocations are measured per thread by {@link DiffStatistics}, retained heap by collecting garbage before and after
+ * loading, or before and after releasing the {@link Delta}.
+ * Run in its own JVM by the <code>memory-budgets</code> execution of surefire, measures are the median of a few
+ * attempts so that neither warm-up nor a collection leaving garbage behind is counted.
+ */
+public class MemoryBudgetTest {
+
+    private static final Profile PROFILE = new Profile(5000, 10, 8, 0.05, 0.05, 0.05, 0.05);
+    private static final int ATTEMPTS = 5;
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static File previous;
+    private static File current;
+    private static int expectedDifferences;
+    private static Properties budgets;
+    /**
+     * Keeps the {@link Delta} being measured reachable, local variables may not.
+     */
+    private static Delta held;
+
+    @BeforeClass
+    public static void generate() throws IOException {
+        previous = folder.newFile("previous.jar");
+        current = folder.newFile("current.jar");
+        expectedDifferences = new JarPairGenerator(PROFILE, 1).write(previous, current).getDifferences().size();
+
+        budgets = new Properties();
+        final InputStream in = MemoryBudgetTest.class.getResourceAsStream("/memory-budgets.properties");
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the heap used once no more garbage can be collected
+     */
+    private static long settledHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void assertWithinBudget(final String name, final long measured) {
+        final long budget = Long.parseLong(System.getProperty("semver.budget." + name, budgets.getProperty(name)));
+        System.out.println(name + ": " + measured + " (budget " + budget + ")");
+        Assert.assertTrue(name + " is " + measured + ", over budget " + budget, measured <= budget);
+    }
+
+    private static void assumeAllocationsMeasured() {
+        Assume.assumeTrue(DiffStatistics.allocatedBytes() >= 0);
+    }
+
+    /**
+     * Loads both JARs once, in a method of its own so that nothing it loads is still referenced once it returns.
+     *
+     * @return the retained bytes and the bytes allocated, per class
+     */
+    private static long[] load() throws Exception {
+        final DiffStatistics statistics = new DiffStatistics();
+        final JarDiff jarDiff = new JarDiff();
+        jarDiff.setStatistics(statistics);
+        final long before = settledHeap();
+        final Map<String, ClassInfo> previousClasses = jarDiff.loadClasses(previous);
+        final Map<String, ClassInfo> currentClasses = jarDiff.loadClasses(current);
+        final long after = settledHeap();
+
+        final int classes = previousClasses.size() + currentClasses.size();
+        Assert.assertEquals(2 * PROFILE.getClasses(), classes);
+        return new long[] {(after - before) / classes, statistics.get(DiffStatistics.Phase.LOAD).getAllocatedBytes() / classes};
+    }
+
+    /**
+     * @return the {@link Delta} between both JARs, the only object of the diff still referenced once this returns
+     */
+    private static Delta delta(final DiffStatistics statistics, final Map<String, ClassInfo> previousClasses, final Map<String, ClassInfo> currentClasses) throws Exception {
+        final JarDiff jarDiff = new JarDiff();
+        jarDiff.setStatistics(statistics);
+        final DifferenceAccumulatingHandler handler = new DifferenceAccumulatingHandler();
+        handler.setStatistics(statistics);
+        jarDiff.batchDiff(handler, new SimpleDiffCriteria(), "previous", "current", previousClasses, currentClasses);
+        return handler.getDelta();
+    }
+
+    /**
+     * Diffs both JARs once, then measures the heap released once the {@link Delta} is no longer referenced.
+     *
+     * @return the bytes retained per difference, allocated per class while diffing and allocated per difference while
+     * filtering
+     */
+    private static long[] diff(final Map<String, ClassInfo> previousClasses, final Map<String, ClassInfo> currentClasses) throws Exception {
+        final DiffStatistics statistics = new DiffStatistics();
+        held = delta(statistics, previousClasses, currentClasses);
+        final int differences = held.getDifferences().size();
+        Assert.assertEquals(expectedDifferences, differences);
+
+        final long holding = settledHeap();
+        held = null;
+        final long released = settledHeap();
+
+        final int classes = previousClasses.size() + currentClasses.size();
+        return new long[] {(holding - released) / differences,
+                statistics.get(DiffStatistics.Phase.DIFF).getAllocatedBytes() / classes,
+                statistics.get(DiffStatistics.Phase.FILTER).getAllocatedBytes() / differences};
+    }
+
+    /**
+     * @return the median of each measure over the attempts
+     */
+    private static long[] median(final long[][] attempts) {
+        final long[] measures = new long[attempts[0].length];
+        final long[] values = new long[attempts.length];
+        for (int i = 0; i < measures.length; i++) {
+            for (int j = 0; j < attempts.length; j++) {
+                values[j] = attempts[j][i];
+            }
+            Arrays.sort(values);
+            measures[i] = values[values.length / 2];
+        }
+        return measures;
+    }
+
+    @Test
+    public void loadingShouldStayWithinBudget() throws Exception {
+        final long[][] attempts = new long[ATTEMPTS][];
+        for (int i = 0; i < ATTEMPTS; i++) {
+            attempts[i] = load();
+        }
+        final long[] measures = median(attempts);
+
+        assertWithinBudget("retained.bytes.per.class", measures[0]);
+        assumeAllocationsMeasured();
+        assertWithinBudget("allocated.bytes.per.class.load", measures[1]);
+    }
+
+    @Test
+    public void diffingShouldStayWithinBudget() throws Exception {
+        final JarDiff jarDiff = new JarDiff();
+        final Map<String, ClassInfo> previousClasses = jarDiff.loadClasses(previous);
+        final Map<String, ClassInfo> currentClasses = jarDiff.loadClasses(current);
+        final long[][] attempts = new long[ATTEMPTS][];
+        for (int i = 0; i < ATTEMPTS; i++) {
+            attempts[i] = diff(previousClasses, currentClasses);
+        }
+        final long[] measures = median(attempts);
+
+        assertWithinBudget("retained.bytes.per.difference", measures[0]);
+        assumeAllocationsMeasured();
+        assertWithinBudget("allocated.bytes.per.class.diff", measures[1]);
+        assertWithinBudget("allocated.bytes.per.difference.filter", measures[2]);
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Writes class files and JARs for tests, shared with the tests of the other modules through the test JAR.
+ */
+public final class TestJars {
+
+    private TestJars() {
+    }
+
+    /**
+     * @return the class file of <code>name</code>, extending <code>java.lang.Object</code> and declaring the public
+     *         abstract <code>void</code> methods <code>methods</code>
+     */
+    public static byte[] classBytes(final String name, final int access, final String... methods) {
+        final ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_6, access | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+        for (final String method : methods) {
+            writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, method, "()V", null, null).visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Writes the class file of <code>name</code>, declaring the public abstract <code>void</code> methods
+     * <code>methods</code>, below <code>directory</code>.
+     */
+    public static File classFile(final File directory, final String name, final int access, final String... methods) throws IOException {
+        final File file = new File(directory, name + ".class");
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(classBytes(name, access, methods));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a JAR holding a single class <code>a.A</code> declaring the public abstract <code>void</code> methods
+     * <code>methods</code>.
+     */
+    public static File jar(final File directory, final String name, final String... methods) throws IOException {
+        return jar(new File(directory, name),
+                Collections.singletonMap("a/A", classBytes("a/A", Opcodes.ACC_PUBLIC, methods)));
+    }
+
+    /**
+     * Writes a JAR holding <code>classes</code>, class files keyed by internal class name, in iteration order.
+     */
+    public static File jar(final File file, final Map<String, byte[]> classes) throws IOException {
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey() + ".class"));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VersionIndexTest {
+
+    private static final VersionIndex INDEX = new VersionIndex(Arrays.asList(
+            "1.10.0", "1.2.0", "1.9", "2.0.0-SNAPSHOT", "2.0.0-RC1", "1.2.1", "0.9.0", "2.0.0", "2.1.0-SNAPSHOT", "not-a-version", "3.0.0"));
+
+    @Test
+    public void shouldSortReleasesFollowingSemanticVersioning() {
+        Assert.assertEquals(Arrays.asList("0.9.0", "1.2.0", "1.2.1", "1.9", "1.10.0", "2.0.0-RC1", "2.0.0", "3.0.0"), INDEX.getReleases());
+        Assert.assertEquals(Arrays.asList("not-a-version"), INDEX.getIgnored());
+    }
+
+    @Test
+    public void shouldFindLatestCompatibleReleaseBefore() {
+        Assert.assertEquals("1.10.0", INDEX.getLatestCompatibleReleaseBefore(Version.parse("1.11.0-SNAPSHOT")));
+        Assert.assertEquals("1.9", INDEX.getLatestCompatibleReleaseBefore(Version.parse("1.10.0")));
+        Assert.assertEquals("1.2.1", INDEX.getLatestCompatibleReleaseBefore(Version.parse("1.9.0")));
+        Assert.assertEquals("2.0.0", INDEX.getLatestCompatibleReleaseBefore(Version.parse("2.1.0-SNAPSHOT")));
+        Assert.assertNull(INDEX.getLatestCompatibleReleaseBefore(Version.parse("2.0.0-RC1")));
+        Assert.assertNull(INDEX.getLatestCompatibleReleaseBefore(Version.parse("0.9.0")));
+        Assert.assertEquals("3.0.0", INDEX.getLatestCompatibleReleaseBefore(Version.parse("3.5.0")));
+        Assert.assertNull(INDEX.getLatestCompatibleReleaseBefore(Version.parse("4.0.0")));
+    }
+
+    @Test
+    public void shouldListCompatibleReleasesBeforeFromMostRecent() {
+        Assert.assertEquals(Arrays.asList("1.10.0", "1.9", "1.2.1", "1.2.0"), INDEX.getCompatibleReleasesBefore(Version.parse("1.11.0")));
+        Assert.assertEquals(Arrays.asList("2.0.0", "2.0.0-RC1"), INDEX.getCompatibleReleasesBefore(Version.parse("2.1.0")));
+        Assert.assertTrue(INDEX.getCompatibleReleasesBefore(Version.parse("0.1.0")).isEmpty());
+    }
+
+    @Test
+    public void shouldHandleNoVersion() {
+        final VersionIndex index = new VersionIndex(Collections.<String>emptyList());
+        Assert.assertTrue(index.getReleases().isEmpty());
+        Assert.assertNull(index.getLatestCompatibleReleaseBefore(Version.parse("1.0.0")));
+    }
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Property based checks of the ordering of {@link Version}s, on seeded random versions.
+ */
+public class VersionOrderTest {
+
+    private static final int[] ELEMENTS = {0, 1, 2, 9, 10, (1 << 21) - 1, 1 << 21, Integer.MAX_VALUE};
+    private static final String[] SPECIALS = {null, null, null, "0", "1", "2", "10", "a", "b", "SNAPSHOT", "RC-1", "a.1", "a.2", "a.b", "a.1.1", "1.a", "01", "alpha.beta"};
+
+    /**
+     * A version along with the elements it was built from.
+     */
+    private static final class Sample {
+        final int[] elements;
+        final String special;
+        final Version version;
+
+        Sample(final int major, final int minor, final int patch, final String special, final boolean parse) {
+            this.elements = new int[] {major, minor, patch};
+            this.special = special;
+            if (parse) {
+                this.version = Version.parse(major + "." + minor + "." + patch + (special == null ? "" : "-" + special));
+            } else {
+                this.version = new Version(major, minor, patch, special == null ? null : "-", special);
+            }
+        }
+    }
+
+    private static Sample randomSample(final Random random, final boolean largeElements) {
+        final int bound = largeElements ? ELEMENTS.length : 4;
+        return new Sample(ELEMENTS[random.nextInt(bound)], ELEMENTS[random.nextInt(bound)], ELEMENTS[random.nextInt(bound)],
+                SPECIALS[random.nextInt(SPECIALS.length)], random.nextBoolean());
+    }
+
+    /**
+     * Semantic Versioning precedence, computed from the elements.
+     */
+    private static int referenceCompare(final Sample sample1, final Sample sample2) {
+        for (int i = 0; i < 3; i++) {
+            if (sample1.elements[i] != sample2.elements[i]) {
+                return sample1.elements[i] < sample2.elements[i] ? -1 : 1;
+            }
+        }
+        if (sample1.special == null || sample2.special == null) {
+            return sample1.special == null ? (sample2.special == null ? 0 : 1) : -1;
+        }
+        final String[] ids1 = sample1.special.split("\\.");
+        final String[] ids2 = sample2.special.split("\\.");
+        for (int i = 0; i < Math.min(ids1.length, ids2.length); i++) {
+            final boolean numeric1 = ids1[i].matches("\\d+");
+            final boolean numeric2 = ids2[i].matches("\\d+");
+            final int result;
+            if (numeric1 && numeric2) {
+                result = Integer.signum(Integer.parseInt(ids1[i]) - Integer.parseInt(ids2[i]));
+            } else if (numeric1 != numeric2) {
+                result = numeric1 ? -1 : 1;
+            } else {
+                result = Integer.signum(ids1[i].compareTo(ids2[i]));
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.signum(ids1.length - ids2.length);
+    }
+
+    @Test
+    public void shouldCompareLikeReference() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            final Sample sample1 = randomSample(random, i % 2 == 0);
+            final Sample sample2 = randomSample(random, i % 3 == 0);
+            final int expected = referenceCompare(sample1, sample2);
+            Assert.assertEquals(sample1.version + " " + sample2.version, expected, Integer.signum(sample1.version.compareTo(sample2.version)));
+            Assert.assertEquals(sample2.version + " " + sample1.version, -expected, Integer.signum(sample2.version.compareTo(sample1.version)));
+            Assert.assertEquals(expected == 0, sample1.version.equals(sample2.version));
+        }
+    }
+
+    private static List<Version> randomVersions(final Random random, final int size, final boolean largeElements) {
+        final List<Version> versions = new ArrayList<Version>(size);
+        for (int i = 0; i < size; i++) {
+            versions.add(randomSample(random, largeElements).version);
+        }
+        return versions;
+    }
+
+    private static void assertSameElements(final List<Version> expected, final List<Version> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            // Sorting is stable: equal versions keep their order
+            Assert.assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void shouldSortLikeCollectionsSort() {
+        final Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            final List<Version> versions = randomVersions(random, random.nextInt(200), i % 10 == 0);
+            final List<Version> expected = new ArrayList<Version>(versions);
+            Collections.sort(expected);
+            final List<Version> actual = i % 2 == 0 ? new ArrayList<Version>(versions) : new LinkedList<Version>(versions);
+            Version.sort(actual);
+            assertSameElements(expected, actual);
+        }
+    }
+
+    @Test
+    public void shouldMaxLikeCollectionsMax() {
+        final Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            final List<Version> versions = randomVersions(random, 1 + random.nextInt(50), i % 10 == 0);
+            Assert.assertSame(Collections.max(versions), Version.max(versions));
+        }
+    }
+
+    @Test
+    public void shouldSortEmptyAndSingletonLists() {
+        final List<Version> empty = new ArrayList<Version>();
+        Version.sort(empty);
+        Assert.assertTrue(empty.isEmpty());
+        final List<Version> singleton = new ArrayList<Version>(Arrays.asList(Version.parse("1.0.0")));
+        Version.sort(singleton);
+        Assert.assertEquals(Version.parse("1.0.0"), singleton.get(0));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void shouldMaxOfNothingFail() {
+        Version.max(new ArrayList<Version>());
+    }
+
+}
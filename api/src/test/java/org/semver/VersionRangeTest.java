@@ -0,0 +1,135 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VersionRangeTest {
+
+    private static void assertMatches(final String range, final String... versions) {
+        final VersionRange versionRange = VersionRange.parse(range);
+        for (final String version : versions) {
+            Assert.assertTrue(range + " should match " + version, versionRange.matches(Version.parse(version)));
+        }
+    }
+
+    private static void assertNotMatches(final String range, final String... versions) {
+        final VersionRange versionRange = VersionRange.parse(range);
+        for (final String version : versions) {
+            Assert.assertFalse(range + " should not match " + version, versionRange.matches(Version.parse(version)));
+        }
+    }
+
+    @Test
+    public void shouldMatchMavenIntervals() {
+        assertMatches("[1.2,2.0)", "1.2.0", "1.2", "1.9.9", "1.10.0");
+        assertNotMatches("[1.2,2.0)", "1.1.9", "2.0.0", "2.0.1");
+        assertMatches("(1.2,2.0]", "1.2.1", "2.0.0");
+        assertNotMatches("(1.2,2.0]", "1.2.0", "2.0.1");
+        assertMatches("[1.0,)", "1.0.0", "99.0.0");
+        assertMatches("(,1.0]", "0.0.1", "1.0.0");
+        assertNotMatches("(,1.0]", "1.0.1");
+        assertMatches("[1.5]", "1.5.0");
+        assertNotMatches("[1.5]", "1.5.1");
+        assertMatches("[1.0,1.5), [2.0,)", "1.4.0", "2.1.0");
+        assertNotMatches("[1.0,1.5), [2.0,)", "1.5.0", "1.9.0");
+    }
+
+    @Test
+    public void shouldMatchCaretRanges() {
+        assertMatches("^1.4", "1.4.0", "1.99.0");
+        assertNotMatches("^1.4", "1.3.9", "2.0.0");
+        assertMatches("^0.4", "0.4.0", "0.4.9");
+        assertNotMatches("^0.4", "0.5.0");
+        assertMatches("^0.0.3", "0.0.3");
+        assertNotMatches("^0.0.3", "0.0.4");
+        assertMatches("^0.0", "0.0.9");
+        assertNotMatches("^0.0", "0.1.0");
+        assertMatches("^1", "1.0.0", "1.9.0");
+        assertNotMatches("^1", "2.0.0");
+    }
+
+    @Test
+    public void shouldMatchTildeRanges() {
+        assertMatches("~1.4.2", "1.4.2", "1.4.9");
+        assertNotMatches("~1.4.2", "1.4.1", "1.5.0");
+        assertMatches("~1.4", "1.4.0", "1.4.9");
+        assertNotMatches("~1.4", "1.5.0");
+        assertMatches("~1", "1.9.0");
+        assertNotMatches("~1", "2.0.0");
+    }
+
+    @Test
+    public void shouldMatchComparators() {
+        assertMatches(">=1.2.0 <2.0.0", "1.2.0", "1.9.0");
+        assertNotMatches(">=1.2.0 <2.0.0", "2.0.0", "1.1.0");
+        assertMatches(">= 1.2.0  < 2.0.0", "1.5.0");
+        assertMatches("1.2.3", "1.2.3");
+        assertNotMatches("=1.2.3", "1.2.4");
+        assertMatches("<=1.0.0 || >=3.0.0", "0.5.0", "3.0.0");
+        assertNotMatches("<=1.0.0 || >=3.0.0", "2.0.0");
+        assertMatches("*", "0.0.1", "5.0.0");
+        assertMatches("", "5.0.0");
+    }
+
+    @Test
+    public void shouldApplyPreReleaseRules() {
+        assertNotMatches("[1.0,2.0)", "1.5.0-RC1");
+        assertNotMatches("*", "1.0.0-SNAPSHOT");
+        assertMatches(">=1.2.0-RC1", "1.2.0-RC2", "1.2.0", "1.3.0");
+        assertNotMatches(">=1.2.0-RC1", "1.2.0-RC0", "1.3.0-RC1");
+        assertMatches("^1.4.0-beta", "1.4.0-beta.2", "1.4.0");
+        assertMatches("[1.0.0-alpha,1.0.0]", "1.0.0-beta");
+        assertNotMatches("[1.0.0-alpha,1.0.0]", "0.9.0-beta");
+    }
+
+    @Test
+    public void shouldFilterInOrder() {
+        final List<Version> versions = new ArrayList<Version>();
+        for (final String version : Arrays.asList("2.1.0", "1.0.0", "1.4.5", "1.4.0-RC1", "1.7.0", "0.9.0")) {
+            versions.add(Version.parse(version));
+        }
+        Assert.assertEquals(Arrays.asList(Version.parse("1.4.5"), Version.parse("1.7.0")), VersionRange.parse("^1.4").filter(versions));
+    }
+
+    @Test
+    public void shouldRejectInvalidRanges() {
+        for (final String range : Arrays.asList("[1.0,2.0", "[1.0,2.0) x", "(1.0)", "[,]", ">=", ">=a.b", "[1.0,2.0),", "^",
+                "1.0 ||", "|| 1.0", "1.0 || || 2.0", "^1.x", "~1.2.x", ">=1.X", "1.*", "^0.x.x")) {
+            try {
+                VersionRange.parse(range);
+                Assert.fail(range);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("<" + range + "> is not a valid version range"));
+            }
+        }
+    }
+
+    @Test
+    public void shouldSelectLatestReleaseBeforeInRange() {
+        final VersionIndex index = new VersionIndex(Arrays.asList("1.3.0", "1.4.0", "1.4.7", "1.5.0", "2.0.0"));
+        Assert.assertEquals("1.4.7", index.getLatestReleaseBefore(Version.parse("2.1.0"), VersionRange.parse("~1.4")));
+        Assert.assertEquals("1.4.0", index.getLatestReleaseBefore(Version.parse("1.4.7"), VersionRange.parse("~1.4")));
+        Assert.assertNull(index.getLatestReleaseBefore(Version.parse("1.4.0"), VersionRange.parse("~1.4")));
+    }
+
+}
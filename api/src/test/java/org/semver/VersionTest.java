@@ -18,6 +18,8 @@ package org.semver;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -191,4 +193,84 @@ public class VersionTest {
         version.next(null);
     }
 
+    private static final Pattern FORMAT = Pattern.compile("(\\d+)\\.(\\d+)(?:\\.)?(\\d*)(\\.|-|\\+)?([0-9A-Za-z-.]*)?");
+
+    /**
+     * The regular expression based parser {@link Version#parse(String)} must behave like.
+     */
+    private static Version regexParse(final String version) {
+        final Matcher matcher = FORMAT.matcher(version);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("<"+version+"> does not match format "+FORMAT.pattern());
+        }
+        final int patch = matcher.group(3).length() > 0 ? Integer.valueOf(matcher.group(3)) : 0;
+        final String special = matcher.group(5);
+        return new Version(Integer.valueOf(matcher.group(1)), Integer.valueOf(matcher.group(2)), patch, matcher.group(4), "".equals(special) ? null : special);
+    }
+
+    private static String describe(final String version, final boolean regex) {
+        try {
+            final Version parsed = regex ? regexParse(version) : Version.parse(version);
+            return parsed + " snapshot=" + parsed.isSnapshot() + " hash=" + parsed.hashCode();
+        } catch (RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    @Test
+    public void shouldParseLikeRegularExpression() {
+        final char[] alphabet = {'0', '1', '9', '.', '-', '+', 'a', 'S'};
+        final List<String> versions = new ArrayList<String>();
+        versions.add("");
+        for (int length = 1; length <= 6; length++) {
+            final int[] indexes = new int[length];
+            while (true) {
+                final char[] chars = new char[length];
+                for (int i = 0; i < length; i++) {
+                    chars[i] = alphabet[indexes[i]];
+                }
+                versions.add(new String(chars));
+                int i = length - 1;
+                while (i >= 0 && ++indexes[i] == alphabet.length) {
+                    indexes[i--] = 0;
+                }
+                if (i < 0) {
+                    break;
+                }
+            }
+        }
+        versions.add("2147483647.2147483647.2147483647-2147483647");
+        versions.add("2147483648.0");
+        versions.add("0.99999999999999999999");
+        versions.add("1.2.99999999999");
+        versions.add("1.2.3-99999999999");
+        versions.add("0000000000000001.2.3-00000000000000004");
+        versions.add("1.2.3-RC-SNAPSHOT");
+        versions.add("1.2.3 ");
+        versions.add("1.2.3-\u00e9");
+        versions.add("1.2.3-\u0661");
+        for (final String version : versions) {
+            Assert.assertEquals(version, describe(version, true), describe(version, false));
+        }
+    }
+
+    @Test
+    public void shouldCompareParsedVersionsLikeRegularExpression() {
+        final String[] versions = {"1.2", "1.2.3", "1.2.3-1", "1.2.3-01", "1.2.3-a.1", "1.2.3-a.b", "1.2.3.a..", "1.2.3+a", "1.2.3-"};
+        for (final String version1 : versions) {
+            for (final String version2 : versions) {
+                Assert.assertEquals(version1 + " " + version2, Integer.signum(regexParse(version1).compareTo(regexParse(version2))),
+                        Integer.signum(Version.parse(version1).compareTo(Version.parse(version2))));
+            }
+        }
+    }
+
+    @Test
+    public void shouldParsedPreReleasesBeEqual() {
+        final Version version = Version.parse("1.2.3-RC.1");
+        Assert.assertEquals(version, new Version(1, 2, 3, "-", "RC.1"));
+        Assert.assertEquals(version.hashCode(), new Version(1, 2, 3, "-", "RC.1").hashCode());
+        Assert.assertFalse(version.equals(Version.parse("1.2.3-RC.2")));
+    }
+
 }
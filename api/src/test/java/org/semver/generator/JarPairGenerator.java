@@ -0,0 +1,228 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.generator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.osjava.jardiff.AbstractInfo;
+import org.osjava.jardiff.FieldInfo;
+import org.osjava.jardiff.MethodInfo;
+import org.semver.Delta;
+import org.semver.Delta.Difference;
+
+/**
+ *
+ * Writes a previous and a current JAR of generated classes as described by a {@link Profile}, together with the
+ * {@link Delta} comparing them is expected to give. The same profile and seed always give the same JARs.
+ * <br />
+ * Class <code>i</code> extends class <code>i - 1</code> unless it starts a new hierarchy. Member names are unique
+ * across classes, so that members inherited from superclasses never hide removed ones.
+ * Changed methods declare a new exception and changed fields become final, both incompatible for any
+ * {@link org.osjava.jardiff.DiffCriteria}.
+ *
+ */
+@Immutable
+public final class JarPairGenerator {
+
+    /**
+     * Date of all JAR entries, so that JARs only depend on the profile and seed.
+     */
+    private static final long ENTRY_TIME = 946684800000L;
+
+    private static final String METHOD_DESCRIPTOR = "()V";
+    private static final String FIELD_DESCRIPTOR = "I";
+    private static final String[] NO_EXCEPTIONS = new String[0];
+    private static final String[] CHANGED_EXCEPTIONS = {"java/io/IOException"};
+
+    private final Profile profile;
+    private final long seed;
+
+    public JarPairGenerator(@Nonnull final Profile profile, final long seed) {
+        if (profile == null) {
+            throw new IllegalArgumentException("null profile");
+        }
+
+        this.profile = profile;
+        this.seed = seed;
+    }
+
+    /**
+     * @param index index of a class, from 0 to the number of classes of the profile
+     * @return the internal name of the class
+     */
+    @Nonnull
+    public static String className(final int index) {
+        return "org/semver/generated/p" + (index / 1000) + "/C" + index;
+    }
+
+    /**
+     * @param previousJAR where to write the previous JAR
+     * @param currentJAR where to write the current JAR
+     * @return the differences between both JARs
+     * @throws IOException if a JAR cannot be written
+     */
+    @Nonnull
+    public Delta write(@Nonnull final File previousJAR, @Nonnull final File currentJAR) throws IOException {
+        if (previousJAR == null) {
+            throw new IllegalArgumentException("null previousJAR");
+        }
+        if (currentJAR == null) {
+            throw new IllegalArgumentException("null currentJAR");
+        }
+
+        final Random random = new Random(this.seed);
+        final Set<Difference> differences = new HashSet<Difference>();
+        final JarOutputStream previous = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(previousJAR), 65536));
+        try {
+            final JarOutputStream current = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(currentJAR), 65536));
+            try {
+                for (int i = 0; i < this.profile.getClasses(); i++) {
+                    writeClass(i, random, previous, current, differences);
+                }
+            } finally {
+                current.close();
+            }
+        } finally {
+            previous.close();
+        }
+        return new Delta(differences);
+    }
+
+    private void writeClass(final int index, final Random random, final JarOutputStream previous,
+                            final JarOutputStream current, final Set<Difference> differences) throws IOException {
+        final String name = className(index);
+        final String superName = index % this.profile.getDepth() == 0 ? "java/lang/Object" : className(index - 1);
+        final String className = name.replace('/', '.');
+        final int classAccess = Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_ABSTRACT;
+        final ClassWriter previousWriter = new ClassWriter(0);
+        previousWriter.visit(Opcodes.V1_6, classAccess, name, null, superName, null);
+        final ClassWriter currentWriter = new ClassWriter(0);
+        currentWriter.visit(Opcodes.V1_6, classAccess, name, null, superName, null);
+
+        final double removed = this.profile.getRemovedRate();
+        final double changed = removed + this.profile.getChangedRate();
+        final double deprecated = changed + this.profile.getDeprecatedRate();
+        for (int m = 0; m < this.profile.getMembers(); m++) {
+            final boolean method = m % 2 == 0;
+            final String memberName = (method ? "m" : "f") + index + "_" + m;
+            final int access = method ? Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT : Opcodes.ACC_PUBLIC;
+            final AbstractInfo previousInfo = member(previousWriter, method, access, memberName, NO_EXCEPTIONS);
+            final double draw = random.nextDouble();
+            if (draw < removed) {
+                differences.add(new Delta.Remove(className, previousInfo));
+            } else if (draw < changed) {
+                final AbstractInfo currentInfo = method
+                        ? member(currentWriter, true, access, memberName, CHANGED_EXCEPTIONS)
+                        : member(currentWriter, false, access | Opcodes.ACC_FINAL, memberName, NO_EXCEPTIONS);
+                differences.add(new Delta.Change(className, previousInfo, currentInfo));
+            } else if (draw < deprecated) {
+                final AbstractInfo currentInfo = member(currentWriter, method, access | Opcodes.ACC_DEPRECATED, memberName, NO_EXCEPTIONS);
+                differences.add(new Delta.Deprecate(className, previousInfo, currentInfo));
+            } else {
+                member(currentWriter, method, access, memberName, NO_EXCEPTIONS);
+            }
+            if (random.nextDouble() < this.profile.getAddedRate()) {
+                differences.add(new Delta.Add(className, member(currentWriter, method, access, "added" + memberName, NO_EXCEPTIONS)));
+            }
+        }
+
+        previousWriter.visitEnd();
+        currentWriter.visitEnd();
+        putClass(previous, name, previousWriter.toByteArray());
+        putClass(current, name, currentWriter.toByteArray());
+    }
+
+    /**
+     * Declares a member on <code>writer</code>.
+     *
+     * @return the info JarDiff reads back
+     */
+    private static AbstractInfo member(final ClassWriter writer, final boolean method, final int access,
+                                       final String name, final String[] exceptions) {
+        if (method) {
+            writer.visitMethod(access, name, METHOD_DESCRIPTOR, null, exceptions).visitEnd();
+            return new MethodInfo(access, name, METHOD_DESCRIPTOR, null, exceptions);
+        }
+        writer.visitField(access, name, FIELD_DESCRIPTOR, null, null).visitEnd();
+        return new FieldInfo(access, name, FIELD_DESCRIPTOR, null, null);
+    }
+
+    private static void putClass(final JarOutputStream out, final String name, final byte[] bytes) throws IOException {
+        final ZipEntry entry = new ZipEntry(name + ".class");
+        entry.setTime(ENTRY_TIME);
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    /**
+     * Writes a pair of JARs and prints how many differences are expected.
+     *
+     * @param args the name of a {@link Profile}, a seed, and where to write the previous and current JARs
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: JarPairGenerator small|medium|huge SEED PREVIOUS_JAR CURRENT_JAR");
+            System.exit(1);
+            return;
+        }
+
+        final Profile profile;
+        final long seed;
+        try {
+            profile = Profile.named(args[0]);
+            seed = Long.parseLong(args[1]);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: "+e.getMessage());
+            System.exit(1);
+            return;
+        }
+        final Delta delta = new JarPairGenerator(profile, seed).write(new File(args[2]), new File(args[3]));
+        int added = 0;
+        int removed = 0;
+        int changed = 0;
+        int deprecated = 0;
+        for (final Difference difference : delta.getDifferences()) {
+            if (difference instanceof Delta.Add) {
+                added++;
+            } else if (difference instanceof Delta.Remove) {
+                removed++;
+            } else if (difference instanceof Delta.Deprecate) {
+                deprecated++;
+            } else {
+                changed++;
+            }
+        }
+        System.out.println(profile);
+        System.out.println("Expected: "+added+" added, "+removed+" removed, "+changed+" changed, "+deprecated+" deprecated ("
+                + delta.computeCompatibilityType()+")");
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.generator;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osjava.jardiff.MethodInfo;
+import org.osjava.jardiff.PublicDiffCriteria;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.semver.Comparer;
+import org.semver.Delta;
+
+public class JarPairGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Differences have no equality, so compare their kind, class and member.
+     */
+    private static Set<String> describe(final Delta delta) {
+        final Set<String> descriptions = new TreeSet<String>();
+        for (final Delta.Difference difference : delta.getDifferences()) {
+            final String member = difference.getInfo() instanceof MethodInfo
+                    ? difference.getInfo().getName() + ((MethodInfo) difference.getInfo()).getDesc()
+                    : difference.getInfo().getName();
+            descriptions.add(difference.getClass().getSimpleName() + " " + difference.getClassName() + " " + member);
+        }
+        return descriptions;
+    }
+
+    @Test
+    public void shouldExpectTheDeltaOfComparer() throws Exception {
+        final File previous = this.folder.newFile("previous.jar");
+        final File current = this.folder.newFile("current.jar");
+        final Profile profile = new Profile(300, 12, 5, 0.1, 0.1, 0.1, 0.1);
+        final Delta expected = new JarPairGenerator(profile, 42).write(previous, current);
+
+        final Set<String> descriptions = describe(expected);
+        Assert.assertTrue(descriptions.size() > 1000);
+        for (final String kind : Arrays.asList("Add", "Remove", "Change", "Deprecate")) {
+            boolean found = false;
+            for (final String description : descriptions) {
+                found |= description.startsWith(kind + " ");
+            }
+            Assert.assertTrue(kind, found);
+        }
+        Assert.assertEquals(descriptions, describe(new Comparer(new SimpleDiffCriteria(), previous, current,
+                Collections.<String>emptySet(), Collections.<String>emptySet()).diff()));
+        Assert.assertEquals(descriptions, describe(new Comparer(new PublicDiffCriteria(), previous, current,
+                Collections.<String>emptySet(), Collections.<String>emptySet()).diff()));
+    }
+
+    @Test
+    public void shouldWriteTheSameJarsForTheSameSeed() throws Exception {
+        final Profile profile = new Profile(50, 6, 3, 0.2, 0.2, 0.2, 0.2);
+        final File first = this.folder.newFile("first.jar");
+        final File second = this.folder.newFile("second.jar");
+        final File other = this.folder.newFile("other.jar");
+        new JarPairGenerator(profile, 1).write(this.folder.newFile("p1.jar"), first);
+        new JarPairGenerator(profile, 1).write(this.folder.newFile("p2.jar"), second);
+        new JarPairGenerator(profile, 2).write(this.folder.newFile("p3.jar"), other);
+
+        Assert.assertArrayEquals(bytes(first), bytes(second));
+        Assert.assertFalse(Arrays.equals(bytes(first), bytes(other)));
+    }
+
+    private static byte[] bytes(final File file) throws Exception {
+        final byte[] bytes = new byte[(int) file.length()];
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    @Test
+    public void shouldNameProfiles() {
+        Assert.assertSame(Profile.SMALL, Profile.named("small"));
+        Assert.assertSame(Profile.HUGE, Profile.named("HUGE"));
+        Assert.assertEquals(200000, Profile.HUGE.getClasses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownProfile() {
+        Profile.named("tiny");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectRatesAboveOne() {
+        new Profile(10, 10, 1, 0, 0.5, 0.5, 0.5);
+    }
+
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.generator;
+
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ *
+ * Shape of a pair of JARs written by {@link JarPairGenerator}: number of classes, members per class, depth of the
+ * class hierarchies and rates at which members of the previous JAR are removed, changed or deprecated in the current
+ * one, or members added.
+ *
+ */
+@Immutable
+public final class Profile {
+
+    /**
+     * 1 000 classes in hierarchies 4 deep.
+     */
+    public static final Profile SMALL = new Profile(1000, 10, 4, 0.02, 0.01, 0.02, 0.01);
+
+    /**
+     * 20 000 classes in hierarchies 8 deep.
+     */
+    public static final Profile MEDIUM = new Profile(20000, 10, 8, 0.02, 0.01, 0.02, 0.01);
+
+    /**
+     * 200 000 classes in hierarchies 16 deep.
+     */
+    public static final Profile HUGE = new Profile(200000, 10, 16, 0.02, 0.01, 0.02, 0.01);
+
+    private final int classes;
+    private final int members;
+    private final int depth;
+    private final double addedRate;
+    private final double removedRate;
+    private final double changedRate;
+    private final double deprecatedRate;
+
+    /**
+     * @param classes number of classes of each JAR
+     * @param members number of members of each class of the previous JAR, alternately methods and fields
+     * @param depth number of classes of each hierarchy, 1 for classes all extending {@link Object}
+     * @param addedRate probability that a member is added after each member of the previous JAR
+     * @param removedRate probability that a member of the previous JAR is removed
+     * @param changedRate probability that a member of the previous JAR is changed incompatibly
+     * @param deprecatedRate probability that a member of the previous JAR is deprecated
+     */
+    public Profile(final int classes, final int members, final int depth, final double addedRate,
+                   final double removedRate, final double changedRate, final double deprecatedRate) {
+        if (classes <= 0) {
+            throw new IllegalArgumentException("invalid classes "+classes);
+        }
+        if (members < 0) {
+            throw new IllegalArgumentException("invalid members "+members);
+        }
+        if (depth <= 0) {
+            throw new IllegalArgumentException("invalid depth "+depth);
+        }
+        checkRate("added", addedRate);
+        checkRate("removed", removedRate);
+        checkRate("changed", changedRate);
+        checkRate("deprecated", deprecatedRate);
+        if (removedRate + changedRate + deprecatedRate > 1) {
+            throw new IllegalArgumentException("invalid rates, removed, changed and deprecated add up to more than 1");
+        }
+
+        this.classes = classes;
+        this.members = members;
+        this.depth = depth;
+        this.addedRate = addedRate;
+        this.removedRate = removedRate;
+        this.changedRate = changedRate;
+        this.deprecatedRate = deprecatedRate;
+    }
+
+    private static void checkRate(final String name, final double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("invalid "+name+" rate "+rate);
+        }
+    }
+
+    /**
+     * @param name <code>small</code>, <code>medium</code> or <code>huge</code>
+     * @return the predefined profile named <code>name</code>
+     */
+    @Nonnull
+    public static Profile named(@Nonnull final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("null name");
+        }
+
+        final String lowerCase = name.toLowerCase(Locale.ROOT);
+        if (lowerCase.equals("small")) {
+            return SMALL;
+        } else if (lowerCase.equals("medium")) {
+            return MEDIUM;
+        } else if (lowerCase.equals("huge")) {
+            return HUGE;
+        }
+        throw new IllegalArgumentException("invalid profile <"+name+">");
+    }
+
+    public int getClasses() {
+        return this.classes;
+    }
+
+    public int getMembers() {
+        return this.members;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+
+    public double getAddedRate() {
+        return this.addedRate;
+    }
+
+    public double getRemovedRate() {
+        return this.removedRate;
+    }
+
+    public double getChangedRate() {
+        return this.changedRate;
+    }
+
+    public double getDeprecatedRate() {
+        return this.deprecatedRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d classes, %d members, depth %d, added %.3f, removed %.3f, changed %.3f, deprecated %.3f",
+                this.classes, this.members, this.depth, this.addedRate, this.removedRate, this.changedRate, this.deprecatedRate);
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jardiff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.osjava.jardiff.TeeDiffHandler;
+import org.semver.Delta;
+import org.semver.Delta.Change;
+import org.semver.Delta.Deprecate;
+import org.semver.Delta.Difference;
+
+public class BatchDiffTest {
+
+    public static class Outer {
+        public int field;
+        public void method() {}
+
+        public static class Inner {
+            public void method() {}
+        }
+    }
+
+    public static class ChangedOuter {
+        @Deprecated
+        public int field;
+        public final void method() {}
+        public void added() {}
+
+        public static class Inner {
+            public void added() {}
+        }
+    }
+
+    private static void addClassInfo(final Map<String, ClassInfo> classMap, final String name, final Class<?> klass, final JarDiff jd) throws Exception {
+        final ClassInfo info = jd.loadClassInfo(new ClassReader(klass.getName()));
+        classMap.put(name, new ClassInfo(info.getVersion(), info.getAccess(), name, info.getSignature(), info.getSupername(),
+                info.getInterfaces(), info.getMethodMap(), info.getFieldMap()));
+    }
+
+    private static List<String> describe(final Delta delta) {
+        final List<String> descriptions = new ArrayList<String>();
+        for (final Difference difference : delta.getDifferences()) {
+            String description = difference.getClass().getSimpleName() + " " + difference.getClassName() + " " + difference.getInfo().getName();
+            if (difference instanceof Change) {
+                description += " " + ((Change) difference).getModifiedInfo().getAccess();
+            } else if (difference instanceof Deprecate) {
+                description += " " + ((Deprecate) difference).getModifiedInfo().getAccess();
+            }
+            descriptions.add(description);
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private static void assertSameDelta(final Set<String> includes, final Set<String> excludes) throws Exception {
+        final JarDiff jd = new JarDiff();
+        final Map<String, ClassInfo> oldClasses = new HashMap<String, ClassInfo>();
+        final Map<String, ClassInfo> newClasses = new HashMap<String, ClassInfo>();
+        addClassInfo(oldClasses, "p/Outer", Outer.class, jd);
+        addClassInfo(oldClasses, "p/Outer$Inner", Outer.Inner.class, jd);
+        addClassInfo(newClasses, "p/Outer", ChangedOuter.class, jd);
+        addClassInfo(newClasses, "p/Outer$Inner", ChangedOuter.Inner.class, jd);
+
+        final DifferenceAccumulatingHandler legacy = new DifferenceAccumulatingHandler(includes, excludes);
+        // A TeeDiffHandler hides the batch interface, forcing per member events
+        jd.diff(new TeeDiffHandler(legacy), new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+        final DifferenceAccumulatingHandler batch = new DifferenceAccumulatingHandler(includes, excludes);
+        jd.batchDiff(batch, new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+
+        Assert.assertEquals(describe(legacy.getDelta()), describe(batch.getDelta()));
+    }
+
+    @Test
+    public void shouldAccumulateSameDifferencesAsPerMemberEvents() throws Exception {
+        assertSameDelta(Collections.<String>emptySet(), Collections.<String>emptySet());
+    }
+
+    @Test
+    public void shouldApplySameIncludesAndExcludes() throws Exception {
+        assertSameDelta(Collections.singleton("p/Outer/*"), Collections.<String>emptySet());
+        assertSameDelta(Collections.<String>emptySet(), Collections.singleton("p/Outer"));
+        assertSameDelta(Collections.<String>emptySet(), Collections.singleton("p/Outer$Inner"));
+    }
+
+}
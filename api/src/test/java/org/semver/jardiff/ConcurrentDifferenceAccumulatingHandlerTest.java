@@ -0,0 +1,146 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jardiff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.MethodInfo;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.osjava.jardiff.TestClasses;
+import org.semver.Delta;
+import org.semver.Delta.Difference;
+
+public class ConcurrentDifferenceAccumulatingHandlerTest {
+
+    private static final int PACKAGES = 8;
+
+    private static Map<String, ClassInfo> classes(final String packageName, final int count, final int access) {
+        final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+        for (int i = 0; i < count; i++) {
+            final String name = packageName + "/C" + i + (i % 3 == 0 ? "$Inner" : "");
+            classes.put(name, TestClasses.classInfo(name, TestClasses.method(access, "m" + i),
+                    TestClasses.method(Opcodes.ACC_PUBLIC, "n" + (i + access)), TestClasses.field(access, "f" + i)));
+        }
+        return classes;
+    }
+
+    private static List<String> describe(final Delta delta) {
+        final List<String> descriptions = new ArrayList<String>();
+        for (final Difference difference : delta.getDifferences()) {
+            descriptions.add(difference.getClass().getSimpleName() + " " + difference.getClassName() + " " + difference.getInfo().getName());
+        }
+        return descriptions;
+    }
+
+    private static Delta concurrentDelta(final Set<String> includes, final Set<String> excludes) throws Exception {
+        final ConcurrentDifferenceAccumulatingHandler handler = new ConcurrentDifferenceAccumulatingHandler(includes, excludes);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int p = 0; p < PACKAGES; p++) {
+                final String packageName = "org/test/p" + p;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        new JarDiff().batchDiff(handler, new SimpleDiffCriteria(), "old", "new",
+                                classes(packageName, 40, Opcodes.ACC_PUBLIC), classes(packageName, 30, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL));
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return handler.getDelta();
+    }
+
+    private static Delta sequentialDelta(final Set<String> includes, final Set<String> excludes) throws Exception {
+        final DifferenceAccumulatingHandler handler = new DifferenceAccumulatingHandler(includes, excludes);
+        for (int p = 0; p < PACKAGES; p++) {
+            final String packageName = "org/test/p" + p;
+            new JarDiff().batchDiff(handler, new SimpleDiffCriteria(), "old", "new",
+                    classes(packageName, 40, Opcodes.ACC_PUBLIC), classes(packageName, 30, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL));
+        }
+        return handler.getDelta();
+    }
+
+    private static void assertSameAsSequential(final Set<String> includes, final Set<String> excludes) throws Exception {
+        final List<String> expected = describe(sequentialDelta(includes, excludes));
+        Collections.sort(expected);
+        final List<String> actual = describe(concurrentDelta(includes, excludes));
+        Collections.sort(actual);
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void shouldAccumulateSameDifferencesAsSequentialHandler() throws Exception {
+        assertSameAsSequential(Collections.<String>emptySet(), Collections.<String>emptySet());
+    }
+
+    @Test
+    public void shouldApplySameIncludesAndExcludes() throws Exception {
+        assertSameAsSequential(Collections.singleton("org/test/p1/**"), Collections.<String>emptySet());
+        assertSameAsSequential(Collections.<String>emptySet(), Collections.singleton("**/p2/*"));
+        assertSameAsSequential(Collections.<String>emptySet(), Collections.singleton("**/C3$Inner"));
+    }
+
+    @Test
+    public void shouldOrderDifferencesOnlyTellingApartByTheirOtherProperties() {
+        final MethodInfo method = new MethodInfo(Opcodes.ACC_PUBLIC, "m", "()V", null, null);
+        final List<Difference> differences = new ArrayList<Difference>();
+        differences.add(new Delta.Change("C", method, new MethodInfo(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "m", "()V", null, null)));
+        differences.add(new Delta.Change("C", method, new MethodInfo(Opcodes.ACC_PUBLIC, "m", "()V", null, new String[] {"E"})));
+        differences.add(new Delta.Change("C", method, new MethodInfo(Opcodes.ACC_PUBLIC, "m", "()V", "()V", null)));
+        differences.add(new Delta.Change("C", method, new MethodInfo(Opcodes.ACC_PROTECTED, "m", "()V", null, null)));
+        final List<Difference> reversed = new ArrayList<Difference>(differences);
+        Collections.reverse(reversed);
+
+        Collections.sort(differences, ConcurrentDifferenceAccumulatingHandler.DIFFERENCE_ORDER);
+        Collections.sort(reversed, ConcurrentDifferenceAccumulatingHandler.DIFFERENCE_ORDER);
+        Assert.assertEquals(differences, reversed);
+        for (int i = 1; i < differences.size(); i++) {
+            Assert.assertTrue(ConcurrentDifferenceAccumulatingHandler.DIFFERENCE_ORDER.compare(differences.get(i - 1), differences.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void shouldProduceDeterministicOrder() throws Exception {
+        final Set<String> none = Collections.<String>emptySet();
+        final List<String> first = describe(concurrentDelta(none, none));
+        Assert.assertFalse(first.isEmpty());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(first, describe(concurrentDelta(none, none)));
+        }
+    }
+
+}
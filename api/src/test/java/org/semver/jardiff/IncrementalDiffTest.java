@@ -0,0 +1,113 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jardiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.FieldInfo;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.MethodInfo;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.semver.Delta;
+import org.semver.Delta.Difference;
+
+public class IncrementalDiffTest {
+
+    private static ClassInfo classInfo(final String name, final String superName, final String... methods) {
+        final Map<String, MethodInfo> methodMap = new HashMap<String, MethodInfo>();
+        for (final String method : methods) {
+            methodMap.put(method + "()V", new MethodInfo(Opcodes.ACC_PUBLIC, method, "()V", null, null));
+        }
+        return new ClassInfo(Opcodes.V1_6, Opcodes.ACC_PUBLIC, name, null, superName, new String[0],
+                methodMap, Collections.<String, FieldInfo>emptyMap());
+    }
+
+    private static Map<String, ClassInfo> classes(final ClassInfo... classInfos) {
+        final Map<String, ClassInfo> classes = new TreeMap<String, ClassInfo>();
+        for (final ClassInfo classInfo : classInfos) {
+            classes.put(classInfo.getName(), classInfo);
+        }
+        return classes;
+    }
+
+    private static List<String> describe(final Delta delta) {
+        final List<String> descriptions = new ArrayList<String>();
+        for (final Difference difference : delta.getDifferences()) {
+            descriptions.add(difference.getClass().getSimpleName() + " " + difference.getClassName() + " " + difference.getInfo().getName());
+        }
+        return descriptions;
+    }
+
+    private static List<String> fullDiff(final Map<String, ClassInfo> oldClasses, final Map<String, ClassInfo> newClasses) throws Exception {
+        final ConcurrentDifferenceAccumulatingHandler handler = new ConcurrentDifferenceAccumulatingHandler();
+        new JarDiff().batchDiff(handler, new SimpleDiffCriteria(), "old", "new", oldClasses, newClasses);
+        return describe(handler.getDelta());
+    }
+
+    @Test
+    public void shouldMatchFullDiffAfterEachUpdate() throws Exception {
+        final Map<String, ClassInfo> oldClasses = classes(classInfo("a/Base", "java/lang/Object", "m"),
+                classInfo("a/Sub", "a/Base", "n"), classInfo("a/Gone", "java/lang/Object"));
+        final IncrementalDiff diff = new IncrementalDiff(new SimpleDiffCriteria(), oldClasses,
+                Collections.<String>emptySet(), Collections.<String>emptySet());
+        Assert.assertEquals(fullDiff(oldClasses, classes()), describe(diff.getDelta()));
+
+        diff.update(classes(classInfo("a/Base", "java/lang/Object", "m"), classInfo("a/Sub", "a/Base", "n")), Collections.<String>emptySet());
+        Assert.assertEquals(Arrays.asList("Remove a.Gone a/Gone"), describe(diff.getDelta()));
+
+        // n moves up to Base, so it is not removed from Sub
+        final Set<String> diffed = diff.update(classes(classInfo("a/Base", "java/lang/Object", "m", "n"), classInfo("a/Sub", "a/Base")),
+                Collections.<String>emptySet());
+        Assert.assertEquals(fullDiff(oldClasses, diff.getNewClasses()), describe(diff.getDelta()));
+        Assert.assertEquals(Arrays.asList("Add a.Base n", "Remove a.Gone a/Gone"), describe(diff.getDelta()));
+        Assert.assertEquals(2, diffed.size());
+
+        // Sub is not updated but loses n along with its superclass
+        Assert.assertEquals(2, diff.update(Collections.<String, ClassInfo>emptyMap(), Collections.singleton("a/Base")).size());
+        Assert.assertEquals(fullDiff(oldClasses, diff.getNewClasses()), describe(diff.getDelta()));
+        Assert.assertEquals(Arrays.asList("Remove a.Base a/Base", "Remove a.Gone a/Gone", "Remove a.Sub n"), describe(diff.getDelta()));
+
+        diff.update(classes(classInfo("a/Gone", "java/lang/Object"), classInfo("a/New", "java/lang/Object")), Collections.<String>emptySet());
+        Assert.assertEquals(fullDiff(oldClasses, diff.getNewClasses()), describe(diff.getDelta()));
+    }
+
+    @Test
+    public void shouldOnlyDiffUpdatedClassesAndSubclasses() {
+        final Map<String, ClassInfo> oldClasses = classes(classInfo("a/A", "java/lang/Object"), classInfo("a/B", "a/A"),
+                classInfo("a/C", "a/B"), classInfo("a/D", "java/lang/Object"));
+        final IncrementalDiff diff = new IncrementalDiff(new SimpleDiffCriteria(), oldClasses,
+                Collections.<String>emptySet(), Collections.<String>emptySet());
+        diff.update(oldClasses, Collections.<String>emptySet());
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("a/B", "a/C")),
+                diff.update(classes(classInfo("a/B", "a/A", "m")), Collections.<String>emptySet()));
+        Assert.assertEquals(Arrays.asList("Add a.B m"), describe(diff.getDelta()));
+    }
+
+}
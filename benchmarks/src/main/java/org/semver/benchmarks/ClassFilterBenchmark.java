@@ -0,0 +1,113 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semver.jardiff.ClassFilter;
+import org.semver.jardiff.DifferenceAccumulatingHandler;
+
+/**
+ * Measures selecting classes with the includes and excludes of {@link DifferenceAccumulatingHandler}, which are
+ * evaluated by a {@link ClassFilter}, with pattern sets as configured in real builds.
+ * Run with <code>java -jar benchmarks/target/benchmarks.jar ClassFilterBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassFilterBenchmark {
+
+    /**
+     * <code>none</code>: no filtering, <code>packages</code>: API packages included and internal ones excluded,
+     * <code>wildcards</code>: the same with <code>*</code> and <code>**</code>, <code>regexps</code>: the same as
+     * regular expressions.
+     */
+    @Param({"none", "packages", "wildcards", "regexps"})
+    public String patterns;
+
+    @Param({"2000"})
+    public int classes;
+
+    private ClassFilter filter;
+    private String[] classNames;
+
+    @Setup
+    public void setUp() {
+        final Set<String> includes;
+        final Set<String> excludes;
+        boolean regExps = false;
+        if (this.patterns.equals("none")) {
+            includes = Collections.emptySet();
+            excludes = Collections.emptySet();
+        } else if (this.patterns.equals("packages")) {
+            includes = set("org/semver/synthetic/p1", "org/semver/synthetic/p2", "org/semver/synthetic/p3");
+            excludes = set("org/semver/synthetic/p1/internal", "org/semver/synthetic/p2/impl");
+        } else if (this.patterns.equals("wildcards")) {
+            includes = set("org/semver/**/p1*/*", "org/semver/**/p2/*", "org/semver/synthetic/p3/C?");
+            excludes = set("**/internal/**", "**/impl/*");
+        } else if (this.patterns.equals("regexps")) {
+            includes = set("^org/semver/synthetic/p[1-3]/", "^org/semver/synthetic/p1\\d/");
+            excludes = set("/internal/", "/impl/[^/]+$");
+            regExps = true;
+        } else {
+            throw new IllegalArgumentException("invalid patterns " + this.patterns);
+        }
+        this.filter = new ClassFilter(includes, regExps, excludes, regExps);
+
+        this.classNames = new String[this.classes];
+        for (int c = 0; c < this.classes; c++) {
+            final String suffix = c % 10 == 0 ? "internal/" : c % 10 == 1 ? "impl/" : "";
+            final String name = "org/semver/synthetic/p" + (c % 50) + "/" + suffix + "C" + c;
+            // Reports pass '.' separated names
+            this.classNames[c] = c % 2 == 0 ? name : name.replace('/', '.');
+        }
+    }
+
+    private static Set<String> set(final String... patterns) {
+        return new HashSet<String>(Arrays.asList(patterns));
+    }
+
+    @Benchmark
+    public int isClassConsidered() {
+        int considered = 0;
+        for (final String className : this.classNames) {
+            if (this.filter.isClassConsidered(className)) {
+                considered++;
+            }
+        }
+        return considered;
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.FieldInfo;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.MethodInfo;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.osjava.jardiff.TeeDiffHandler;
+import org.semver.Delta;
+import org.semver.jardiff.DifferenceAccumulatingHandler;
+
+/**
+ * Compares feeding a {@link DifferenceAccumulatingHandler} one event per member
+ * with feeding it one change set per class.
+ * Run with <code>java -jar benchmarks/target/benchmarks.jar DiffHandlerBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiffHandlerBenchmark {
+
+    @Param({"2000"})
+    public int classes;
+
+    @Param({"20"})
+    public int members;
+
+    /**
+     * Percentage of members changed, removed or added in each class: low, medium or high churn.
+     */
+    @Param({"1", "10", "50"})
+    public int churn;
+
+    private final JarDiff jarDiff = new JarDiff();
+    private final SimpleDiffCriteria criteria = new SimpleDiffCriteria();
+    private Map<String, ClassInfo> oldClasses;
+    private Map<String, ClassInfo> newClasses;
+
+    @Setup
+    public void setUp() {
+        this.oldClasses = SyntheticClasses.generate(this.classes, this.members, 0);
+        this.newClasses = SyntheticClasses.generate(this.classes, this.members, this.churn);
+    }
+
+    @Benchmark
+    public Delta perMemberEvents() throws DiffException {
+        final DifferenceAccumulatingHandler handler = new DifferenceAccumulatingHandler();
+        // Hides the batch interface so that every member is one DiffHandler call
+        this.jarDiff.diff(new TeeDiffHandler(handler), this.criteria, "old", "new", this.oldClasses, this.newClasses);
+        return handler.getDelta();
+    }
+
+    @Benchmark
+    public Delta perClassChanges() throws DiffException {
+        final DifferenceAccumulatingHandler handler = new DifferenceAccumulatingHandler();
+        this.jarDiff.batchDiff(handler, this.criteria, "old", "new", this.oldClasses, this.newClasses);
+        return handler.getDelta();
+    }
+
+    /**
+     * Builds {@link ClassInfo} maps without reading any JAR.
+     */
+    static final class SyntheticClasses {
+
+        private SyntheticClasses() {
+        }
+
+        /**
+         * @param classes number of classes
+         * @param members number of methods and of fields per class
+         * @param churn percentage of members altered, the same members for a given set of arguments
+         */
+        static Map<String, ClassInfo> generate(final int classes, final int members, final int churn) {
+            final Map<String, ClassInfo> infos = new TreeMap<String, ClassInfo>();
+            for (int c = 0; c < classes; c++) {
+                final String name = "org/semver/synthetic/p" + (c % 50) + "/C" + c;
+                final Map<String, MethodInfo> methods = new HashMap<String, MethodInfo>();
+                final Map<String, FieldInfo> fields = new HashMap<String, FieldInfo>();
+                for (int m = 0; m < members; m++) {
+                    final boolean altered = (m * 100) / members < churn;
+                    String methodName = "method" + m;
+                    String fieldName = "field" + m;
+                    int access = Opcodes.ACC_PUBLIC;
+                    if (altered) {
+                        switch (m % 3) {
+                        case 0:
+                            access |= Opcodes.ACC_FINAL;
+                            break;
+                        case 1:
+                            methodName += "Renamed";
+                            fieldName += "Renamed";
+                            break;
+                        default:
+                            access |= Opcodes.ACC_DEPRECATED;
+                            break;
+                        }
+                    }
+                    final String desc = "(Ljava/lang/String;I)V";
+                    methods.put(methodName + desc, new MethodInfo(access, methodName, desc, null, new String[0]));
+                    fields.put(fieldName, new FieldInfo(access, fieldName, "I", null, null));
+                }
+                infos.put(name, new ClassInfo(Opcodes.V1_6, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object",
+                        new String[0], methods, fields));
+            }
+            return infos;
+        }
+
+    }
+
+}
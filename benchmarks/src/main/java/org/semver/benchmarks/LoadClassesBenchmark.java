@@ -0,0 +1,83 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.JarDiff;
+import org.semver.generator.JarPairGenerator;
+import org.semver.generator.Profile;
+
+/**
+ * Measures parsing every class of a JAR with {@link JarDiff#loadClasses(File)}, on small, medium and huge JARs
+ * written once per trial by {@link JarPairGenerator}.
+ * Run with <code>java -jar benchmarks/target/benchmarks.jar LoadClassesBenchmark -prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class LoadClassesBenchmark {
+
+    /**
+     * The {@link Profile} of the JAR: 1 000, 20 000 or 200 000 classes.
+     */
+    @Param({"small", "medium", "huge"})
+    public String profile;
+
+    private final JarDiff jarDiff = new JarDiff();
+    private File jar;
+    private File currentJar;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.jar = File.createTempFile("load-classes", ".jar");
+        this.currentJar = File.createTempFile("load-classes", ".jar");
+        new JarPairGenerator(Profile.named(this.profile), 1).write(this.jar, this.currentJar);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.jar.delete();
+        this.currentJar.delete();
+    }
+
+    @Benchmark
+    public Map<String, ClassInfo> loadClasses() throws DiffException {
+        return this.jarDiff.loadClasses(this.jar);
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osjava.jardiff.BatchDiffHandler;
+import org.osjava.jardiff.ClassChanges;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffException;
+import org.osjava.jardiff.DiffHandlerAdapter;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.JsonStreamDiffHandler;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.osjava.jardiff.StreamDiffHandler;
+import org.semver.benchmarks.XmlDiffHandlerBenchmark.CountingOutputStream;
+
+/**
+ * Measures the throughput of the streaming report writers on a large synthetic diff.
+ * The diff is computed once and replayed, so that only writing the report is measured.
+ * Run with <code>java -jar benchmarks/target/benchmarks.jar StreamDiffHandlerBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamDiffHandlerBenchmark {
+
+    @Param({"5000"})
+    public int classes;
+
+    @Param({"20"})
+    public int members;
+
+    @Param({"50"})
+    public int churn;
+
+    private final RecordedDiff diff = new RecordedDiff();
+
+    @Setup
+    public void setUp() throws DiffException {
+        new JarDiff().batchDiff(this.diff, new SimpleDiffCriteria(), "old", "new",
+                DiffHandlerBenchmark.SyntheticClasses.generate(this.classes, this.members, 0),
+                DiffHandlerBenchmark.SyntheticClasses.generate(this.classes, this.members, this.churn));
+    }
+
+    @Benchmark
+    public CountingOutputStream xml() throws Exception {
+        final CountingOutputStream out = new CountingOutputStream();
+        this.diff.replay(new DiffHandlerAdapter(new StreamDiffHandler(out)));
+        return out;
+    }
+
+    @Benchmark
+    public CountingOutputStream json() throws Exception {
+        final CountingOutputStream out = new CountingOutputStream();
+        this.diff.replay(new DiffHandlerAdapter(new JsonStreamDiffHandler(out)));
+        return out;
+    }
+
+    /**
+     * Keeps the result of a diff in memory.
+     */
+    static final class RecordedDiff implements BatchDiffHandler {
+
+        private String oldJar;
+        private String newJar;
+        private ClassInfo[] oldContents;
+        private ClassInfo[] newContents;
+        private ClassInfo[] removed;
+        private ClassInfo[] added;
+        private final List<ClassChanges> changes = new ArrayList<ClassChanges>();
+
+        public void startDiff(final String oldJar, final String newJar) {
+            this.oldJar = oldJar;
+            this.newJar = newJar;
+        }
+
+        public void contents(final ClassInfo[] oldContents, final ClassInfo[] newContents) {
+            this.oldContents = oldContents;
+            this.newContents = newContents;
+        }
+
+        public void classesRemoved(final ClassInfo[] classes) {
+            this.removed = classes;
+        }
+
+        public void classesAdded(final ClassInfo[] classes) {
+            this.added = classes;
+        }
+
+        public void classChanges(final ClassChanges changes) {
+            this.changes.add(changes);
+        }
+
+        public void endDiff() {
+        }
+
+        void replay(final BatchDiffHandler handler) throws DiffException {
+            handler.startDiff(this.oldJar, this.newJar);
+            handler.contents(this.oldContents, this.newContents);
+            handler.classesRemoved(this.removed);
+            handler.classesAdded(this.added);
+            for (final ClassChanges classChanges : this.changes) {
+                handler.classChanges(classChanges);
+            }
+            handler.endDiff();
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semver.Version;
+
+/**
+ * Measures ordering the versions listed by the metadata of a long-lived artifact with
+ * {@link Version#compareTo(Version)}, releases and pre-releases mixed.
+ * Run with <code>java -jar benchmarks/target/benchmarks.jar VersionCompareBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VersionCompareBenchmark {
+
+    @Param({"500"})
+    public int versions;
+
+    private Version[] shuffled;
+
+    @Setup
+    public void setUp() {
+        final Version[] versions = new Version[this.versions];
+        for (int i = 0; i < this.versions; i++) {
+            final String release = (i / 100) + "." + (i / 10 % 10) + "." + (i % 10);
+            switch (i % 4) {
+                case 0:
+                    versions[i] = Version.parse(release);
+                    break;
+                case 1:
+                    versions[i] = Version.parse(release + "-SNAPSHOT");
+                    break;
+                case 2:
+                    versions[i] = Version.parse(release + "-RC." + (i % 7));
+                    break;
+                default:
+                    versions[i] = Version.parse(release + "-beta.1.x" + (i % 3));
+                    break;
+            }
+        }
+        final List<Version> list = Arrays.asList(versions);
+        Collections.shuffle(list, new Random(42));
+        this.shuffled = list.toArray(new Version[list.size()]);
+    }
+
+    @Benchmark
+    public Version[] sort() {
+        final Version[] sorted = this.shuffled.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public int compareAdjacent() {
+        int greater = 0;
+        for (int i = 1; i < this.shuffled.length; i++) {
+            if (this.shuffled[i].compareTo(this.shuffled[i - 1]) > 0) {
+                greater++;
+            }
+        }
+        return greater;
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.semver.Version;
+
+/**
+ * Parses the versions listed by the metadata of a long-lived artifact, with {@link Version#parse(String)} and with
+ * the regular expression it replaced.
+ * With more distinct versions than the parse cache holds, most parses miss the cache.
+ * Run with <code>java -jar benchmarks/target/benchmarks.jar VersionParseBenchmark -prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VersionParseBenchmark {
+
+    private static final Pattern FORMAT = Pattern.compile("(\\d+)\\.(\\d+)(?:\\.)?(\\d*)(\\.|-|\\+)?([0-9A-Za-z-.]*)?");
+
+    @Param({"500", "5000"})
+    public int versions;
+
+    private String[] strings;
+
+    @Setup
+    public void setUp() {
+        this.strings = new String[this.versions];
+        for (int i = 0; i < this.versions; i++) {
+            final String release = (i / 100) + "." + (i / 10 % 10) + "." + (i % 10);
+            switch (i % 4) {
+                case 0:
+                    this.strings[i] = release;
+                    break;
+                case 1:
+                    this.strings[i] = release + "-SNAPSHOT";
+                    break;
+                case 2:
+                    this.strings[i] = release + "-RC." + (i % 7);
+                    break;
+                default:
+                    this.strings[i] = release + ".Final";
+                    break;
+            }
+            // Distinct strings beyond the first thousand versions
+            if (i >= 1000) {
+                this.strings[i] = (i / 1000) + "0" + this.strings[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) {
+        for (final String string : this.strings) {
+            blackhole.consume(Version.parse(string));
+        }
+    }
+
+    @Benchmark
+    public void regularExpression(final Blackhole blackhole) {
+        for (final String string : this.strings) {
+            blackhole.consume(regexParse(string));
+        }
+    }
+
+    /**
+     * How {@link Version#parse(String)} used to work.
+     */
+    private static Version regexParse(final String version) {
+        final Matcher matcher = FORMAT.matcher(version);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("<" + version + "> does not match format " + FORMAT.pattern());
+        }
+        final int major = Integer.valueOf(matcher.group(1));
+        final int minor = Integer.valueOf(matcher.group(2));
+        final String patchMatch = matcher.group(3);
+        final int patch = patchMatch.length() > 0 ? Integer.valueOf(patchMatch) : 0;
+        final String special = matcher.group(5);
+        if ("".equals(special)) {
+            return new Version(major, minor, patch, matcher.group(4), null);
+        }
+        // The special part used to be split with a regular expression too
+        final String[] ids = special.split("\\.");
+        for (final String id : ids) {
+            if (id.matches("\\d+")) {
+                Integer.parseInt(id);
+            }
+        }
+        return new Version(major, minor, patch, matcher.group(4), special);
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.benchmarks;
+
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DOMDiffHandler;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.osjava.jardiff.StaxDiffHandler;
+
+/**
+ * Compares building the XML report as a DOM with streaming it through StAX.
+ * Run with <code>java -jar benchmarks/target/benchmarks.jar XmlDiffHandlerBenchmark -prof gc</code>
+ * to also compare the memory allocated per report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class XmlDiffHandlerBenchmark {
+
+    @Param({"2000"})
+    public int classes;
+
+    @Param({"20"})
+    public int members;
+
+    @Param({"50"})
+    public int churn;
+
+    private final JarDiff jarDiff = new JarDiff();
+    private final SimpleDiffCriteria criteria = new SimpleDiffCriteria();
+    private Map<String, ClassInfo> oldClasses;
+    private Map<String, ClassInfo> newClasses;
+    private Transformer transformer;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.oldClasses = DiffHandlerBenchmark.SyntheticClasses.generate(this.classes, this.members, 0);
+        this.newClasses = DiffHandlerBenchmark.SyntheticClasses.generate(this.classes, this.members, this.churn);
+        this.transformer = TransformerFactory.newInstance().newTransformer();
+    }
+
+    @Benchmark
+    public CountingOutputStream dom() throws Exception {
+        final CountingOutputStream out = new CountingOutputStream();
+        this.jarDiff.diff(new DOMDiffHandler(this.transformer, new StreamResult(out)), this.criteria, "old", "new", this.oldClasses, this.newClasses);
+        return out;
+    }
+
+    @Benchmark
+    public CountingOutputStream stax() throws Exception {
+        final CountingOutputStream out = new CountingOutputStream();
+        this.jarDiff.diff(new StaxDiffHandler(out), this.criteria, "old", "new", this.oldClasses, this.newClasses);
+        return out;
+    }
+
+    /**
+     * Discards what is written, only keeping track of its size.
+     */
+    static final class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(final int b) {
+            this.count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            this.count += len;
+        }
+
+    }
+
+}
@@ -22,8 +22,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
@@ -40,12 +41,15 @@ import org.apache.maven.enforcer.rule.api.EnforcerRuleHelper;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluationException;
 import org.osjava.jardiff.DiffCriteria;
+import org.osjava.jardiff.DiffStatistics;
 import org.osjava.jardiff.PublicDiffCriteria;
 import org.osjava.jardiff.SimpleDiffCriteria;
 import org.semver.Comparer;
 import org.semver.Delta;
 import org.semver.Dumper;
 import org.semver.Version;
+import org.semver.VersionIndex;
+import org.semver.VersionRange;
 
 /**
  * Abstract {@link EnforcerRule} implementation providing facilities for compatibility checking.
@@ -61,6 +65,14 @@ public abstract class AbstractEnforcerRule implements EnforcerRule {
      * @parameter
      */
     private String previousVersion;        
+
+    /**
+     * Range the previous version is selected from when not specified, e.g. <code>[1.2,2.0)</code>, <code>^1.4</code>
+     * or <code>~1.4.2</code>. Defaults to compatible releases.
+     *
+     * @parameter
+     */
+    private String previousVersionRange;
     
     /**
      * Class names to be included.
@@ -109,6 +121,10 @@ public abstract class AbstractEnforcerRule implements EnforcerRule {
         final Artifact previousArtifact;
         final Artifact currentArtifact = validateArtifact(project.getArtifact());
         final Version current = Version.parse(currentArtifact.getVersion());
+        // Only collected to be logged
+        final DiffStatistics statistics = helper.getLog().isDebugEnabled() ? new DiffStatistics() : null;
+        final long resolveStartNanos = statistics == null ? 0 : System.nanoTime();
+        final long resolveStartAllocated = statistics == null ? 0 : DiffStatistics.allocatedBytes();
         try {
             final ArtifactRepository localRepository = (ArtifactRepository) helper.evaluate("${localRepository}");
             final String version;
@@ -118,14 +134,26 @@ public abstract class AbstractEnforcerRule implements EnforcerRule {
                 helper.getLog().info("Version specified as <"+version+">");
             } else {                
                 final ArtifactMetadataSource artifactMetadataSource = (ArtifactMetadataSource) helper.getComponent(ArtifactMetadataSource.class);
-                final List<ArtifactVersion> availableVersions = getAvailableReleasedVersions(artifactMetadataSource, project, localRepository);
-                final List<ArtifactVersion> availablePreviousVersions = filterNonPreviousVersions(availableVersions, current);
-                if (availablePreviousVersions.isEmpty()) {
-                    helper.getLog().warn("No previously released version. Backward compatibility check not performed.");
-                    return;
+                final VersionIndex versionIndex = getVersionIndex(artifactMetadataSource, project, localRepository);
+                if (!versionIndex.getIgnored().isEmpty()) {
+                    helper.getLog().debug("Ignoring versions not following semantic versioning: "+versionIndex.getIgnored());
+                }
+                if (this.previousVersionRange != null) {
+                    version = versionIndex.getLatestReleaseBefore(current, VersionRange.parse(this.previousVersionRange));
+                    if (version == null) {
+                        helper.getLog().warn("No previously released version in range <"+this.previousVersionRange+">. Backward compatibility check not performed.");
+                        return;
+                    }
+                    helper.getLog().info("Version deduced as <"+version+"> (latest in range <"+this.previousVersionRange+">)");
+                } else {
+                    final List<String> availablePreviousVersions = versionIndex.getCompatibleReleasesBefore(current);
+                    if (availablePreviousVersions.isEmpty()) {
+                        helper.getLog().warn("No previously released version. Backward compatibility check not performed.");
+                        return;
+                    }
+                    version = availablePreviousVersions.get(0);
+                    helper.getLog().info("Version deduced as <"+version+"> (among all availables: "+availablePreviousVersions+")");
                 }
-                version = availablePreviousVersions.iterator().next().toString();
-                helper.getLog().info("Version deduced as <"+version+"> (among all availables: "+availablePreviousVersions+")");
             }
             
             final ArtifactFactory artifactFactory = (ArtifactFactory) helper.getComponent(ArtifactFactory.class);
@@ -133,6 +161,9 @@ public abstract class AbstractEnforcerRule implements EnforcerRule {
             final ArtifactResolver resolver = (ArtifactResolver) helper.getComponent(ArtifactResolver.class );
             resolver.resolve(previousArtifact, project.getRemoteArtifactRepositories(), localRepository);
             validateArtifact(previousArtifact);
+            if (statistics != null) {
+                statistics.recordSince(DiffStatistics.Phase.RESOLVE, resolveStartNanos, resolveStartAllocated, 0, 0, 0);
+            }
         } catch (Exception e) {
             helper.getLog().warn("Exception while accessing artifacts; skipping check.", e);
             return;
@@ -141,7 +172,7 @@ public abstract class AbstractEnforcerRule implements EnforcerRule {
         final Version previous = Version.parse(previousArtifact.getVersion());
         final File previousJar = previousArtifact.getFile();
         final File currentJar = currentArtifact.getFile();
-        compareJars(helper, previous, previousJar, current, currentJar);
+        compareJars(helper, previous, previousJar, current, currentJar, statistics);
     }
 
     protected abstract void enforce(final EnforcerRuleHelper helper, final Delta delta, final Version previous, final Version current) throws EnforcerRuleException;
@@ -153,28 +184,75 @@ public abstract class AbstractEnforcerRule implements EnforcerRule {
         throw new EnforcerRuleException(message);
     }
 
+    private static final int MAX_VERSION_INDEXES = 64;
+    /**
+     * Indexes of available versions, shared by all rules and modules of a build: modules released together list the
+     * same versions. The least recently used index is evicted first, guarded by the map itself.
+     */
+    private static final Map<List<String>, VersionIndex> VERSION_INDEXES = new LinkedHashMap<List<String>, VersionIndex>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<String>, VersionIndex> eldest) {
+            return size() > MAX_VERSION_INDEXES;
+        }
+    };
+
     /**
      * @param artifactMetadataSource
      * @param project
      * @param localRepository
-     * @return all available versions from most recent to oldest
+     * @return the index of all available versions of the project artifact
      * @throws ArtifactMetadataRetrievalException
      */
-    protected final List<ArtifactVersion> getAvailableReleasedVersions(final ArtifactMetadataSource artifactMetadataSource, final MavenProject project, final ArtifactRepository localRepository) throws ArtifactMetadataRetrievalException {
+    protected final VersionIndex getVersionIndex(final ArtifactMetadataSource artifactMetadataSource, final MavenProject project, final ArtifactRepository localRepository) throws ArtifactMetadataRetrievalException {
         final List<ArtifactVersion> availableVersions = artifactMetadataSource.retrieveAvailableVersions(project.getArtifact(), localRepository, project.getRemoteArtifactRepositories());
-        availableVersions.remove(new DefaultArtifactVersion(project.getArtifact().getVersion()));
-        for (final Iterator<ArtifactVersion> iterator = availableVersions.iterator(); iterator.hasNext();) {
-            final ArtifactVersion artifactVersion = iterator.next();
-            if (Version.parse(artifactVersion.toString()).isSnapshot()) {
-                iterator.remove();
+        final List<String> versions = new ArrayList<String>(availableVersions.size());
+        for (final ArtifactVersion artifactVersion : availableVersions) {
+            versions.add(artifactVersion.toString());
+        }
+        synchronized (VERSION_INDEXES) {
+            final VersionIndex versionIndex = VERSION_INDEXES.get(versions);
+            if (versionIndex != null) {
+                return versionIndex;
             }
         }
-        //TODO proper sorting based on Version
-        Collections.sort(availableVersions);
-        Collections.reverse(availableVersions);
+        // Built outside of the lock: a concurrent rule at worst indexes the same versions again
+        final VersionIndex versionIndex = new VersionIndex(versions);
+        synchronized (VERSION_INDEXES) {
+            VERSION_INDEXES.put(versions, versionIndex);
+        }
+        return versionIndex;
+    }
+
+    /**
+     * @param artifactMetadataSource
+     * @param project
+     * @param localRepository
+     * @return all available versions from most recent to oldest
+     * @throws ArtifactMetadataRetrievalException
+     * @deprecated use {@link #getVersionIndex(ArtifactMetadataSource, MavenProject, ArtifactRepository)} and
+     * {@link VersionIndex#getReleases()}
+     */
+    @Deprecated
+    protected final List<ArtifactVersion> getAvailableReleasedVersions(final ArtifactMetadataSource artifactMetadataSource, final MavenProject project, final ArtifactRepository localRepository) throws ArtifactMetadataRetrievalException {
+        final List<String> releases = getVersionIndex(artifactMetadataSource, project, localRepository).getReleases();
+        releases.remove(project.getArtifact().getVersion());
+        Collections.reverse(releases);
+        final List<ArtifactVersion> availableVersions = new ArrayList<ArtifactVersion>(releases.size());
+        for (final String release : releases) {
+            availableVersions.add(new DefaultArtifactVersion(release));
+        }
         return availableVersions;
     }
 
+    /**
+     * @param availableVersions
+     * @param version
+     * @return versions of <code>availableVersions</code> compatible with and older than <code>version</code>
+     * @deprecated use {@link VersionIndex#getCompatibleReleasesBefore(Version)}
+     */
+    @Deprecated
     protected final List<ArtifactVersion> filterNonPreviousVersions(final List<ArtifactVersion> availableVersions, final Version version) {
         final List<ArtifactVersion> versions = new ArrayList<ArtifactVersion>();
         for (final ArtifactVersion artifactVersion : availableVersions) {
@@ -202,14 +280,17 @@ public abstract class AbstractEnforcerRule implements EnforcerRule {
     }
 
     private void compareJars(final EnforcerRuleHelper helper, final Version previous, final File previousJar, final Version current,
-            final File currentJar) throws EnforcerRuleException {
+            final File currentJar, final DiffStatistics statistics) throws EnforcerRuleException {
         helper.getLog().info("Using <" + previousJar + "> as previous JAR");
         helper.getLog().info("Using <" + currentJar + "> as current JAR");
         try {
             final DiffCriteria diffCriteria = publicOnly ? new PublicDiffCriteria() : new SimpleDiffCriteria();
             final Comparer comparer =
                     new Comparer(diffCriteria, previousJar, currentJar, extractFilters(this.includes), extractFilters(this.excludes));
-            final Delta delta = comparer.diff();
+            final Delta delta = comparer.diff(statistics);
+            if (statistics != null) {
+                helper.getLog().debug("Comparison statistics:\n" + statistics);
+            }
             enforce(helper, delta, previous, current);
         } catch (IOException e) {
             throw new EnforcerRuleException("Exception while checking compatibility: " + e.toString(), e);
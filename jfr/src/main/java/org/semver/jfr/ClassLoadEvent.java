@@ -0,0 +1,43 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * The loading of a class slower than the threshold.
+ */
+@Name("org.semver.ClassLoad")
+@Label("Slow Class Load")
+@Category({FlightRecorderListener.CATEGORY, "Load"})
+@Description("Parsing of a class file taking longer than the threshold")
+@Threshold("1 ms")
+final class ClassLoadEvent extends jdk.jfr.Event {
+
+    @Label("Class")
+    String className;
+
+    @Label("Size")
+    @DataAmount
+    int bytes;
+
+}
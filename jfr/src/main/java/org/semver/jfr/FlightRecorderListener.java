@@ -0,0 +1,152 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jfr;
+
+import java.util.Locale;
+
+import org.osjava.jardiff.ClassChanges;
+import org.osjava.jardiff.DiffListener;
+import org.osjava.jardiff.DiffStatistics;
+
+/**
+ * Emits Flight Recorder events while loading and diffing classes, under
+ * the {@value #CATEGORY} category:
+ * <ul>
+ * <li><code>org.semver.JarLoad</code> for each jar loaded,</li>
+ * <li><code>org.semver.ClassLoad</code> for each class slower to load than
+ * the threshold, 1 ms by default,</li>
+ * <li><code>org.semver.ClassDiff</code> for each class which changed,</li>
+ * <li><code>org.semver.Phase</code> for each diff and filter phase.</li>
+ * </ul>
+ * Registered as a service, so that having this artifact on the classpath
+ * is enough, e.g. as a dependency of the enforcer plugin.
+ * Events are only created when enabled in a running recording.
+ */
+public final class FlightRecorderListener extends DiffListener {
+
+    /**
+     * The top level category of the events.
+     */
+    public static final String CATEGORY = "Semantic Versioning";
+
+    @Override
+    public Object startJar(final String jar) {
+        final JarLoadEvent event = new JarLoadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endJar(final Object event, final String jar, final long classes, final long members,
+                       final long bytes) {
+        if (event == null) {
+            return;
+        }
+        final JarLoadEvent jarLoad = (JarLoadEvent) event;
+        jarLoad.end();
+        if (jarLoad.shouldCommit()) {
+            jarLoad.jar = jar;
+            jarLoad.classes = classes;
+            jarLoad.members = members;
+            jarLoad.bytes = bytes;
+            jarLoad.commit();
+        }
+    }
+
+    @Override
+    public Object startClass() {
+        final ClassLoadEvent event = new ClassLoadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endClass(final Object event, final String className, final int bytes) {
+        if (event == null) {
+            return;
+        }
+        final ClassLoadEvent classLoad = (ClassLoadEvent) event;
+        classLoad.end();
+        if (classLoad.shouldCommit()) {
+            classLoad.className = className;
+            classLoad.bytes = bytes;
+            classLoad.commit();
+        }
+    }
+
+    @Override
+    public Object startClassDiff() {
+        final ClassDiffEvent event = new ClassDiffEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endClassDiff(final Object event, final String className, final ClassChanges changes) {
+        if (event == null || changes == null) {
+            return;
+        }
+        final ClassDiffEvent classDiff = (ClassDiffEvent) event;
+        classDiff.end();
+        if (classDiff.shouldCommit()) {
+            classDiff.className = className;
+            classDiff.classChanged = changes.isClassChanged();
+            classDiff.removed = changes.getRemovedFields().length + changes.getRemovedMethods().length;
+            classDiff.added = changes.getAddedFields().length + changes.getAddedMethods().length;
+            classDiff.changed = changes.getChangedFieldsFrom().length + changes.getChangedMethodsFrom().length;
+            classDiff.deprecated = changes.getDeprecatedFieldsFrom().length
+                    + changes.getDeprecatedMethodsFrom().length;
+            classDiff.commit();
+        }
+    }
+
+    @Override
+    public Object startPhase(final DiffStatistics.Phase phase) {
+        final PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPhase(final Object event, final DiffStatistics.Phase phase, final long classes,
+                         final long members) {
+        if (event == null) {
+            return;
+        }
+        final PhaseEvent phaseEvent = (PhaseEvent) event;
+        phaseEvent.end();
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.phase = phase.name().toLowerCase(Locale.ROOT);
+            phaseEvent.classes = classes;
+            phaseEvent.members = members;
+            phaseEvent.commit();
+        }
+    }
+
+}
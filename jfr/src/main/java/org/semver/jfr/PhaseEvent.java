@@ -0,0 +1,44 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A phase of a comparison, as recorded by
+ * {@link org.osjava.jardiff.DiffStatistics}.
+ */
+@Name("org.semver.Phase")
+@Label("Comparison Phase")
+@Category({FlightRecorderListener.CATEGORY, "Diff"})
+@Description("A phase of a comparison, e.g. diffing all classes or filtering the differences of some")
+final class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Classes")
+    long classes;
+
+    @Label("Members")
+    @Description("Number of members compared, or of differences kept when filtering")
+    long members;
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2012-2014 Julien Eluard and contributors
+ * This project includes software developed by Julien Eluard: https://github.com/jeluard/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semver.jfr;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.osjava.jardiff.ClassInfo;
+import org.osjava.jardiff.DiffListener;
+import org.osjava.jardiff.JarDiff;
+import org.osjava.jardiff.SimpleDiffCriteria;
+import org.semver.TestJars;
+import org.semver.jardiff.DifferenceAccumulatingHandler;
+
+public class FlightRecorderListenerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File jar(final String name, final String... methods) throws Exception {
+        final Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+        classes.put("a/A", TestJars.classBytes("a/A", Opcodes.ACC_PUBLIC, methods));
+        classes.put("a/B", TestJars.classBytes("a/B", Opcodes.ACC_PUBLIC));
+        return TestJars.jar(this.folder.newFile(name), classes);
+    }
+
+    private static List<RecordedEvent> events(final List<RecordedEvent> recorded, final String name) {
+        final List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (final RecordedEvent event : recorded) {
+            if (event.getEventType().getName().equals(name)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Test
+    public void shouldBeInstalledAsAService() {
+        Assert.assertTrue(DiffListener.installed() instanceof FlightRecorderListener);
+        Assert.assertTrue(new JarDiff().getListener() instanceof FlightRecorderListener);
+    }
+
+    @Test
+    public void shouldNotCreateEventsWhenNotRecording() {
+        final FlightRecorderListener listener = new FlightRecorderListener();
+        Assert.assertNull(listener.startJar("a.jar"));
+        Assert.assertNull(listener.startClass());
+        Assert.assertNull(listener.startClassDiff());
+    }
+
+    @Test
+    public void shouldEmitEventsWhileRecording() throws Exception {
+        final File oldJar = jar("old.jar", "m");
+        final File newJar = jar("new.jar");
+        final Recording recording = new Recording();
+        try {
+            recording.enable(JarLoadEvent.class);
+            recording.enable(ClassLoadEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(ClassDiffEvent.class);
+            recording.enable(PhaseEvent.class);
+            recording.start();
+
+            final JarDiff jarDiff = new JarDiff();
+            final Map<String, ClassInfo> oldClasses = jarDiff.loadClasses(oldJar);
+            final Map<String, ClassInfo> newClasses = jarDiff.loadClasses(newJar);
+            jarDiff.batchDiff(new DifferenceAccumulatingHandler(Collections.<String>emptySet(),
+                    Collections.<String>emptySet()), new SimpleDiffCriteria(), "1", "2", oldClasses, newClasses);
+            recording.stop();
+            final Path path = this.folder.newFile("recording.jfr").toPath();
+            recording.dump(path);
+            final List<RecordedEvent> recorded = RecordingFile.readAllEvents(path);
+
+            final List<RecordedEvent> jars = events(recorded, "org.semver.JarLoad");
+            Assert.assertEquals(2, jars.size());
+            Assert.assertEquals(oldJar.getPath(), jars.get(0).getString("jar"));
+            Assert.assertEquals(2, jars.get(0).getLong("classes"));
+            Assert.assertEquals(4, events(recorded, "org.semver.ClassLoad").size());
+
+            final List<RecordedEvent> classDiffs = events(recorded, "org.semver.ClassDiff");
+            Assert.assertEquals(1, classDiffs.size());
+            Assert.assertEquals("a/A", classDiffs.get(0).getString("className"));
+            Assert.assertEquals(1, classDiffs.get(0).getInt("removed"));
+
+            int diffs = 0;
+            int filters = 0;
+            for (final RecordedEvent phase : events(recorded, "org.semver.Phase")) {
+                if (phase.getString("phase").equals("diff")) {
+                    diffs++;
+                } else if (phase.getString("phase").equals("filter")) {
+                    filters++;
+                }
+            }
+            Assert.assertEquals(1, diffs);
+            Assert.assertEquals(3, filters);
+        } finally {
+            recording.close();
+        }
+    }
+
+}